@@ -0,0 +1,581 @@
+package name.mjw.jquante.math;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import org.hipparchus.linear.RealMatrix;
+
+/**
+ * A square matrix stored as dense blocks, of which only the significant ones
+ * are kept. The rows and columns are split into the same blocks, such as the
+ * basis functions of each atom, so that block (i, j) couples the functions of
+ * atoms i and j. Between distant atoms the blocks are negligible and are not
+ * stored, so the memory and the work of the operations grow with the number of
+ * significant blocks rather than with the square of the dimension. The SCF
+ * matrices, such as {@link name.mjw.jquante.math.qm.Density}, are blocked by
+ * atom with their {@code toBlockSparse} methods.
+ * <p>
+ * The operations take a threshold: blocks of a result whose Frobenius norm is
+ * no larger are dropped, and a product of two blocks is skipped when the
+ * product of their norms is no larger. A threshold of zero keeps every block
+ * that is not exactly zero.
+ * <p>
+ * Each block is a row-major array. Results are new matrices, and the operands
+ * are not changed. A matrix may be read by several threads.
+ *
+ * @author mjw99
+ */
+public final class BlockSparseMatrix {
+
+	/** The number of rows below which work is not split over threads. */
+	private static final int PARALLEL_DIMENSION = 64;
+
+	/** The size of each block. */
+	private final int[] blockSizes;
+
+	/** The first row of each block, and the dimension last. */
+	private final int[] offsets;
+
+	/** The stored blocks of each block row, by block column. */
+	private final List<TreeMap<Integer, Block>> blockRows;
+
+	/**
+	 * A stored block.
+	 */
+	private static final class Block {
+
+		/** The elements, row by row. */
+		private final double[] data;
+
+		/** The Frobenius norm. */
+		private final double norm;
+
+		/**
+		 * Creates a block.
+		 *
+		 * @param data the elements, row by row
+		 */
+		private Block(double[] data) {
+			this.data = data;
+
+			double sum = 0.0;
+			for (double value : data) {
+				sum += value * value;
+			}
+			this.norm = Math.sqrt(sum);
+		}
+	}
+
+	/**
+	 * Creates a matrix with no stored blocks, that is zero.
+	 *
+	 * @param blockSizes the size of each block
+	 * @throws IllegalArgumentException if a block size is not positive
+	 */
+	public BlockSparseMatrix(int[] blockSizes) {
+		this.blockSizes = blockSizes.clone();
+		this.offsets = new int[blockSizes.length + 1];
+
+		for (int i = 0; i < blockSizes.length; i++) {
+			if (blockSizes[i] <= 0) {
+				throw new IllegalArgumentException("Block " + i + " has size " + blockSizes[i]);
+			}
+			offsets[i + 1] = offsets[i] + blockSizes[i];
+		}
+
+		this.blockRows = new ArrayList<>(blockSizes.length);
+		for (int i = 0; i < blockSizes.length; i++) {
+			blockRows.add(new TreeMap<>());
+		}
+	}
+
+	/**
+	 * The identity.
+	 *
+	 * @param blockSizes the size of each block
+	 * @return the identity, with the diagonal blocks stored
+	 */
+	public static BlockSparseMatrix identity(int[] blockSizes) {
+		final BlockSparseMatrix identity = new BlockSparseMatrix(blockSizes);
+
+		for (int i = 0; i < blockSizes.length; i++) {
+			final int size = blockSizes[i];
+			final double[] data = new double[size * size];
+			for (int r = 0; r < size; r++) {
+				data[r * size + r] = 1.0;
+			}
+			identity.setBlock(i, i, data);
+		}
+
+		return identity;
+	}
+
+	/**
+	 * The blocks of a dense matrix with a Frobenius norm above a threshold.
+	 *
+	 * @param matrix     the dense matrix
+	 * @param blockSizes the size of each block
+	 * @param threshold  the norm of the blocks dropped
+	 * @return the block sparse matrix
+	 * @throws IllegalArgumentException if the blocks do not cover the matrix
+	 */
+	public static BlockSparseMatrix of(DenseMatrix matrix, int[] blockSizes, double threshold) {
+		final BlockSparseMatrix result = new BlockSparseMatrix(blockSizes);
+		final int n = result.getDimension();
+
+		if (matrix.getRowDimension() != n || matrix.getColumnDimension() != n) {
+			throw new IllegalArgumentException("Blocks of " + n + "x" + n + " do not cover a matrix of "
+					+ matrix.getRowDimension() + "x" + matrix.getColumnDimension());
+		}
+
+		final double[] m = matrix.getDataRef();
+		for (int i = 0; i < blockSizes.length; i++) {
+			for (int j = 0; j < blockSizes.length; j++) {
+				final int rows = blockSizes[i];
+				final int columns = blockSizes[j];
+				final double[] data = new double[rows * columns];
+
+				for (int r = 0; r < rows; r++) {
+					System.arraycopy(m, (result.offsets[i] + r) * n + result.offsets[j], data, r * columns, columns);
+				}
+				result.putIfSignificant(i, j, new Block(data), threshold);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * The blocks of a matrix with a Frobenius norm above a threshold, read
+	 * block by block, so that no dense copy of the matrix is made.
+	 *
+	 * @param matrix     the matrix
+	 * @param blockSizes the size of each block
+	 * @param threshold  the norm of the blocks dropped
+	 * @return the block sparse matrix
+	 * @throws IllegalArgumentException if the blocks do not cover the matrix
+	 */
+	public static BlockSparseMatrix of(RealMatrix matrix, int[] blockSizes, double threshold) {
+		final BlockSparseMatrix result = new BlockSparseMatrix(blockSizes);
+		final int n = result.getDimension();
+
+		if (matrix.getRowDimension() != n || matrix.getColumnDimension() != n) {
+			throw new IllegalArgumentException("Blocks of " + n + "x" + n + " do not cover a matrix of "
+					+ matrix.getRowDimension() + "x" + matrix.getColumnDimension());
+		}
+
+		for (int i = 0; i < blockSizes.length; i++) {
+			for (int j = 0; j < blockSizes.length; j++) {
+				final int rows = blockSizes[i];
+				final int columns = blockSizes[j];
+				final double[] data = new double[rows * columns];
+
+				for (int r = 0; r < rows; r++) {
+					for (int c = 0; c < columns; c++) {
+						data[r * columns + c] = matrix.getEntry(result.offsets[i] + r, result.offsets[j] + c);
+					}
+				}
+				result.putIfSignificant(i, j, new Block(data), threshold);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * The dimension of the matrix.
+	 *
+	 * @return the number of rows, and of columns
+	 */
+	public int getDimension() {
+		return offsets[blockSizes.length];
+	}
+
+	/**
+	 * The number of blocks along a row or column.
+	 *
+	 * @return the number of block rows
+	 */
+	public int getNumberOfBlockRows() {
+		return blockSizes.length;
+	}
+
+	/**
+	 * The size of each block.
+	 *
+	 * @return a copy of the block sizes
+	 */
+	public int[] getBlockSizes() {
+		return blockSizes.clone();
+	}
+
+	/**
+	 * The number of stored blocks.
+	 *
+	 * @return the number of blocks, out of the square of the number of block
+	 *         rows
+	 */
+	public int getNumberOfBlocks() {
+		int count = 0;
+		for (Map<Integer, Block> row : blockRows) {
+			count += row.size();
+		}
+
+		return count;
+	}
+
+	/**
+	 * A stored block. The returned array is shared, and must not be modified.
+	 *
+	 * @param i the block row
+	 * @param j the block column
+	 * @return the elements, row by row, or null if the block is not stored
+	 */
+	public double[] getBlock(int i, int j) {
+		final Block block = blockRows.get(i).get(j);
+
+		return block == null ? null : block.data;
+	}
+
+	/**
+	 * Store a block, replacing any stored before.
+	 *
+	 * @param i    the block row
+	 * @param j    the block column
+	 * @param data the elements, row by row, which are kept and must not be
+	 *             modified later
+	 * @throws IllegalArgumentException if the block has the wrong size
+	 */
+	public void setBlock(int i, int j, double[] data) {
+		if (data.length != blockSizes[i] * blockSizes[j]) {
+			throw new IllegalArgumentException("Block (" + i + ", " + j + ") has " + data.length + " elements, not "
+					+ blockSizes[i] * blockSizes[j]);
+		}
+
+		blockRows.get(i).put(j, new Block(data));
+	}
+
+	/**
+	 * An element of the matrix.
+	 *
+	 * @param row    the row
+	 * @param column the column
+	 * @return the element, zero if its block is not stored
+	 */
+	public double getEntry(int row, int column) {
+		final int i = blockOf(row);
+		final int j = blockOf(column);
+		final Block block = blockRows.get(i).get(j);
+
+		return block == null ? 0.0 : block.data[(row - offsets[i]) * blockSizes[j] + column - offsets[j]];
+	}
+
+	/**
+	 * Copy to a dense matrix.
+	 *
+	 * @param matrix the dense matrix, overwritten
+	 * @return matrix
+	 * @throws IllegalArgumentException if the dimensions do not match
+	 */
+	public DenseMatrix copyTo(DenseMatrix matrix) {
+		final int n = getDimension();
+		if (matrix.getRowDimension() != n || matrix.getColumnDimension() != n) {
+			throw new IllegalArgumentException("Matrix of " + matrix.getRowDimension() + "x"
+					+ matrix.getColumnDimension() + " where " + n + "x" + n + " is needed");
+		}
+
+		final double[] m = matrix.getDataRef();
+		Arrays.fill(m, 0.0);
+		for (int i = 0; i < blockSizes.length; i++) {
+			for (Map.Entry<Integer, Block> entry : blockRows.get(i).entrySet()) {
+				final int j = entry.getKey();
+				final int columns = blockSizes[j];
+				for (int r = 0; r < blockSizes[i]; r++) {
+					System.arraycopy(entry.getValue().data, r * columns, m, (offsets[i] + r) * n + offsets[j],
+							columns);
+				}
+			}
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * Copy to a matrix, setting the elements of the blocks that are not stored
+	 * to zero.
+	 *
+	 * @param matrix the matrix, overwritten
+	 * @return matrix
+	 * @throws IllegalArgumentException if the dimensions do not match
+	 */
+	public RealMatrix copyTo(RealMatrix matrix) {
+		final int n = getDimension();
+		if (matrix.getRowDimension() != n || matrix.getColumnDimension() != n) {
+			throw new IllegalArgumentException("Matrix of " + matrix.getRowDimension() + "x"
+					+ matrix.getColumnDimension() + " where " + n + "x" + n + " is needed");
+		}
+
+		for (int i = 0; i < blockSizes.length; i++) {
+			for (int j = 0; j < blockSizes.length; j++) {
+				final Block block = blockRows.get(i).get(j);
+				final int columns = blockSizes[j];
+
+				for (int r = 0; r < blockSizes[i]; r++) {
+					for (int c = 0; c < columns; c++) {
+						matrix.setEntry(offsets[i] + r, offsets[j] + c,
+								block == null ? 0.0 : block.data[r * columns + c]);
+					}
+				}
+			}
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * The product of this and another matrix.
+	 *
+	 * @param other     the right hand matrix
+	 * @param threshold the norm of the blocks, and of block products, dropped
+	 * @return this x other
+	 * @throws IllegalArgumentException if the matrices are blocked differently
+	 */
+	public BlockSparseMatrix multiply(BlockSparseMatrix other, double threshold) {
+		checkBlocking(other);
+		final BlockSparseMatrix result = new BlockSparseMatrix(blockSizes);
+
+		forEachBlockRow(i -> {
+			final int rows = blockSizes[i];
+			final TreeMap<Integer, double[]> sums = new TreeMap<>();
+
+			for (Map.Entry<Integer, Block> left : blockRows.get(i).entrySet()) {
+				final int k = left.getKey();
+				final Block a = left.getValue();
+				final int inner = blockSizes[k];
+
+				for (Map.Entry<Integer, Block> right : other.blockRows.get(k).entrySet()) {
+					final Block b = right.getValue();
+					if (a.norm * b.norm <= threshold) {
+						continue;
+					}
+
+					final int j = right.getKey();
+					final int columns = blockSizes[j];
+					final double[] c = sums.computeIfAbsent(j, key -> new double[rows * columns]);
+
+					for (int r = 0; r < rows; r++) {
+						for (int l = 0; l < inner; l++) {
+							final double arl = a.data[r * inner + l];
+							for (int s = 0; s < columns; s++) {
+								c[r * columns + s] += arl * b.data[l * columns + s];
+							}
+						}
+					}
+				}
+			}
+
+			for (Map.Entry<Integer, double[]> sum : sums.entrySet()) {
+				result.putIfSignificant(i, sum.getKey(), new Block(sum.getValue()), threshold);
+			}
+		});
+
+		return result;
+	}
+
+	/**
+	 * A linear combination of this and another matrix.
+	 *
+	 * @param alpha     the coefficient of this
+	 * @param other     the other matrix
+	 * @param beta      the coefficient of other
+	 * @param threshold the norm of the blocks dropped
+	 * @return alpha this + beta other
+	 * @throws IllegalArgumentException if the matrices are blocked differently
+	 */
+	public BlockSparseMatrix add(double alpha, BlockSparseMatrix other, double beta, double threshold) {
+		checkBlocking(other);
+		final BlockSparseMatrix result = new BlockSparseMatrix(blockSizes);
+
+		forEachBlockRow(i -> {
+			final TreeMap<Integer, Block> a = blockRows.get(i);
+			final TreeMap<Integer, Block> b = other.blockRows.get(i);
+			final TreeMap<Integer, double[]> sums = new TreeMap<>();
+
+			for (Map.Entry<Integer, Block> entry : a.entrySet()) {
+				final double[] data = entry.getValue().data;
+				final double[] sum = sums.computeIfAbsent(entry.getKey(), key -> new double[data.length]);
+				for (int e = 0; e < data.length; e++) {
+					sum[e] += alpha * data[e];
+				}
+			}
+			for (Map.Entry<Integer, Block> entry : b.entrySet()) {
+				final double[] data = entry.getValue().data;
+				final double[] sum = sums.computeIfAbsent(entry.getKey(), key -> new double[data.length]);
+				for (int e = 0; e < data.length; e++) {
+					sum[e] += beta * data[e];
+				}
+			}
+
+			for (Map.Entry<Integer, double[]> sum : sums.entrySet()) {
+				result.putIfSignificant(i, sum.getKey(), new Block(sum.getValue()), threshold);
+			}
+		});
+
+		return result;
+	}
+
+	/**
+	 * The trace.
+	 *
+	 * @return the sum of the diagonal
+	 */
+	public double trace() {
+		double trace = 0.0;
+
+		for (int i = 0; i < blockSizes.length; i++) {
+			final Block block = blockRows.get(i).get(i);
+			if (block != null) {
+				for (int r = 0; r < blockSizes[i]; r++) {
+					trace += block.data[r * blockSizes[i] + r];
+				}
+			}
+		}
+
+		return trace;
+	}
+
+	/**
+	 * The Gershgorin bounds of the spectrum: every eigenvalue lies within the
+	 * sum of the absolute off diagonal elements of some row from its diagonal
+	 * element.
+	 *
+	 * @return the lowest and the highest bound
+	 */
+	public double[] getGershgorinBounds() {
+		double min = Double.MAX_VALUE;
+		double max = -Double.MAX_VALUE;
+
+		for (int i = 0; i < blockSizes.length; i++) {
+			final int rows = blockSizes[i];
+			final double[] radius = new double[rows];
+			final double[] diagonal = new double[rows];
+
+			for (Map.Entry<Integer, Block> entry : blockRows.get(i).entrySet()) {
+				final int j = entry.getKey();
+				final int columns = blockSizes[j];
+				final double[] data = entry.getValue().data;
+
+				for (int r = 0; r < rows; r++) {
+					for (int c = 0; c < columns; c++) {
+						if (i == j && r == c) {
+							diagonal[r] = data[r * columns + c];
+						} else {
+							radius[r] += Math.abs(data[r * columns + c]);
+						}
+					}
+				}
+			}
+
+			for (int r = 0; r < rows; r++) {
+				min = Math.min(min, diagonal[r] - radius[r]);
+				max = Math.max(max, diagonal[r] + radius[r]);
+			}
+		}
+
+		return new double[] { min, max };
+	}
+
+	/**
+	 * The trace of the product of this and another matrix, without forming the
+	 * product.
+	 *
+	 * @param other the right hand matrix
+	 * @return tr(this x other)
+	 * @throws IllegalArgumentException if the matrices are blocked differently
+	 */
+	public double traceOfProduct(BlockSparseMatrix other) {
+		checkBlocking(other);
+		double trace = 0.0;
+
+		for (int i = 0; i < blockSizes.length; i++) {
+			final int rows = blockSizes[i];
+
+			for (Map.Entry<Integer, Block> entry : blockRows.get(i).entrySet()) {
+				final int k = entry.getKey();
+				final Block b = other.blockRows.get(k).get(i);
+				if (b == null) {
+					continue;
+				}
+
+				final int columns = blockSizes[k];
+				final double[] a = entry.getValue().data;
+				for (int r = 0; r < rows; r++) {
+					for (int s = 0; s < columns; s++) {
+						trace += a[r * columns + s] * b.data[s * rows + r];
+					}
+				}
+			}
+		}
+
+		return trace;
+	}
+
+	/**
+	 * Store a block if its norm is above a threshold.
+	 *
+	 * @param i         the block row
+	 * @param j         the block column
+	 * @param block     the block
+	 * @param threshold the norm of the blocks dropped
+	 */
+	private void putIfSignificant(int i, int j, Block block, double threshold) {
+		if (block.norm > threshold) {
+			blockRows.get(i).put(j, block);
+		}
+	}
+
+	/**
+	 * The block a row or column is in.
+	 *
+	 * @param index the row or column
+	 * @return the block
+	 */
+	private int blockOf(int index) {
+		if (index < 0 || index >= getDimension()) {
+			throw new IndexOutOfBoundsException("Index " + index + " outside 0 to " + (getDimension() - 1));
+		}
+
+		final int found = Arrays.binarySearch(offsets, index);
+
+		return found >= 0 ? found : -found - 2;
+	}
+
+	/**
+	 * Run work on each block row, in parallel if the matrix is large enough.
+	 *
+	 * @param work the work on a block row
+	 */
+	private void forEachBlockRow(IntConsumer work) {
+		final IntStream rows = IntStream.range(0, blockSizes.length);
+
+		(getDimension() < PARALLEL_DIMENSION ? rows : rows.parallel()).forEach(work);
+	}
+
+	/**
+	 * Check another matrix has the same blocks.
+	 *
+	 * @param other the other matrix
+	 * @throws IllegalArgumentException if the blocks differ
+	 */
+	private void checkBlocking(BlockSparseMatrix other) {
+		if (!Arrays.equals(blockSizes, other.blockSizes)) {
+			throw new IllegalArgumentException("Matrices are blocked differently: " + Arrays.toString(blockSizes)
+					+ " and " + Arrays.toString(other.blockSizes));
+		}
+	}
+}
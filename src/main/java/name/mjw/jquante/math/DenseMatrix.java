@@ -0,0 +1,548 @@
+package name.mjw.jquante.math;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.hipparchus.linear.Array2DRowRealMatrix;
+import org.hipparchus.linear.RealMatrix;
+
+/**
+ * A dense matrix of doubles held in one row-major array, with cache-blocked
+ * and multithreaded product kernels.
+ * <p>
+ * The kernels write into an output matrix given by the caller, so that a
+ * loop, such as the SCF cycle, can allocate its work matrices once and reuse
+ * them. Products are split into {@link #BLOCK_SIZE} square tiles, so that the
+ * tiles of the operands stay in cache while they are used, and the row blocks
+ * of the output are computed in parallel once a product is large enough to
+ * pay for it. Each output element is always summed in the same order, so the
+ * results do not depend on the number of threads.
+ *
+ * @author mjw99
+ */
+public final class DenseMatrix {
+
+	/** The edge of the square tiles the kernels work on. */
+	public static final int BLOCK_SIZE = 64;
+
+	/** The number of multiply-adds below which a kernel runs on one thread. */
+	private static final long PARALLEL_THRESHOLD = (long) BLOCK_SIZE * BLOCK_SIZE * BLOCK_SIZE;
+
+	/** The number of rows. */
+	private final int rows;
+
+	/** The number of columns. */
+	private final int columns;
+
+	/** The elements, row by row. */
+	private final double[] data;
+
+	/**
+	 * Creates a new zero matrix.
+	 *
+	 * @param rows    the number of rows
+	 * @param columns the number of columns
+	 * @throws IllegalArgumentException if a dimension is negative
+	 */
+	public DenseMatrix(int rows, int columns) {
+		if (rows < 0 || columns < 0) {
+			throw new IllegalArgumentException("Matrix dimensions must not be negative: " + rows + "x" + columns);
+		}
+
+		this.rows = rows;
+		this.columns = columns;
+		this.data = new double[Math.multiplyExact(rows, columns)];
+	}
+
+	/**
+	 * Creates a copy of a matrix.
+	 *
+	 * @param matrix the matrix to copy
+	 */
+	public DenseMatrix(RealMatrix matrix) {
+		this(matrix.getRowDimension(), matrix.getColumnDimension());
+		copyFrom(matrix);
+	}
+
+	/**
+	 * The number of rows.
+	 *
+	 * @return the number of rows
+	 */
+	public int getRowDimension() {
+		return rows;
+	}
+
+	/**
+	 * The number of columns.
+	 *
+	 * @return the number of columns
+	 */
+	public int getColumnDimension() {
+		return columns;
+	}
+
+	/**
+	 * The elements, row by row. This is the array the matrix is held in, not a
+	 * copy.
+	 *
+	 * @return the elements
+	 */
+	public double[] getDataRef() {
+		return data;
+	}
+
+	/**
+	 * Get an element.
+	 *
+	 * @param row    the row
+	 * @param column the column
+	 * @return the element
+	 */
+	public double getEntry(int row, int column) {
+		return data[row * columns + column];
+	}
+
+	/**
+	 * Set an element.
+	 *
+	 * @param row    the row
+	 * @param column the column
+	 * @param value  the new value of the element
+	 */
+	public void setEntry(int row, int column, double value) {
+		data[row * columns + column] = value;
+	}
+
+	/**
+	 * Overwrite this with a matrix of the same dimensions.
+	 *
+	 * @param matrix the matrix to copy
+	 * @return this
+	 * @throws IllegalArgumentException if the dimensions differ
+	 */
+	public DenseMatrix copyFrom(RealMatrix matrix) {
+		checkDimensions(matrix.getRowDimension(), matrix.getColumnDimension(), rows, columns);
+
+		if (matrix instanceof Array2DRowRealMatrix array) {
+			final double[][] from = array.getDataRef();
+			for (int i = 0; i < rows; i++) {
+				System.arraycopy(from[i], 0, data, i * columns, columns);
+			}
+		} else {
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < columns; j++) {
+					data[i * columns + j] = matrix.getEntry(i, j);
+				}
+			}
+		}
+
+		return this;
+	}
+
+	/**
+	 * Overwrite a matrix of the same dimensions with this.
+	 *
+	 * @param matrix the matrix to overwrite
+	 * @throws IllegalArgumentException if the dimensions differ
+	 */
+	public void copyTo(RealMatrix matrix) {
+		checkDimensions(matrix.getRowDimension(), matrix.getColumnDimension(), rows, columns);
+
+		if (matrix instanceof Array2DRowRealMatrix array) {
+			final double[][] to = array.getDataRef();
+			for (int i = 0; i < rows; i++) {
+				System.arraycopy(data, i * columns, to[i], 0, columns);
+			}
+		} else {
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < columns; j++) {
+					matrix.setEntry(i, j, data[i * columns + j]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * C = AB.
+	 *
+	 * @param a an M x K matrix
+	 * @param b a K x N matrix
+	 * @param c the M x N output, which must not be a or b
+	 * @return c
+	 * @throws IllegalArgumentException if the dimensions do not match, or c is
+	 *                                  an operand
+	 */
+	public static DenseMatrix multiply(DenseMatrix a, DenseMatrix b, DenseMatrix c) {
+		checkInnerDimensions(a.columns, b.rows);
+		checkOutput(c, a, b, a.rows, b.columns);
+
+		final int m = a.rows;
+		final int n = b.columns;
+		final int k = a.columns;
+		final double[] ad = a.data;
+		final double[] bd = b.data;
+		final double[] cd = c.data;
+
+		forEachRowBlock(m, (long) m * n * k, (i0, i1) -> {
+			Arrays.fill(cd, i0 * n, i1 * n, 0.0);
+
+			for (int k0 = 0; k0 < k; k0 += BLOCK_SIZE) {
+				final int k1 = Math.min(k0 + BLOCK_SIZE, k);
+
+				for (int j0 = 0; j0 < n; j0 += BLOCK_SIZE) {
+					final int j1 = Math.min(j0 + BLOCK_SIZE, n);
+
+					for (int i = i0; i < i1; i++) {
+						final int ci = i * n;
+
+						for (int p = k0; p < k1; p++) {
+							final double aip = ad[i * k + p];
+							final int bp = p * n;
+
+							for (int j = j0; j < j1; j++) {
+								cd[ci + j] += aip * bd[bp + j];
+							}
+						}
+					}
+				}
+			}
+		});
+
+		return c;
+	}
+
+	/**
+	 * C = A<sup>T</sup>B.
+	 *
+	 * @param a a K x M matrix
+	 * @param b a K x N matrix
+	 * @param c the M x N output, which must not be a or b
+	 * @return c
+	 * @throws IllegalArgumentException if the dimensions do not match, or c is
+	 *                                  an operand
+	 */
+	public static DenseMatrix transposeMultiply(DenseMatrix a, DenseMatrix b, DenseMatrix c) {
+		checkInnerDimensions(a.rows, b.rows);
+		checkOutput(c, a, b, a.columns, b.columns);
+
+		final int m = a.columns;
+		final int n = b.columns;
+		final int k = a.rows;
+		final double[] ad = a.data;
+		final double[] bd = b.data;
+		final double[] cd = c.data;
+
+		forEachRowBlock(m, (long) m * n * k, (i0, i1) -> {
+			Arrays.fill(cd, i0 * n, i1 * n, 0.0);
+
+			for (int k0 = 0; k0 < k; k0 += BLOCK_SIZE) {
+				final int k1 = Math.min(k0 + BLOCK_SIZE, k);
+
+				for (int j0 = 0; j0 < n; j0 += BLOCK_SIZE) {
+					final int j1 = Math.min(j0 + BLOCK_SIZE, n);
+
+					for (int p = k0; p < k1; p++) {
+						final int ap = p * m;
+						final int bp = p * n;
+
+						for (int i = i0; i < i1; i++) {
+							final double api = ad[ap + i];
+							final int ci = i * n;
+
+							for (int j = j0; j < j1; j++) {
+								cd[ci + j] += api * bd[bp + j];
+							}
+						}
+					}
+				}
+			}
+		});
+
+		return c;
+	}
+
+	/**
+	 * C = AB<sup>T</sup>.
+	 *
+	 * @param a an M x K matrix
+	 * @param b an N x K matrix
+	 * @param c the M x N output, which must not be a or b
+	 * @return c
+	 * @throws IllegalArgumentException if the dimensions do not match, or c is
+	 *                                  an operand
+	 */
+	public static DenseMatrix multiplyTranspose(DenseMatrix a, DenseMatrix b, DenseMatrix c) {
+		checkInnerDimensions(a.columns, b.columns);
+		checkOutput(c, a, b, a.rows, b.rows);
+
+		final int m = a.rows;
+		final int n = b.rows;
+		final int k = a.columns;
+		final double[] ad = a.data;
+		final double[] bd = b.data;
+		final double[] cd = c.data;
+
+		forEachRowBlock(m, (long) m * n * k, (i0, i1) -> {
+			for (int j0 = 0; j0 < n; j0 += BLOCK_SIZE) {
+				final int j1 = Math.min(j0 + BLOCK_SIZE, n);
+
+				for (int i = i0; i < i1; i++) {
+					final int ai = i * k;
+
+					for (int j = j0; j < j1; j++) {
+						final int bj = j * k;
+						double sum = 0.0;
+
+						for (int p = 0; p < k; p++) {
+							sum += ad[ai + p] * bd[bj + p];
+						}
+						cd[i * n + j] = sum;
+					}
+				}
+			}
+		});
+
+		return c;
+	}
+
+	/**
+	 * The symmetric rank-k update C = A<sup>T</sup>A. Only the upper triangle
+	 * is computed, and then copied to the lower one.
+	 *
+	 * @param a a K x N matrix
+	 * @param c the N x N output, which must not be a
+	 * @return c
+	 * @throws IllegalArgumentException if the dimensions do not match, or c is
+	 *                                  a
+	 */
+	public static DenseMatrix symmetricRankK(DenseMatrix a, DenseMatrix c) {
+		checkOutput(c, a, a, a.columns, a.columns);
+
+		final int n = a.columns;
+		final int k = a.rows;
+		final double[] ad = a.data;
+		final double[] cd = c.data;
+
+		forEachRowBlock(n, (long) n * n * k / 2, (i0, i1) -> {
+			for (int i = i0; i < i1; i++) {
+				Arrays.fill(cd, i * n + i, (i + 1) * n, 0.0);
+			}
+
+			for (int k0 = 0; k0 < k; k0 += BLOCK_SIZE) {
+				final int k1 = Math.min(k0 + BLOCK_SIZE, k);
+
+				for (int j0 = i0; j0 < n; j0 += BLOCK_SIZE) {
+					final int j1 = Math.min(j0 + BLOCK_SIZE, n);
+
+					for (int p = k0; p < k1; p++) {
+						final int ap = p * n;
+
+						for (int i = i0; i < i1; i++) {
+							final double api = ad[ap + i];
+							final int ci = i * n;
+
+							for (int j = Math.max(i, j0); j < j1; j++) {
+								cd[ci + j] += api * ad[ap + j];
+							}
+						}
+					}
+				}
+			}
+		});
+
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < i; j++) {
+				cd[i * n + j] = cd[j * n + i];
+			}
+		}
+
+		return c;
+	}
+
+	/**
+	 * Tr(AB), without forming AB.
+	 *
+	 * @param a an M x N matrix
+	 * @param b an N x M matrix
+	 * @return &Sigma;<sub>ij</sub> A<sub>ij</sub>B<sub>ji</sub>
+	 * @throws IllegalArgumentException if the dimensions do not match
+	 */
+	public static double traceOfProduct(DenseMatrix a, DenseMatrix b) {
+		checkDimensions(b.rows, b.columns, a.columns, a.rows);
+
+		final int m = a.rows;
+		final int n = a.columns;
+		final double[] ad = a.data;
+		final double[] bd = b.data;
+
+		return sumOverRowBlocks(m, (long) m * n, (i0, i1) -> {
+			double sum = 0.0;
+
+			for (int j0 = 0; j0 < n; j0 += BLOCK_SIZE) {
+				final int j1 = Math.min(j0 + BLOCK_SIZE, n);
+
+				for (int i = i0; i < i1; i++) {
+					for (int j = j0; j < j1; j++) {
+						sum += ad[i * n + j] * bd[j * m + i];
+					}
+				}
+			}
+
+			return sum;
+		});
+	}
+
+	/**
+	 * Tr(AB), without forming AB, of two Hipparchus matrices such as those of
+	 * the SCF.
+	 *
+	 * @param a an M x N matrix
+	 * @param b an N x M matrix
+	 * @return &Sigma;<sub>ij</sub> A<sub>ij</sub>B<sub>ji</sub>
+	 * @throws IllegalArgumentException if the dimensions do not match
+	 */
+	public static double traceOfProduct(Array2DRowRealMatrix a, Array2DRowRealMatrix b) {
+		checkDimensions(b.getRowDimension(), b.getColumnDimension(), a.getColumnDimension(), a.getRowDimension());
+
+		final int n = a.getColumnDimension();
+		final double[][] ad = a.getDataRef();
+		final double[][] bd = b.getDataRef();
+
+		return sumOverRowBlocks(a.getRowDimension(), (long) a.getRowDimension() * n, (i0, i1) -> {
+			double sum = 0.0;
+
+			for (int j0 = 0; j0 < n; j0 += BLOCK_SIZE) {
+				final int j1 = Math.min(j0 + BLOCK_SIZE, n);
+
+				for (int i = i0; i < i1; i++) {
+					final double[] ai = ad[i];
+
+					for (int j = j0; j < j1; j++) {
+						sum += ai[j] * bd[j][i];
+					}
+				}
+			}
+
+			return sum;
+		});
+	}
+
+	/**
+	 * The work on a block of rows.
+	 */
+	@FunctionalInterface
+	private interface RowBlock {
+
+		/**
+		 * Work on rows [first, last).
+		 *
+		 * @param first the first row
+		 * @param last  one past the last row
+		 */
+		void run(int first, int last);
+	}
+
+	/**
+	 * A sum over a block of rows.
+	 */
+	@FunctionalInterface
+	private interface RowBlockSum {
+
+		/**
+		 * Sum over rows [first, last).
+		 *
+		 * @param first the first row
+		 * @param last  one past the last row
+		 * @return the sum
+		 */
+		double sum(int first, int last);
+	}
+
+	/**
+	 * Run a kernel on each block of rows, in parallel if there is enough work.
+	 *
+	 * @param rows   the number of rows
+	 * @param work   the number of multiply-adds
+	 * @param kernel the kernel
+	 */
+	private static void forEachRowBlock(int rows, long work, RowBlock kernel) {
+		final int noOfBlocks = (rows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		final IntStream blocks = IntStream.range(0, noOfBlocks);
+
+		(work < PARALLEL_THRESHOLD ? blocks : blocks.parallel())
+				.forEach(block -> kernel.run(block * BLOCK_SIZE, Math.min((block + 1) * BLOCK_SIZE, rows)));
+	}
+
+	/**
+	 * Sum a kernel over each block of rows, in parallel if there is enough work.
+	 * The block sums are added in order, so the result does not depend on the
+	 * number of threads.
+	 *
+	 * @param rows   the number of rows
+	 * @param work   the number of multiply-adds
+	 * @param kernel the kernel
+	 * @return the sum
+	 */
+	private static double sumOverRowBlocks(int rows, long work, RowBlockSum kernel) {
+		final int noOfBlocks = (rows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		final double[] sums = new double[noOfBlocks];
+
+		forEachRowBlock(rows, work,
+				(first, last) -> sums[first / BLOCK_SIZE] = kernel.sum(first, last));
+
+		double sum = 0.0;
+		for (double blockSum : sums) {
+			sum += blockSum;
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Check that a matrix has the expected dimensions.
+	 *
+	 * @param rows            the number of rows
+	 * @param columns         the number of columns
+	 * @param expectedRows    the expected number of rows
+	 * @param expectedColumns the expected number of columns
+	 * @throws IllegalArgumentException if they differ
+	 */
+	private static void checkDimensions(int rows, int columns, int expectedRows, int expectedColumns) {
+		if (rows != expectedRows || columns != expectedColumns) {
+			throw new IllegalArgumentException("Matrix of " + rows + "x" + columns + " where " + expectedRows + "x"
+					+ expectedColumns + " is needed");
+		}
+	}
+
+	/**
+	 * Check that the dimensions summed over in a product agree.
+	 *
+	 * @param a the summed dimension of the first operand
+	 * @param b the summed dimension of the second operand
+	 * @throws IllegalArgumentException if they differ
+	 */
+	private static void checkInnerDimensions(int a, int b) {
+		if (a != b) {
+			throw new IllegalArgumentException("Inner dimensions of a product differ: " + a + " and " + b);
+		}
+	}
+
+	/**
+	 * Check that an output matrix has the expected dimensions, and is not an
+	 * operand.
+	 *
+	 * @param c       the output
+	 * @param a       the first operand
+	 * @param b       the second operand
+	 * @param rows    the expected number of rows
+	 * @param columns the expected number of columns
+	 * @throws IllegalArgumentException if it is not
+	 */
+	private static void checkOutput(DenseMatrix c, DenseMatrix a, DenseMatrix b, int rows, int columns) {
+		if (c == a || c == b) {
+			throw new IllegalArgumentException("The output of a product must not be one of its operands");
+		}
+		checkDimensions(c.rows, c.columns, rows, columns);
+	}
+}
@@ -0,0 +1,911 @@
+package name.mjw.jquante.math;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Eigenvalues and eigenvectors of a real symmetric matrix, computed with
+ * several threads into arrays given by the caller.
+ * <p>
+ * The matrix is first reduced to a tridiagonal T = Q'AQ by Householder
+ * reflections. The reflections are applied to the rest of the matrix a panel of
+ * {@link #PANEL_SIZE} at a time, as a rank-2k update, rather than one at a
+ * time. All the eigenpairs of T are then found by divide-and-conquer: T is torn
+ * into two halves and a rank-one correction, the halves are solved in parallel,
+ * and the eigenpairs of the correction are found from the roots of its secular
+ * equation. The eigenvectors are made orthogonal as in Gu and Eisenstat.
+ * Alternatively, only the lowest k eigenvalues of T are found by bisection, and
+ * their eigenvectors by inverse iteration. The eigenvectors of T are finally
+ * multiplied by Q.
+ * <p>
+ * Eigenvalues are returned in ascending order, and eigenvectors as the rows of
+ * a {@link DenseMatrix}, as with the VT of an eigendecomposition. A solver holds
+ * the work arrays for one matrix size, and is not thread safe.
+ *
+ * @author mjw99
+ * @see "J. J. M. Cuppen, Numer. Math. 36, 177 (1981)"
+ * @see "M. Gu and S. C. Eisenstat, SIAM J. Matrix Anal. Appl. 16, 172 (1995)"
+ */
+public final class SymmetricEigensolver {
+
+	/** The number of Householder reflections applied together. */
+	public static final int PANEL_SIZE = 32;
+
+	/** The size of tridiagonal below which the QL algorithm is used. */
+	private static final int LEAF_SIZE = 32;
+
+	/** The size of problem below which work is not split over threads. */
+	private static final int PARALLEL_SIZE = 128;
+
+	/** The maximum number of iterations for one root of a secular equation. */
+	private static final int MAX_SECULAR_ITERATIONS = 300;
+
+	/** The number of inverse iterations for each eigenvector. */
+	private static final int INVERSE_ITERATIONS = 4;
+
+	/** The machine precision. */
+	private static final double EPS = Math.ulp(1.0);
+
+	/** The dimension of the matrices. */
+	private final int n;
+
+	/**
+	 * The matrix, row by row. After the reduction, row j holds the Householder
+	 * vector of reflection j in columns j+1 to n-1.
+	 */
+	private final double[] a;
+
+	/** The diagonal of T. */
+	private final double[] d;
+
+	/** The off diagonal of T, e[i] = T[i][i+1], and e[n-1] = 0. */
+	private final double[] e;
+
+	/** The scale of each Householder reflection, I - &tau;vv'. */
+	private final double[] tau;
+
+	/** A column of the matrix, during the reduction. */
+	private final double[] column;
+
+	/** The Householder vectors of a panel, n x {@link #PANEL_SIZE}. */
+	private final double[] panelV;
+
+	/** The updates of a panel, n x {@link #PANEL_SIZE}. */
+	private final double[] panelW;
+
+	/**
+	 * Creates a solver for n x n matrices.
+	 *
+	 * @param n the dimension
+	 * @throws IllegalArgumentException if n is negative
+	 */
+	public SymmetricEigensolver(int n) {
+		if (n < 0) {
+			throw new IllegalArgumentException("Matrix dimension must not be negative: " + n);
+		}
+
+		this.n = n;
+		this.a = new double[Math.multiplyExact(n, n)];
+		this.d = new double[n];
+		this.e = new double[n];
+		this.tau = new double[n];
+		this.column = new double[n];
+		this.panelV = new double[n * PANEL_SIZE];
+		this.panelW = new double[n * PANEL_SIZE];
+	}
+
+	/**
+	 * The dimension of the matrices.
+	 *
+	 * @return the dimension
+	 */
+	public int getDimension() {
+		return n;
+	}
+
+	/**
+	 * Find all the eigenpairs of a symmetric matrix. Only its lower triangle is
+	 * read, and it is not changed.
+	 *
+	 * @param matrix       the n x n matrix
+	 * @param eigenvalues  the n eigenvalues, ascending, on return
+	 * @param eigenvectors the n x n eigenvectors, one per row, on return
+	 * @throws IllegalArgumentException if a dimension is not n
+	 */
+	public void solve(DenseMatrix matrix, double[] eigenvalues, DenseMatrix eigenvectors) {
+		solve(matrix, n, eigenvalues, eigenvectors);
+	}
+
+	/**
+	 * Find the k lowest eigenpairs of a symmetric matrix. Only its lower
+	 * triangle is read, and it is not changed.
+	 *
+	 * @param matrix       the n x n matrix
+	 * @param k            the number of eigenpairs
+	 * @param eigenvalues  the k lowest eigenvalues, ascending, on return
+	 * @param eigenvectors the k x n eigenvectors, one per row, on return
+	 * @throws IllegalArgumentException if a dimension does not match, or k is
+	 *                                  not between 0 and n
+	 */
+	public void solve(DenseMatrix matrix, int k, double[] eigenvalues, DenseMatrix eigenvectors) {
+		if (matrix.getRowDimension() != n || matrix.getColumnDimension() != n) {
+			throw new IllegalArgumentException("Matrix of " + matrix.getRowDimension() + "x"
+					+ matrix.getColumnDimension() + " where " + n + "x" + n + " is needed");
+		}
+		if (k < 0 || k > n) {
+			throw new IllegalArgumentException("Number of eigenpairs must be between 0 and " + n + ": " + k);
+		}
+		if (eigenvalues.length < k || eigenvectors.getRowDimension() != k || eigenvectors.getColumnDimension() != n) {
+			throw new IllegalArgumentException("Eigenvalues and " + k + "x" + n + " eigenvectors are needed");
+		}
+		if (k == 0) {
+			return;
+		}
+
+		// the lower triangle, mirrored
+		final double[] m = matrix.getDataRef();
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j <= i; j++) {
+				a[i * n + j] = m[i * n + j];
+				a[j * n + i] = m[i * n + j];
+			}
+		}
+
+		tridiagonalise();
+
+		final double[] y = eigenvectors.getDataRef();
+		if (k == n) {
+			System.arraycopy(d, 0, eigenvalues, 0, n);
+			final DenseMatrix q = divideAndConquer(eigenvalues, e.clone(), 0, n);
+
+			// the eigenvectors of T are the columns of q
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j < n; j++) {
+					y[i * n + j] = q.getEntry(j, i);
+				}
+			}
+		} else {
+			lowestEigenpairs(k, eigenvalues, y);
+		}
+
+		backTransform(y, k);
+	}
+
+	/**
+	 * Reduce the matrix to tridiagonal form, T = H<sub>n-2</sub>..H<sub>0</sub>
+	 * A H<sub>0</sub>..H<sub>n-2</sub>.
+	 */
+	private void tridiagonalise() {
+		final int ps = PANEL_SIZE;
+		e[n - 1] = 0.0;
+
+		for (int j0 = 0; j0 < n - 1; j0 += ps) {
+			final int j1 = Math.min(j0 + ps, n - 1);
+
+			for (int j = j0; j < j1; j++) {
+				final int c = j - j0;
+
+				// column j, with the reflections of the panel so far
+				for (int i = j; i < n; i++) {
+					double x = a[j * n + i];
+					for (int q = 0; q < c; q++) {
+						x -= panelV[i * ps + q] * panelW[j * ps + q] + panelW[i * ps + q] * panelV[j * ps + q];
+					}
+					column[i] = x;
+				}
+				d[j] = column[j];
+
+				// the reflection that zeros the column below the subdiagonal
+				final double alpha = column[j + 1];
+				double sigma = 0.0;
+				for (int i = j + 2; i < n; i++) {
+					sigma += column[i] * column[i];
+				}
+
+				for (int i = 0; i < n; i++) {
+					panelV[i * ps + c] = 0.0;
+					panelW[i * ps + c] = 0.0;
+				}
+
+				if (sigma == 0.0) {
+					tau[j] = 0.0;
+					e[j] = alpha;
+					Arrays.fill(a, j * n + j + 1, (j + 1) * n, 0.0);
+					continue;
+				}
+
+				final double norm = Math.sqrt(alpha * alpha + sigma);
+				final double beta = alpha <= 0.0 ? norm : -norm;
+				final double scale = 1.0 / (alpha - beta);
+				final double t = (beta - alpha) / beta;
+				tau[j] = t;
+				e[j] = beta;
+
+				a[j * n + j + 1] = 1.0;
+				panelV[(j + 1) * ps + c] = 1.0;
+				for (int i = j + 2; i < n; i++) {
+					a[j * n + i] = column[i] * scale;
+					panelV[i * ps + c] = column[i] * scale;
+				}
+
+				// p = tau (A v - V W'v - W V'v), with A as it was before the panel
+				final int first = j + 1;
+				final int vRow = j * n;
+				final double[] p = column;
+
+				forEachRow(first, n, n - first, i -> {
+					double sum = 0.0;
+					for (int l = first; l < n; l++) {
+						sum += a[i * n + l] * a[vRow + l];
+					}
+					p[i] = sum;
+				});
+
+				for (int q = 0; q < c; q++) {
+					double wv = 0.0;
+					double vv = 0.0;
+					for (int l = first; l < n; l++) {
+						wv += panelW[l * ps + q] * a[vRow + l];
+						vv += panelV[l * ps + q] * a[vRow + l];
+					}
+					for (int i = first; i < n; i++) {
+						p[i] -= panelV[i * ps + q] * wv + panelW[i * ps + q] * vv;
+					}
+				}
+
+				// w = p - (tau/2)(p'v)v
+				double pv = 0.0;
+				for (int i = first; i < n; i++) {
+					p[i] *= t;
+					pv += p[i] * a[vRow + i];
+				}
+				for (int i = first; i < n; i++) {
+					panelW[i * ps + c] = p[i] - 0.5 * t * pv * a[vRow + i];
+				}
+			}
+
+			// A -= VW' + WV' on the rest of the matrix
+			final int width = j1 - j0;
+			forEachRow(j1, n, (long) (n - j1) * width, i -> {
+				for (int l = j1; l < n; l++) {
+					double sum = 0.0;
+					for (int q = 0; q < width; q++) {
+						sum += panelV[i * ps + q] * panelW[l * ps + q] + panelW[i * ps + q] * panelV[l * ps + q];
+					}
+					a[i * n + l] -= sum;
+				}
+			});
+		}
+
+		d[n - 1] = a[(n - 1) * n + n - 1];
+	}
+
+	/**
+	 * Multiply the eigenvectors of T by Q, y' = y'H<sub>n-2</sub>..H<sub>0</sub>.
+	 *
+	 * @param y the eigenvectors, one per row
+	 * @param k the number of eigenvectors
+	 */
+	private void backTransform(double[] y, int k) {
+		final int noOfBlocks = (k + PANEL_SIZE - 1) / PANEL_SIZE;
+		final IntStream blocks = IntStream.range(0, noOfBlocks);
+
+		(n < PARALLEL_SIZE ? blocks : blocks.parallel()).forEach(block -> {
+			final int r1 = Math.min((block + 1) * PANEL_SIZE, k);
+
+			for (int j = n - 2; j >= 0; j--) {
+				final double t = tau[j];
+				if (t == 0.0) {
+					continue;
+				}
+
+				final int vRow = j * n;
+				for (int r = block * PANEL_SIZE; r < r1; r++) {
+					final int row = r * n;
+
+					double dot = 0.0;
+					for (int l = j + 1; l < n; l++) {
+						dot += y[row + l] * a[vRow + l];
+					}
+					dot *= t;
+					for (int l = j + 1; l < n; l++) {
+						y[row + l] -= dot * a[vRow + l];
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * The eigenpairs of the tridiagonal T[lo, hi), by divide-and-conquer.
+	 *
+	 * @param d  the diagonal, overwritten by the eigenvalues in [lo, hi),
+	 *           ascending
+	 * @param e  the off diagonal, e[i] = T[i][i+1]
+	 * @param lo the first row
+	 * @param hi one past the last row
+	 * @return the eigenvectors, one per column
+	 */
+	private static DenseMatrix divideAndConquer(double[] d, double[] e, int lo, int hi) {
+		final int m = hi - lo;
+		if (m <= LEAF_SIZE) {
+			return implicitQL(d, e, lo, hi);
+		}
+
+		// T = diag(T1, T2) + rho vv', with v = (0.., 1, sign(beta), ..0)
+		final int mid = lo + m / 2;
+		final int m1 = mid - lo;
+		final double beta = e[mid - 1];
+		final double rho = Math.abs(beta);
+		d[mid - 1] -= rho;
+		d[mid] -= rho;
+
+		final DenseMatrix[] halves = new DenseMatrix[2];
+		final IntStream parts = IntStream.range(0, 2);
+		(m < PARALLEL_SIZE ? parts : parts.parallel()).forEach(part -> halves[part] = part == 0
+				? divideAndConquer(d, e, lo, mid)
+				: divideAndConquer(d, e, mid, hi));
+
+		// diag(Q1, Q2) and z = diag(Q1, Q2)'v / sqrt(2)
+		final DenseMatrix q = new DenseMatrix(m, m);
+		final double[] z = new double[m];
+		final double[] dd = new double[m];
+		final double root2 = Math.sqrt(0.5);
+		for (int i = 0; i < m1; i++) {
+			for (int j = 0; j < m1; j++) {
+				q.setEntry(i, j, halves[0].getEntry(i, j));
+			}
+			z[i] = root2 * halves[0].getEntry(m1 - 1, i);
+		}
+		for (int i = 0; i < m - m1; i++) {
+			for (int j = 0; j < m - m1; j++) {
+				q.setEntry(m1 + i, m1 + j, halves[1].getEntry(i, j));
+			}
+			z[m1 + i] = (beta < 0.0 ? -root2 : root2) * halves[1].getEntry(0, i);
+		}
+		System.arraycopy(d, lo, dd, 0, m);
+
+		return mergeRankOne(dd, z, 2.0 * rho, q, d, lo);
+	}
+
+	/**
+	 * The eigenpairs of D + rho zz', with the eigenvectors multiplied by Q.
+	 *
+	 * @param dd  the diagonal D, changed
+	 * @param z   the unit vector z, changed
+	 * @param rho the weight, not negative
+	 * @param q   the eigenvectors of the halves, Q, one per column, changed
+	 * @param d   receives the eigenvalues, ascending, from lo
+	 * @param lo  where the eigenvalues go in d
+	 * @return the eigenvectors, one per column
+	 */
+	private static DenseMatrix mergeRankOne(double[] dd, double[] z, double rho, DenseMatrix q, double[] d, int lo) {
+		final int m = dd.length;
+		final Integer[] order = new Integer[m];
+		double dMax = 0.0;
+		for (int i = 0; i < m; i++) {
+			order[i] = i;
+			dMax = Math.max(dMax, Math.abs(dd[i]));
+		}
+		Arrays.sort(order, (i, j) -> Double.compare(dd[i], dd[j]));
+
+		// deflate pairs with a negligible z, or with D too close to separate
+		final double tol = 8.0 * EPS * Math.max(dMax, rho);
+		final int[] kept = new int[m];
+		final int[] deflated = new int[m];
+		int k = 0;
+		int noOfDeflated = 0;
+		int previous = -1;
+
+		for (int s = 0; s < m; s++) {
+			final int j = order[s];
+
+			if (rho * Math.abs(z[j]) <= tol) {
+				deflated[noOfDeflated++] = j;
+				continue;
+			}
+			if (previous < 0) {
+				previous = j;
+				continue;
+			}
+
+			final double r = Math.hypot(z[j], z[previous]);
+			final double c = z[j] / r;
+			final double sn = -z[previous] / r;
+
+			if (Math.abs((dd[j] - dd[previous]) * c * sn) <= tol) {
+				// rotate z[previous] onto z[j]
+				z[j] = r;
+				z[previous] = 0.0;
+				for (int row = 0; row < m; row++) {
+					final double x = q.getEntry(row, previous);
+					final double y = q.getEntry(row, j);
+					q.setEntry(row, previous, c * x + sn * y);
+					q.setEntry(row, j, c * y - sn * x);
+				}
+				final double dPrevious = dd[previous] * c * c + dd[j] * sn * sn;
+				dd[j] = dd[previous] * sn * sn + dd[j] * c * c;
+				dd[previous] = dPrevious;
+
+				deflated[noOfDeflated++] = previous;
+			} else {
+				kept[k++] = previous;
+			}
+			previous = j;
+		}
+		if (previous >= 0) {
+			kept[k++] = previous;
+		}
+
+		// the roots of the secular equation, lambda_i = dK[origin_i] + shift_i
+		final double[] dK = new double[k];
+		final double[] zK = new double[k];
+		double zz = 0.0;
+		for (int i = 0; i < k; i++) {
+			dK[i] = dd[kept[i]];
+			zK[i] = z[kept[i]];
+			zz += zK[i] * zK[i];
+		}
+		final double zNorm = zz;
+
+		final int[] origin = new int[k];
+		final double[] shift = new double[k];
+		final IntStream roots = IntStream.range(0, k);
+		(k < PARALLEL_SIZE ? roots : roots.parallel())
+				.forEach(i -> secularRoot(i, dK, zK, rho, zNorm, origin, shift));
+
+		// z recomputed from the roots, so that the eigenvectors are orthogonal
+		final double[] zHat = new double[k];
+		for (int j = 0; j < k; j++) {
+			double product = (dK[origin[k - 1]] - dK[j] + shift[k - 1]) / rho;
+			for (int i = 0; i < j; i++) {
+				product *= (dK[origin[i]] - dK[j] + shift[i]) / (dK[i] - dK[j]);
+			}
+			for (int i = j; i < k - 1; i++) {
+				product *= (dK[origin[i]] - dK[j] + shift[i]) / (dK[i + 1] - dK[j]);
+			}
+			zHat[j] = Math.copySign(Math.sqrt(Math.abs(product)), zK[j]);
+		}
+
+		// the eigenvectors of D + rho zz', one per column, then times Q
+		final DenseMatrix u = new DenseMatrix(k, k);
+		for (int i = 0; i < k; i++) {
+			double norm = 0.0;
+			for (int j = 0; j < k; j++) {
+				final double uji = zHat[j] / (dK[j] - dK[origin[i]] - shift[i]);
+				u.setEntry(j, i, uji);
+				norm += uji * uji;
+			}
+			norm = 1.0 / Math.sqrt(norm);
+			for (int j = 0; j < k; j++) {
+				u.setEntry(j, i, u.getEntry(j, i) * norm);
+			}
+		}
+
+		final DenseMatrix qK = new DenseMatrix(m, k);
+		for (int row = 0; row < m; row++) {
+			for (int i = 0; i < k; i++) {
+				qK.setEntry(row, i, q.getEntry(row, kept[i]));
+			}
+		}
+		final DenseMatrix vectors = DenseMatrix.multiply(qK, u, new DenseMatrix(m, k));
+
+		// all the eigenpairs, ascending
+		final double[] values = new double[m];
+		final Integer[] sorted = new Integer[m];
+		for (int i = 0; i < k; i++) {
+			values[i] = dK[origin[i]] + shift[i];
+		}
+		for (int i = 0; i < noOfDeflated; i++) {
+			values[k + i] = dd[deflated[i]];
+		}
+		for (int i = 0; i < m; i++) {
+			sorted[i] = i;
+		}
+		Arrays.sort(sorted, (i, j) -> Double.compare(values[i], values[j]));
+
+		final DenseMatrix result = new DenseMatrix(m, m);
+		for (int s = 0; s < m; s++) {
+			final int source = sorted[s];
+			d[lo + s] = values[source];
+
+			for (int row = 0; row < m; row++) {
+				result.setEntry(row, s, source < k ? vectors.getEntry(row, source)
+						: q.getEntry(row, deflated[source - k]));
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Find root i of the secular equation 1 + rho &Sigma;<sub>j</sub>
+	 * z<sub>j</sub><sup>2</sup>/(d<sub>j</sub> - &lambda;) = 0, which lies
+	 * between d<sub>i</sub> and d<sub>i+1</sub>, as a shift from the nearer of
+	 * the two. The shift keeps the differences d<sub>j</sub> - &lambda; accurate.
+	 *
+	 * @param i      the root
+	 * @param d      the poles, ascending and distinct
+	 * @param z      the weights
+	 * @param rho    the scale, positive
+	 * @param zNorm  &Sigma;<sub>j</sub> z<sub>j</sub><sup>2</sup>
+	 * @param origin receives the pole the root is measured from
+	 * @param shift  receives the root less that pole
+	 */
+	private static void secularRoot(int i, double[] d, double[] z, double rho, double zNorm, int[] origin,
+			double[] shift) {
+		final int k = d.length;
+		int o = i;
+		double lo;
+		double hi;
+
+		if (i < k - 1) {
+			final double half = 0.5 * (d[i + 1] - d[i]);
+			if (secular(d, z, rho, i, half) >= 0.0) {
+				lo = 0.0;
+				hi = half;
+			} else {
+				o = i + 1;
+				lo = -half;
+				hi = 0.0;
+			}
+		} else {
+			lo = 0.0;
+			hi = rho * zNorm;
+		}
+
+		// Newton, kept within a bracket by bisection
+		double t = 0.5 * (lo + hi);
+		for (int iteration = 0; iteration < MAX_SECULAR_ITERATIONS; iteration++) {
+			double f = 1.0;
+			double df = 0.0;
+			double bound = 1.0;
+			for (int j = 0; j < k; j++) {
+				final double ratio = z[j] / (d[j] - d[o] - t);
+				final double term = rho * z[j] * ratio;
+				f += term;
+				df += rho * ratio * ratio;
+				bound += Math.abs(term);
+			}
+
+			if (f < 0.0) {
+				lo = t;
+			} else {
+				hi = t;
+			}
+			if (Math.abs(f) <= EPS * bound || hi - lo <= 2.0 * EPS * Math.max(Math.abs(lo), Math.abs(hi))) {
+				break;
+			}
+
+			double next = t - f / df;
+			if (!(next > lo && next < hi)) {
+				next = 0.5 * (lo + hi);
+			}
+			if (next == t) {
+				break;
+			}
+			t = next;
+		}
+
+		origin[i] = o;
+		shift[i] = t;
+	}
+
+	/**
+	 * The secular function at a shift from a pole.
+	 *
+	 * @param d   the poles
+	 * @param z   the weights
+	 * @param rho the scale
+	 * @param o   the pole
+	 * @param t   the shift
+	 * @return 1 + rho &Sigma;<sub>j</sub> z<sub>j</sub><sup>2</sup>/(d<sub>j</sub>
+	 *         - d<sub>o</sub> - t)
+	 */
+	private static double secular(double[] d, double[] z, double rho, int o, double t) {
+		double f = 1.0;
+		for (int j = 0; j < d.length; j++) {
+			f += rho * z[j] * z[j] / (d[j] - d[o] - t);
+		}
+
+		return f;
+	}
+
+	/**
+	 * The eigenpairs of the tridiagonal T[lo, hi), by the implicit QL algorithm.
+	 *
+	 * @param d  the diagonal, overwritten by the eigenvalues in [lo, hi),
+	 *           ascending
+	 * @param e  the off diagonal, e[i] = T[i][i+1]
+	 * @param lo the first row
+	 * @param hi one past the last row
+	 * @return the eigenvectors, one per column
+	 */
+	private static DenseMatrix implicitQL(double[] d, double[] e, int lo, int hi) {
+		final int m = hi - lo;
+		final double[] dl = Arrays.copyOfRange(d, lo, hi);
+		final double[] el = new double[m];
+		System.arraycopy(e, lo, el, 0, m - 1);
+		final double[][] v = new double[m][m];
+		for (int i = 0; i < m; i++) {
+			v[i][i] = 1.0;
+		}
+
+		double f = 0.0;
+		double tst1 = 0.0;
+		for (int l = 0; l < m; l++) {
+			tst1 = Math.max(tst1, Math.abs(dl[l]) + Math.abs(el[l]));
+			int mm = l;
+			while (mm < m && Math.abs(el[mm]) > EPS * tst1) {
+				mm++;
+			}
+
+			if (mm > l) {
+				do {
+					double g = dl[l];
+					double p = (dl[l + 1] - g) / (2.0 * el[l]);
+					double r = Math.hypot(p, 1.0);
+					if (p < 0) {
+						r = -r;
+					}
+					dl[l] = el[l] / (p + r);
+					dl[l + 1] = el[l] * (p + r);
+					final double dl1 = dl[l + 1];
+					double h = g - dl[l];
+					for (int i = l + 2; i < m; i++) {
+						dl[i] -= h;
+					}
+					f += h;
+
+					p = dl[mm];
+					double c = 1.0;
+					double c2 = c;
+					double c3 = c;
+					final double el1 = el[l + 1];
+					double s = 0.0;
+					double s2 = 0.0;
+					for (int i = mm - 1; i >= l; i--) {
+						c3 = c2;
+						c2 = c;
+						s2 = s;
+						g = c * el[i];
+						h = c * p;
+						r = Math.hypot(p, el[i]);
+						el[i + 1] = s * r;
+						s = el[i] / r;
+						c = p / r;
+						p = c * dl[i] - s * g;
+						dl[i + 1] = h + s * (c * g + s * dl[i]);
+
+						for (int row = 0; row < m; row++) {
+							h = v[row][i + 1];
+							v[row][i + 1] = s * v[row][i] + c * h;
+							v[row][i] = c * v[row][i] - s * h;
+						}
+					}
+					p = -s * s2 * c3 * el1 * el[l] / dl1;
+					el[l] = s * p;
+					dl[l] = c * p;
+				} while (Math.abs(el[l]) > EPS * tst1);
+			}
+			dl[l] += f;
+			el[l] = 0.0;
+		}
+
+		final Integer[] sorted = new Integer[m];
+		for (int i = 0; i < m; i++) {
+			sorted[i] = i;
+		}
+		Arrays.sort(sorted, (i, j) -> Double.compare(dl[i], dl[j]));
+
+		final DenseMatrix vectors = new DenseMatrix(m, m);
+		for (int s = 0; s < m; s++) {
+			d[lo + s] = dl[sorted[s]];
+			for (int row = 0; row < m; row++) {
+				vectors.setEntry(row, s, v[row][sorted[s]]);
+			}
+		}
+
+		return vectors;
+	}
+
+	/**
+	 * The lowest k eigenpairs of T, by bisection on its Sturm sequence and
+	 * inverse iteration. Eigenvectors of close eigenvalues are made orthogonal
+	 * to each other.
+	 *
+	 * @param k           the number of eigenpairs
+	 * @param eigenvalues receives the eigenvalues
+	 * @param y           receives the eigenvectors, one per row
+	 */
+	private void lowestEigenpairs(int k, double[] eigenvalues, double[] y) {
+		double lower = Double.MAX_VALUE;
+		double upper = -Double.MAX_VALUE;
+		double eMax = 0.0;
+		for (int i = 0; i < n; i++) {
+			final double radius = Math.abs(e[i]) + (i > 0 ? Math.abs(e[i - 1]) : 0.0);
+			lower = Math.min(lower, d[i] - radius);
+			upper = Math.max(upper, d[i] + radius);
+			eMax = Math.max(eMax, e[i] * e[i]);
+		}
+		final double norm = Math.max(Math.abs(lower), Math.abs(upper));
+		final double pivotMin = Double.MIN_NORMAL * Math.max(1.0, eMax);
+		final double gl = lower - 2.0 * EPS * norm * n - pivotMin;
+		final double gu = upper + 2.0 * EPS * norm * n + pivotMin;
+
+		final IntStream values = IntStream.range(0, k);
+		(n < PARALLEL_SIZE ? values : values.parallel()).forEach(i -> {
+			double lo = gl;
+			double hi = gu;
+			while (hi - lo > 2.0 * EPS * Math.max(Math.abs(lo), Math.abs(hi)) + pivotMin) {
+				final double x = 0.5 * (lo + hi);
+				if (countBelow(x, pivotMin) > i) {
+					hi = x;
+				} else {
+					lo = x;
+				}
+			}
+			eigenvalues[i] = 0.5 * (lo + hi);
+		});
+
+		final double cluster = 1e-3 * norm;
+		final double perturbation = EPS * Math.max(norm, Double.MIN_NORMAL);
+		int first = 0;
+
+		for (int i = 0; i < k; i++) {
+			if (i > 0 && eigenvalues[i] - eigenvalues[i - 1] > cluster) {
+				first = i;
+			}
+			inverseIteration(eigenvalues[i], perturbation, y, i, first, i);
+		}
+	}
+
+	/**
+	 * The number of eigenvalues of T below x.
+	 *
+	 * @param x        the point
+	 * @param pivotMin the smallest pivot allowed
+	 * @return the number of negative pivots of T - xI
+	 */
+	private int countBelow(double x, double pivotMin) {
+		int count = 0;
+		double pivot = 1.0;
+
+		for (int i = 0; i < n; i++) {
+			pivot = d[i] - x - (i > 0 ? e[i - 1] * e[i - 1] / pivot : 0.0);
+			if (Math.abs(pivot) < pivotMin) {
+				pivot = -pivotMin;
+			}
+			if (pivot < 0.0) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * The eigenvector of T for an eigenvalue, by inverse iteration, orthogonal
+	 * to the eigenvectors of the same cluster.
+	 *
+	 * @param lambda       the eigenvalue
+	 * @param perturbation the value of a zero pivot
+	 * @param y            the eigenvectors, one per row
+	 * @param row          the row that receives the eigenvector
+	 * @param first        the first row of the cluster
+	 * @param last         one past the last row of the cluster, before row
+	 */
+	private void inverseIteration(double lambda, double perturbation, double[] y, int row, int first, int last) {
+		// LU of T - lambda I, with partial pivoting
+		final double[] diagonal = new double[n];
+		final double[] upper1 = new double[n];
+		final double[] upper2 = new double[n];
+		final double[] multipliers = new double[n];
+		final boolean[] swapped = new boolean[n];
+
+		for (int i = 0; i < n; i++) {
+			diagonal[i] = d[i] - lambda;
+			upper1[i] = e[i];
+		}
+		for (int i = 0; i < n - 1; i++) {
+			final double sub = e[i];
+			if (Math.abs(diagonal[i]) >= Math.abs(sub)) {
+				if (diagonal[i] == 0.0) {
+					diagonal[i] = perturbation;
+				}
+				multipliers[i] = sub / diagonal[i];
+				diagonal[i + 1] -= multipliers[i] * upper1[i];
+			} else {
+				final double l = diagonal[i] / sub;
+				final double next = diagonal[i + 1];
+				final double nextUpper = upper1[i + 1];
+
+				diagonal[i + 1] = upper1[i] - l * next;
+				upper1[i + 1] = -l * nextUpper;
+				diagonal[i] = sub;
+				upper1[i] = next;
+				upper2[i] = nextUpper;
+				multipliers[i] = l;
+				swapped[i] = true;
+			}
+		}
+		if (diagonal[n - 1] == 0.0) {
+			diagonal[n - 1] = perturbation;
+		}
+
+		final int offset = row * n;
+		for (int i = 0; i < n; i++) {
+			// a start with a component along every eigenvector
+			y[offset + i] = 1.0 + 0.5 * Math.sin(1.0 + i + 0.7 * row);
+		}
+
+		for (int iteration = 0; iteration < INVERSE_ITERATIONS; iteration++) {
+			for (int i = 0; i < n - 1; i++) {
+				if (swapped[i]) {
+					final double t = y[offset + i];
+					y[offset + i] = y[offset + i + 1];
+					y[offset + i + 1] = t;
+				}
+				y[offset + i + 1] -= multipliers[i] * y[offset + i];
+			}
+			for (int i = n - 1; i >= 0; i--) {
+				double x = y[offset + i];
+				if (i + 1 < n) {
+					x -= upper1[i] * y[offset + i + 1];
+				}
+				if (i + 2 < n) {
+					x -= upper2[i] * y[offset + i + 2];
+				}
+				y[offset + i] = x / diagonal[i];
+			}
+
+			for (int other = first; other < last; other++) {
+				double dot = 0.0;
+				for (int i = 0; i < n; i++) {
+					dot += y[offset + i] * y[other * n + i];
+				}
+				for (int i = 0; i < n; i++) {
+					y[offset + i] -= dot * y[other * n + i];
+				}
+			}
+
+			double norm = 0.0;
+			for (int i = 0; i < n; i++) {
+				norm += y[offset + i] * y[offset + i];
+			}
+			norm = 1.0 / Math.sqrt(norm);
+			for (int i = 0; i < n; i++) {
+				y[offset + i] *= norm;
+			}
+		}
+	}
+
+	/**
+	 * The work on one row.
+	 */
+	@FunctionalInterface
+	private interface Row {
+
+		/**
+		 * Work on a row.
+		 *
+		 * @param row the row
+		 */
+		void run(int row);
+	}
+
+	/**
+	 * Run work on each row of a range, in parallel if there is enough of it.
+	 *
+	 * @param first   the first row
+	 * @param last    one past the last row
+	 * @param perRow  the number of multiply-adds per row
+	 * @param work    the work
+	 */
+	private static void forEachRow(int first, int last, long perRow, Row work) {
+		final IntStream rows = IntStream.range(first, last);
+
+		((long) (last - first) * perRow < (long) PARALLEL_SIZE * PARALLEL_SIZE ? rows : rows.parallel())
+				.forEach(work::run);
+	}
+}
@@ -0,0 +1,407 @@
+package name.mjw.jquante.math.qm;
+
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import net.jafama.FastMath;
+
+/**
+ * A hybrid of ADIIS (augmented Roothaan-Hall energy DIIS) far from
+ * convergence and Pulay DIIS near it, with optional level shifting.
+ * <p>
+ * ADIIS chooses the combination of the stored Fock matrices, with coefficients
+ * c<sub>i</sub> &ge; 0 and &Sigma; c<sub>i</sub> = 1, that minimises the
+ * second order model of the energy about the latest density D<sub>n</sub>,
+ * E(D<sub>n</sub>) + 2 &Sigma;<sub>i</sub> c<sub>i</sub>
+ * (D<sub>i</sub>-D<sub>n</sub>)&middot;F<sub>n</sub> + &Sigma;<sub>ij</sub>
+ * c<sub>i</sub> c<sub>j</sub> (D<sub>i</sub>-D<sub>n</sub>)&middot;
+ * (F<sub>j</sub>-F<sub>n</sub>). Unlike DIIS, this does not extrapolate, and
+ * so is robust far from convergence, where DIIS can diverge. With e the
+ * largest element of the DIIS error FPS - SPF, the ADIIS Fock matrix is used
+ * alone while e &ge; {@link #getADIISThreshold()}, the DIIS one alone while e
+ * &le; {@link #getDIISThreshold()}, and the two are mixed with weights e /
+ * {@link #getADIISThreshold()} and 1 - e / {@link #getADIISThreshold()} in
+ * between.
+ * <p>
+ * While DIIS is not used alone, a level shift &sigma; may be added to the
+ * virtual orbital energies, F + &sigma;(S - SDS), which damps occupied-virtual
+ * mixing in the early iterations. It does not change the converged orbitals.
+ *
+ * @author mjw99
+ * @see "X. Hu and W. Yang, J. Chem. Phys. 132, 054109 (2010)"
+ * @see "A. J. Garza and G. E. Scuseria, J. Chem. Phys. 137, 054110 (2012)"
+ */
+public final class ADIISFockExtrapolator implements FockExtrapolator {
+
+	/** Logger object. */
+	private static final Logger LOG = LogManager.getLogger(ADIISFockExtrapolator.class);
+
+	/** The default error above which ADIIS is used alone. */
+	public static final double DEFAULT_ADIIS_THRESHOLD = 1.0e-1;
+
+	/** The default error below which DIIS is used alone. */
+	public static final double DEFAULT_DIIS_THRESHOLD = 1.0e-4;
+
+	/** The largest number of sweeps of the ADIIS minimisation. */
+	private static final int MAX_MINIMISATION_STEPS = 1000;
+
+	/** The ADIIS minimisation stops once the gradient spread is below this. */
+	private static final double MINIMISATION_TOLERANCE = 1.0e-12;
+
+	/** The largest number of Fock matrices held. */
+	private final int subspaceSize;
+
+	/** The Pulay DIIS used near convergence, fed every iteration. */
+	private final DIISFockExtrapolator diis;
+
+	/** The Fock matrices of the subspace, by slot. */
+	private final double[][][] fockMatrices;
+
+	/** The densities of the Fock matrices, by slot. */
+	private final double[][][] densities;
+
+	/** D_i.F_j, the inner products of the density in slot i and the Fock matrix in slot j. */
+	private final double[][] densityFockProducts;
+
+	/** The occupied slots, oldest first. */
+	private final int[] slots;
+
+	/** The number of occupied slots. */
+	private int noOfVectors = 0;
+
+	/** The extrapolated Fock matrix, reused by every call. */
+	private Fock extrapolatedFock = null;
+
+	/** Forms FPS and SDS. */
+	private final TripleProduct products = new TripleProduct();
+
+	/** The level shift of the virtual orbitals. */
+	private double levelShift = 0.0;
+
+	/** The error above which ADIIS is used alone. */
+	private double adiisThreshold = DEFAULT_ADIIS_THRESHOLD;
+
+	/** The error below which DIIS is used alone. */
+	private double diisThreshold = DEFAULT_DIIS_THRESHOLD;
+
+	/** Creates a new instance of ADIISFockExtrapolator. */
+	public ADIISFockExtrapolator() {
+		this(DIISFockExtrapolator.DEFAULT_SUBSPACE_SIZE);
+	}
+
+	/**
+	 * Creates a new instance of ADIISFockExtrapolator.
+	 *
+	 * @param subspaceSize the largest number of Fock matrices held
+	 * @throws IllegalArgumentException if the subspace size is less than 2
+	 */
+	public ADIISFockExtrapolator(int subspaceSize) {
+		this.diis = new DIISFockExtrapolator(subspaceSize);
+		this.subspaceSize = subspaceSize;
+		this.fockMatrices = new double[subspaceSize][][];
+		this.densities = new double[subspaceSize][][];
+		this.densityFockProducts = new double[subspaceSize][subspaceSize];
+		this.slots = new int[subspaceSize];
+
+		// always extrapolate, the switch to DIIS is made here
+		diis.setErrorThreshold(0.0);
+	}
+
+	/**
+	 * Get the next extrapolated fock matrix. The returned matrix may be reused,
+	 * and so overwritten, by the next call.
+	 *
+	 * @param currentFock the current fock
+	 * @param overlap     the overlap matrix
+	 * @param density     the current density matrix
+	 * @return extrapolated fock
+	 */
+	@Override
+	public Fock next(Fock currentFock, Overlap overlap, Density density) {
+		final int n = currentFock.getRowDimension();
+
+		// store the Fock and density matrices before the DIIS may reuse currentFock
+		final int slot = noOfVectors < subspaceSize ? noOfVectors : slots[0];
+		if (fockMatrices[slot] == null) {
+			fockMatrices[slot] = new double[n][n];
+			densities[slot] = new double[n][n];
+		}
+		copy(currentFock.getDataRef(), fockMatrices[slot]);
+		copy(density.getDataRef(), densities[slot]);
+
+		if (noOfVectors == subspaceSize) {
+			System.arraycopy(slots, 1, slots, 0, noOfVectors - 1);
+			noOfVectors--;
+		}
+		slots[noOfVectors++] = slot;
+
+		for (int k = 0; k < noOfVectors; k++) {
+			final int other = slots[k];
+
+			densityFockProducts[slot][other] = dotProduct(densities[slot], fockMatrices[other]);
+			densityFockProducts[other][slot] = dotProduct(densities[other], fockMatrices[slot]);
+		}
+
+		// the largest element of the DIIS error FPS - SPF = FPS - (FPS)^T
+		final double[] fPS = products.compute(currentFock, density, overlap).getDataRef();
+		double error = 0.0;
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < i; j++) {
+				error = FastMath.max(error, FastMath.abs(fPS[i * n + j] - fPS[j * n + i]));
+			}
+		}
+
+		final double adiisWeight = error <= diisThreshold ? 0.0 : FastMath.min(1.0, error / adiisThreshold);
+		LOG.debug("DIIS error {}, ADIIS weight {}", error, adiisWeight);
+
+		if (extrapolatedFock == null || extrapolatedFock.getRowDimension() != n) {
+			extrapolatedFock = new Fock(n);
+		}
+		final double[][] newFock = extrapolatedFock.getDataRef();
+
+		// the DIIS Fock matrix, its history is kept up to date in every regime
+		final double[][] diisFock = diis.next(new Fock(fockMatrices[slot]), overlap, density).getDataRef();
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				newFock[i][j] = (1.0 - adiisWeight) * diisFock[i][j];
+			}
+		}
+
+		if (adiisWeight > 0.0) {
+			final double[] coefficients = adiisCoefficients();
+			LOG.debug("ADIIS coefficients {}", () -> Arrays.toString(coefficients));
+
+			for (int k = 0; k < noOfVectors; k++) {
+				final double weight = adiisWeight * coefficients[k];
+				if (weight == 0.0) {
+					continue;
+				}
+
+				final double[][] term = fockMatrices[slots[k]];
+				for (int i = 0; i < n; i++) {
+					for (int j = 0; j < n; j++) {
+						newFock[i][j] += weight * term[i][j];
+					}
+				}
+			}
+
+			if (levelShift != 0.0) {
+				addLevelShift(newFock, overlap, density);
+			}
+		}
+
+		return extrapolatedFock;
+	}
+
+	/**
+	 * The ADIIS coefficients, which minimise the second order energy model
+	 * over the simplex c<sub>i</sub> &ge; 0, &Sigma; c<sub>i</sub> = 1. The
+	 * model is minimised by moving weight between the pair of vectors with the
+	 * most different gradients, with an exact line search, until the gradients
+	 * of all vectors with nonzero weight agree.
+	 *
+	 * @return the coefficients of the occupied slots, oldest first
+	 */
+	private double[] adiisCoefficients() {
+		final int m = noOfVectors;
+		final int latest = slots[m - 1];
+		final double pNN = densityFockProducts[latest][latest];
+
+		// f(c) = 2 c.g + c.H c, with g_i = (D_i - D_n).F_n and the symmetric
+		// part of H_ij = (D_i - D_n).(F_j - F_n)
+		final double[] g = new double[m];
+		final double[][] h = new double[m][m];
+		for (int i = 0; i < m; i++) {
+			final int si = slots[i];
+			g[i] = densityFockProducts[si][latest] - pNN;
+
+			for (int j = 0; j < m; j++) {
+				final int sj = slots[j];
+				final double hij = densityFockProducts[si][sj] - densityFockProducts[si][latest]
+						- densityFockProducts[latest][sj] + pNN;
+				final double hji = densityFockProducts[sj][si] - densityFockProducts[sj][latest]
+						- densityFockProducts[latest][si] + pNN;
+
+				h[i][j] = 0.5 * (hij + hji);
+			}
+		}
+
+		// start from the latest Fock matrix alone
+		final double[] c = new double[m];
+		c[m - 1] = 1.0;
+		final double[] gradient = new double[m];
+
+		for (int step = 0; step < MAX_MINIMISATION_STEPS; step++) {
+			for (int i = 0; i < m; i++) {
+				double sum = g[i];
+				for (int j = 0; j < m; j++) {
+					sum += h[i][j] * c[j];
+				}
+				gradient[i] = sum;
+			}
+
+			int up = 0;
+			int down = -1;
+			for (int i = 0; i < m; i++) {
+				if (gradient[i] < gradient[up]) {
+					up = i;
+				}
+				if (c[i] > 0.0 && (down < 0 || gradient[i] > gradient[down])) {
+					down = i;
+				}
+			}
+
+			final double slope = gradient[down] - gradient[up];
+			if (up == down || slope < MINIMISATION_TOLERANCE) {
+				break;
+			}
+
+			// move t from down to up, f changes by -2 t slope + t^2 curvature
+			final double curvature = h[up][up] + h[down][down] - 2.0 * h[up][down];
+			final double t = curvature > 0.0 ? FastMath.min(c[down], slope / curvature) : c[down];
+
+			c[up] += t;
+			c[down] -= t;
+		}
+
+		return c;
+	}
+
+	/**
+	 * Add the level shift &sigma;(S - SDS) to a Fock matrix.
+	 *
+	 * @param fockMatrix the Fock matrix, shifted in place
+	 * @param overlap    the overlap matrix
+	 * @param density    the density matrix
+	 */
+	private void addLevelShift(double[][] fockMatrix, Overlap overlap, Density density) {
+		final double[][] s = overlap.getDataRef();
+		final double[] sDS = products.compute(overlap, density, overlap).getDataRef();
+		final int n = fockMatrix.length;
+
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				fockMatrix[i][j] += levelShift * (s[i][j] - sDS[i * n + j]);
+			}
+		}
+	}
+
+	/**
+	 * Copy a square matrix into another of the same size.
+	 *
+	 * @param from the source
+	 * @param to   the destination
+	 */
+	private static void copy(double[][] from, double[][] to) {
+		for (int i = 0; i < from.length; i++) {
+			System.arraycopy(from[i], 0, to[i], 0, from[i].length);
+		}
+	}
+
+	/**
+	 * The Frobenius inner product A&middot;B = &Sigma;<sub>ij</sub>
+	 * A<sub>ij</sub> B<sub>ij</sub>.
+	 *
+	 * @param a the first matrix
+	 * @param b the second matrix
+	 * @return A.B
+	 */
+	private static double dotProduct(double[][] a, double[][] b) {
+		double sum = 0.0;
+		for (int i = 0; i < a.length; i++) {
+			final double[] ai = a[i];
+			final double[] bi = b[i];
+
+			for (int j = 0; j < ai.length; j++) {
+				sum += ai[j] * bi[j];
+			}
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Get the value of subspaceSize
+	 *
+	 * @return the largest number of Fock matrices held
+	 */
+	public int getSubspaceSize() {
+		return subspaceSize;
+	}
+
+	/**
+	 * Get the value of levelShift
+	 *
+	 * @return the level shift of the virtual orbitals, in Hartree
+	 */
+	public double getLevelShift() {
+		return levelShift;
+	}
+
+	/**
+	 * Set the value of levelShift, the shift added to the virtual orbital
+	 * energies while DIIS is not used alone. Zero, the default, disables level
+	 * shifting.
+	 *
+	 * @param levelShift the level shift, in Hartree
+	 * @throws IllegalArgumentException if the level shift is negative
+	 */
+	public void setLevelShift(double levelShift) {
+		if (levelShift < 0.0) {
+			throw new IllegalArgumentException("Level shift must not be negative: " + levelShift);
+		}
+
+		this.levelShift = levelShift;
+	}
+
+	/**
+	 * Get the value of adiisThreshold
+	 *
+	 * @return the error above which ADIIS is used alone
+	 */
+	public double getADIISThreshold() {
+		return adiisThreshold;
+	}
+
+	/**
+	 * Set the value of adiisThreshold
+	 *
+	 * @param adiisThreshold the error above which ADIIS is used alone
+	 * @throws IllegalArgumentException if it is not above the DIIS threshold
+	 */
+	public void setADIISThreshold(double adiisThreshold) {
+		if (!(adiisThreshold > diisThreshold)) {
+			throw new IllegalArgumentException(
+					"ADIIS threshold " + adiisThreshold + " must be above the DIIS threshold " + diisThreshold);
+		}
+
+		this.adiisThreshold = adiisThreshold;
+	}
+
+	/**
+	 * Get the value of diisThreshold
+	 *
+	 * @return the error below which DIIS is used alone
+	 */
+	public double getDIISThreshold() {
+		return diisThreshold;
+	}
+
+	/**
+	 * Set the value of diisThreshold
+	 *
+	 * @param diisThreshold the error below which DIIS is used alone
+	 * @throws IllegalArgumentException if it is negative or not below the
+	 *                                  ADIIS threshold
+	 */
+	public void setDIISThreshold(double diisThreshold) {
+		if (diisThreshold < 0.0 || !(diisThreshold < adiisThreshold)) {
+			throw new IllegalArgumentException("DIIS threshold " + diisThreshold
+					+ " must be non-negative and below the ADIIS threshold " + adiisThreshold);
+		}
+
+		this.diisThreshold = diisThreshold;
+	}
+}
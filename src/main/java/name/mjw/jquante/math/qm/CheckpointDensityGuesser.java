@@ -0,0 +1,75 @@
+package name.mjw.jquante.math.qm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Guesses the initial density from an {@link SCFCheckpoint}, so that a run
+ * resumes where an earlier run of the same molecule and basis set stopped. The
+ * checkpoint is read on first use, and its basis functions are matched to
+ * those of the SCF method, in whatever order they are.
+ * <p>
+ * A {@link RestrictedHartreeFockMethod} that starts from this guess also
+ * restores the DIIS subspace of the checkpoint.
+ *
+ * @author mjw99
+ */
+public final class CheckpointDensityGuesser implements DensityGuesser {
+
+	/** The checkpoint file. */
+	private final Path path;
+
+	/** The checkpoint, once read. */
+	private SCFCheckpoint checkpoint;
+
+	/**
+	 * Creates a new instance of CheckpointDensityGuesser.
+	 *
+	 * @param path the checkpoint file
+	 */
+	public CheckpointDensityGuesser(Path path) {
+		this.path = path;
+	}
+
+	/**
+	 * Guess the DM from the checkpoint.
+	 *
+	 * @param scfMethod the SCF method for which the guess is to be done
+	 * @return the density matrix of the checkpoint, in the basis function order
+	 *         of the SCF method
+	 * @throws UncheckedIOException  if the checkpoint can not be read
+	 * @throws IllegalStateException if the checkpoint is of another basis set
+	 */
+	@Override
+	public Density guessDM(SCFMethod scfMethod) {
+		return getCheckpoint().getDensity(scfMethod.getTwoEI().getBasisSetLibrary());
+	}
+
+	/**
+	 * The checkpoint, read on first use.
+	 *
+	 * @return the checkpoint
+	 * @throws UncheckedIOException if the checkpoint can not be read
+	 */
+	public SCFCheckpoint getCheckpoint() {
+		if (checkpoint == null) {
+			try {
+				checkpoint = SCFCheckpoint.read(path);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Unable to read SCF checkpoint " + path, e);
+			}
+		}
+
+		return checkpoint;
+	}
+
+	/**
+	 * The checkpoint file.
+	 *
+	 * @return the path of the checkpoint
+	 */
+	public Path getPath() {
+		return path;
+	}
+}
@@ -0,0 +1,158 @@
+package name.mjw.jquante.math.qm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import net.jafama.FastMath;
+
+/**
+ * Two-electron integrals as Cholesky vectors, (ij|kl) &asymp;
+ * &Sigma;<sub>L</sub> L<sub>L,ij</sub> L<sub>L,kl</sub>, from a pivoted,
+ * incomplete Cholesky decomposition of the positive semi-definite matrix
+ * M<sub>ij,kl</sub> = (ij|kl).
+ * <p>
+ * Each step takes the pair with the largest remaining diagonal error
+ * (ij|ij) - &Sigma;<sub>L</sub> L<sub>L,ij</sub><sup>2</sup> as pivot, and
+ * evaluates one column of integrals (pivot|kl) to form the next vector. The
+ * decomposition stops once every diagonal error is below the tolerance, which
+ * also bounds the error of every other integral, |&Delta;(ij|kl)| &le;
+ * &radic;(&Delta;<sub>ij</sub> &Delta;<sub>kl</sub>). The number of vectors
+ * M is typically a small multiple of the number of basis functions, so the
+ * vectors take O(N<sup>2</sup>M) memory, without an auxiliary basis.
+ *
+ * @author mjw99
+ */
+public final class CholeskyTwoElectronIntegrals extends FactorisedTwoElectronIntegrals {
+
+	/** Logger object. */
+	private static final Logger LOG = LogManager.getLogger(CholeskyTwoElectronIntegrals.class);
+
+	/** The default decomposition tolerance. */
+	public static final double DEFAULT_TOLERANCE = 1.0e-6;
+
+	/** The decomposition tolerance. */
+	private final double tolerance;
+
+	/**
+	 * Decompose the integrals of a basis set.
+	 *
+	 * @param twoEI     the 2E integral driver, used to evaluate the diagonal
+	 *                  and the pivot columns
+	 * @param tolerance the largest allowed diagonal error
+	 * @throws IllegalArgumentException if the tolerance is not positive
+	 */
+	public CholeskyTwoElectronIntegrals(TwoElectronIntegrals twoEI, double tolerance) {
+		super(twoEI.getBasisSetLibrary().getBasisFunctions().size(), decompose(twoEI, tolerance));
+
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * The pivoted Cholesky decomposition of the integral matrix.
+	 *
+	 * @param twoEI     the 2E integral driver
+	 * @param tolerance the largest allowed diagonal error
+	 * @return L[L][ij], ij = i(i+1)/2 + j
+	 * @throws IllegalArgumentException if the tolerance is not positive
+	 */
+	private static double[][] decompose(TwoElectronIntegrals twoEI, double tolerance) {
+		if (!(tolerance > 0.0)) {
+			throw new IllegalArgumentException("Cholesky tolerance must be positive: " + tolerance);
+		}
+
+		final int noOfBasisFunctions = twoEI.getBasisSetLibrary().getBasisFunctions().size();
+		final int noOfPairs = noOfBasisFunctions * (noOfBasisFunctions + 1) / 2;
+
+		// the basis function indices of each pair
+		final int[] first = new int[noOfPairs];
+		final int[] second = new int[noOfPairs];
+		for (int i = 0, ij = 0; i < noOfBasisFunctions; i++) {
+			for (int j = 0; j <= i; j++, ij++) {
+				first[ij] = i;
+				second[ij] = j;
+			}
+		}
+
+		// the diagonal error, initially (ij|ij)
+		final double[] diagonal = new double[noOfPairs];
+		IntStream.range(0, noOfPairs).parallel()
+				.forEach(ij -> diagonal[ij] = twoEI.compute2E(first[ij], second[ij], first[ij], second[ij]));
+
+		// a pair whose diagonal error d_ij has dropped below tolerance^2 / max d is
+		// left out of further columns, as the error of each of its integrals is
+		// then already at most sqrt(d_ij d_kl) <= tolerance
+		final double screening = tolerance * tolerance
+				/ FastMath.max(tolerance, Arrays.stream(diagonal).max().orElse(0.0));
+		final boolean[] screened = new boolean[noOfPairs];
+		final List<double[]> vectors = new ArrayList<>();
+
+		while (vectors.size() < noOfPairs) {
+			int pivot = -1;
+			double maxDiagonal = tolerance;
+
+			for (int ij = 0; ij < noOfPairs; ij++) {
+				if (screened[ij]) {
+					continue;
+				}
+
+				if (diagonal[ij] < screening) {
+					screened[ij] = true;
+				} else if (diagonal[ij] >= maxDiagonal) {
+					pivot = ij;
+					maxDiagonal = diagonal[ij];
+				}
+			}
+
+			if (pivot < 0) {
+				break;
+			}
+
+			final int p = first[pivot];
+			final int q = second[pivot];
+			final double scale = 1.0 / FastMath.sqrt(maxDiagonal);
+			final int pivotIndex = pivot;
+			final double[] vector = new double[noOfPairs];
+
+			IntStream.range(0, noOfPairs).parallel().forEach(kl -> {
+				if (screened[kl]) {
+					return;
+				}
+
+				double value = twoEI.compute2E(p, q, first[kl], second[kl]);
+				for (double[] previous : vectors) {
+					value -= previous[pivotIndex] * previous[kl];
+				}
+
+				vector[kl] = value * scale;
+				diagonal[kl] -= vector[kl] * vector[kl];
+			});
+
+			// exact by construction, rounding aside
+			diagonal[pivot] = 0.0;
+			screened[pivot] = true;
+
+			vectors.add(vector);
+		}
+
+		LOG.info("{} Cholesky vectors for {} basis function pairs, tolerance {}", vectors.size(), noOfPairs,
+				tolerance);
+		LOG.debug("Largest remaining diagonal error {}",
+				() -> Arrays.stream(diagonal).max().orElse(0.0));
+
+		return vectors.toArray(new double[0][]);
+	}
+
+	/**
+	 * The decomposition tolerance, the largest allowed diagonal error.
+	 *
+	 * @return the tolerance
+	 */
+	public double getTolerance() {
+		return tolerance;
+	}
+}
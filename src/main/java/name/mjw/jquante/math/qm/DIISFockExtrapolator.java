@@ -2,8 +2,9 @@ package name.mjw.jquante.math.qm;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
-import name.mjw.jquante.math.MathUtil;
 import org.hipparchus.linear.Array2DRowRealMatrix;
 import org.hipparchus.linear.ArrayRealVector;
 import org.hipparchus.linear.DecompositionSolver;
@@ -16,10 +17,19 @@ import org.hipparchus.exception.MathRuntimeException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import net.jafama.FastMath;
+
 /**
  * DIIS (Direct Inversion of iterative subspaces) proposed by Peter Pulay for
  * HF convergence acceleration.
- * 
+ * <p>
+ * At most {@link #getSubspaceSize()} Fock matrices and error vectors are kept,
+ * in preallocated slots that are overwritten oldest first. The error inner
+ * products B<sub>ij</sub> are kept between calls, so each call adds one row of
+ * new inner products. If the DIIS equations are singular, the vector with the
+ * largest error is dropped and they are solved again. The extrapolated Fock
+ * matrix is accumulated in place into a matrix that is reused by every call.
+ *
  * @author V.Ganesh
  * @version 2.0 (Part of MeTA v2.0)
  */
@@ -28,15 +38,61 @@ public final class DIISFockExtrapolator implements FockExtrapolator {
 	/** Logger object. */
 	private static final Logger LOG = LogManager.getLogger(DIISFockExtrapolator.class);
 
+	/** The default number of Fock matrices held. */
+	public static final int DEFAULT_SUBSPACE_SIZE = 8;
+
+	/**
+	 * Pivots of the normalised DIIS equations below this are treated as
+	 * singular.
+	 */
+	private static final double SINGULARITY_THRESHOLD = 1.0e-14;
+
 	/** Creates a new instance of DIISFockExtrapolator. */
 	public DIISFockExtrapolator() {
+		this(DEFAULT_SUBSPACE_SIZE);
 	}
 
-	/** History of Fock matrices used in the DIIS extrapolation. */
-	private ArrayList<Fock> fockMatrixList = new ArrayList<>();
+	/**
+	 * Creates a new instance of DIISFockExtrapolator.
+	 *
+	 * @param subspaceSize the largest number of Fock matrices held
+	 * @throws IllegalArgumentException if the subspace size is less than 2
+	 */
+	public DIISFockExtrapolator(int subspaceSize) {
+		if (subspaceSize < 2) {
+			throw new IllegalArgumentException("DIIS subspace size must be at least 2: " + subspaceSize);
+		}
+
+		this.subspaceSize = subspaceSize;
+		this.fockMatrices = new double[subspaceSize][][];
+		this.errorVectors = new double[subspaceSize][];
+		this.errorProducts = new double[subspaceSize][subspaceSize];
+		this.slots = new int[subspaceSize];
+	}
+
+	/** The largest number of Fock matrices held. */
+	private final int subspaceSize;
+
+	/** The Fock matrices of the subspace, by slot. */
+	private final double[][][] fockMatrices;
+
+	/** The DIIS error vectors, one per stored Fock matrix, by slot. */
+	private final double[][] errorVectors;
+
+	/** B_{ij}, the inner products of the error vectors in slots i and j. */
+	private final double[][] errorProducts;
+
+	/** The occupied slots, oldest first. */
+	private final int[] slots;
+
+	/** The number of occupied slots. */
+	private int noOfVectors = 0;
+
+	/** Forms FPS. */
+	private final TripleProduct fockDensityOverlap = new TripleProduct();
 
-	/** History of DIIS error vectors, one per stored Fock matrix. */
-	private ArrayList<RealVector> errorVectorList = new ArrayList<>();
+	/** The extrapolated Fock matrix, reused by every call. */
+	private Fock extrapolatedFock = null;
 
 	/** The current DIIS iteration step count. */
 	protected int diisStep = 0;
@@ -51,8 +107,9 @@ public final class DIISFockExtrapolator implements FockExtrapolator {
 	protected double errorThreshold = 0.00001;
 
 	/**
-	 * Get the next extrapolated fock matrix
-	 * 
+	 * Get the next extrapolated fock matrix. The returned matrix may be reused,
+	 * and so overwritten, by the next call.
+	 *
 	 * @param currentFock
 	 *            the current fock
 	 * @param overlap
@@ -63,23 +120,32 @@ public final class DIISFockExtrapolator implements FockExtrapolator {
 	 */
 	@Override
 	public Fock next(Fock currentFock, Overlap overlap, Density density) {
-		DecimalFormat df = new DecimalFormat("+#,##0.000;-#");
-		df.setGroupingUsed(false);
-		RealVectorFormat vf = new RealVectorFormat("{", "}", ",", df);
-		RealMatrixFormat mf = new RealMatrixFormat("\n", "", "", "", "\n", " ", df);
+		final int n = currentFock.getRowDimension();
 
-		Fock newFock = new Fock(currentFock.getData());
+		// the slot that receives this iteration, the oldest if all are in use
+		final int slot = noOfVectors < subspaceSize ? firstFreeSlot() : slots[0];
+		if (errorVectors[slot] == null) {
+			errorVectors[slot] = new double[n * n];
+			fockMatrices[slot] = new double[n][n];
+		}
 
-		RealMatrix fPS = currentFock.multiply(density).multiply(overlap);
-		RealMatrix sPF = overlap.multiply(density).multiply(currentFock);
+		// The commutator of the Fock and density matrices (the orbital gradient),
+		// FPS - SPF = FPS - (FPS)^T as F, P and S are symmetric
+		final double[] fPS = fockDensityOverlap.compute(currentFock, density, overlap).getDataRef();
+		final double[] errorVector = errorVectors[slot];
+		double mxerr = 0.0;
 
-		// The commutator of the Fock and density matrices (the orbital gradient)
-		RealVector errorVector = MathUtil.realMatrixToRealVector(fPS.subtract(sPF));
+		for (int i = 0, ij = 0; i < n; i++) {
+			for (int j = 0; j < n; j++, ij++) {
+				errorVector[ij] = fPS[ij] - fPS[j * n + i];
+				mxerr += errorVector[ij] * errorVector[ij];
+			}
+		}
+		mxerr = FastMath.sqrt(mxerr);
 
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("errorVector {} ", vf.format(errorVector));
+			LOG.debug("errorVector {} ", vectorFormat().format(new ArrayRealVector(errorVector, false)));
 		}
-		double mxerr = errorVector.getNorm();
 		LOG.debug("errorVector.getNorm() {}", mxerr);
 
 		if (mxerr > errorThreshold && !isDiisStarted) {
@@ -90,66 +156,71 @@ public final class DIISFockExtrapolator implements FockExtrapolator {
 		// bootstrap
 		if (!isDiisStarted) {
 			if (oldFock == null) {
-				oldFock = currentFock;
+				oldFock = new Fock(currentFock.getData());
 				return currentFock;
 			} else {
+				final Fock newFock = new Fock(currentFock.getData());
 				newFock.setSubMatrix(oldFock.scalarMultiply(0.5).add(currentFock.scalarMultiply(0.5)).getData(), 0, 0);
-				oldFock = currentFock;
+				oldFock.setSubMatrix(currentFock.getData(), 0, 0);
 				return newFock;
 			}
 		}
 
-		fockMatrixList.add(currentFock);
-		errorVectorList.add(errorVector);
-
-		int noOfIterations = errorVectorList.size();
-
-		LOG.debug("noOfIterations: {}", noOfIterations);
-		int noOfIterationsPlusOne = noOfIterations + 1;
-
-		// B_{ij} matrix
-		RealMatrix aMatrix = new Array2DRowRealMatrix(noOfIterationsPlusOne, noOfIterationsPlusOne);
-		// 0,0...,-1 vector
-		RealVector bVector = new ArrayRealVector(noOfIterationsPlusOne);
-
-		// set up A x = b to be solved
-		// Populate B_{ij} matrix
-		for (int i = 0; i < noOfIterations; i++) {
-			for (int j = 0; j < noOfIterations; j++) {
-				aMatrix.setEntry(i, j, errorVectorList.get(i).dotProduct(errorVectorList.get(j)));
-			}
+		// store the Fock matrix and its row of error inner products
+		final double[][] fock = fockMatrices[slot];
+		for (int i = 0; i < n; i++) {
+			System.arraycopy(currentFock.getDataRef()[i], 0, fock[i], 0, n);
 		}
 
-		for (int i = 0; i < noOfIterations; i++) {
-			aMatrix.setEntry(noOfIterations, i, -1.0);
-			aMatrix.setEntry(i, noOfIterations, -1.0);
-			bVector.setEntry(i, 0.0);
+		if (noOfVectors == subspaceSize) {
+			removeSlot(0);
 		}
+		slots[noOfVectors++] = slot;
 
-		aMatrix.setEntry(noOfIterations, noOfIterations, 0.0);
-		bVector.setEntry(noOfIterations, -1.0);
+		for (int i = 0; i < noOfVectors; i++) {
+			final int other = slots[i];
+			final double product = dotProduct(errorVector, errorVectors[other]);
 
-		if (LOG.isDebugEnabled()) {
-			LOG.debug("aMatrix {}", mf.format(aMatrix));
-			LOG.debug("bVector {}", vf.format(bVector));
+			errorProducts[slot][other] = product;
+			errorProducts[other][slot] = product;
 		}
 
+		LOG.debug("noOfIterations: {}", noOfVectors);
+
 		try {
-			DecompositionSolver solver = new LUDecomposition(aMatrix).getSolver();
-			RealVector solVec = solver.solve(bVector);
+			RealVector solVec = solve();
+
+			while (solVec == null) {
+				removeLargestError();
+				solVec = solve();
+			}
+
 			if (LOG.isDebugEnabled()) {
-				LOG.debug("solVec {}", vf.format(solVec));
+				LOG.debug("solVec {}", vectorFormat().format(solVec));
 			}
 
-			newFock = new Fock(newFock.getRowDimension());
-			Fock tmpFock;
+			if (extrapolatedFock == null || extrapolatedFock.getRowDimension() != n) {
+				extrapolatedFock = new Fock(n);
+			}
 
-			for (int i = 0; i < noOfIterations; i++) {
-				tmpFock = new Fock(fockMatrixList.get(i).scalarMultiply(solVec.toArray()[i]).getData());
-				newFock = new Fock(newFock.add(tmpFock).getData());
+			final double[][] newFock = extrapolatedFock.getDataRef();
+			for (int i = 0; i < n; i++) {
+				Arrays.fill(newFock[i], 0.0);
 			}
-			oldFock = currentFock;
 
+			for (int k = 0; k < noOfVectors; k++) {
+				final double coefficient = solVec.getEntry(k);
+				final double[][] term = fockMatrices[slots[k]];
+
+				for (int i = 0; i < n; i++) {
+					final double[] row = newFock[i];
+					final double[] termRow = term[i];
+
+					for (int j = 0; j < n; j++) {
+						row[j] += coefficient * termRow[j];
+					}
+				}
+			}
 		} catch (MathRuntimeException ignored) {
 			if (LOG.isDebugEnabled()) {
 				LOG.debug("No solution: {}", diisStep);
@@ -161,14 +232,242 @@ public final class DIISFockExtrapolator implements FockExtrapolator {
 		}
 		diisStep++;
 		if (LOG.isDebugEnabled()) {
-			LOG.debug("final newFock {}", mf.format(newFock));
+			LOG.debug("final newFock {}", matrixFormat().format(extrapolatedFock));
+		}
+		return extrapolatedFock;
+	}
+
+	/**
+	 * The Fock matrices of the subspace, for a checkpoint.
+	 *
+	 * @return copies of the Fock matrices, oldest first
+	 */
+	List<double[][]> getFockHistory() {
+		final List<double[][]> history = new ArrayList<>(noOfVectors);
+		for (int k = 0; k < noOfVectors; k++) {
+			final double[][] fock = fockMatrices[slots[k]];
+			final double[][] copy = new double[fock.length][];
+
+			for (int i = 0; i < fock.length; i++) {
+				copy[i] = fock[i].clone();
+			}
+			history.add(copy);
+		}
+
+		return history;
+	}
+
+	/**
+	 * The error vectors of the subspace, for a checkpoint.
+	 *
+	 * @return copies of the error vectors, oldest first
+	 */
+	List<double[]> getErrorHistory() {
+		final List<double[]> history = new ArrayList<>(noOfVectors);
+		for (int k = 0; k < noOfVectors; k++) {
+			history.add(errorVectors[slots[k]].clone());
+		}
+
+		return history;
+	}
+
+	/**
+	 * Replace the subspace with one restored from a checkpoint, keeping the
+	 * newest vectors if there are more than {@link #getSubspaceSize()}, and
+	 * start DIIS.
+	 *
+	 * @param fockHistory  the Fock matrices, oldest first
+	 * @param errorHistory the error vectors of the Fock matrices
+	 * @throws IllegalArgumentException if the histories differ in length
+	 */
+	void restoreHistory(List<double[][]> fockHistory, List<double[]> errorHistory) {
+		if (fockHistory.size() != errorHistory.size()) {
+			throw new IllegalArgumentException(
+					fockHistory.size() + " Fock matrices but " + errorHistory.size() + " error vectors");
+		}
+
+		final int first = FastMath.max(0, fockHistory.size() - subspaceSize);
+		noOfVectors = 0;
+
+		for (int k = first; k < fockHistory.size(); k++) {
+			final int slot = noOfVectors;
+			final double[][] fock = fockHistory.get(k);
+
+			fockMatrices[slot] = new double[fock.length][];
+			for (int i = 0; i < fock.length; i++) {
+				fockMatrices[slot][i] = fock[i].clone();
+			}
+			errorVectors[slot] = errorHistory.get(k).clone();
+			slots[noOfVectors++] = slot;
+
+			for (int i = 0; i < noOfVectors; i++) {
+				final double product = dotProduct(errorVectors[slot], errorVectors[slots[i]]);
+
+				errorProducts[slot][slots[i]] = product;
+				errorProducts[slots[i]][slot] = product;
+			}
+		}
+
+		isDiisStarted = true;
+	}
+
+	/**
+	 * Solve the DIIS equations of the occupied slots, B c = 0 with &Sigma; c = 1
+	 * imposed through a Lagrange multiplier. B is normalised by its largest
+	 * diagonal element first.
+	 *
+	 * @return the coefficients of the occupied slots, oldest first, or null if
+	 *         the equations are singular and more than one vector is held
+	 */
+	private RealVector solve() {
+		final int noOfIterationsPlusOne = noOfVectors + 1;
+
+		double scale = 0.0;
+		for (int i = 0; i < noOfVectors; i++) {
+			scale = FastMath.max(scale, errorProducts[slots[i]][slots[i]]);
+		}
+		scale = scale > 0.0 ? 1.0 / scale : 1.0;
+
+		// set up A x = b to be solved
+		final RealMatrix aMatrix = new Array2DRowRealMatrix(noOfIterationsPlusOne, noOfIterationsPlusOne);
+		final RealVector bVector = new ArrayRealVector(noOfIterationsPlusOne);
+
+		for (int i = 0; i < noOfVectors; i++) {
+			for (int j = 0; j < noOfVectors; j++) {
+				aMatrix.setEntry(i, j, errorProducts[slots[i]][slots[j]] * scale);
+			}
+
+			aMatrix.setEntry(noOfVectors, i, -1.0);
+			aMatrix.setEntry(i, noOfVectors, -1.0);
+		}
+		bVector.setEntry(noOfVectors, -1.0);
+
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("aMatrix {}", matrixFormat().format(aMatrix));
+			LOG.debug("bVector {}", vectorFormat().format(bVector));
 		}
-		return newFock;
+
+		final DecompositionSolver solver = new LUDecomposition(aMatrix, SINGULARITY_THRESHOLD).getSolver();
+
+		if (!solver.isNonSingular() && noOfVectors > 1) {
+			return null;
+		}
+
+		return solver.solve(bVector);
+	}
+
+	/**
+	 * Drop the vector with the largest error from the subspace.
+	 */
+	private void removeLargestError() {
+		int worst = 0;
+		for (int i = 1; i < noOfVectors; i++) {
+			if (errorProducts[slots[i]][slots[i]] > errorProducts[slots[worst]][slots[worst]]) {
+				worst = i;
+			}
+		}
+
+		LOG.debug("DIIS equations ill-conditioned, dropping vector {} of {}", worst, noOfVectors);
+		removeSlot(worst);
+	}
+
+	/**
+	 * Release an occupied slot, keeping the others in order.
+	 *
+	 * @param position the position of the slot in the occupied slots
+	 */
+	private void removeSlot(int position) {
+		System.arraycopy(slots, position + 1, slots, position, noOfVectors - position - 1);
+		noOfVectors--;
+	}
+
+	/**
+	 * The lowest numbered slot that is not occupied.
+	 *
+	 * @return a free slot
+	 */
+	private int firstFreeSlot() {
+		for (int slot = 0; slot < subspaceSize; slot++) {
+			boolean occupied = false;
+			for (int i = 0; i < noOfVectors && !occupied; i++) {
+				occupied = slots[i] == slot;
+			}
+
+			if (!occupied) {
+				return slot;
+			}
+		}
+
+		throw new IllegalStateException("No free DIIS slot");
+	}
+
+	/**
+	 * The inner product of two vectors.
+	 *
+	 * @param a the first vector
+	 * @param b the second vector
+	 * @return a.b
+	 */
+	private static double dotProduct(double[] a, double[] b) {
+		double sum = 0.0;
+		for (int i = 0; i < a.length; i++) {
+			sum += a[i] * b[i];
+		}
+
+		return sum;
+	}
+
+	/**
+	 * The number format used in debug output.
+	 *
+	 * @return a new number format
+	 */
+	private static DecimalFormat debugNumberFormat() {
+		final DecimalFormat df = new DecimalFormat("+#,##0.000;-#");
+		df.setGroupingUsed(false);
+
+		return df;
+	}
+
+	/**
+	 * The vector format used in debug output.
+	 *
+	 * @return a new vector format
+	 */
+	private static RealVectorFormat vectorFormat() {
+		return new RealVectorFormat("{", "}", ",", debugNumberFormat());
+	}
+
+	/**
+	 * The matrix format used in debug output.
+	 *
+	 * @return a new matrix format
+	 */
+	private static RealMatrixFormat matrixFormat() {
+		return new RealMatrixFormat("\n", "", "", "", "\n", " ", debugNumberFormat());
+	}
+
+	/**
+	 * Get the value of subspaceSize
+	 *
+	 * @return the largest number of Fock matrices held
+	 */
+	public int getSubspaceSize() {
+		return subspaceSize;
+	}
+
+	/**
+	 * The number of Fock matrices currently held.
+	 *
+	 * @return the size of the current subspace
+	 */
+	public int getNumberOfVectors() {
+		return noOfVectors;
 	}
 
 	/**
 	 * Get the value of errorThreshold
-	 * 
+	 *
 	 * @return the value of errorThreshold
 	 */
 	public double getErrorThreshold() {
@@ -177,11 +476,11 @@ public final class DIISFockExtrapolator implements FockExtrapolator {
 
 	/**
 	 * Set the value of errorThreshold
-	 * 
+	 *
 	 * @param errorThreshold
 	 *            new value of errorThreshold
 	 */
 	public void setErrorThreshold(double errorThreshold) {
 		this.errorThreshold = errorThreshold;
 	}
-}
\ No newline at end of file
+}
@@ -1,9 +1,11 @@
 package name.mjw.jquante.math.qm;
 
 import org.hipparchus.linear.Array2DRowRealMatrix;
-import org.hipparchus.linear.RealMatrix;
 
+import name.mjw.jquante.math.BlockSparseMatrix;
+import name.mjw.jquante.math.DenseMatrix;
 import name.mjw.jquante.math.MathUtil;
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
 
 /**
  * Represents the Density P matrix or the charge order bond density matrix (DM).
@@ -16,6 +18,12 @@ public class Density extends Array2DRowRealMatrix {
 	/** Eclipse-generated serialVersionUID. */
 	private static final long serialVersionUID = 4939105356956860039L;
 
+	/** The occupied MO coefficients, copied. */
+	private transient DenseMatrix occupiedMOs;
+
+	/** C'C of the occupied MOs. */
+	private transient DenseMatrix product;
+
 	/**
 	 * Creates a new instance of square (NxN) Matrix
 	 * 
@@ -35,6 +43,17 @@ public class Density extends Array2DRowRealMatrix {
 		super(data);
 	}
 
+	/**
+	 * Creates a new Density matrix from a block sparse one; the elements of the
+	 * blocks that are not stored are zero.
+	 *
+	 * @param blocks the block sparse density
+	 */
+	public Density(BlockSparseMatrix blocks) {
+		super(blocks.getDimension(), blocks.getDimension());
+		blocks.copyTo(this);
+	}
+
 	/**
 	 * Compute the density matrix. It is computed using the number of occupied
 	 * orbitals and the molecular orbitals coefficient matrix.
@@ -58,18 +77,32 @@ public class Density extends Array2DRowRealMatrix {
 		}
 
 		// else construct it from the MOs .. C*C'
-		RealMatrix dVector = new Array2DRowRealMatrix(noOfOccupiedMOs, mos.getRowDimension());
-
-		double[][] c = mos.getData();
+		final int n = mos.getColumnDimension();
+		if (occupiedMOs == null || occupiedMOs.getRowDimension() != noOfOccupiedMOs
+				|| occupiedMOs.getColumnDimension() != n) {
+			occupiedMOs = new DenseMatrix(noOfOccupiedMOs, n);
+			product = new DenseMatrix(n, n);
+		}
 
+		final double[][] c = mos.getDataRef();
 		for (int i = 0; i < noOfOccupiedMOs; i++) {
-			for (int j = 0; j < c.length; j++) {
-				dVector.setEntry(i, j, mos.getEntry(i, j));
-			}
+			System.arraycopy(c[i], 0, occupiedMOs.getDataRef(), i * n, n);
 		}
 
-		this.setSubMatrix(dVector.transpose().multiply(dVector).getData(), 0, 0);
+		DenseMatrix.symmetricRankK(occupiedMOs, product).copyTo(this);
+
+	}
 
+	/**
+	 * The blocks of this density between the basis functions of each pair of
+	 * atoms, see {@link BasisSetLibrary#getAtomBlockSizes()}. Only blocks that
+	 * are exactly zero are dropped.
+	 *
+	 * @param basisSetLibrary the basis functions of the matrix
+	 * @return the block sparse copy
+	 */
+	public BlockSparseMatrix toBlockSparse(BasisSetLibrary basisSetLibrary) {
+		return BlockSparseMatrix.of(this, basisSetLibrary.getAtomBlockSizes(), 0.0);
 	}
 
 	/**
@@ -0,0 +1,211 @@
+package name.mjw.jquante.math.qm;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.hipparchus.exception.MathIllegalArgumentException;
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.hipparchus.linear.Array2DRowRealMatrix;
+import org.hipparchus.linear.CholeskyDecomposition;
+import org.hipparchus.linear.RealMatrix;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.math.qm.basis.ContractedGaussian;
+import name.mjw.jquante.math.qm.basis.Power;
+import name.mjw.jquante.math.qm.integral.RysTwoElectronTerm;
+
+/**
+ * Density fitted (resolution of the identity) two-electron integrals,
+ * (ij|kl) &asymp; &Sigma;<sub>P</sub> B<sub>P,ij</sub> B<sub>P,kl</sub>.
+ * <p>
+ * The three-index factors are B = L<sup>-1</sup> (P|ij), where (P|Q) = L
+ * L<sup>T</sup> is the Cholesky factored Coulomb metric of an auxiliary basis.
+ * Both the three-centre integrals (P|ij) and the two-centre integrals (P|Q)
+ * are evaluated with the Rys quadrature engine, as four-centre integrals with
+ * an s function of zero exponent in place of the missing functions. Only the
+ * pairs i &ge; j are held, so storage grows as the number of auxiliary
+ * functions times n(n+1)/2, rather than as n<sup>4</sup>/8.
+ *
+ * @author mjw99
+ */
+public final class DensityFittedIntegrals extends FactorisedTwoElectronIntegrals {
+
+	/** Logger object. */
+	private static final Logger LOG = LogManager.getLogger(DensityFittedIntegrals.class);
+
+	/** Relative symmetry threshold for the Cholesky factorisation of the metric. */
+	private static final double SYMMETRY_THRESHOLD = 1.0e-10;
+
+	/** Smallest allowed pivot of the Cholesky factorisation of the metric. */
+	private static final double POSITIVITY_THRESHOLD = 1.0e-12;
+
+	/** A unit s function of zero exponent, standing in for a missing function. */
+	private static final Power S_POWER = new Power(0, 0, 0);
+
+	/** The engine used for the two- and three-centre integrals. */
+	private static final RysTwoElectronTerm RYS = new RysTwoElectronTerm();
+
+	/** The auxiliary basis. */
+	private final BasisSetLibrary auxiliaryBasis;
+
+	/**
+	 * Compute the density fitting factors of an orbital basis.
+	 *
+	 * @param orbitalBasis   the orbital basis
+	 * @param auxiliaryBasis the auxiliary (fitting) basis
+	 * @throws IllegalStateException if the Coulomb metric of the auxiliary
+	 *                               basis is not positive definite, that is,
+	 *                               the auxiliary basis is linearly dependent
+	 */
+	public DensityFittedIntegrals(BasisSetLibrary orbitalBasis, BasisSetLibrary auxiliaryBasis) {
+		super(orbitalBasis.getBasisFunctions().size(), computeFactors(orbitalBasis, auxiliaryBasis));
+
+		this.auxiliaryBasis = auxiliaryBasis;
+	}
+
+	/**
+	 * Compute the density fitting factors B = L<sup>-1</sup> (P|ij).
+	 *
+	 * @param orbitalBasis   the orbital basis
+	 * @param auxiliaryBasis the auxiliary (fitting) basis
+	 * @return B[P][ij], ij = i(i+1)/2 + j
+	 * @throws IllegalStateException if the Coulomb metric is not positive
+	 *                               definite
+	 */
+	private static double[][] computeFactors(BasisSetLibrary orbitalBasis, BasisSetLibrary auxiliaryBasis) {
+		final List<ContractedGaussian> bfs = orbitalBasis.getBasisFunctions();
+		final List<ContractedGaussian> aux = auxiliaryBasis.getBasisFunctions();
+		final int noOfBasisFunctions = bfs.size();
+		final int noOfAuxiliaryFunctions = aux.size();
+
+		final int noOfPairs = noOfBasisFunctions * (noOfBasisFunctions + 1) / 2;
+
+		LOG.debug("Density fitting with {} auxiliary functions for {} basis function pairs",
+				noOfAuxiliaryFunctions, noOfPairs);
+
+		// the Coulomb metric (P|Q)
+		final double[][] metric = new double[noOfAuxiliaryFunctions][noOfAuxiliaryFunctions];
+		IntStream.range(0, noOfAuxiliaryFunctions).parallel().forEach(p -> {
+			for (int q = 0; q <= p; q++) {
+				metric[p][q] = threeCentre(aux.get(p), aux.get(q), null);
+				metric[q][p] = metric[p][q];
+			}
+		});
+
+		// the three-centre integrals (P|ij)
+		final double[][] factors = new double[noOfAuxiliaryFunctions][noOfPairs];
+		IntStream.range(0, noOfAuxiliaryFunctions).parallel().forEach(p -> {
+			final double[] row = factors[p];
+
+			for (int i = 0, ij = 0; i < noOfBasisFunctions; i++) {
+				for (int j = 0; j <= i; j++, ij++) {
+					row[ij] = threeCentre(aux.get(p), bfs.get(i), bfs.get(j));
+				}
+			}
+		});
+
+		// B = L^-1 (P|ij), by forward substitution of every pair column at once
+		final RealMatrix lower;
+		try {
+			lower = new CholeskyDecomposition(new Array2DRowRealMatrix(metric, false), SYMMETRY_THRESHOLD,
+					POSITIVITY_THRESHOLD).getL();
+		} catch (MathIllegalArgumentException e) {
+			throw new IllegalStateException(
+					"The Coulomb metric of auxiliary basis " + auxiliaryBasis.getBasisName() + " is singular", e);
+		}
+
+		final int noOfBlocks = Math.max(1, Runtime.getRuntime().availableProcessors() * 4);
+		final int blockSize = (noOfPairs + noOfBlocks - 1) / noOfBlocks;
+
+		IntStream.range(0, noOfBlocks).parallel().forEach(block -> {
+			final int first = block * blockSize;
+			final int last = Math.min(noOfPairs, first + blockSize);
+
+			for (int p = 0; p < noOfAuxiliaryFunctions; p++) {
+				final double[] row = factors[p];
+
+				for (int q = 0; q < p; q++) {
+					final double lpq = lower.getEntry(p, q);
+					final double[] solved = factors[q];
+
+					for (int ij = first; ij < last; ij++) {
+						row[ij] -= lpq * solved[ij];
+					}
+				}
+
+				final double inverseDiagonal = 1.0 / lower.getEntry(p, p);
+				for (int ij = first; ij < last; ij++) {
+					row[ij] *= inverseDiagonal;
+				}
+			}
+		});
+
+		return factors;
+	}
+
+	/**
+	 * The integral (a b|c d) of contracted Gaussians, with b or d, if null,
+	 * replaced by a unit s function of zero exponent, i.e. the two-centre
+	 * integral (a|c) or the three-centre integral (a|cd).
+	 *
+	 * @param a the first function of the bra
+	 * @param c the first function of the ket
+	 * @param d the second function of the ket, or null
+	 * @return the integral
+	 */
+	private static double threeCentre(ContractedGaussian a, ContractedGaussian c, ContractedGaussian d) {
+		final Vector3D aOrigin = a.getOrigin();
+		final Vector3D cOrigin = c.getOrigin();
+		final List<Double> aExps = a.getExponents();
+		final List<Double> aCoefs = a.getCoefficients();
+		final List<Double> aNorms = a.getPrimNorms();
+		final List<Double> cExps = c.getExponents();
+		final List<Double> cCoefs = c.getCoefficients();
+		final List<Double> cNorms = c.getPrimNorms();
+
+		final boolean twoCentre = d == null;
+		final Vector3D dOrigin = twoCentre ? cOrigin : d.getOrigin();
+		final Power dPower = twoCentre ? S_POWER : d.getPowers();
+		final int dPrims = twoCentre ? 1 : d.getExponents().size();
+
+		double sum = 0.0;
+		for (int pa = 0; pa < aExps.size(); pa++) {
+			final double aFactor = aCoefs.get(pa) * aNorms.get(pa);
+
+			for (int pc = 0; pc < cExps.size(); pc++) {
+				final double acFactor = aFactor * cCoefs.get(pc) * cNorms.get(pc);
+
+				for (int pd = 0; pd < dPrims; pd++) {
+					final double dFactor = twoCentre ? 1.0 : d.getCoefficients().get(pd) * d.getPrimNorms().get(pd);
+					final double dAlpha = twoCentre ? 0.0 : d.getExponents().get(pd);
+
+					sum += acFactor * dFactor * RYS.coulombRepulsion(aOrigin, 1.0, a.getPowers(), aExps.get(pa),
+							aOrigin, 1.0, S_POWER, 0.0, cOrigin, 1.0, c.getPowers(), cExps.get(pc), dOrigin, 1.0,
+							dPower, dAlpha);
+				}
+			}
+		}
+
+		return a.getNormalization() * c.getNormalization() * (twoCentre ? 1.0 : d.getNormalization()) * sum;
+	}
+
+	/**
+	 * The number of auxiliary basis functions.
+	 *
+	 * @return the number of fitting functions
+	 */
+	public int getNumberOfAuxiliaryFunctions() {
+		return getNumberOfFactors();
+	}
+
+	/**
+	 * The auxiliary basis the integrals are fitted with.
+	 *
+	 * @return the auxiliary basis
+	 */
+	public BasisSetLibrary getAuxiliaryBasis() {
+		return auxiliaryBasis;
+	}
+}
@@ -0,0 +1,399 @@
+package name.mjw.jquante.math.qm;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hipparchus.linear.RealMatrix;
+
+import name.mjw.jquante.math.BlockSparseMatrix;
+import name.mjw.jquante.math.DenseMatrix;
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import net.jafama.FastMath;
+
+/**
+ * Forms the closed shell density of a Fock matrix without diagonalising it, by
+ * trace resetting fourth order (TRS4) purification.
+ * <p>
+ * The Fock matrix is transformed to the orthogonal basis of
+ * {@link Overlap#getOrthogonalisation()}, and its spectrum is mapped onto [0,
+ * 1], lowest orbital highest. When no functions are dropped as linear
+ * dependencies the orthogonalisation, S<sup>-1/2</sup>, is square and
+ * symmetric, and it is kept as a {@link BlockSparseMatrix}, blocked by atom,
+ * so that X'FX and the final XPX' are block sparse products too. Only the
+ * rectangular orthogonalisation of a basis with linear dependencies is
+ * applied densely. Each iteration then applies the polynomial of
+ * TRS4, F + &xi;G with &xi; chosen to keep the trace at the number of
+ * occupied orbitals, until X is idempotent. F + &xi;G maps [0, 1] into itself
+ * only for 0 &le; &xi; &le; 6, and outside of that range one of the second
+ * order polynomials X<sup>2</sup> and 2X - X<sup>2</sup> moves the trace
+ * towards the number of occupied orbitals instead. A final McWeeny step, 3X<sup>2</sup> -
+ * 2X<sup>3</sup>, cleans up the idempotency. The iterations work on a
+ * {@link BlockSparseMatrix}, blocked by atom, which drops the blocks whose norm
+ * is below a threshold, so the products get cheaper as the density becomes
+ * sparse.
+ * <p>
+ * The block sparse orthogonalisation, or the dense work matrices of a
+ * rectangular one, are formed on first use and reused by later densities with
+ * the same orthogonalisation. A purifier is not thread safe.
+ *
+ * @author mjw99
+ * @see "A. M. N. Niklasson, C. J. Tymczak and M. Challacombe, J. Chem. Phys.
+ *      118, 8611 (2003)"
+ * @see "R. McWeeny, Rev. Mod. Phys. 32, 335 (1960)"
+ */
+public final class DensityPurifier {
+
+	/** Logger object. */
+	private static final Logger LOG = LogManager.getLogger(DensityPurifier.class);
+
+	/** The smallest &xi; for which F + &xi;G maps [0, 1] into itself. */
+	private static final double TRS4_GAMMA_MIN = 0.0;
+
+	/** The largest &xi; for which F + &xi;G maps [0, 1] into itself. */
+	private static final double TRS4_GAMMA_MAX = 6.0;
+
+	/** The default norm below which blocks are dropped. */
+	public static final double DEFAULT_THRESHOLD = 1e-12;
+
+	/** The default idempotency error, tr(X - X<sup>2</sup>), to stop at. */
+	public static final double DEFAULT_IDEMPOTENCY_TOLERANCE = 1e-10;
+
+	/** The default maximum number of purification iterations. */
+	public static final int DEFAULT_MAX_ITERATIONS = 100;
+
+	/** The norm below which blocks are dropped. */
+	private double threshold = DEFAULT_THRESHOLD;
+
+	/** The idempotency error to stop at. */
+	private double idempotencyTolerance = DEFAULT_IDEMPOTENCY_TOLERANCE;
+
+	/** The maximum number of purification iterations. */
+	private int maxIterations = DEFAULT_MAX_ITERATIONS;
+
+	/** The number of iterations of the last purification. */
+	private int iterations;
+
+	/** The orthogonalisation matrix the work matrices were allocated for. */
+	private RealMatrix orthogonalisation;
+
+	/** The block sizes that xBlocks was blocked by. */
+	private int[] xBlockSizes;
+
+	/** The threshold that xBlocks was formed with. */
+	private double xThreshold;
+
+	/** The square orthogonalisation matrix X, block sparse. */
+	private BlockSparseMatrix xBlocks;
+
+	/** The rectangular orthogonalisation matrix X, copied. */
+	private DenseMatrix x;
+
+	/** The Fock matrix, copied. */
+	private DenseMatrix fock;
+
+	/** FX. */
+	private DenseMatrix fx;
+
+	/** X'FX, and later the purified density, in the orthogonal basis. */
+	private DenseMatrix orthogonal;
+
+	/** XP. */
+	private DenseMatrix xp;
+
+	/** XPX'. */
+	private DenseMatrix density;
+
+	/**
+	 * Form the density of the lowest orbitals of a Fock matrix, with the
+	 * orthogonal basis taken as a single block.
+	 *
+	 * @param fockMatrix      the N x N Fock matrix
+	 * @param overlap         the overlap matrix
+	 * @param noOfOccupancies the number of doubly occupied orbitals
+	 * @return the density, &Sigma;<sub>i</sub> C<sub>i</sub>
+	 *         C<sub>i</sub><sup>T</sup> over the occupied orbitals
+	 * @throws IllegalArgumentException if there are more occupied orbitals than
+	 *                                  linearly independent functions
+	 */
+	public Density purify(RealMatrix fockMatrix, Overlap overlap, int noOfOccupancies) {
+		return purify(fockMatrix, overlap, noOfOccupancies, null);
+	}
+
+	/**
+	 * Form the density of the lowest orbitals of a Fock matrix. If no functions
+	 * are dropped as linear dependencies, each orthogonal function stays with
+	 * the atom of its basis function, and the products are blocked by atom.
+	 * Otherwise the orthogonal basis is a single block.
+	 *
+	 * @param fockMatrix      the N x N Fock matrix
+	 * @param overlap         the overlap matrix
+	 * @param noOfOccupancies the number of doubly occupied orbitals
+	 * @param atomBlockSizes  the number of basis functions on each atom, see
+	 *                        {@link BasisSetLibrary#getAtomBlockSizes()}, or
+	 *                        null for a single block
+	 * @return the density, &Sigma;<sub>i</sub> C<sub>i</sub>
+	 *         C<sub>i</sub><sup>T</sup> over the occupied orbitals
+	 * @throws IllegalArgumentException if there are more occupied orbitals than
+	 *                                  linearly independent functions, or the
+	 *                                  atom blocks do not cover the basis
+	 */
+	public Density purify(RealMatrix fockMatrix, Overlap overlap, int noOfOccupancies, int[] atomBlockSizes) {
+		final RealMatrix orth = overlap.getOrthogonalisation();
+		final int n = orth.getRowDimension();
+		final int m = orth.getColumnDimension();
+
+		if (noOfOccupancies < 0 || noOfOccupancies > m) {
+			throw new IllegalArgumentException("Can not occupy " + noOfOccupancies + " of " + m + " orbitals");
+		}
+		if (atomBlockSizes != null && IntStream.of(atomBlockSizes).sum() != n) {
+			throw new IllegalArgumentException("Atom blocks cover " + IntStream.of(atomBlockSizes).sum() + " of "
+					+ n + " basis functions");
+		}
+		final int[] blockSizes = atomBlockSizes != null && m == n ? atomBlockSizes : new int[] { m };
+
+		// F' = X'FX, with its spectrum mapped onto [0, 1], reversed
+		final BlockSparseMatrix identity = BlockSparseMatrix.identity(blockSizes);
+		BlockSparseMatrix p = mapSpectrum(transform(fockMatrix, orth, blockSizes), identity);
+		BlockSparseMatrix p2 = p.multiply(p, threshold);
+
+		final double occupied = noOfOccupancies;
+		double error = Double.MAX_VALUE;
+		double previousError;
+		iterations = 0;
+
+		while (true) {
+			final double trP = p.trace();
+			final double trP2 = p2.trace();
+			final double trP3 = p2.traceOfProduct(p);
+			final double trP4 = p2.traceOfProduct(p2);
+
+			previousError = error;
+			error = trP - trP2;
+
+			// idempotent, or as near as the dropped blocks allow
+			if (FastMath.abs(trP - occupied) < 0.5 && (FastMath.abs(error) < idempotencyTolerance
+					|| FastMath.abs(error) < FastMath.sqrt(idempotencyTolerance)
+							&& FastMath.abs(error) >= FastMath.abs(previousError))) {
+				break;
+			}
+			if (iterations == maxIterations) {
+				LOG.warn("Purification not converged after {} iterations, idempotency error {}", maxIterations,
+						error);
+				break;
+			}
+			iterations++;
+
+			// F = P^2(4P - 3P^2) and G = P^2(1 - P)^2
+			final double trF = 4.0 * trP3 - 3.0 * trP4;
+			final double trG = trP2 - 2.0 * trP3 + trP4;
+			final double xi = trG == 0.0 ? -1.0 : (occupied - trF) / trG;
+
+			if (xi > TRS4_GAMMA_MAX) {
+				p = p.add(2.0, p2, -1.0, threshold);
+			} else if (xi < TRS4_GAMMA_MIN) {
+				p = p2;
+			} else {
+				// F + xi G = P^2 (xi + (4 - 2xi)P + (xi - 3)P^2)
+				p = polynomial(p, p2, identity, xi, 4.0 - 2.0 * xi, xi - 3.0);
+			}
+			p2 = p.multiply(p, threshold);
+		}
+
+		LOG.debug("Purification took {} iterations, idempotency error {}, {} of {} blocks", iterations, error,
+				p.getNumberOfBlocks(), blockSizes.length * blockSizes.length);
+
+		// McWeeny, P = P^2(3 - 2P), then D = XPX'
+		return backTransform(polynomial(p, p2, identity, 3.0, -2.0, 0.0), n);
+	}
+
+	/**
+	 * The Fock matrix in the orthogonal basis, X'FX.
+	 *
+	 * @param fockMatrix the N x N Fock matrix
+	 * @param orth       the N x M orthogonalisation matrix
+	 * @param blockSizes the blocks of the orthogonal basis
+	 * @return X'FX, block sparse
+	 */
+	private BlockSparseMatrix transform(RealMatrix fockMatrix, RealMatrix orth, int[] blockSizes) {
+		if (orth.getRowDimension() == orth.getColumnDimension()) {
+			// X = S^-1/2 is symmetric, so X'FX = XFX
+			if (orth != orthogonalisation || !Arrays.equals(blockSizes, xBlockSizes) || threshold != xThreshold) {
+				orthogonalisation = orth;
+				xBlockSizes = blockSizes.clone();
+				xThreshold = threshold;
+				xBlocks = BlockSparseMatrix.of(orth, blockSizes, threshold);
+				x = null;
+			}
+
+			final BlockSparseMatrix f = BlockSparseMatrix.of(fockMatrix, blockSizes, threshold);
+
+			return xBlocks.multiply(f, threshold).multiply(xBlocks, threshold);
+		}
+
+		if (orth != orthogonalisation || x == null) {
+			allocateWorkMatrices(orth);
+		}
+
+		DenseMatrix.multiply(fock.copyFrom(fockMatrix), x, fx);
+		DenseMatrix.transposeMultiply(x, fx, orthogonal);
+
+		return BlockSparseMatrix.of(orthogonal, blockSizes, threshold);
+	}
+
+	/**
+	 * The density in the atomic orbital basis, XPX'.
+	 *
+	 * @param p the density in the orthogonal basis
+	 * @param n the number of basis functions
+	 * @return the density
+	 */
+	private Density backTransform(BlockSparseMatrix p, int n) {
+		if (x == null) {
+			return new Density(xBlocks.multiply(p, threshold).multiply(xBlocks, threshold));
+		}
+
+		final Density result = new Density(n);
+
+		p.copyTo(orthogonal);
+		DenseMatrix.multiply(x, orthogonal, xp);
+		DenseMatrix.multiplyTranspose(xp, x, density);
+		density.copyTo(result);
+
+		return result;
+	}
+
+	/**
+	 * The polynomial P<sup>2</sup>(a + bP + cP<sup>2</sup>).
+	 *
+	 * @param p        P
+	 * @param p2       P<sup>2</sup>
+	 * @param identity the identity
+	 * @param a        the constant coefficient
+	 * @param b        the coefficient of P
+	 * @param c        the coefficient of P<sup>2</sup>
+	 * @return the polynomial
+	 */
+	private BlockSparseMatrix polynomial(BlockSparseMatrix p, BlockSparseMatrix p2, BlockSparseMatrix identity,
+			double a, double b, double c) {
+		final BlockSparseMatrix factor = identity.add(a, p, b, 0.0).add(1.0, p2, c, threshold);
+
+		return p2.multiply(factor, threshold);
+	}
+
+	/**
+	 * Map the spectrum of a symmetric matrix onto [0, 1], reversed, with its
+	 * Gershgorin bounds.
+	 *
+	 * @param a        the matrix
+	 * @param identity the identity
+	 * @return (max - a)/(max - min)
+	 */
+	private BlockSparseMatrix mapSpectrum(BlockSparseMatrix a, BlockSparseMatrix identity) {
+		final double[] bounds = a.getGershgorinBounds();
+		final double min = bounds[0];
+		final double max = bounds[1];
+		final double scale = max > min ? 1.0 / (max - min) : 1.0;
+
+		return identity.add(max * scale, a, -scale, threshold);
+	}
+
+	/**
+	 * Allocate the dense work matrices for a rectangular orthogonalisation
+	 * matrix.
+	 *
+	 * @param orth the N x M orthogonalisation matrix
+	 */
+	private void allocateWorkMatrices(RealMatrix orth) {
+		final int n = orth.getRowDimension();
+		final int m = orth.getColumnDimension();
+
+		this.orthogonalisation = orth;
+		this.xBlocks = null;
+		this.xBlockSizes = null;
+		this.x = new DenseMatrix(orth);
+		this.fock = new DenseMatrix(n, n);
+		this.fx = new DenseMatrix(n, m);
+		this.orthogonal = new DenseMatrix(m, m);
+		this.xp = new DenseMatrix(n, m);
+		this.density = new DenseMatrix(n, n);
+	}
+
+	/**
+	 * Getter for property threshold.
+	 *
+	 * @return Value of property threshold.
+	 */
+	public double getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Setter for property threshold, the Frobenius norm below which blocks,
+	 * and products of blocks, are dropped. Zero keeps the products exact.
+	 *
+	 * @param threshold New value of property threshold.
+	 */
+	public void setThreshold(double threshold) {
+		if (threshold < 0.0) {
+			throw new IllegalArgumentException("Threshold must not be negative: " + threshold);
+		}
+
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Getter for property idempotencyTolerance.
+	 *
+	 * @return Value of property idempotencyTolerance.
+	 */
+	public double getIdempotencyTolerance() {
+		return idempotencyTolerance;
+	}
+
+	/**
+	 * Setter for property idempotencyTolerance, the tr(X - X<sup>2</sup>) at
+	 * which purification stops.
+	 *
+	 * @param idempotencyTolerance New value of property idempotencyTolerance.
+	 */
+	public void setIdempotencyTolerance(double idempotencyTolerance) {
+		if (idempotencyTolerance <= 0.0) {
+			throw new IllegalArgumentException("Idempotency tolerance must be positive: " + idempotencyTolerance);
+		}
+
+		this.idempotencyTolerance = idempotencyTolerance;
+	}
+
+	/**
+	 * Getter for property maxIterations.
+	 *
+	 * @return Value of property maxIterations.
+	 */
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	/**
+	 * Setter for property maxIterations.
+	 *
+	 * @param maxIterations New value of property maxIterations.
+	 */
+	public void setMaxIterations(int maxIterations) {
+		if (maxIterations < 0) {
+			throw new IllegalArgumentException("Maximum iterations must not be negative: " + maxIterations);
+		}
+
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * The number of iterations of the last purification.
+	 *
+	 * @return the number of iterations
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+}
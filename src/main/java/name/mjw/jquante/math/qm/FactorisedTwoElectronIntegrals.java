@@ -0,0 +1,289 @@
+package name.mjw.jquante.math.qm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Two-electron integrals held as a sum of products of three-index factors,
+ * (ij|kl) &asymp; &Sigma;<sub>L</sub> B<sub>L,ij</sub> B<sub>L,kl</sub>, as
+ * given by density fitting or by a Cholesky decomposition of the integral
+ * matrix.
+ * <p>
+ * Only the pairs i &ge; j of each factor are held, so storage grows as the
+ * number of factors times n(n+1)/2, rather than as n<sup>4</sup>/8. The
+ * Coulomb and exchange matrices are built from the factors as
+ * J<sub>ij</sub> = &Sigma;<sub>L</sub> B<sub>L,ij</sub> &Sigma;<sub>kl</sub>
+ * B<sub>L,kl</sub> D<sub>kl</sub>, and K = &Sigma;<sub>L</sub> B<sub>L</sub> D
+ * B<sub>L</sub>, with B<sub>L</sub> unpacked into a symmetric matrix.
+ *
+ * @author mjw99
+ */
+public abstract class FactorisedTwoElectronIntegrals {
+
+	/** The number of basis functions. */
+	private final int noOfBasisFunctions;
+
+	/** B[L][ij], ij = i(i+1)/2 + j. */
+	private final double[][] factors;
+
+	/**
+	 * Wrap a set of factors.
+	 *
+	 * @param noOfBasisFunctions the number of basis functions
+	 * @param factors            B[L][ij], ij = i(i+1)/2 + j
+	 */
+	protected FactorisedTwoElectronIntegrals(int noOfBasisFunctions, double[][] factors) {
+		this.noOfBasisFunctions = noOfBasisFunctions;
+		this.factors = factors;
+	}
+
+	/**
+	 * The factorised integral (ij|kl).
+	 *
+	 * @param i Index of contracted Gaussian function i.
+	 * @param j Index of contracted Gaussian function j.
+	 * @param k Index of contracted Gaussian function k.
+	 * @param l Index of contracted Gaussian function l.
+	 * @return &Sigma;<sub>L</sub> B<sub>L,ij</sub> B<sub>L,kl</sub>
+	 */
+	public double get(int i, int j, int k, int l) {
+		final int ij = pairIndex(i, j);
+		final int kl = pairIndex(k, l);
+
+		double value = 0.0;
+		for (double[] row : factors) {
+			value += row[ij] * row[kl];
+		}
+
+		return value;
+	}
+
+	/**
+	 * The Coulomb matrix of a density, J<sub>ij</sub> = &Sigma;<sub>kl</sub>
+	 * (ij|kl) D<sub>kl</sub>.
+	 *
+	 * @param density the density matrix
+	 * @return J
+	 */
+	public double[][] coulomb(double[][] density) {
+		final int n = noOfBasisFunctions;
+		final int noOfFactors = factors.length;
+
+		// the contracted density, gamma_L = sum_kl B_L,kl D_kl
+		final double[] gamma = new double[noOfFactors];
+		IntStream.range(0, noOfFactors).parallel().forEach(p -> {
+			final double[] row = factors[p];
+			double sum = 0.0;
+
+			for (int k = 0, kl = 0; k < n; k++) {
+				for (int l = 0; l < k; l++, kl++) {
+					sum += row[kl] * (density[k][l] + density[l][k]);
+				}
+				sum += row[kl++] * density[k][k];
+			}
+
+			gamma[p] = sum;
+		});
+
+		final double[][] coulomb = new double[n][n];
+		IntStream.range(0, n).parallel().forEach(i -> {
+			final int ii = i * (i + 1) / 2;
+
+			for (int j = 0; j <= i; j++) {
+				double sum = 0.0;
+				for (int p = 0; p < noOfFactors; p++) {
+					sum += factors[p][ii + j] * gamma[p];
+				}
+
+				coulomb[i][j] = sum;
+				coulomb[j][i] = sum;
+			}
+		});
+
+		return coulomb;
+	}
+
+	/**
+	 * The exchange matrix of a symmetric density, K<sub>ij</sub> =
+	 * &Sigma;<sub>kl</sub> (ik|jl) D<sub>kl</sub>.
+	 *
+	 * @param density the density matrix
+	 * @return K
+	 */
+	public double[][] exchange(double[][] density) {
+		final int n = noOfBasisFunctions;
+		// one task per factor, each of the same cost
+		final double[] costs = new double[factors.length];
+		Arrays.fill(costs, 1.0);
+
+		final List<double[][]> exchanges = Collections.synchronizedList(new ArrayList<>());
+
+		new LoadBalancedScheduler(costs).run(() -> new LoadBalancedScheduler.Worker() {
+
+			/** The partial K of this worker. */
+			private final double[][] exchange = new double[n][n];
+
+			/** B_L unpacked. */
+			private final double[][] b = new double[n][n];
+
+			/** B_L D. */
+			private final double[][] bd = new double[n][n];
+
+			@Override
+			public void run(int p) {
+				unpack(factors[p], b);
+				multiply(b, density, bd);
+
+				// K += (B_L D) B_L, only i >= j as K is symmetric
+				for (int i = 0; i < n; i++) {
+					final double[] bdi = bd[i];
+					final double[] ki = exchange[i];
+
+					for (int j = 0; j <= i; j++) {
+						final double[] bj = b[j];
+						double sum = 0.0;
+
+						for (int k = 0; k < n; k++) {
+							sum += bdi[k] * bj[k];
+						}
+
+						ki[j] += sum;
+					}
+				}
+			}
+
+			@Override
+			public void close() {
+				exchanges.add(exchange);
+			}
+		});
+
+		final double[][] exchange = new double[n][n];
+		for (double[][] partial : exchanges) {
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j <= i; j++) {
+					exchange[i][j] += partial[i][j];
+				}
+			}
+		}
+
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < i; j++) {
+				exchange[j][i] = exchange[i][j];
+			}
+		}
+
+		return exchange;
+	}
+
+	/**
+	 * Transform the factors to a pair of orbital sets, T<sub>L,pq</sub> =
+	 * &Sigma;<sub>ij</sub> C<sub>pi</sub> B<sub>L,ij</sub> C<sub>qj</sub>, so
+	 * that (pq|rs) &asymp; &Sigma;<sub>L</sub> T<sub>L,pq</sub>
+	 * T<sub>L,rs</sub>. This replaces the four-index transformation of the
+	 * integrals by one two-index transformation per factor.
+	 *
+	 * @param left  the coefficients of the first orbitals, one orbital per row
+	 * @param right the coefficients of the second orbitals, one orbital per row
+	 * @return T[L][p][q]
+	 */
+	public double[][][] transform(double[][] left, double[][] right) {
+		final int n = noOfBasisFunctions;
+		final double[][][] transformed = new double[factors.length][][];
+		final double[][] rightTransposed = new double[n][right.length];
+
+		for (int q = 0; q < right.length; q++) {
+			for (int j = 0; j < n; j++) {
+				rightTransposed[j][q] = right[q][j];
+			}
+		}
+
+		IntStream.range(0, factors.length).parallel().forEach(p -> {
+			final double[][] b = new double[n][n];
+			final double[][] cb = new double[left.length][n];
+			final double[][] cbc = new double[left.length][right.length];
+
+			unpack(factors[p], b);
+			multiply(left, b, cb);
+			multiply(cb, rightTransposed, cbc);
+
+			transformed[p] = cbc;
+		});
+
+		return transformed;
+	}
+
+	/**
+	 * Unpack a factor into a symmetric matrix.
+	 *
+	 * @param row the factor, B[ij], ij = i(i+1)/2 + j
+	 * @param b   receives B
+	 */
+	private void unpack(double[] row, double[][] b) {
+		for (int i = 0, ij = 0; i < noOfBasisFunctions; i++) {
+			for (int j = 0; j <= i; j++, ij++) {
+				b[i][j] = row[ij];
+				b[j][i] = row[ij];
+			}
+		}
+	}
+
+	/**
+	 * c = a b.
+	 *
+	 * @param a the left matrix
+	 * @param b the right matrix
+	 * @param c receives the product
+	 */
+	private static void multiply(double[][] a, double[][] b, double[][] c) {
+		for (int i = 0; i < a.length; i++) {
+			final double[] ai = a[i];
+			final double[] ci = c[i];
+			Arrays.fill(ci, 0.0);
+
+			for (int k = 0; k < ai.length; k++) {
+				final double aik = ai[k];
+				if (aik == 0.0) {
+					continue;
+				}
+
+				final double[] bk = b[k];
+				for (int j = 0; j < ci.length; j++) {
+					ci[j] += aik * bk[j];
+				}
+			}
+		}
+	}
+
+	/**
+	 * The number of basis functions.
+	 *
+	 * @return the number of basis functions
+	 */
+	public int getNumberOfBasisFunctions() {
+		return noOfBasisFunctions;
+	}
+
+	/**
+	 * The number of three-index factors.
+	 *
+	 * @return the number of factors
+	 */
+	public int getNumberOfFactors() {
+		return factors.length;
+	}
+
+	/**
+	 * The pair index of two basis functions.
+	 *
+	 * @param i index of basis function i
+	 * @param j index of basis function j
+	 * @return max(i,j)(max(i,j)+1)/2 + min(i,j)
+	 */
+	protected static int pairIndex(int i, int j) {
+		return i >= j ? i * (i + 1) / 2 + j : j * (j + 1) / 2 + i;
+	}
+}
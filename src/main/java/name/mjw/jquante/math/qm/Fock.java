@@ -3,7 +3,9 @@ package name.mjw.jquante.math.qm;
 
 import org.hipparchus.linear.Array2DRowRealMatrix;
 
+import name.mjw.jquante.math.BlockSparseMatrix;
 import name.mjw.jquante.math.MathUtil;
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
 
 /**
  * Represents the Fock matrix.
@@ -48,6 +50,17 @@ public final class Fock extends Array2DRowRealMatrix {
 		setSubMatrix((hCore.add(gMatrix)).getData(), 0, 0);
 	}
 
+	/**
+	 * The blocks of this Fock matrix between the basis functions of each pair of
+	 * atoms, as {@link Density#toBlockSparse(BasisSetLibrary)}.
+	 *
+	 * @param basisSetLibrary the basis functions of the matrix
+	 * @return the block sparse copy
+	 */
+	public BlockSparseMatrix toBlockSparse(BasisSetLibrary basisSetLibrary) {
+		return BlockSparseMatrix.of(this, basisSetLibrary.getAtomBlockSizes(), 0.0);
+	}
+
 	/**
 	 * Returns a string representation of this Fock matrix, showing all elements.
 	 *
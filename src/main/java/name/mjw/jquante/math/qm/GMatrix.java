@@ -1,17 +1,29 @@
 package name.mjw.jquante.math.qm;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.stream.IntStream;
 
 import org.hipparchus.linear.Array2DRowRealMatrix;
+import org.hipparchus.linear.RealMatrix;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import name.mjw.jquante.math.BlockSparseMatrix;
 import name.mjw.jquante.math.MathUtil;
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.math.qm.basis.Shell;
+import name.mjw.jquante.math.qm.basis.ShellPair;
+import name.mjw.jquante.math.qm.integral.Integrals;
 import name.mjw.jquante.math.qm.integral.IntegralsUtil;
+import name.mjw.jquante.math.qm.integral.JKContraction;
+
+import net.jafama.FastMath;
 
 /**
  * Represents the G Matrix used to form the Fock matrix. Contains the
@@ -33,8 +45,26 @@ public final class GMatrix extends Array2DRowRealMatrix {
 	/** The electron density matrix used to build the G matrix. */
 	private Density density;
 
-	/** The list of partial G matrices computed per thread during parallel evaluation. */
-	private ArrayList<GMatrix> partialGMatrixList;
+	/** The partial G matrices accumulated by the workers of the current build. */
+	private transient List<double[][]> partialGMatrices;
+
+	/** Zeroed partial G matrices kept from earlier builds, for reuse. */
+	private transient Deque<double[][]> freeAccumulators;
+
+	/** The partial K matrices accumulated by the workers of a separate J and K build. */
+	private transient List<double[][]> partialExchangeMatrices;
+
+	/** Whether the current build accumulates J and K separately, rather than G. */
+	private transient boolean separateJK;
+
+	/** The Coulomb matrix J of the last separate J and K build. */
+	private transient RealMatrix coulomb;
+
+	/** The exchange matrix K of the last separate J and K build. */
+	private transient RealMatrix exchange;
+
+	/** The fraction of exchange in a separate J and K build, G = 2J - xK. */
+	private double exchangeScale = 1.0;
 
 	/**
 	 * Creates a new instance of square (NxN) Matrix
@@ -64,54 +94,155 @@ public final class GMatrix extends Array2DRowRealMatrix {
 	public void compute(SCFType scfType, TwoElectronIntegrals twoEI, Density density) {
 		this.twoEI = twoEI;
 		this.density = density;
+		this.separateJK = false;
 
 		LOG.debug("{}", density);
 
 		if (scfType == SCFType.HARTREE_FOCK_DIRECT) {
 			makeGMatrixDirect();
+		} else if (scfType == SCFType.HARTREE_FOCK_DENSITY_FITTING) {
+			makeGMatrixDensityFitted();
 		} else {
 			makeGMatrix();
 		}
 	}
 
+	/**
+	 * Form the Coulomb and exchange matrices of each of several density
+	 * matrices from a single pass over the 2E integrals. Each integral, whether
+	 * stored, read from disk or computed on the fly, is contracted with all of
+	 * the densities, so that the J and K matrices of the alpha and beta
+	 * densities of an unrestricted SCF, or of the trial densities of a response
+	 * or multi-state calculation, cost one integral evaluation between them.
+	 * <p>
+	 * J and K of each density are left in {@link #getCoulomb()} and
+	 * {@link #getExchange()} of its GMatrix, which is set to 2J - xK, as by
+	 * {@link #computeJK(TwoElectronIntegrals, Density)}. Factorised integrals,
+	 * density fitted or Cholesky decomposed, are contracted with each density
+	 * in turn, as their cost is in the contraction.
+	 *
+	 * @param scfType   the SCFType
+	 * @param twoEI     the 2E integrals
+	 * @param gMatrices the G matrices to form, one per density
+	 * @param densities the Density matrices
+	 * @throws IllegalArgumentException if there is not one G matrix per density
+	 */
+	public static void compute(SCFType scfType, TwoElectronIntegrals twoEI, List<GMatrix> gMatrices,
+			List<Density> densities) {
+		if (gMatrices.size() != densities.size()) {
+			throw new IllegalArgumentException("Expected one G matrix per density, got " + gMatrices.size()
+					+ " G matrices for " + densities.size() + " densities");
+		}
+
+		final GMatrix[] targets = gMatrices.toArray(new GMatrix[0]);
+		for (int n = 0; n < targets.length; n++) {
+			targets[n].twoEI = twoEI;
+			targets[n].density = densities.get(n);
+			targets[n].separateJK = true;
+		}
+
+		if (targets.length == 0) {
+			return;
+		}
+
+		LOG.debug("compute() called for {} densities", targets.length);
+
+		if (scfType == SCFType.HARTREE_FOCK_DIRECT) {
+			makeGMatricesDirect(targets);
+		} else if (scfType == SCFType.HARTREE_FOCK_DENSITY_FITTING) {
+			for (GMatrix target : targets) {
+				target.makeGMatrixDensityFitted();
+			}
+		} else {
+			makeGMatrices(targets);
+		}
+	}
+
 	/**
 	 * Make the G matrix <br>
 	 * i.e. Form the 2J-K integrals corresponding to a density matrix
+	 * 
+	 * The stored integrals are read once each, in the order of their canonical
+	 * index, and each is scattered to the J and K elements of all of its
+	 * symmetry-equivalent index permutations.
 	 */
 	protected void makeGMatrix() {
+		makeGMatrices(new GMatrix[] { this });
+	}
+
+	/**
+	 * Make the G matrices of several densities from one pass over the
+	 * integrals, see {@link #makeGMatrix()}.
+	 *
+	 * @param targets the G matrices, with their 2E integrals and densities set
+	 */
+	private static void makeGMatrices(GMatrix[] targets) {
+		final TwoElectronIntegrals twoEI = targets[0].twoEI;
+
 		// make sure if this is really the case just in case TwoElectronIntegrals class
 		// decided other wise
 		if (twoEI.isOnTheFly()) {
-			makeGMatrixDirect();
+			makeGMatricesDirect(targets);
+			return;
+		}
+
+		if (twoEI.isDiskBacked()) {
+			makeGMatricesFromDisk(targets);
+			return;
+		}
+
+		if (twoEI.isCholeskyDecomposed()) {
+			LOG.debug("makeGMatrix() called on Cholesky vectors");
+			for (GMatrix target : targets) {
+				target.makeGMatrixFactorised(twoEI.getCholeskyIntegrals());
+			}
+			return;
+		}
+
+		if (twoEI.getTwoEIntegralStore() instanceof SparseTwoElectronIntegralStore sparse) {
+			makeGMatricesSparse(targets, sparse);
 			return;
 		}
 
 		LOG.debug("makeGMatrix() called");
-		final int noOfBasisFunctions = density.getRowDimension();
+		final int noOfBasisFunctions = targets[0].density.getRowDimension();
 
-		final double[][] densityData = density.getData();
-		final double[] ints = twoEI.getTwoEIntegrals();
+		final double[][][] dMatrices = densityData(targets);
+		final TwoElectronIntegralStore ints = twoEI.getTwoEIntegralStore();
 
-		IntStream.range(0, noOfBasisFunctions).parallel().forEach(i -> {
-			for (int j = 0; j < i + 1; j++) {
-				double val = 0.0;
+		startPartialGMatrices(targets);
 
-				for (int k = 0; k < noOfBasisFunctions; k++) {
-					for (int l = 0; l < noOfBasisFunctions; l++) {
-						int indexJ = IntegralsUtil.ijkl2intindex(i, j, k, l);
-						int indexK1 = IntegralsUtil.ijkl2intindex(i, k, j, l);
-						int indexK2 = IntegralsUtil.ijkl2intindex(i, l, k, j);
+		// one task per i, reading the contiguous run of stored integrals whose
+		// bra pair is ij, j <= i; each is scattered to all of its permutations
+		final double[] costs = new double[noOfBasisFunctions];
+		for (int i = 0; i < noOfBasisFunctions; i++) {
+			final double ii = i * (i + 1) / 2.0;
+			costs[i] = (i + 1) * (ii + 1) + ii;
+		}
+
+		new LoadBalancedScheduler(costs).run(() -> new PartialGMatrixWorker(targets, dMatrices) {
+			@Override
+			public void run(int i) {
+				for (int j = 0; j < (i + 1); j++) {
+					final long ij = (long) i * (i + 1) / 2 + j;
+					long index = ij * (ij + 1) / 2;
+
+					for (int k = 0; k < (i + 1); k++) {
+						final int lMax = (k == i) ? j : k;
 
-						val += (2.0 * ints[indexJ] - 0.5 * ints[indexK1] - 0.5 * ints[indexK2])
-								* densityData[k][l];
+						for (int l = 0; l <= lMax; l++, index++) {
+							final double value = ints.get(index);
+
+							if (value != 0.0) {
+								scatter(i, j, k, l, value);
+							}
+						}
 					}
 				}
-
-				this.setEntry(i, j, val);
-				this.setEntry(j, i, val);
 			}
 		});
-		LOG.debug(this);
+
+		sumPartialGMatrices(targets);
 	}
 
 	/**
@@ -122,124 +253,679 @@ public final class GMatrix extends Array2DRowRealMatrix {
 	 * storage.
 	 */
 	protected void makeGMatrixDirect() {
+		makeGMatricesDirect(new GMatrix[] { this });
+	}
+
+	/**
+	 * Make the G matrices of several densities from one evaluation of the
+	 * integrals on the fly, see {@link #makeGMatrixDirect()}.
+	 *
+	 * @param targets the G matrices, with their 2E integrals and densities set
+	 */
+	private static void makeGMatricesDirect(GMatrix[] targets) {
 		LOG.debug("makeGMatrixDirect() called");
 
-		// allocate memory for partial GMatrices
-		List<GMatrix> threadSafeList = Collections.synchronizedList(new ArrayList<>());
+		makePartialGMatricesDirect(targets, densityData(targets), false);
 
-		int noOfBasisFunctions = density.getRowDimension();
+		sumPartialGMatrices(targets);
+	}
+
+	/**
+	 * Update the G matrix for a change of density, G(D) = G(D') + G(D - D'),
+	 * where this matrix holds G(D') on entry.
+	 * <p>
+	 * The integrals are computed on the fly, as for
+	 * {@link SCFType#HARTREE_FOCK_DIRECT}, but only for the quartets whose
+	 * Schwarz bound weighted by the largest difference density element they
+	 * touch is above the screening threshold. As an SCF converges the
+	 * difference density shrinks, and so does the number of quartets computed.
+	 * The screening errors accumulate from one update to the next, so G should
+	 * be rebuilt in full from time to time, see
+	 * {@link #compute(SCFType, TwoElectronIntegrals, Density)}.
+	 *
+	 * @param twoEI           the 2E integrals
+	 * @param density         the new Density matrix, D
+	 * @param previousDensity the Density matrix G was last built for, D'
+	 */
+	public void computeIncremental(TwoElectronIntegrals twoEI, Density density, Density previousDensity) {
+		LOG.debug("computeIncremental() called");
+
+		this.twoEI = twoEI;
+		this.density = density;
+		this.separateJK = false;
+
+		final double[][] deltaDensity = density.subtract(previousDensity).getData();
 
-		IntStream.range(0, noOfBasisFunctions).parallel().forEach(i -> {
+		makePartialGMatricesDirect(new GMatrix[] { this }, new double[][][] { deltaDensity }, true);
 
-			double[][] gMatrix = new double[noOfBasisFunctions][noOfBasisFunctions];
-			double[][] dMatrix = density.getData();
+		sumPartialGMatrices(true);
+	}
 
-			int[] idx = new int[8];
-			int[] jdx = new int[8];
-			int[] kdx = new int[8];
-			int[] ldx = new int[8];
+	/**
+	 * Form the GMatrix from separately built Coulomb and exchange matrices, G =
+	 * 2J - xK, where x is the {@link #getExchangeScale() exchange scale}.
+	 * <p>
+	 * The integrals are computed on the fly, a Schwarz screened shell quartet
+	 * at a time, and are contracted with the density by the integral engine as
+	 * they are computed, see
+	 * {@link Integrals#coulomb(ShellPair, ShellPair, double[][], double[][], double[][])}.
+	 * J and K remain available from {@link #getCoulomb()} and
+	 * {@link #getExchange()}.
+	 *
+	 * @param twoEI   the 2E integrals
+	 * @param density the Density matrix
+	 */
+	public void computeJK(TwoElectronIntegrals twoEI, Density density) {
+		LOG.debug("computeJK() called");
 
-			idx[0] = i;
-			jdx[1] = i;
-			jdx[2] = i;
-			idx[3] = i;
-			kdx[4] = i;
-			ldx[5] = i;
-			kdx[6] = i;
-			ldx[7] = i;
+		this.twoEI = twoEI;
+		this.density = density;
+		this.separateJK = true;
+
+		final BasisSetLibrary basisSetLibrary = twoEI.getBasisSetLibrary();
+		final List<Shell> shells = basisSetLibrary.getShells();
+		final int noOfShells = shells.size();
+		final SchwarzScreening screening = twoEI.getSchwarzScreening();
+		final double[][] dMatrix = density.getData();
+
+		final int[] braShellA = new int[noOfShells * (noOfShells + 1) / 2];
+		final int[] braShellB = new int[braShellA.length];
+		for (int a = 0, ab = 0; a < noOfShells; a++) {
+			for (int b = 0; b <= a; b++, ab++) {
+				braShellA[ab] = a;
+				braShellB[ab] = b;
+			}
+		}
+
+		final GMatrix[] targets = { this };
+		startPartialGMatrices(targets);
+
+		// each worker accumulates J in its partial G matrix, and K alongside
+		new LoadBalancedScheduler(TwoElectronIntegrals.braShellPairCosts(shells))
+				.run(() -> new PartialGMatrixWorker(targets, new double[][][] { dMatrix }) {
+					@Override
+					public void run(int ab) {
+						final int a = braShellA[ab];
+						final int b = braShellB[ab];
+						final ShellPair pairAB = basisSetLibrary.getShellPair(a, b);
+
+						for (int c = 0; c <= a; c++) {
+							for (int d = 0; d <= c; d++) {
+								if (c * (c + 1) / 2 + d > ab || screening.isNegligibleShellQuartet(a, b, c, d)) {
+									continue;
+								}
 
+								Integrals.coulomb(pairAB, basisSetLibrary.getShellPair(c, d), dMatrix,
+										gMatrices[0], kMatrices[0]);
+							}
+						}
+					}
+				});
+
+		sumPartialJK();
+	}
+
+	/**
+	 * The Coulomb matrix of the last separate J and K build, see
+	 * {@link #computeJK(TwoElectronIntegrals, Density)} and
+	 * {@link #compute(SCFType, TwoElectronIntegrals, List, List)}.
+	 *
+	 * @return J, or null if J and K have not been built separately
+	 */
+	public RealMatrix getCoulomb() {
+		return coulomb;
+	}
+
+	/**
+	 * The exchange matrix of the last separate J and K build, see
+	 * {@link #computeJK(TwoElectronIntegrals, Density)} and
+	 * {@link #compute(SCFType, TwoElectronIntegrals, List, List)}.
+	 *
+	 * @return K, or null if J and K have not been built separately
+	 */
+	public RealMatrix getExchange() {
+		return exchange;
+	}
+
+	/**
+	 * Get the value of exchangeScale
+	 *
+	 * @return the fraction x of exchange in G = 2J - xK
+	 */
+	public double getExchangeScale() {
+		return exchangeScale;
+	}
+
+	/**
+	 * Set the value of exchangeScale, the fraction x of exchange in G = 2J - xK
+	 * formed by {@link #computeJK(TwoElectronIntegrals, Density)}. It is 1 for
+	 * Hartree-Fock, and less for a hybrid functional.
+	 *
+	 * @param exchangeScale new value of exchangeScale
+	 */
+	public void setExchangeScale(double exchangeScale) {
+		this.exchangeScale = exchangeScale;
+	}
+
+	/**
+	 * Compute the integrals on the fly into one partial G matrix per worker and
+	 * target, each integral being computed once for all of the targets.
+	 *
+	 * @param targets         the G matrices to accumulate for
+	 * @param dMatrices       the density matrix to contract with, per target
+	 * @param densityWeighted if true, also skip the quartets whose contribution
+	 *                        is bounded below the screening threshold by the
+	 *                        density elements they are contracted with
+	 */
+	private static void makePartialGMatricesDirect(GMatrix[] targets, double[][][] dMatrices,
+			boolean densityWeighted) {
+		final TwoElectronIntegrals twoEI = targets[0].twoEI;
+		int noOfBasisFunctions = dMatrices[0].length;
+
+		startPartialGMatrices(targets);
+
+		// build the Schwarz bounds once, outside of the parallel region
+		final SchwarzScreening screening = twoEI.getSchwarzScreening();
+		final double threshold = screening.getThreshold();
+
+		// bound every quartet of a bra pair by the largest Schwarz bound and density
+		double maxPairBound = 0.0;
+		double maxDensity = 0.0;
+		for (int i = 0; i < noOfBasisFunctions; i++) {
 			for (int j = 0; j < (i + 1); j++) {
-				int ij = i * (i + 1) / 2 + j;
-
-				jdx[0] = j;
-				idx[1] = j;
-				idx[2] = j;
-				jdx[3] = j;
-				ldx[4] = j;
-				kdx[5] = j;
-				ldx[6] = j;
-				kdx[7] = j;
-				for (int k = 0; k < noOfBasisFunctions; k++) {
-					kdx[0] = k;
-					kdx[1] = k;
-					ldx[2] = k;
-					ldx[3] = k;
-					jdx[4] = k;
-					jdx[5] = k;
-					idx[6] = k;
-					idx[7] = k;
-					for (int l = 0; l < (k + 1); l++) {
-						int kl = k * (k + 1) / 2 + l;
-
-						if (ij >= kl) {
-							double twoEIntVal = twoEI.compute2E(i, j, k, l);
-							double twoEIntVal2 = twoEIntVal + twoEIntVal;
-							double twoEIntValHalf = 0.5 * twoEIntVal;
-
-							boolean[] validIdx = new boolean[8];
-							validIdx[0] = true;
-
-							setGMatrixElements(gMatrix, dMatrix, i, j, k, l, twoEIntVal2, twoEIntValHalf);
-
-							// special case
-							if ((i | j | k | l) == 0)
+				maxPairBound = FastMath.max(maxPairBound, screening.getPairBound(i, j));
+				for (double[][] dMatrix : dMatrices) {
+					maxDensity = FastMath.max(maxDensity, FastMath.abs(dMatrix[i][j]));
+				}
+			}
+		}
+		final double braBoundScale = maxPairBound * 4.0 * maxDensity;
+
+		// one task per i; task i visits every canonical kl <= ij, j <= i
+		final double[] costs = new double[noOfBasisFunctions];
+		for (int i = 0; i < noOfBasisFunctions; i++) {
+			final double ii = i * (i + 1) / 2.0;
+			costs[i] = (i + 1) * (ii + 1) + ii;
+		}
+
+		new LoadBalancedScheduler(costs).run(() -> new PartialGMatrixWorker(targets, dMatrices) {
+			@Override
+			public void run(int i) {
+				for (int j = 0; j < (i + 1); j++) {
+					int ij = i * (i + 1) / 2 + j;
+					final double braBound = screening.getPairBound(i, j);
+
+					if (densityWeighted && braBound * braBoundScale < threshold) {
+						continue;
+					}
+
+					for (int k = 0; k < noOfBasisFunctions; k++) {
+						for (int l = 0; l < (k + 1); l++) {
+							int kl = k * (k + 1) / 2 + l;
+
+							if (ij < kl) {
 								continue;
+							}
 
-							// else this is symmetry unique integral, so need to
-							// use this value for all 8 combinations (if unique)
-							ldx[0] = l;
-							ldx[1] = l;
-							kdx[2] = l;
-							kdx[3] = l;
-							idx[4] = l;
-							idx[5] = l;
-							jdx[6] = l;
-							jdx[7] = l;
-							validIdx[1] = true;
-							validIdx[2] = true;
-							validIdx[3] = true;
-							validIdx[4] = true;
-							validIdx[5] = true;
-							validIdx[6] = true;
-							validIdx[7] = true;
-
-							// filter unique elements
-							filterUniqueElements(idx, jdx, kdx, ldx, validIdx);
-
-							// and evaluate them
-							for (int m = 1; m < 8; m++) {
-								if (validIdx[m]) {
-									setGMatrixElements(gMatrix, dMatrix, idx[m], jdx[m], kdx[m], ldx[m], twoEIntVal2,
-											twoEIntValHalf);
-								}
+							final double bound = braBound * screening.getPairBound(k, l);
+
+							if (bound < threshold || densityWeighted
+									&& bound * densityBound(dMatrices, i, j, k, l) < threshold) {
+								continue;
 							}
+
+							scatter(i, j, k, l, twoEI.compute2E(i, j, k, l));
 						}
 					}
 				}
 			}
-			threadSafeList.add(new GMatrix(gMatrix));
 		});
-		partialGMatrixList = new ArrayList<>(threadSafeList);
+	}
+
+	/**
+	 * The largest factor any of the density matrices applies to the integral
+	 * (ij|kl) when it is added to a G matrix: 4 for the Coulomb elements, D_ij
+	 * and D_kl, and 1 for the exchange elements, D_ik, D_il, D_jk and D_jl,
+	 * relative to the doubled G matrix accumulated by the workers.
+	 *
+	 * @param dMatrices the density matrices
+	 * @param i         the first basis function index
+	 * @param j         the second basis function index
+	 * @param k         the third basis function index
+	 * @param l         the fourth basis function index
+	 * @return the density bound of the quartet
+	 */
+	private static double densityBound(double[][][] dMatrices, int i, int j, int k, int l) {
+		double bound = 0.0;
+
+		for (double[][] dMatrix : dMatrices) {
+			final double coulomb = 4.0 * FastMath.max(FastMath.abs(dMatrix[i][j]), FastMath.abs(dMatrix[k][l]));
+			final double exchange = FastMath.max(
+					FastMath.max(FastMath.abs(dMatrix[i][k]), FastMath.abs(dMatrix[i][l])),
+					FastMath.max(FastMath.abs(dMatrix[j][k]), FastMath.abs(dMatrix[j][l])));
+
+			bound = FastMath.max(bound, FastMath.max(coulomb, exchange));
+		}
+
+		return bound;
+	}
+
+	/**
+	 * Make the G matrix <br>
+	 * i.e. Form the 2J-K integrals corresponding to a density matrix
+	 * 
+	 * J and K are built from the density fitted integrals of the 2E integrals,
+	 * see {@link TwoElectronIntegrals#getDensityFittedIntegrals()}.
+	 */
+	protected void makeGMatrixDensityFitted() {
+		LOG.debug("makeGMatrixDensityFitted() called");
 
-		if (!partialGMatrixList.isEmpty()) {
-			int n = this.getRowDimension();
-			double[][] sum = new double[n][n];
+		makeGMatrixFactorised(twoEI.getDensityFittedIntegrals());
+	}
 
-			for (GMatrix pgMat : partialGMatrixList) {
-				double[][] pg = pgMat.getData();
-				for (int i = 0; i < n; i++)
-					for (int j = 0; j < n; j++)
-						sum[i][j] += pg[i][j];
+	/**
+	 * Make the G matrix from three-index factors of the 2E integrals, as J and K
+	 * contracted through the factors.
+	 *
+	 * @param factorised the factorised integrals
+	 */
+	private void makeGMatrixFactorised(FactorisedTwoElectronIntegrals factorised) {
+		final double[][] dMatrix = density.getData();
+
+		final double[][] j = factorised.coulomb(dMatrix);
+		final double[][] k = factorised.exchange(dMatrix);
+
+		if (separateJK) {
+			setJK(j, k);
+			return;
+		}
+
+		final double[][] g = this.getDataRef();
+		final int n = this.getRowDimension();
+
+		for (int p = 0; p < n; p++) {
+			for (int q = 0; q < n; q++) {
+				g[p][q] = 2.0 * j[p][q] - k[p][q];
 			}
+		}
+	}
 
-			for (int i = 0; i < n; i++)
-				for (int j = 0; j < n; j++)
-					sum[i][j] *= 0.5;
+	/**
+	 * Make the G matrix <br>
+	 * i.e. Form the 2J-K integrals corresponding to a density matrix
+	 * 
+	 * The integrals are streamed from the {@link TwoElectronIntegralFile} of the
+	 * 2E integrals. The file is split into one contiguous range of records per
+	 * available processor, and each range is read sequentially into its own
+	 * partial G matrix.
+	 */
+	protected void makeGMatrixFromDisk() {
+		makeGMatricesFromDisk(new GMatrix[] { this });
+	}
 
-			this.setSubMatrix(sum, 0, 0);
-		} else {
-			this.setSubMatrix(new double[this.getRowDimension()][this.getColumnDimension()], 0, 0);
+	/**
+	 * Make the G matrices of several densities from one read of the integral
+	 * file, see {@link #makeGMatrixFromDisk()}.
+	 *
+	 * @param targets the G matrices, with their 2E integrals and densities set
+	 */
+	private static void makeGMatricesFromDisk(GMatrix[] targets) {
+		LOG.debug("makeGMatrixFromDisk() called");
+
+		final TwoElectronIntegralFile integralFile = targets[0].twoEI.getIntegralFile();
+		final long noOfIntegrals = integralFile.getNumberOfIntegrals();
+		final int noOfRanges = Runtime.getRuntime().availableProcessors();
+		final long rangeSize = (noOfIntegrals + noOfRanges - 1) / noOfRanges;
+
+		final double[][][] dMatrices = densityData(targets);
+
+		startPartialGMatrices(targets);
+
+		IntStream.range(0, noOfRanges).parallel().forEach(range -> {
+			final long first = FastMath.min(noOfIntegrals, range * rangeSize);
+			final long count = FastMath.min(rangeSize, noOfIntegrals - first);
+
+			if (count == 0) {
+				return;
+			}
+
+			try (PartialGMatrixWorker worker = new PartialGMatrixWorker(targets, dMatrices) {
+				@Override
+				public void run(int task) {
+					integralFile.read(first, count, this::scatter);
+				}
+			}) {
+				worker.run(range);
+			}
+		});
+
+		sumPartialGMatrices(targets);
+	}
+
+	/**
+	 * Make the G matrix <br>
+	 * i.e. Form the 2J-K integrals corresponding to a density matrix
+	 * 
+	 * Only the integrals held by a sparse store are visited, rather than every
+	 * index combination.
+	 *
+	 * @param ints the sparse 2E integrals
+	 */
+	protected void makeGMatrixSparse(SparseTwoElectronIntegralStore ints) {
+		makeGMatricesSparse(new GMatrix[] { this }, ints);
+	}
+
+	/**
+	 * Make the G matrices of several densities from one pass over the sparse
+	 * store, see {@link #makeGMatrixSparse(SparseTwoElectronIntegralStore)}.
+	 *
+	 * @param targets the G matrices, with their densities set
+	 * @param ints    the sparse 2E integrals
+	 */
+	private static void makeGMatricesSparse(GMatrix[] targets, SparseTwoElectronIntegralStore ints) {
+		LOG.debug("makeGMatrixSparse() called");
+
+		final int noOfBasisFunctions = targets[0].density.getRowDimension();
+		final double[][][] dMatrices = densityData(targets);
+
+		startPartialGMatrices(targets);
+
+		// one task per i, costing the number of integrals stored for it
+		final double[] costs = new double[noOfBasisFunctions];
+		for (int i = 0; i < noOfBasisFunctions; i++) {
+			for (int j = 0; j < (i + 1); j++) {
+				costs[i] += ints.getKetPairs(i * (i + 1) / 2 + j).length + 1;
+			}
+		}
+
+		new LoadBalancedScheduler(costs).run(() -> new PartialGMatrixWorker(targets, dMatrices) {
+			@Override
+			public void run(int i) {
+				for (int j = 0; j < (i + 1); j++) {
+					final int ij = i * (i + 1) / 2 + j;
+					final int[] ketPairs = ints.getKetPairs(ij);
+					final double[] values = ints.getValues(ij);
+
+					for (int n = 0; n < ketPairs.length; n++) {
+						final int kl = ketPairs[n];
+						scatter(i, j, ints.getPairFirst(kl), ints.getPairSecond(kl), values[n]);
+					}
+				}
+			}
+		});
+
+		sumPartialGMatrices(targets);
+	}
+
+	/**
+	 * A {@link LoadBalancedScheduler.Worker} that accumulates into its own
+	 * partial G matrix for each target, which are handed over once the worker is
+	 * done.
+	 */
+	private abstract static class PartialGMatrixWorker implements LoadBalancedScheduler.Worker {
+
+		/** The G matrices accumulated for. */
+		private final GMatrix[] targets;
+
+		/** The density matrix of each target. */
+		private final double[][][] dMatrices;
+
+		/** The partial G matrix of this worker, per target, or J in a separate J and K build. */
+		protected final double[][][] gMatrices;
+
+		/** The partial K matrix of this worker, per target, or null unless J and K are separate. */
+		protected final double[][][] kMatrices;
+
+		/**
+		 * Creates a worker with a zeroed partial G matrix for each target, and a
+		 * partial K matrix if the targets build J and K separately.
+		 *
+		 * @param targets   the G matrices to accumulate for
+		 * @param dMatrices the density matrix of each target
+		 */
+		protected PartialGMatrixWorker(GMatrix[] targets, double[][][] dMatrices) {
+			this.targets = targets;
+			this.dMatrices = dMatrices;
+
+			gMatrices = new double[targets.length][][];
+			kMatrices = targets[0].separateJK ? new double[targets.length][][] : null;
+			for (int n = 0; n < targets.length; n++) {
+				gMatrices[n] = targets[n].takeAccumulator();
+				if (kMatrices != null) {
+					kMatrices[n] = targets[n].takeAccumulator();
+				}
+			}
+		}
+
+		/**
+		 * Accumulate a canonical integral into the partial G matrix of every
+		 * target, see {@link GMatrix#addIntegral}, or into its partial J and K
+		 * matrices, see
+		 * {@link JKContraction#addIntegral(double[][], double[][], double[][], int, int, int, int, double)}.
+		 *
+		 * @param i     the first basis function index
+		 * @param j     the second basis function index
+		 * @param k     the third basis function index
+		 * @param l     the fourth basis function index
+		 * @param value the two-electron integral (ij|kl)
+		 */
+		protected void scatter(int i, int j, int k, int l, double value) {
+			if (kMatrices != null) {
+				for (int n = 0; n < gMatrices.length; n++) {
+					JKContraction.addIntegral(dMatrices[n], gMatrices[n], kMatrices[n], i, j, k, l, value);
+				}
+				return;
+			}
+
+			for (int n = 0; n < gMatrices.length; n++) {
+				addIntegral(gMatrices[n], dMatrices[n], i, j, k, l, value);
+			}
+		}
+
+		/**
+		 * Hand the partial G matrices over.
+		 */
+		@Override
+		public void close() {
+			for (int n = 0; n < targets.length; n++) {
+				targets[n].partialGMatrices.add(gMatrices[n]);
+				if (kMatrices != null) {
+					targets[n].partialExchangeMatrices.add(kMatrices[n]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The density matrix data of each target.
+	 *
+	 * @param targets the G matrices, with their densities set
+	 * @return the density matrices
+	 */
+	private static double[][][] densityData(GMatrix[] targets) {
+		final double[][][] dMatrices = new double[targets.length][][];
+		for (int n = 0; n < targets.length; n++) {
+			dMatrices[n] = targets[n].density.getData();
+		}
+
+		return dMatrices;
+	}
+
+	/**
+	 * A zeroed partial G matrix, reused from an earlier build if there is one.
+	 *
+	 * @return the partial G matrix
+	 */
+	private double[][] takeAccumulator() {
+		final int n = this.getRowDimension();
+		final double[][] accumulator = freeAccumulators.poll();
+
+		if (accumulator == null) {
+			return new double[n][n];
+		}
+
+		for (double[] row : accumulator) {
+			Arrays.fill(row, 0.0);
+		}
+
+		return accumulator;
+	}
+
+	/**
+	 * Get ready to accumulate a new set of partial G matrices.
+	 */
+	private void startPartialGMatrices() {
+		if (freeAccumulators == null) {
+			freeAccumulators = new ConcurrentLinkedDeque<>();
+		}
+
+		partialGMatrices = Collections.synchronizedList(new ArrayList<>());
+		partialExchangeMatrices = separateJK ? Collections.synchronizedList(new ArrayList<>()) : null;
+	}
+
+	/**
+	 * Get ready to accumulate a new set of partial G matrices for each target.
+	 *
+	 * @param targets the G matrices
+	 */
+	private static void startPartialGMatrices(GMatrix[] targets) {
+		for (GMatrix target : targets) {
+			target.startPartialGMatrices();
+		}
+	}
+
+	/**
+	 * Set each target to half the sum of its partial G matrices, or form it
+	 * from the sums of its partial J and K matrices.
+	 *
+	 * @param targets the G matrices
+	 */
+	private static void sumPartialGMatrices(GMatrix[] targets) {
+		for (GMatrix target : targets) {
+			if (target.separateJK) {
+				target.sumPartialJK();
+			} else {
+				target.sumPartialGMatrices();
+			}
+		}
+	}
+
+	/**
+	 * Sum the partial J and K matrices, and form this matrix from them, see
+	 * {@link #setJK(double[][], double[][])}. The partial matrices are then kept
+	 * for reuse by the next build.
+	 */
+	private void sumPartialJK() {
+		final List<double[][]> partialCoulomb = new ArrayList<>(partialGMatrices);
+		final List<double[][]> partialExchange = new ArrayList<>(partialExchangeMatrices);
+
+		partialGMatrices = null;
+		partialExchangeMatrices = null;
+
+		if (partialCoulomb.isEmpty()) {
+			final int n = this.getRowDimension();
+			setJK(new double[n][n], new double[n][n]);
+			return;
+		}
+
+		setJK(treeSum(partialCoulomb), treeSum(partialExchange));
+
+		freeAccumulators.addAll(partialCoulomb);
+		freeAccumulators.addAll(partialExchange);
+	}
+
+	/**
+	 * Keep copies of J and K, and set this matrix to G = 2J - xK, where x is the
+	 * {@link #getExchangeScale() exchange scale}.
+	 *
+	 * @param j the Coulomb matrix
+	 * @param k the exchange matrix
+	 */
+	private void setJK(double[][] j, double[][] k) {
+		final double[][] g = this.getDataRef();
+		final int n = this.getRowDimension();
+
+		for (int p = 0; p < n; p++) {
+			for (int q = 0; q < n; q++) {
+				g[p][q] = 2.0 * j[p][q] - exchangeScale * k[p][q];
+			}
+		}
+
+		coulomb = new Array2DRowRealMatrix(j);
+		exchange = new Array2DRowRealMatrix(k);
+	}
+
+	/**
+	 * Set this matrix to half the sum of the partial G matrices.
+	 */
+	private void sumPartialGMatrices() {
+		sumPartialGMatrices(false);
+	}
+
+	/**
+	 * Set this matrix to, or add to it, half the sum of the partial G matrices.
+	 * The partial G matrices are summed pairwise, in parallel, in log2 of their
+	 * number of rounds, and are then kept for reuse by the next build.
+	 *
+	 * @param accumulate if true, add to this matrix rather than replacing it
+	 */
+	private void sumPartialGMatrices(boolean accumulate) {
+		final double[][] g = this.getDataRef();
+		final int n = this.getRowDimension();
+		final List<double[][]> partials = new ArrayList<>(partialGMatrices);
+		final int noOfPartials = partials.size();
+
+		partialGMatrices = null;
+
+		if (noOfPartials == 0) {
+			if (!accumulate) {
+				for (double[] row : g) {
+					Arrays.fill(row, 0.0);
+				}
+			}
+			return;
+		}
+
+		final double[][] sum = treeSum(partials);
+		IntStream.range(0, n).parallel().forEach(i -> {
+			for (int j = 0; j < n; j++) {
+				g[i][j] = (accumulate ? g[i][j] : 0.0) + 0.5 * sum[i][j];
+			}
+		});
+
+		freeAccumulators.addAll(partials);
+	}
+
+	/**
+	 * Sum matrices pairwise, in parallel, in log2 of their number of rounds.
+	 *
+	 * @param partials the matrices, at least one, overwritten
+	 * @return the first matrix, which then holds the sum
+	 */
+	private double[][] treeSum(List<double[][]> partials) {
+		final int noOfPartials = partials.size();
+
+		for (int stride = 1; stride < noOfPartials; stride *= 2) {
+			final int step = stride;
+
+			IntStream.range(0, (noOfPartials + 2 * step - 1) / (2 * step)).parallel().forEach(pair -> {
+				final int target = 2 * step * pair;
+				final int source = target + step;
+
+				if (source < noOfPartials) {
+					final double[][] to = partials.get(target);
+					final double[][] from = partials.get(source);
+
+					for (int i = 0; i < to.length; i++) {
+						for (int j = 0; j < to[i].length; j++) {
+							to[i][j] += from[i][j];
+						}
+					}
+				}
+			});
 		}
+
+		return partials.get(0);
 	}
 
 	/**
@@ -255,10 +941,10 @@ public final class GMatrix extends Array2DRowRealMatrix {
 		ArrayList<GMatrix> gDer = new ArrayList<>(3);
 
 		scfMethod.getTwoEI().compute2EDerivatives(atomIndex, scfMethod);
-		ArrayList<double[]> twoEDers = scfMethod.getTwoEI().getTwoEDer();
-		double[] d2IntsDxa = twoEDers.get(0);
-		double[] d2IntsDya = twoEDers.get(1);
-		double[] d2IntsDza = twoEDers.get(2);
+		List<TwoElectronIntegralStore> twoEDers = scfMethod.getTwoEI().getTwoEDer();
+		TwoElectronIntegralStore d2IntsDxa = twoEDers.get(0);
+		TwoElectronIntegralStore d2IntsDya = twoEDers.get(1);
+		TwoElectronIntegralStore d2IntsDza = twoEDers.get(2);
 
 		density = scfMethod.getDensity();
 		int noOfBasisFunctions = density.getRowDimension();
@@ -275,13 +961,13 @@ public final class GMatrix extends Array2DRowRealMatrix {
 				double zdot = 0.0;
 				for (int k = 0; k < noOfBasisFunctions; k++) {
 					for (int l = 0; l < noOfBasisFunctions; l++) {
-						int indexJ  = IntegralsUtil.ijkl2intindex(i, j, k, l);
-						int indexK1 = IntegralsUtil.ijkl2intindex(i, k, j, l);
-						int indexK2 = IntegralsUtil.ijkl2intindex(i, l, k, j);
+						long indexJ  = IntegralsUtil.ijkl2longindex(i, j, k, l);
+						long indexK1 = IntegralsUtil.ijkl2longindex(i, k, j, l);
+						long indexK2 = IntegralsUtil.ijkl2longindex(i, l, k, j);
 						double d = densityData[k][l];
-						xdot += (2. * d2IntsDxa[indexJ] - 0.5 * d2IntsDxa[indexK1] - 0.5 * d2IntsDxa[indexK2]) * d;
-						ydot += (2. * d2IntsDya[indexJ] - 0.5 * d2IntsDya[indexK1] - 0.5 * d2IntsDya[indexK2]) * d;
-						zdot += (2. * d2IntsDza[indexJ] - 0.5 * d2IntsDza[indexK1] - 0.5 * d2IntsDza[indexK2]) * d;
+						xdot += (2. * d2IntsDxa.get(indexJ) - 0.5 * d2IntsDxa.get(indexK1) - 0.5 * d2IntsDxa.get(indexK2)) * d;
+						ydot += (2. * d2IntsDya.get(indexJ) - 0.5 * d2IntsDya.get(indexK1) - 0.5 * d2IntsDya.get(indexK2)) * d;
+						zdot += (2. * d2IntsDza.get(indexJ) - 0.5 * d2IntsDza.get(indexK1) - 0.5 * d2IntsDza.get(indexK2)) * d;
 					}
 				}
 
@@ -302,7 +988,7 @@ public final class GMatrix extends Array2DRowRealMatrix {
 	}
 
 	/**
-	 * Returns a hash code for this GMatrix based on its entries, density, and partial G matrices.
+	 * Returns a hash code for this GMatrix based on its entries and density.
 	 *
 	 * @return a hash code value for this object
 	 */
@@ -310,7 +996,7 @@ public final class GMatrix extends Array2DRowRealMatrix {
 	public int hashCode() {
 		final int prime = 31;
 		int result = super.hashCode();
-		result = prime * result + Objects.hash(density, partialGMatrixList);
+		result = prime * result + Objects.hash(density);
 		return result;
 	}
 
@@ -327,7 +1013,7 @@ public final class GMatrix extends Array2DRowRealMatrix {
 	 * @param twoEIntVal2  twice the two-electron integral value (for the J term)
 	 * @param twoEIntValHalf half the two-electron integral value (for the K term)
 	 */
-	private void setGMatrixElements(double[][] gMatrix, double[][] dMatrix, int i, int j, int k, int l,
+	private static void setGMatrixElements(double[][] gMatrix, double[][] dMatrix, int i, int j, int k, int l,
 			double twoEIntVal2, double twoEIntValHalf) {
 		gMatrix[i][j] += dMatrix[k][l] * twoEIntVal2;
 		gMatrix[k][l] += dMatrix[i][j] * twoEIntVal2;
@@ -338,40 +1024,56 @@ public final class GMatrix extends Array2DRowRealMatrix {
 	}
 
 	/**
-	 * Marks duplicate (i,j,k,l) quartets in the eight-fold symmetry list as
-	 * invalid. After this call, only the first occurrence of each distinct
-	 * quartet has {@code validIdx[m] == true}.
+	 * Accumulates a canonical (i &ge; j, k &ge; l, ij &ge; kl) integral into a
+	 * partial G matrix once for each of its distinct symmetry-equivalent index
+	 * permutations. The partial G matrices are to be halved once summed.
 	 *
-	 * @param idx      array of i indices for the eight symmetry-related quartets
-	 * @param jdx      array of j indices for the eight symmetry-related quartets
-	 * @param kdx      array of k indices for the eight symmetry-related quartets
-	 * @param ldx      array of l indices for the eight symmetry-related quartets
-	 * @param validIdx boolean flags; entries are set to {@code false} when a
-	 *                 duplicate quartet is found
-	 */
-	private void filterUniqueElements(int[] idx, int[] jdx, int[] kdx, int[] ldx, boolean[] validIdx) {
-		int i;
-		int j;
-		int k;
-		int l;
-		int m;
-		int n;
-
-		for (m = 0; m < 8; m++) {
-			i = idx[m];
-			j = jdx[m];
-			k = kdx[m];
-			l = ldx[m];
-			for (n = m + 1; n < 8; n++) {
-				if (i == idx[n] && j == jdx[n] && k == kdx[n] && l == ldx[n])
-					validIdx[n] = false;
+	 * @param gMatrix the partial G matrix being accumulated in-place
+	 * @param dMatrix the current density matrix
+	 * @param i       the first basis function index
+	 * @param j       the second basis function index
+	 * @param k       the third basis function index
+	 * @param l       the fourth basis function index
+	 * @param value   the two-electron integral (ij|kl)
+	 */
+	private static void addIntegral(double[][] gMatrix, double[][] dMatrix, int i, int j, int k, int l, double value) {
+		final double value2 = value + value;
+		final double valueHalf = 0.5 * value;
+
+		final boolean braSwap = i != j;
+		final boolean ketSwap = k != l;
+		final boolean pairSwap = i != k || j != l;
+
+		setGMatrixElements(gMatrix, dMatrix, i, j, k, l, value2, valueHalf);
+		if (ketSwap) {
+			setGMatrixElements(gMatrix, dMatrix, i, j, l, k, value2, valueHalf);
+		}
+		if (braSwap) {
+			setGMatrixElements(gMatrix, dMatrix, j, i, k, l, value2, valueHalf);
+			if (ketSwap) {
+				setGMatrixElements(gMatrix, dMatrix, j, i, l, k, value2, valueHalf);
+			}
+		}
+
+		if (!pairSwap) {
+			return;
+		}
+
+		setGMatrixElements(gMatrix, dMatrix, k, l, i, j, value2, valueHalf);
+		if (braSwap) {
+			setGMatrixElements(gMatrix, dMatrix, k, l, j, i, value2, valueHalf);
+		}
+		if (ketSwap) {
+			setGMatrixElements(gMatrix, dMatrix, l, k, i, j, value2, valueHalf);
+			if (braSwap) {
+				setGMatrixElements(gMatrix, dMatrix, l, k, j, i, value2, valueHalf);
 			}
 		}
 	}
 
 	/**
 	 * Compares this GMatrix for equality with another object. Two GMatrix instances
-	 * are equal if their matrix entries, density, and partial G matrix lists are equal.
+	 * are equal if their matrix entries and density are equal.
 	 *
 	 * @param obj the object to compare with
 	 * @return {@code true} if the two GMatrix instances are equal
@@ -385,7 +1087,18 @@ public final class GMatrix extends Array2DRowRealMatrix {
 		if (getClass() != obj.getClass())
 			return false;
 		GMatrix other = (GMatrix) obj;
-		return Objects.equals(density, other.density) && Objects.equals(partialGMatrixList, other.partialGMatrixList);
+		return Objects.equals(density, other.density);
+	}
+
+	/**
+	 * The blocks of this G matrix between the basis functions of each pair of
+	 * atoms, as {@link Density#toBlockSparse(BasisSetLibrary)}.
+	 *
+	 * @param basisSetLibrary the basis functions of the matrix
+	 * @return the block sparse copy
+	 */
+	public BlockSparseMatrix toBlockSparse(BasisSetLibrary basisSetLibrary) {
+		return BlockSparseMatrix.of(this, basisSetLibrary.getAtomBlockSizes(), 0.0);
 	}
 
 	/**
@@ -6,6 +6,7 @@ import java.util.List;
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.hipparchus.linear.Array2DRowRealMatrix;
 
+import name.mjw.jquante.math.BlockSparseMatrix;
 import name.mjw.jquante.math.MathUtil;
 import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
 import name.mjw.jquante.math.qm.basis.ContractedGaussian;
@@ -104,6 +105,17 @@ public final class HCore extends Array2DRowRealMatrix {
 
 	}
 
+	/**
+	 * The blocks of this core Hamiltonian between the basis functions of each pair of
+	 * atoms, as {@link Density#toBlockSparse(BasisSetLibrary)}.
+	 *
+	 * @param basisSetLibrary the basis functions of the matrix
+	 * @return the block sparse copy
+	 */
+	public BlockSparseMatrix toBlockSparse(BasisSetLibrary basisSetLibrary) {
+		return BlockSparseMatrix.of(this, basisSetLibrary.getAtomBlockSizes(), 0.0);
+	}
+
 	/**
 	 * Returns a string representation of this HCore matrix, showing all elements.
 	 *
@@ -132,7 +132,7 @@ public class HartreeFockForce implements Force {
 		int noOfOccupancies = scfMethod.getMolecule().getNumberOfElectrons() / 2;
 		MolecularOrbitals mos = scfMethod.getMos();
 		double[] orbE = scfMethod.getOrbE();
-		int n = mos.getRowDimension();
+		int n = mos.getColumnDimension();
 
 		RealMatrix cOcc = new Array2DRowRealMatrix(noOfOccupancies, n);
 		RealMatrix eScaledCOcc = new Array2DRowRealMatrix(noOfOccupancies, n);
@@ -0,0 +1,287 @@
+package name.mjw.jquante.math.qm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs a fixed set of independent tasks of unequal, estimated, cost on a
+ * {@link ForkJoinPool}.
+ * <p>
+ * The tasks are handed out largest first: one worker is started per thread of
+ * the pool, and each worker repeatedly takes the most expensive task that has
+ * not yet been started. A thread that runs out of work takes over any worker
+ * that has not yet started. The expensive tasks are therefore spread over all
+ * threads early on, and the cheap ones fill the gaps at the end. A static
+ * split of a triangular loop, such as ij &ge; kl, leaves the threads that hold
+ * the largest indices running alone.
+ * <p>
+ * Each worker has its own state, created by a {@link Supplier}, and
+ * {@link #run(Supplier)} reports how the load was spread over the workers.
+ *
+ * @author mjw99
+ */
+public final class LoadBalancedScheduler {
+
+	/** Logger object. */
+	private static final Logger LOG = LogManager.getLogger(LoadBalancedScheduler.class);
+
+	/** Task indices, in order of decreasing cost. */
+	private final int[] order;
+
+	/** The estimated cost of each task. */
+	private final double[] costs;
+
+	/** The pool the workers run on. */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The work of one thread. A worker is used by one thread at a time.
+	 */
+	@FunctionalInterface
+	public interface Worker extends AutoCloseable {
+
+		/**
+		 * Run a task.
+		 *
+		 * @param task the index of the task
+		 */
+		void run(int task);
+
+		/**
+		 * Called once the worker has run all of its tasks.
+		 */
+		@Override
+		default void close() {
+		}
+	}
+
+	/**
+	 * How the tasks of a {@link LoadBalancedScheduler#run(Supplier)} were
+	 * spread over its workers.
+	 */
+	public static final class LoadReport {
+
+		/** The number of tasks run by each worker. */
+		private final int[] tasks;
+
+		/** The estimated cost of the tasks run by each worker. */
+		private final double[] costs;
+
+		/** The time spent running tasks by each worker, in nanoseconds. */
+		private final long[] nanos;
+
+		/**
+		 * Creates a new report.
+		 *
+		 * @param noOfWorkers the number of workers
+		 */
+		private LoadReport(int noOfWorkers) {
+			tasks = new int[noOfWorkers];
+			costs = new double[noOfWorkers];
+			nanos = new long[noOfWorkers];
+		}
+
+		/**
+		 * The number of workers.
+		 *
+		 * @return the number of workers
+		 */
+		public int getNumberOfWorkers() {
+			return tasks.length;
+		}
+
+		/**
+		 * The number of tasks run by a worker.
+		 *
+		 * @param worker the worker
+		 * @return the number of tasks
+		 */
+		public int getTasks(int worker) {
+			return tasks[worker];
+		}
+
+		/**
+		 * The estimated cost of the tasks run by a worker.
+		 *
+		 * @param worker the worker
+		 * @return the summed cost estimates
+		 */
+		public double getCost(int worker) {
+			return costs[worker];
+		}
+
+		/**
+		 * The time a worker spent running tasks.
+		 *
+		 * @param worker the worker
+		 * @return the time, in nanoseconds
+		 */
+		public long getNanos(int worker) {
+			return nanos[worker];
+		}
+
+		/**
+		 * The estimated load imbalance, the largest estimated cost of any worker
+		 * over the mean.
+		 *
+		 * @return 1 for a perfect balance, the number of workers at worst
+		 */
+		public double getCostImbalance() {
+			return imbalance(costs);
+		}
+
+		/**
+		 * The measured load imbalance, the longest time spent by any worker over
+		 * the mean.
+		 *
+		 * @return 1 for a perfect balance, the number of workers at worst
+		 */
+		public double getTimeImbalance() {
+			return imbalance(Arrays.stream(nanos).asDoubleStream().toArray());
+		}
+
+		/**
+		 * The largest value over the mean.
+		 *
+		 * @param loads the load of each worker
+		 * @return max / mean, or 1 if there is no load
+		 */
+		static double imbalance(double[] loads) {
+			final double total = Arrays.stream(loads).sum();
+
+			if (total <= 0.0) {
+				return 1.0;
+			}
+
+			return Arrays.stream(loads).max().orElse(0.0) * loads.length / total;
+		}
+
+		/**
+		 * Returns a per worker summary of the load.
+		 *
+		 * @return the tasks, cost and time of each worker, and the imbalances
+		 */
+		@Override
+		public String toString() {
+			final StringBuilder sb = new StringBuilder();
+
+			for (int w = 0; w < tasks.length; w++) {
+				sb.append(String.format("worker %d: %d tasks, cost %.4g, %.3f ms%n", w, tasks[w], costs[w],
+						nanos[w] * 1.0e-6));
+			}
+			sb.append(String.format("imbalance (max/mean): cost %.3f, time %.3f", getCostImbalance(),
+					getTimeImbalance()));
+
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Creates a scheduler that runs on the common pool.
+	 *
+	 * @param costs the estimated cost of each task
+	 */
+	public LoadBalancedScheduler(double[] costs) {
+		this(costs, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a scheduler.
+	 *
+	 * @param costs the estimated cost of each task
+	 * @param pool  the pool to run on
+	 */
+	public LoadBalancedScheduler(double[] costs, ForkJoinPool pool) {
+		this.costs = costs.clone();
+		this.pool = pool;
+		this.order = IntStream.range(0, costs.length).boxed()
+				.sorted(Comparator.comparingDouble((Integer task) -> costs[task]).reversed())
+				.mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Run every task once, each with the worker of the thread that takes it.
+	 *
+	 * @param workers creates the worker of each thread
+	 * @return how the tasks were spread over the workers
+	 */
+	public LoadReport run(Supplier<? extends Worker> workers) {
+		final int noOfWorkers = Math.max(1, Math.min(pool.getParallelism(), order.length));
+		final AtomicInteger next = new AtomicInteger();
+		final LoadReport report = new LoadReport(noOfWorkers);
+
+		final List<Callable<Void>> callables = new ArrayList<>(noOfWorkers);
+		for (int w = 0; w < noOfWorkers; w++) {
+			final int worker = w;
+
+			callables.add(() -> {
+				try (Worker state = workers.get()) {
+					for (int n = next.getAndIncrement(); n < order.length; n = next.getAndIncrement()) {
+						final int task = order[n];
+						final long start = System.nanoTime();
+
+						state.run(task);
+
+						report.nanos[worker] += System.nanoTime() - start;
+						report.costs[worker] += costs[task];
+						report.tasks[worker]++;
+					}
+				}
+
+				return null;
+			});
+		}
+
+		for (Future<Void> future : pool.invokeAll(callables)) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for a worker", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException runtimeException) {
+					throw runtimeException;
+				}
+				if (e.getCause() instanceof Error error) {
+					throw error;
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+
+		LOG.debug("{} tasks run\n{}", order.length, report);
+
+		return report;
+	}
+
+	/**
+	 * The number of tasks.
+	 *
+	 * @return the number of tasks
+	 */
+	public int getNumberOfTasks() {
+		return order.length;
+	}
+
+	/**
+	 * The estimated cost of a task.
+	 *
+	 * @param task the index of the task
+	 * @return the cost estimate
+	 */
+	public double getCost(int task) {
+		return costs[task];
+	}
+}
@@ -1,12 +1,13 @@
 package name.mjw.jquante.math.qm;
 
 import org.hipparchus.linear.Array2DRowRealMatrix;
-import org.hipparchus.linear.EigenDecompositionSymmetric;
 import org.hipparchus.linear.RealMatrix;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import name.mjw.jquante.math.DenseMatrix;
 import name.mjw.jquante.math.MathUtil;
+import name.mjw.jquante.math.SymmetricEigensolver;
 
 /**
  * Represents the Molecular orbitals as a coefficient matrix and the
@@ -33,6 +34,20 @@ public final class MolecularOrbitals extends Array2DRowRealMatrix {
 		super(n, n);
 	}
 
+	/**
+	 * Creates a new instance of a (MxN) Matrix, for a basis set of N functions
+	 * of which only M are linearly independent, see
+	 * {@link Overlap#getNumberOfIndependentFunctions()}.
+	 * 
+	 * @param noOfMOs
+	 *            the number of molecular orbitals, M
+	 * @param noOfBasisFunctions
+	 *            the number of basis functions, N
+	 */
+	public MolecularOrbitals(int noOfMOs, int noOfBasisFunctions) {
+		super(noOfMOs, noOfBasisFunctions);
+	}
+
 	/**
 	 * Get the coefficient Matrix for this MolecularOrbitals
 	 * 
@@ -45,6 +60,30 @@ public final class MolecularOrbitals extends Array2DRowRealMatrix {
 	/** The orbital energies (eigenvalues) corresponding to each molecular orbital. */
 	protected double[] orbitalEnergies;
 
+	/** The orthogonalisation matrix the work matrices were allocated for. */
+	private transient RealMatrix orthogonalisation;
+
+	/** The orthogonalisation matrix X, copied. */
+	private transient DenseMatrix x;
+
+	/** The matrix being diagonalised, copied. */
+	private transient DenseMatrix matrix;
+
+	/** FX. */
+	private transient DenseMatrix fx;
+
+	/** X'FX. */
+	private transient DenseMatrix reduced;
+
+	/** The eigensolver of X'FX. */
+	private transient SymmetricEigensolver eigensolver;
+
+	/** The eigenvectors of X'FX, one per row. */
+	private transient DenseMatrix eigenVectors;
+
+	/** The MO coefficients, V'X'. */
+	private transient DenseMatrix coefficients;
+
 	/**
 	 * Get the value of orbitalEnergies
 	 * 
@@ -54,6 +93,17 @@ public final class MolecularOrbitals extends Array2DRowRealMatrix {
 		return orbitalEnergies;
 	}
 
+	/**
+	 * Set the value of orbitalEnergies, for orbitals that were not computed
+	 * here, such as those restored from an {@link SCFCheckpoint}.
+	 * 
+	 * @param orbitalEnergies
+	 *            new value of orbitalEnergies
+	 */
+	public void setOrbitalEnergies(double[] orbitalEnergies) {
+		this.orbitalEnergies = orbitalEnergies;
+	}
+
 	/**
 	 * Compute the MO coefficients and the orbital energies
 	 * 
@@ -80,30 +130,72 @@ public final class MolecularOrbitals extends Array2DRowRealMatrix {
 
 	/**
 	 * Compute MO coefficients and orbital energies from any Fock-like matrix.
+	 * The matrix is diagonalised in the space of the linearly independent
+	 * functions, see {@link Overlap#getOrthogonalisation()}.
 	 *
 	 * @param theMat  the Fock or HCore matrix to diagonalise
 	 * @param overlap the overlap matrix used to form the orthogonalising transform
+	 * @throws IllegalStateException if this has a row for other than each
+	 *                               linearly independent function
 	 */
 	private void compute(RealMatrix theMat, Overlap overlap) {
 		LOG.debug("");
-		RealMatrix x = overlap.getSHalf();
+		RealMatrix x = overlap.getOrthogonalisation();
 		LOG.debug("x: {}", x);
-		RealMatrix a = x.multiply(theMat).multiply(x.transpose());
-		LOG.debug("a: {}", a);
 
-		// Floating-point matrix multiplications can produce slightly asymmetric
-		// results. Force exact symmetry via (a + aT)/2 before eigendecomposition.
-		// see https://github.com/Hipparchus-Math/hipparchus/issues/365
-		a = a.add(a.transpose()).scalarMultiply(0.5);
+		if (x.getColumnDimension() != getRowDimension()) {
+			throw new IllegalStateException("Basis set has " + x.getColumnDimension()
+					+ " linearly independent functions, not " + getRowDimension());
+		}
 
-		EigenDecompositionSymmetric eig = new EigenDecompositionSymmetric(a, 1e-10, false);
+		if (x != orthogonalisation) {
+			allocateWorkMatrices(x);
+		}
 
-		orbitalEnergies = eig.getEigenvalues();
-		this.setSubMatrix(eig.getVT().multiply(x).getData(), 0, 0);
+		// a = X'FX, in the space of the linearly independent functions
+		DenseMatrix.multiply(matrix.copyFrom(theMat), this.x, fx);
+		DenseMatrix.transposeMultiply(this.x, fx, reduced);
+
+		// Floating-point matrix multiplications can produce slightly asymmetric
+		// results. The eigensolver reads the lower triangle, so average it with
+		// the upper, (a + aT)/2.
+		for (int i = 0; i < reduced.getRowDimension(); i++) {
+			for (int j = 0; j < i; j++) {
+				reduced.setEntry(i, j, 0.5 * (reduced.getEntry(i, j) + reduced.getEntry(j, i)));
+			}
+		}
+		LOG.debug("a: {}", reduced);
+
+		orbitalEnergies = new double[getRowDimension()];
+		eigensolver.solve(reduced, orbitalEnergies, eigenVectors);
+
+		// C = V'X'
+		DenseMatrix.multiplyTranspose(eigenVectors, this.x, coefficients);
+		coefficients.copyTo(this);
 
 		LOG.debug("MO values :{}", this);
 	}
 
+	/**
+	 * Allocate the work matrices of {@link #compute(RealMatrix, Overlap)} for an
+	 * orthogonalisation matrix.
+	 *
+	 * @param x the N x M orthogonalisation matrix
+	 */
+	private void allocateWorkMatrices(RealMatrix x) {
+		final int n = x.getRowDimension();
+		final int m = x.getColumnDimension();
+
+		this.orthogonalisation = x;
+		this.x = new DenseMatrix(x);
+		this.matrix = new DenseMatrix(n, n);
+		this.fx = new DenseMatrix(n, m);
+		this.reduced = new DenseMatrix(m, m);
+		this.eigensolver = new SymmetricEigensolver(m);
+		this.eigenVectors = new DenseMatrix(m, m);
+		this.coefficients = new DenseMatrix(m, n);
+	}
+
 	/**
 	 * Returns a string representation of this MolecularOrbitals matrix, showing all elements.
 	 *
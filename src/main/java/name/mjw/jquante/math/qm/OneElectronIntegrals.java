@@ -8,6 +8,9 @@ import org.apache.logging.log4j.Logger;
 import name.mjw.jquante.config.impl.AtomInfo;
 import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
 import name.mjw.jquante.math.qm.basis.ContractedGaussian;
+import name.mjw.jquante.math.qm.basis.Shell;
+import name.mjw.jquante.math.qm.basis.ShellPair;
+import name.mjw.jquante.math.qm.integral.Integrals;
 import name.mjw.jquante.molecule.Molecule;
 
 /**
@@ -112,13 +115,52 @@ public final class OneElectronIntegrals {
 				ContractedGaussian bfj = bfs.get(j);
 
 				hCore.setEntry(i, j, bfi.kinetic(bfj)); // KE matrix elements
+			}
 
-				for (int k = 0; k < atomicNumbers.length; k++) {
-					hCore.setEntry(i, j, (hCore.getEntry(i, j)
-							+ atomicNumbers[k] * bfi.nuclear(bfj, molecule.getAtom(k).getAtomCenterInAU())));
-				}
+		}
+
+		// the nuclear attraction matrix elements, a shell pair at a time
+		List<Shell> shells = basisSetLibrary.getShells();
+		for (Shell shellA : shells) {
+			for (Shell shellB : shells) {
+				addNuclearAttraction(basisSetLibrary.getShellPair(shellA, shellB), atomicNumbers);
 			}
+		}
+	}
+
+	/**
+	 * Add the nuclear attraction integrals of every component pair of a shell
+	 * pair to hCore, using the precomputed primitive pair data.
+	 *
+	 * @param ab            the primitive pair data
+	 * @param atomicNumbers the atomic numbers of the atoms of the molecule
+	 */
+	private void addNuclearAttraction(ShellPair ab, int[] atomicNumbers) {
+		final double[] coefficients = ab.getCoefficients();
+		final int noOfPrimitivesB = ab.getNumberOfPrimitivesB();
+
+		for (ContractedGaussian bfi : ab.getA().getBasisFunctions()) {
+			final List<Double> iNorms = bfi.getPrimNorms();
+
+			for (ContractedGaussian bfj : ab.getB().getBasisFunctions()) {
+				final List<Double> jNorms = bfj.getPrimNorms();
+				double vij = 0.0;
+
+				for (int ij = 0; ij < coefficients.length; ij++) {
+					final double norms = coefficients[ij] * iNorms.get(ij / noOfPrimitivesB)
+							* jNorms.get(ij % noOfPrimitivesB);
 
+					for (int k = 0; k < atomicNumbers.length; k++) {
+						vij += atomicNumbers[k] * norms * Integrals.nuclearAttraction(ab, ij, bfi.getPowers(),
+								bfj.getPowers(), molecule.getAtom(k).getAtomCenterInAU());
+					}
+				}
+
+				final int i = bfi.getBasisFunctionIndex();
+				final int j = bfj.getBasisFunctionIndex();
+
+				hCore.addToEntry(i, j, bfi.getNormalization() * bfj.getNormalization() * vij);
+			}
 		}
 	}
 
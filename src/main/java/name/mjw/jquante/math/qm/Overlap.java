@@ -5,14 +5,15 @@ import java.util.List;
 
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.hipparchus.linear.Array2DRowRealMatrix;
-import org.hipparchus.linear.DefaultRealMatrixChangingVisitor;
-import org.hipparchus.linear.EigenDecompositionSymmetric;
 import org.hipparchus.linear.MatrixUtils;
 import org.hipparchus.linear.RealMatrix;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import name.mjw.jquante.math.BlockSparseMatrix;
+import name.mjw.jquante.math.DenseMatrix;
 import name.mjw.jquante.math.MathUtil;
+import name.mjw.jquante.math.SymmetricEigensolver;
 import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
 import name.mjw.jquante.math.qm.basis.ContractedGaussian;
 import net.jafama.FastMath;
@@ -41,9 +42,27 @@ public final class Overlap extends Array2DRowRealMatrix {
 		super(n, n);
 	}
 
+	/**
+	 * The default overlap eigenvalue below which an eigenvector is taken as a
+	 * linear dependency of the basis set.
+	 */
+	public static final double DEFAULT_LINEAR_DEPENDENCY_THRESHOLD = 1e-6;
+
+	/** The overlap eigenvalue below which an eigenvector is dropped. */
+	private double linearDependencyThreshold = DEFAULT_LINEAR_DEPENDENCY_THRESHOLD;
+
+	/** Cached eigenvalues of S, ascending. */
+	private transient double[] eigenValues = null;
+
+	/** Cached eigenvectors of S, one per row. */
+	private transient RealMatrix eigenVectors = null;
+
 	/** Cached S^(-1/2) symmetric orthogonalisation matrix. */
 	private transient RealMatrix sHalf = null;
 
+	/** Cached canonical orthogonalisation matrix. */
+	private transient RealMatrix canonicalX = null;
+
 	/**
 	 * Get the S^1/2 matrix
 	 *
@@ -56,24 +75,7 @@ public final class Overlap extends Array2DRowRealMatrix {
 	 */
 	public RealMatrix getSHalf() {
 		if (sHalf == null) {
-
-			LOG.debug("Overlap::this " + this);
-			// Copy and zero near-zero entries to prevent NonSymmetricMatrixException
-			// when floating-point asymmetry between S[i][j] and S[j][i] exceeds
-			// the default tolerance. See https://github.com/Hipparchus-Math/hipparchus/issues/365
-			RealMatrix copy = this.copy();
-			copy.walkInOptimizedOrder(new DefaultRealMatrixChangingVisitor() {
-				@Override
-				public double visit(int row, int column, double value) {
-					return FastMath.abs(value) < 1.0e-10 ? 0 : value;
-				}
-			});
-			EigenDecompositionSymmetric eig = new EigenDecompositionSymmetric(copy, 1e-10, false);
-
-			double[] eigenValues = eig.getEigenvalues();
-			RealMatrix eigenVectors = eig.getVT();
-
-			LOG.trace("eigenVectors " + eigenVectors);
+			decompose();
 
 			this.sHalf = MatrixUtils.createRealIdentityMatrix(this.getRowDimension());
 
@@ -87,6 +89,116 @@ public final class Overlap extends Array2DRowRealMatrix {
 		return this.sHalf;
 	}
 
+	/**
+	 * Get the canonical orthogonalisation matrix
+	 *
+	 * This is the rectangular N x M matrix <code>U(1/sqrt(lambda))</code>, where
+	 * only the M eigenvectors U whose eigenvalue lambda is above the linear
+	 * dependency threshold are kept. X'SX is then the M x M identity.
+	 *
+	 * @return the canonical orthogonalisation matrix
+	 */
+	public RealMatrix getCanonicalX() {
+		if (canonicalX == null) {
+			decompose();
+
+			final int n = this.getRowDimension();
+			final int m = getNumberOfIndependentFunctions();
+
+			// the eigenvalues are ascending, so the dropped ones come first
+			canonicalX = new Array2DRowRealMatrix(n, m);
+			for (int k = 0; k < m; k++) {
+				final int e = n - m + k;
+				final double scale = 1.0 / FastMath.sqrt(eigenValues[e]);
+
+				for (int i = 0; i < n; i++) {
+					canonicalX.setEntry(i, k, eigenVectors.getEntry(e, i) * scale);
+				}
+			}
+
+			LOG.debug("Canonical orthogonalisation keeps {} of {} functions", m, n);
+		}
+
+		return canonicalX;
+	}
+
+	/**
+	 * Get the orthogonalisation matrix X used to solve the Roothaan equations.
+	 * This is {@link #getSHalf()} if the basis set has no linear dependencies,
+	 * else the rectangular {@link #getCanonicalX()}, which removes them.
+	 *
+	 * @return the N x M orthogonalisation matrix
+	 */
+	public RealMatrix getOrthogonalisation() {
+		return getNumberOfIndependentFunctions() == this.getRowDimension() ? getSHalf() : getCanonicalX();
+	}
+
+	/**
+	 * The number of linearly independent functions, which is the number of
+	 * molecular orbitals.
+	 *
+	 * @return the number of overlap eigenvalues above the linear dependency
+	 *         threshold
+	 */
+	public int getNumberOfIndependentFunctions() {
+		decompose();
+
+		int m = 0;
+		for (double eigenValue : eigenValues) {
+			if (eigenValue >= linearDependencyThreshold) {
+				m++;
+			}
+		}
+
+		return m;
+	}
+
+	/**
+	 * Get the linear dependency threshold
+	 *
+	 * @return the overlap eigenvalue below which an eigenvector is dropped
+	 */
+	public double getLinearDependencyThreshold() {
+		return linearDependencyThreshold;
+	}
+
+	/**
+	 * Set the linear dependency threshold
+	 *
+	 * @param linearDependencyThreshold the overlap eigenvalue below which an
+	 *                                  eigenvector is dropped
+	 * @throws IllegalArgumentException if the threshold is negative
+	 */
+	public void setLinearDependencyThreshold(double linearDependencyThreshold) {
+		if (!(linearDependencyThreshold >= 0.0)) {
+			throw new IllegalArgumentException(
+					"Linear dependency threshold must not be negative: " + linearDependencyThreshold);
+		}
+
+		this.linearDependencyThreshold = linearDependencyThreshold;
+		this.canonicalX = null;
+	}
+
+	/**
+	 * Diagonalise S, once.
+	 */
+	private void decompose() {
+		if (eigenValues != null) {
+			return;
+		}
+
+		LOG.debug("Overlap::this " + this);
+		final int n = this.getRowDimension();
+		final DenseMatrix vt = new DenseMatrix(n, n);
+		eigenValues = new double[n];
+		new SymmetricEigensolver(n).solve(new DenseMatrix(this), eigenValues, vt);
+
+		eigenVectors = new Array2DRowRealMatrix(n, n);
+		vt.copyTo(eigenVectors);
+
+		LOG.trace("eigenVectors " + eigenVectors);
+	}
+
 	/** The SCF method used to compute overlap derivatives. */
 	private SCFMethod scfMethod;
 
@@ -147,6 +259,17 @@ public final class Overlap extends Array2DRowRealMatrix {
 		return cgi.overlapDerivative(atomIndex, cgj);
 	}
 
+	/**
+	 * The blocks of this overlap matrix between the basis functions of each pair of
+	 * atoms, as {@link Density#toBlockSparse(BasisSetLibrary)}.
+	 *
+	 * @param basisSetLibrary the basis functions of the matrix
+	 * @return the block sparse copy
+	 */
+	public BlockSparseMatrix toBlockSparse(BasisSetLibrary basisSetLibrary) {
+		return BlockSparseMatrix.of(this, basisSetLibrary.getAtomBlockSizes(), 0.0);
+	}
+
 	/**
 	 * Returns a string representation of this Overlap matrix, showing all elements.
 	 *
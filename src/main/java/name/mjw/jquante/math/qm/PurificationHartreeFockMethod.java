@@ -0,0 +1,191 @@
+package name.mjw.jquante.math.qm;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import name.mjw.jquante.math.BlockSparseMatrix;
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.math.qm.event.SCFEvent;
+import name.mjw.jquante.molecule.Molecule;
+import net.jafama.FastMath;
+
+/**
+ * Implements the closed shell Hartree-Fock SCF method without diagonalising
+ * the Fock matrix. Each density is formed from the last Fock matrix by a
+ * {@link DensityPurifier}, blocked by atom, so no MOs are computed during the
+ * SCF. The MOs and orbital energies of the final Fock matrix are computed, by
+ * one diagonalisation, only when first asked for.
+ *
+ * @author mjw99
+ */
+public class PurificationHartreeFockMethod extends RestrictedHartreeFockMethod {
+
+	/**
+	 * Logger object
+	 */
+	private static final Logger LOG = LogManager.getLogger(PurificationHartreeFockMethod.class);
+
+	/** Forms the densities. */
+	private final DensityPurifier densityPurifier = new DensityPurifier();
+
+	/**
+	 * Creates a new instance of PurificationHartreeFockMethod
+	 *
+	 * @param molecule
+	 *            The molecule under consideration.
+	 * @param oneEI
+	 *            The one electron integrals of the system
+	 * @param twoEI
+	 *            The two electron integrals of the system
+	 */
+	public PurificationHartreeFockMethod(Molecule molecule, OneElectronIntegrals oneEI,
+			TwoElectronIntegrals twoEI) {
+		super(molecule, oneEI, twoEI, SCFType.HARTREE_FOCK_PURIFICATION);
+	}
+
+	/**
+	 * Perform the SCF optimization of the density until the energy converges.
+	 */
+	@Override
+	public void scf() {
+		int noOfElectrons = molecule.getNumberOfElectrons();
+		int noOfOccupancies = noOfElectrons / 2;
+
+		if (noOfElectrons % 2 != 0) {
+			throw new UnsupportedOperationException("Open shell systems are" + " not currently supported.");
+		}
+
+		Overlap overlap = oneEI.getOverlap();
+		HCore hCore = oneEI.getHCore();
+		BasisSetLibrary bsl = twoEI.getBasisSetLibrary();
+		int[] atomBlockSizes = bsl.getAtomBlockSizes();
+		BlockSparseMatrix hCoreBlocks = hCore.toBlockSparse(bsl);
+
+		boolean converged = false;
+		double oldEnergy = 0.0;
+		double nuclearEnergy = nuclearEnergy();
+
+		// init memory for the matrices
+		gMatrix = new GMatrix(hCore.getRowDimension());
+		fock = new Fock(hCore.getRowDimension());
+		mos = null;
+
+		// guess the density, or purify that of HCore
+		if (guessInitialDM && densityGuesser != null) {
+			density = new Density(densityGuesser.guessDM(this).getData());
+		} else {
+			density = densityPurifier.purify(hCore, overlap, noOfOccupancies, atomBlockSizes);
+		}
+
+		FockExtrapolator diis = fockExtrapolatorFactory.get();
+
+		// start the SCF cycle
+		for (scfIteration = 0; scfIteration < maxIteration; scfIteration++) {
+
+			// make the G and fock matrices
+			gMatrix.compute(SCFType.HARTREE_FOCK, twoEI, density);
+			fock.compute(hCore, gMatrix);
+
+			// apply DIIS
+			fock = diis.next(fock, overlap, density);
+
+			// compute the total energy at this point, block by block
+			BlockSparseMatrix densityBlocks = density.toBlockSparse(bsl);
+			energy = densityBlocks.traceOfProduct(hCoreBlocks)
+					+ densityBlocks.traceOfProduct(fock.toBlockSparse(bsl)) + nuclearEnergy;
+
+			LOG.debug("SCF iteration: " + scfIteration + "\t Energy is : " + energy + "\tdelta_E: "
+					+ (energy - oldEnergy) + "\tpurification iterations: " + densityPurifier.getIterations());
+
+			// fire the SCF event notification
+			scfEvent.setType(SCFEvent.INFO_EVENT);
+			scfEvent.setCurrentIteration(scfIteration);
+			scfEvent.setCurrentEnergy(energy);
+			fireSCFEventListenerScfEventOccured(scfEvent);
+
+			// check for convergence
+			if (FastMath.abs(energy - oldEnergy) < energyTolerance) {
+				converged = true;
+				scfEvent.setType(SCFEvent.CONVERGED_EVENT);
+				scfEvent.setCurrentIteration(scfIteration);
+				scfEvent.setCurrentEnergy(energy);
+				fireSCFEventListenerScfEventOccured(scfEvent);
+				break;
+			}
+
+			oldEnergy = energy;
+
+			// purify the new density
+			density = densityPurifier.purify(fock, overlap, noOfOccupancies, atomBlockSizes);
+		} // end of SCF iteration
+
+		// not converged? then inform so...
+		if (!converged) {
+			scfEvent.setType(SCFEvent.FAILED_CONVERGENCE_EVENT);
+			scfEvent.setCurrentIteration(scfIteration);
+			scfEvent.setCurrentEnergy(energy);
+			fireSCFEventListenerScfEventOccured(scfEvent);
+		}
+	}
+
+	/**
+	 * Getter for property densityPurifier, through which its thresholds may be
+	 * set.
+	 *
+	 * @return Value of property densityPurifier.
+	 */
+	public DensityPurifier getDensityPurifier() {
+		return densityPurifier;
+	}
+
+	/**
+	 * The MOs of the final Fock matrix, diagonalised on first call.
+	 *
+	 * @return the MOs, or null before the SCF
+	 */
+	@Override
+	public MolecularOrbitals getMos() {
+		if (mos == null && fock != null) {
+			Overlap overlap = oneEI.getOverlap();
+
+			mos = new MolecularOrbitals(overlap.getNumberOfIndependentFunctions(), fock.getRowDimension());
+			mos.compute(fock, overlap);
+		}
+
+		return mos;
+	}
+
+	/**
+	 * The MOs of the final Fock matrix, diagonalised on first call.
+	 *
+	 * @param mosNo
+	 *            ignored, as the system is closed shell
+	 * @return the MOs, or null before the SCF
+	 */
+	@Override
+	public MolecularOrbitals getMos(int mosNo) {
+		return getMos();
+	}
+
+	/**
+	 * The orbital energies of the final Fock matrix, diagonalised on first call.
+	 *
+	 * @return the orbital energies
+	 */
+	@Override
+	public double[] getOrbE() {
+		return getMos().getOrbitalEnergies();
+	}
+
+	/**
+	 * The orbital energies of the final Fock matrix, diagonalised on first call.
+	 *
+	 * @param mosNo
+	 *            ignored, as the system is closed shell
+	 * @return the orbital energies
+	 */
+	@Override
+	public double[] getOrbE(int mosNo) {
+		return getOrbE();
+	}
+}
@@ -1,10 +1,15 @@
 package name.mjw.jquante.math.qm;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.hipparchus.linear.RealMatrix;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import name.mjw.jquante.math.DenseMatrix;
 import name.mjw.jquante.math.optimizer.OptimizerFunction;
 import name.mjw.jquante.math.qm.event.SCFEvent;
 import name.mjw.jquante.molecule.Atom;
@@ -53,6 +58,22 @@ public class RestrictedHartreeFockMethod extends SCFMethod implements
 	/** Flag indicating whether the analytical gradient has been computed for the current geometry. */
 	private boolean isDerivativeComputed = false;
 
+	/** The default number of incremental G matrix builds between full ones. */
+	public static final int DEFAULT_FULL_REBUILD_INTERVAL = 8;
+
+	/**
+	 * Whether the G matrix of a direct SCF is updated from the change in the
+	 * density, rather than rebuilt, between full rebuilds. Off unless a caller
+	 * opts in.
+	 */
+	private boolean incrementalFockBuild = false;
+
+	/** The number of incremental G matrix builds between full ones. */
+	private int fullRebuildInterval = DEFAULT_FULL_REBUILD_INTERVAL;
+
+	/** The file an SCFCheckpoint is written to after each iteration, or null. */
+	private Path checkpointPath;
+
 	/**
 	 * Creates a new instance of RestrictedHartreeFockMethod
 	 * 
@@ -120,7 +141,7 @@ public class RestrictedHartreeFockMethod extends SCFMethod implements
 
 		// init memory for the matrices
 		gMatrix = new GMatrix(hCore.getRowDimension());
-		mos = new MolecularOrbitals(hCore.getRowDimension());
+		mos = new MolecularOrbitals(overlap.getNumberOfIndependentFunctions(), hCore.getRowDimension());
 		density = new Density(hCore.getRowDimension());
 		fock = new Fock(hCore.getRowDimension());
 
@@ -128,7 +149,19 @@ public class RestrictedHartreeFockMethod extends SCFMethod implements
 		mos.compute(hCore, overlap);
 		LOG.debug("Initial computed MO coefficient matrix as: \n" + mos);
 
-		FockExtrapolator diis = new DIISFockExtrapolator();
+		FockExtrapolator diis = fockExtrapolatorFactory.get();
+
+		// resuming from a checkpoint? then resume its DIIS subspace too
+		if (guessInitialDM && densityGuesser instanceof CheckpointDensityGuesser restart
+				&& restart.getCheckpoint().restoreHistory(twoEI.getBasisSetLibrary(), diis)) {
+			LOG.debug("DIIS subspace restored from " + restart.getPath());
+		}
+
+		// the density G was last built for, when it may be updated incrementally
+		final boolean incremental = incrementalFockBuild && (scfType == SCFType.HARTREE_FOCK_DIRECT
+				|| scfType == SCFType.HARTREE_FOCK && twoEI.isOnTheFly());
+		Density previousDensity = null;
+		int incrementalBuilds = 0;
 
 		LOG.debug("Initial density matrix \n" + density);
 
@@ -139,8 +172,18 @@ public class RestrictedHartreeFockMethod extends SCFMethod implements
 			density.compute(this, guessInitialDM && (scfIteration == 0),
 					densityGuesser, noOfOccupancies, mos);
 
-			// make the G matrix
-			gMatrix.compute(scfType, twoEI, density);
+			// make the G matrix, or update it from the change in density
+			if (previousDensity != null && incrementalBuilds < fullRebuildInterval) {
+				gMatrix.computeIncremental(twoEI, density, previousDensity);
+				incrementalBuilds++;
+			} else {
+				gMatrix.compute(scfType, twoEI, density);
+				incrementalBuilds = 0;
+			}
+
+			if (incremental) {
+				previousDensity = new Density(density.getData());
+			}
 
 			// make fock matrix
 			fock.compute(hCore, gMatrix);
@@ -152,11 +195,15 @@ public class RestrictedHartreeFockMethod extends SCFMethod implements
 			mos.compute(fock, overlap);
 
 			// compute the total energy at this point
-			eOne = density.multiply(hCore).getTrace();
-			eTwo = density.multiply(fock).getTrace();
+			eOne = DenseMatrix.traceOfProduct(density, hCore);
+			eTwo = DenseMatrix.traceOfProduct(density, fock);
 
 			energy = eOne + eTwo + nuclearEnergy;
 
+			if (checkpointPath != null) {
+				writeCheckpoint(noOfOccupancies, diis);
+			}
+
 			LOG.debug("SCF iteration: " + scfIteration + "\t Energy is : " + energy + "\tdelta_E: "
 					+ (energy - oldEnergy));
 
@@ -188,6 +235,101 @@ public class RestrictedHartreeFockMethod extends SCFMethod implements
 		}
 	}
 
+	/**
+	 * Getter for property incrementalFockBuild.
+	 * 
+	 * @return Value of property incrementalFockBuild.
+	 */
+	public boolean isIncrementalFockBuild() {
+		return incrementalFockBuild;
+	}
+
+	/**
+	 * Setter for property incrementalFockBuild. If set, a direct SCF updates
+	 * the G matrix from the change in the density between iterations, see
+	 * {@link GMatrix#computeIncremental(TwoElectronIntegrals, Density, Density)},
+	 * and only rebuilds it in full every {@link #getFullRebuildInterval()}
+	 * iterations. The default is false.
+	 * 
+	 * @param incrementalFockBuild
+	 *            New value of property incrementalFockBuild.
+	 */
+	public void setIncrementalFockBuild(boolean incrementalFockBuild) {
+		this.incrementalFockBuild = incrementalFockBuild;
+	}
+
+	/**
+	 * Getter for property fullRebuildInterval.
+	 * 
+	 * @return Value of property fullRebuildInterval.
+	 */
+	public int getFullRebuildInterval() {
+		return fullRebuildInterval;
+	}
+
+	/**
+	 * Setter for property fullRebuildInterval, the number of incremental G
+	 * matrix builds between full ones, which bounds the drift of the
+	 * incrementally updated G matrix.
+	 * 
+	 * @param fullRebuildInterval
+	 *            New value of property fullRebuildInterval.
+	 */
+	public void setFullRebuildInterval(int fullRebuildInterval) {
+		if (fullRebuildInterval < 0) {
+			throw new IllegalArgumentException("Full rebuild interval must not be negative: "
+					+ fullRebuildInterval);
+		}
+
+		this.fullRebuildInterval = fullRebuildInterval;
+	}
+
+	/**
+	 * Write the current MOs, the density they give, and the DIIS subspace to
+	 * the checkpoint file.
+	 * 
+	 * @param noOfOccupancies
+	 *            the number of occupied MOs
+	 * @param diis
+	 *            the Fock extrapolator
+	 * @throws UncheckedIOException
+	 *             if the checkpoint can not be written
+	 */
+	private void writeCheckpoint(int noOfOccupancies, FockExtrapolator diis) {
+		final Density nextDensity = new Density(mos.getColumnDimension());
+		nextDensity.compute(this, false, null, noOfOccupancies, mos);
+
+		try {
+			new SCFCheckpoint(twoEI.getBasisSetLibrary(), scfIteration, energy, mos, nextDensity, diis)
+					.write(checkpointPath);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to write SCF checkpoint " + checkpointPath, e);
+		}
+	}
+
+	/**
+	 * Getter for property checkpointPath.
+	 * 
+	 * @return Value of property checkpointPath.
+	 */
+	public Path getCheckpointPath() {
+		return checkpointPath;
+	}
+
+	/**
+	 * Setter for property checkpointPath. If set, an {@link SCFCheckpoint} of
+	 * the MOs, density and DIIS subspace is written to it after each SCF
+	 * iteration, from which a later run can resume with a
+	 * {@link CheckpointDensityGuesser}.
+	 * 
+	 * @param checkpointPath
+	 *            New value of property checkpointPath, or null to not write
+	 *            checkpoints.
+	 */
+	public void setCheckpointPath(Path checkpointPath) {
+		this.checkpointPath = checkpointPath;
+	}
+
 	/**
 	 * This gradient (or Force) calculation is based on Appendix C of Modern
 	 * Quantum Chemistry by Szabo and Ostland, which describes computing
@@ -226,7 +368,7 @@ public class RestrictedHartreeFockMethod extends SCFMethod implements
 
 		// perform scf, and return energy
 		oneEI.compute1E();
-		twoEI.compute2E();
+		twoEI.recompute();
 		scf();
 		isDerivativeComputed = false;
 		return getEnergy();
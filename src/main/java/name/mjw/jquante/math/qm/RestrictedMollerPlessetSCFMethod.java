@@ -31,7 +31,7 @@ public final class RestrictedMollerPlessetSCFMethod extends RestrictedHartreeFoc
 	/**
 	 * transformed MO integrals
 	 */
-	protected double[] moInts;
+	protected TwoElectronIntegralStore moInts;
 
 	/**
 	 * Creates a new instance of MollerPlessetSCFMethod.
@@ -62,10 +62,10 @@ public final class RestrictedMollerPlessetSCFMethod extends RestrictedHartreeFoc
 		transformAOIntsToMOInts();
 
 		// now compute MP2 energy and then compute the total energy
-		int noOfBasisFunctions = mos.getRowDimension();
+		int noOfMOs = mos.getRowDimension();
 		int noOfElectrons = molecule.getNumberOfElectrons();
 		int noOfOccupancies = noOfElectrons / 2;
-		int noOfVirtualOrbitals = noOfBasisFunctions - noOfOccupancies;
+		int noOfVirtualOrbitals = noOfMOs - noOfOccupancies;
 		int noOfUnOccupied = noOfOccupancies + noOfVirtualOrbitals;
 
 		double mp2Energy = 0.0;
@@ -77,8 +77,8 @@ public final class RestrictedMollerPlessetSCFMethod extends RestrictedHartreeFoc
 			for (int b = 0; b < noOfOccupancies; b++) {
 				for (int r = noOfOccupancies; r < noOfUnOccupied; r++) {
 					for (int s = noOfOccupancies; s < noOfUnOccupied; s++) {
-						arbs = moInts[IntegralsUtil.ijkl2intindex(a, r, b, s)];
-						asbr = moInts[IntegralsUtil.ijkl2intindex(a, s, b, r)];
+						arbs = moInts.get(a, r, b, s);
+						asbr = moInts.get(a, s, b, r);
 
 						mp2Energy += arbs * (2.0 * arbs - asbr) / (orbE[a] + orbE[b] - orbE[r] - orbE[s]);
 					}
@@ -101,9 +101,16 @@ public final class RestrictedMollerPlessetSCFMethod extends RestrictedHartreeFoc
 	 * to the MO basis. Only the integrals needed for the MP2 energy correction are
 	 * transformed, reducing the effective scaling to O(nN^4), where n is the number
 	 * of occupied orbitals (&lt;&lt;N).
-	 * The results are stored in {@link #moInts}.
+	 * The results are stored in {@link #moInts}. If the AO integrals are held
+	 * as Cholesky vectors, the vectors are transformed instead, see
+	 * {@link #transformCholeskyVectorsToMOInts()}.
 	 */
 	protected void transformAOIntsToMOInts() {
+		if (twoEI.isCholeskyDecomposed()) {
+			transformCholeskyVectorsToMOInts();
+			return;
+		}
+
 		// Start with (mu,nu|sigma,eta)
 		// Unpack AOints and transform sigma -> b
 		int mu;
@@ -115,14 +122,15 @@ public final class RestrictedMollerPlessetSCFMethod extends RestrictedHartreeFoc
 		int i;
 		int j;
 
-		int noOfBasisFunctions = mos.getRowDimension();
-		int noOfMOS = mos.getColumnDimension();
+		int noOfBasisFunctions = mos.getColumnDimension();
+		int noOfMOS = mos.getRowDimension();
 		int noOfElectrons = molecule.getNumberOfElectrons();
 		int noOfOccupancies = noOfElectrons / 2;
 
-		RealVector tempVector = new ArrayRealVector(noOfBasisFunctions);
-		double[] tempvec = tempVector.toArray();
-		double[] aoints = twoEI.getTwoEIntegrals();
+		// tempVector must wrap tempvec, not a copy of it
+		double[] tempvec = new double[noOfBasisFunctions];
+		RealVector tempVector = new ArrayRealVector(tempvec, false);
+		TwoElectronIntegralStore aoints = twoEI.getTwoEIntegralStore();
 
 		double[][][][] temp = new double[noOfBasisFunctions][noOfBasisFunctions][noOfOccupancies][noOfBasisFunctions];
 
@@ -131,7 +139,7 @@ public final class RestrictedMollerPlessetSCFMethod extends RestrictedHartreeFoc
 				for (eta = 0; eta < noOfBasisFunctions; eta++) {
 					for (b = 0; b < noOfOccupancies; b++) {
 						for (sigma = 0; sigma < noOfBasisFunctions; sigma++) {
-							tempvec[sigma] = aoints[IntegralsUtil.ijkl2intindex(mu, nu, sigma, eta)];
+							tempvec[sigma] = aoints.get(mu, nu, sigma, eta);
 						} // end sigma
 
 						temp[mu][nu][b][eta] = mos.getRowVector(b).dotProduct(tempVector);
@@ -172,7 +180,7 @@ public final class RestrictedMollerPlessetSCFMethod extends RestrictedHartreeFoc
 			} // end eta
 		} // end nu
 
-		moInts = new double[aoints.length];
+		moInts = new SegmentedTwoElectronIntegralStore(aoints.size());
 
 		// Transform mu -> i and repack integrals
 		for (a = 0; a < noOfOccupancies; a++) {
@@ -183,7 +191,7 @@ public final class RestrictedMollerPlessetSCFMethod extends RestrictedHartreeFoc
 							tempvec[sigma] = temp[a][sigma][b][j];
 						} // end sigma
 
-						moInts[IntegralsUtil.ijkl2intindex(a, i, b, j)] = mos.getRowVector(i).dotProduct(tempVector);
+						moInts.set(IntegralsUtil.ijkl2longindex(a, i, b, j), mos.getRowVector(i).dotProduct(tempVector));
 					} // end i
 				} // end b
 			} // end j
@@ -191,6 +199,43 @@ public final class RestrictedMollerPlessetSCFMethod extends RestrictedHartreeFoc
 
 	}
 
+	/**
+	 * Transforms the Cholesky vectors of the AO integrals to the occupied-any MO
+	 * pairs needed for the MP2 energy correction, T<sub>L,ai</sub> =
+	 * &Sigma;<sub>&mu;&nu;</sub> C<sub>a&mu;</sub> L<sub>L,&mu;&nu;</sub>
+	 * C<sub>i&nu;</sub>, and assembles (ai|bj) = &Sigma;<sub>L</sub>
+	 * T<sub>L,ai</sub> T<sub>L,bj</sub>. This is O(nN<sup>2</sup>M) for M
+	 * vectors, rather than O(nN<sup>4</sup>). The results are stored in
+	 * {@link #moInts}.
+	 */
+	protected void transformCholeskyVectorsToMOInts() {
+		final int noOfBasisFunctions = mos.getColumnDimension();
+		final int noOfMOS = mos.getRowDimension();
+		final int noOfOccupancies = molecule.getNumberOfElectrons() / 2;
+
+		final double[][] allMOs = mos.getData();
+		final double[][] occupiedMOs = mos.getSubMatrix(0, noOfOccupancies - 1, 0, noOfBasisFunctions - 1).getData();
+
+		final double[][][] transformed = twoEI.getCholeskyIntegrals().transform(occupiedMOs, allMOs);
+
+		moInts = new SegmentedTwoElectronIntegralStore(IntegralsUtil.numberOfUniqueIntegrals(noOfBasisFunctions));
+
+		for (int a = 0; a < noOfOccupancies; a++) {
+			for (int i = 0; i < noOfMOS; i++) {
+				for (int b = 0; b < noOfOccupancies; b++) {
+					for (int j = 0; j < noOfMOS; j++) {
+						double value = 0.0;
+						for (double[][] vector : transformed) {
+							value += vector[a][i] * vector[b][j];
+						}
+
+						moInts.set(IntegralsUtil.ijkl2longindex(a, i, b, j), value);
+					} // end j
+				} // end b
+			} // end i
+		} // end a
+	}
+
 	/**
 	 * Getter for property mpLevel.
 	 * 
@@ -0,0 +1,224 @@
+package name.mjw.jquante.math.qm;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.math.qm.basis.ContractedGaussian;
+import name.mjw.jquante.molecule.Atom;
+import name.mjw.jquante.molecule.Molecule;
+import name.mjw.jquante.molecule.impl.MoleculeImpl;
+import net.jafama.FastMath;
+
+/**
+ * Guesses the initial density as a Superposition of Atomic Densities (SAD).
+ * The density of each free atom is found by a spherically averaged HF
+ * calculation, in which the electrons of a partially filled shell are spread
+ * evenly over its degenerate orbitals, and the atomic densities are placed
+ * along the diagonal of the molecular density. The off diagonal blocks are
+ * zero.
+ * <p>
+ * The atomic densities are computed once per element and basis set, and are
+ * shared between all instances and threads.
+ *
+ * @author mjw99
+ * @see "J. H. van Lenthe, R. Zwaans, H. J. J. van Dam and M. F. Guest, J.
+ *      Comput. Chem. 27, 926 (2006)"
+ */
+public final class SADDensityGuesser implements DensityGuesser {
+
+	/** Logger object. */
+	private static final Logger LOG = LogManager.getLogger(SADDensityGuesser.class);
+
+	/** The maximum number of iterations of an atomic SCF. */
+	private static final int MAX_ITERATIONS = 100;
+
+	/** The norm of the density change at which an atomic SCF stops. */
+	private static final double DENSITY_TOLERANCE = 1e-6;
+
+	/** The orbital energy difference below which orbitals are degenerate. */
+	private static final double DEGENERACY_TOLERANCE = 1e-4;
+
+	/** The atomic densities, by basis set and element, complete or being computed. */
+	private static final Map<String, CompletableFuture<double[][]>> ATOMIC_DENSITIES = new ConcurrentHashMap<>();
+
+	/**
+	 * Guess the DM as the superposition of atomic densities.
+	 *
+	 * @param scfMethod the SCF method for which the guess is to be done
+	 * @return the block diagonal density matrix of the molecule
+	 * @throws IllegalStateException if an atom has no basis functions in the
+	 *                               basis set
+	 */
+	@Override
+	public Density guessDM(SCFMethod scfMethod) {
+		final Molecule molecule = scfMethod.getMolecule();
+		final BasisSetLibrary bsl = scfMethod.getTwoEI().getBasisSetLibrary();
+		final List<ContractedGaussian> bfs = bsl.getBasisFunctions();
+
+		final Density density = new Density(bfs.size());
+		int offset = 0;
+
+		for (int a = 0; a < molecule.getNumberOfAtoms(); a++) {
+			final Atom atom = molecule.getAtom(a);
+			final double[][] block = getAtomicDensity(atom.getSymbol(), bsl.getBasisName());
+
+			if (offset + block.length > bfs.size() || bfs.get(offset).getCenteredAtom() != atom) {
+				throw new IllegalStateException("Basis functions of atom " + a + " are not where expected");
+			}
+
+			density.setSubMatrix(block, offset, offset);
+			offset += block.length;
+		}
+
+		return density;
+	}
+
+	/**
+	 * The density of a free atom, computed on first use. The returned array is
+	 * shared, and must not be modified.
+	 * <p>
+	 * The first caller for an element and basis set registers a future and runs
+	 * the atomic SCF outside of the map, so that no map lock is held while it
+	 * runs; later callers wait on the future. A failed SCF is not kept, so a
+	 * later call tries again.
+	 *
+	 * @param symbol    the element symbol
+	 * @param basisName the name of the basis set
+	 * @return the spherically averaged density of the neutral atom
+	 * @throws IllegalStateException if the basis set does not cover the element
+	 */
+	static double[][] getAtomicDensity(String symbol, String basisName) {
+		final String key = basisName + ":" + symbol;
+		final CompletableFuture<double[][]> created = new CompletableFuture<>();
+		final CompletableFuture<double[][]> existing = ATOMIC_DENSITIES.putIfAbsent(key, created);
+
+		if (existing == null) {
+			try {
+				created.complete(computeAtomicDensity(symbol, basisName));
+			} catch (RuntimeException e) {
+				ATOMIC_DENSITIES.remove(key, created);
+				created.completeExceptionally(e);
+				throw e;
+			}
+
+			return created.join();
+		}
+
+		try {
+			return existing.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Run the spherically averaged SCF of a free atom.
+	 *
+	 * @param symbol    the element symbol
+	 * @param basisName the name of the basis set
+	 * @return the density of the neutral atom
+	 * @throws IllegalStateException if the basis set does not cover the element
+	 */
+	private static double[][] computeAtomicDensity(String symbol, String basisName) {
+		final Molecule atom = new MoleculeImpl(symbol);
+		atom.addAtom(new Atom(symbol, Vector3D.ZERO));
+
+		final BasisSetLibrary bsl;
+		try {
+			bsl = new BasisSetLibrary(atom, basisName);
+		} catch (Exception e) {
+			throw new IllegalStateException("No " + basisName + " basis for " + symbol, e);
+		}
+
+		final OneElectronIntegrals oneEI = new OneElectronIntegrals(bsl, atom);
+		final TwoElectronIntegrals twoEI = new TwoElectronIntegrals(bsl);
+		final Overlap overlap = oneEI.getOverlap();
+		final HCore hCore = oneEI.getHCore();
+		final int n = hCore.getRowDimension();
+		final int noOfElectrons = atom.getNumberOfElectrons();
+
+		final MolecularOrbitals mos = new MolecularOrbitals(overlap.getNumberOfIndependentFunctions(), n);
+		final GMatrix gMatrix = new GMatrix(n);
+		Fock fock = new Fock(n);
+		final FockExtrapolator diis = new DIISFockExtrapolator();
+
+		mos.compute(hCore, overlap);
+		Density density = occupy(mos, noOfElectrons);
+
+		for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+			gMatrix.compute(SCFType.HARTREE_FOCK, twoEI, density);
+			fock.compute(hCore, gMatrix);
+			fock = diis.next(fock, overlap, density);
+			mos.compute(fock, overlap);
+
+			final Density next = occupy(mos, noOfElectrons);
+			final double change = next.subtract(density).getFrobeniusNorm();
+			density = next;
+
+			if (change < DENSITY_TOLERANCE) {
+				LOG.debug("Atomic density of {} in {} converged after {} iterations", symbol, basisName,
+						iteration + 1);
+				return density.getData();
+			}
+		}
+
+		LOG.warn("Atomic density of {} in {} not converged after {} iterations", symbol, basisName,
+				MAX_ITERATIONS);
+		return density.getData();
+	}
+
+	/**
+	 * Form the density of the lowest orbitals, spreading the electrons of a
+	 * partially filled shell evenly over its degenerate orbitals.
+	 *
+	 * @param mos           the molecular orbitals, lowest first
+	 * @param noOfElectrons the number of electrons
+	 * @return the density, &Sigma;<sub>i</sub> n<sub>i</sub>/2 C<sub>i</sub>
+	 *         C<sub>i</sub><sup>T</sup>
+	 */
+	private static Density occupy(MolecularOrbitals mos, int noOfElectrons) {
+		final double[][] c = mos.getDataRef();
+		final double[] orbE = mos.getOrbitalEnergies();
+		final int noOfMOs = c.length;
+		final int n = mos.getColumnDimension();
+		final double[][] d = new double[n][n];
+
+		double remaining = noOfElectrons;
+		int first = 0;
+
+		while (remaining > 0.0 && first < noOfMOs) {
+			int last = first + 1;
+			while (last < noOfMOs && FastMath.abs(orbE[last] - orbE[first]) < DEGENERACY_TOLERANCE) {
+				last++;
+			}
+
+			final double electrons = FastMath.min(remaining, 2.0 * (last - first));
+			final double occupancy = 0.5 * electrons / (last - first);
+
+			for (int i = first; i < last; i++) {
+				for (int mu = 0; mu < n; mu++) {
+					final double cmu = occupancy * c[i][mu];
+					for (int nu = 0; nu < n; nu++) {
+						d[mu][nu] += cmu * c[i][nu];
+					}
+				}
+			}
+
+			remaining -= electrons;
+			first = last;
+		}
+
+		return new Density(d);
+	}
+}
@@ -0,0 +1,526 @@
+package name.mjw.jquante.math.qm;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.math.qm.basis.ContractedGaussian;
+import net.jafama.FastMath;
+
+/**
+ * A snapshot of an SCF run, the molecular orbitals, orbital energies, density
+ * and DIIS subspace, that can be written to and read back from a compact
+ * binary file, so that a later run can restart from it, see
+ * {@link CheckpointDensityGuesser}.
+ * <p>
+ * Each basis function is recorded by its centre, Cartesian powers and
+ * exponents, so that the snapshot can be mapped onto the same basis functions
+ * in a different order, for instance after the atoms of the molecule have been
+ * reordered.
+ * <p>
+ * The file is big endian: a header of the magic number, the format version,
+ * the number of basis functions n, the number of MOs, the number of DIIS
+ * vectors m, the SCF iteration and the energy, then the basis function
+ * descriptors, the MO coefficients, the orbital energies, the density and,
+ * last, m Fock matrices and m error vectors. A file is written to a temporary
+ * file in the same directory, which is then moved into place, so that a job
+ * that crashes while writing leaves the previous checkpoint intact.
+ *
+ * @author mjw99
+ */
+public final class SCFCheckpoint {
+
+	/** Logger object. */
+	private static final Logger LOG = LogManager.getLogger(SCFCheckpoint.class);
+
+	/** The first four bytes of a checkpoint file, "JQCK". */
+	private static final int MAGIC = 0x4A51434B;
+
+	/** The version of the file format. */
+	private static final int VERSION = 1;
+
+	/** Basis function centres closer than this, in Bohr, are the same. */
+	private static final double ORIGIN_TOLERANCE = 1.0e-6;
+
+	/** Exponents with a relative difference below this are the same. */
+	private static final double EXPONENT_TOLERANCE = 1.0e-10;
+
+	/** The centre of each basis function, x, y, z. */
+	private final double[][] origins;
+
+	/** The Cartesian powers of each basis function, l, m, n. */
+	private final int[][] powers;
+
+	/** The primitive exponents of each basis function. */
+	private final double[][] exponents;
+
+	/** The SCF iteration of the snapshot. */
+	private final int iteration;
+
+	/** The SCF energy of the snapshot. */
+	private final double energy;
+
+	/** The MO coefficients, one MO per row. */
+	private final double[][] mos;
+
+	/** The orbital energies. */
+	private final double[] orbitalEnergies;
+
+	/** The density matrix. */
+	private final double[][] density;
+
+	/** The Fock matrices of the DIIS subspace, oldest first. */
+	private final List<double[][]> fockHistory;
+
+	/** The error vectors of the DIIS subspace, oldest first. */
+	private final List<double[]> errorHistory;
+
+	/**
+	 * Take a snapshot of an SCF run.
+	 *
+	 * @param basisSetLibrary the basis set
+	 * @param iteration       the SCF iteration
+	 * @param energy          the SCF energy
+	 * @param mos             the molecular orbitals and their energies
+	 * @param density         the density matrix of the molecular orbitals
+	 * @param extrapolator    the Fock extrapolator, whose subspace is saved if
+	 *                        it is a {@link DIISFockExtrapolator}, or null
+	 */
+	public SCFCheckpoint(BasisSetLibrary basisSetLibrary, int iteration, double energy, MolecularOrbitals mos,
+			Density density, FockExtrapolator extrapolator) {
+		final List<ContractedGaussian> bfs = basisSetLibrary.getBasisFunctions();
+		final int n = bfs.size();
+
+		this.origins = new double[n][];
+		this.powers = new int[n][];
+		this.exponents = new double[n][];
+
+		for (int i = 0; i < n; i++) {
+			final ContractedGaussian cg = bfs.get(i);
+
+			origins[i] = cg.getOrigin().toArray();
+			powers[i] = new int[] { cg.getPowers().l(), cg.getPowers().m(), cg.getPowers().n() };
+			exponents[i] = cg.getExponents().stream().mapToDouble(Double::doubleValue).toArray();
+		}
+
+		this.iteration = iteration;
+		this.energy = energy;
+		this.mos = mos.getData();
+		this.orbitalEnergies = mos.getOrbitalEnergies() == null ? new double[0]
+				: mos.getOrbitalEnergies().clone();
+		this.density = density.getData();
+
+		if (extrapolator instanceof DIISFockExtrapolator diis) {
+			this.fockHistory = diis.getFockHistory();
+			this.errorHistory = diis.getErrorHistory();
+		} else {
+			this.fockHistory = Collections.emptyList();
+			this.errorHistory = Collections.emptyList();
+		}
+	}
+
+	/**
+	 * A snapshot read from a file.
+	 *
+	 * @param origins         the basis function centres
+	 * @param powers          the basis function powers
+	 * @param exponents       the basis function exponents
+	 * @param iteration       the SCF iteration
+	 * @param energy          the SCF energy
+	 * @param mos             the MO coefficients
+	 * @param orbitalEnergies the orbital energies
+	 * @param density         the density matrix
+	 * @param fockHistory     the DIIS Fock matrices
+	 * @param errorHistory    the DIIS error vectors
+	 */
+	private SCFCheckpoint(double[][] origins, int[][] powers, double[][] exponents, int iteration, double energy,
+			double[][] mos, double[] orbitalEnergies, double[][] density, List<double[][]> fockHistory,
+			List<double[]> errorHistory) {
+		this.origins = origins;
+		this.powers = powers;
+		this.exponents = exponents;
+		this.iteration = iteration;
+		this.energy = energy;
+		this.mos = mos;
+		this.orbitalEnergies = orbitalEnergies;
+		this.density = density;
+		this.fockHistory = fockHistory;
+		this.errorHistory = errorHistory;
+	}
+
+	/**
+	 * Write the snapshot to a file, replacing any previous one.
+	 *
+	 * @param path the file
+	 * @throws IOException if the file can not be written
+	 */
+	public void write(Path path) throws IOException {
+		final int n = origins.length;
+		final int noOfMOs = mos.length;
+		final int m = fockHistory.size();
+
+		long size = 6L * Integer.BYTES + Double.BYTES;
+		for (double[] e : exponents) {
+			size += 3L * Double.BYTES + 4L * Integer.BYTES + (long) e.length * Double.BYTES;
+		}
+		size += Integer.BYTES
+				+ ((long) noOfMOs * n + orbitalEnergies.length + (long) n * n + 2L * m * n * n) * Double.BYTES;
+
+		final ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(size));
+
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(noOfMOs).putInt(m).putInt(iteration)
+				.putDouble(energy);
+
+		for (int i = 0; i < n; i++) {
+			buffer.putDouble(origins[i][0]).putDouble(origins[i][1]).putDouble(origins[i][2]);
+			buffer.putInt(powers[i][0]).putInt(powers[i][1]).putInt(powers[i][2]);
+			buffer.putInt(exponents[i].length);
+			for (double exponent : exponents[i]) {
+				buffer.putDouble(exponent);
+			}
+		}
+
+		putMatrix(buffer, mos);
+		buffer.putInt(orbitalEnergies.length);
+		for (double orbitalEnergy : orbitalEnergies) {
+			buffer.putDouble(orbitalEnergy);
+		}
+		putMatrix(buffer, density);
+
+		for (double[][] fock : fockHistory) {
+			putMatrix(buffer, fock);
+		}
+		for (double[] error : errorHistory) {
+			for (double value : error) {
+				buffer.putDouble(value);
+			}
+		}
+
+		buffer.flip();
+
+		final Path directory = path.toAbsolutePath().getParent();
+		final Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(false);
+			}
+
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+
+		LOG.debug("SCF checkpoint of iteration {} written to {}", iteration, path);
+	}
+
+	/**
+	 * Read a snapshot from a file.
+	 *
+	 * @param path the file
+	 * @return the snapshot
+	 * @throws IOException if the file can not be read, or is not a checkpoint
+	 */
+	public static SCFCheckpoint read(Path path) throws IOException {
+		final ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			buffer = ByteBuffer.allocate(Math.toIntExact(channel.size()));
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// keep reading
+			}
+		}
+		buffer.flip();
+
+		try {
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException(path + " is not an SCF checkpoint");
+			}
+
+			final int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException(path + " has unsupported checkpoint version " + version);
+			}
+
+			final int n = buffer.getInt();
+			final int noOfMOs = buffer.getInt();
+			final int m = buffer.getInt();
+			final int iteration = buffer.getInt();
+			final double energy = buffer.getDouble();
+
+			final double[][] origins = new double[n][];
+			final int[][] powers = new int[n][];
+			final double[][] exponents = new double[n][];
+
+			for (int i = 0; i < n; i++) {
+				origins[i] = new double[] { buffer.getDouble(), buffer.getDouble(), buffer.getDouble() };
+				powers[i] = new int[] { buffer.getInt(), buffer.getInt(), buffer.getInt() };
+				exponents[i] = new double[buffer.getInt()];
+				for (int p = 0; p < exponents[i].length; p++) {
+					exponents[i][p] = buffer.getDouble();
+				}
+			}
+
+			final double[][] mos = getMatrix(buffer, noOfMOs, n);
+			final double[] orbitalEnergies = new double[buffer.getInt()];
+			for (int i = 0; i < orbitalEnergies.length; i++) {
+				orbitalEnergies[i] = buffer.getDouble();
+			}
+			final double[][] density = getMatrix(buffer, n, n);
+
+			final List<double[][]> fockHistory = new ArrayList<>(m);
+			for (int k = 0; k < m; k++) {
+				fockHistory.add(getMatrix(buffer, n, n));
+			}
+			final List<double[]> errorHistory = new ArrayList<>(m);
+			for (int k = 0; k < m; k++) {
+				final double[] error = new double[n * n];
+				buffer.asDoubleBuffer().get(error);
+				buffer.position(buffer.position() + error.length * Double.BYTES);
+				errorHistory.add(error);
+			}
+
+			return new SCFCheckpoint(origins, powers, exponents, iteration, energy, mos, orbitalEnergies, density,
+					fockHistory, errorHistory);
+		} catch (BufferUnderflowException e) {
+			throw new IOException(path + " is truncated", e);
+		}
+	}
+
+	/**
+	 * Map the basis functions of a basis set onto those of the snapshot.
+	 *
+	 * @param basisSetLibrary the basis set
+	 * @return for each basis function, the index of the same function in the
+	 *         snapshot
+	 * @throws IllegalStateException if a basis function is not in the snapshot
+	 */
+	public int[] basisFunctionMap(BasisSetLibrary basisSetLibrary) {
+		final List<ContractedGaussian> bfs = basisSetLibrary.getBasisFunctions();
+
+		if (bfs.size() != origins.length) {
+			throw new IllegalStateException(
+					"Checkpoint has " + origins.length + " basis functions, not " + bfs.size());
+		}
+
+		final int[] map = new int[bfs.size()];
+		final boolean[] used = new boolean[origins.length];
+
+		for (int i = 0; i < bfs.size(); i++) {
+			final ContractedGaussian cg = bfs.get(i);
+			map[i] = -1;
+
+			for (int p = 0; p < origins.length && map[i] < 0; p++) {
+				if (!used[p] && matches(cg, p)) {
+					map[i] = p;
+					used[p] = true;
+				}
+			}
+
+			if (map[i] < 0) {
+				throw new IllegalStateException("Basis function " + i + " is not in the checkpoint");
+			}
+		}
+
+		return map;
+	}
+
+	/**
+	 * Whether a basis function is the one recorded at an index.
+	 *
+	 * @param cg    the basis function
+	 * @param index the index in the snapshot
+	 * @return true if the centre, powers and exponents agree
+	 */
+	private boolean matches(ContractedGaussian cg, int index) {
+		final double[] origin = cg.getOrigin().toArray();
+		for (int x = 0; x < 3; x++) {
+			if (FastMath.abs(origin[x] - origins[index][x]) > ORIGIN_TOLERANCE) {
+				return false;
+			}
+		}
+
+		if (cg.getPowers().l() != powers[index][0] || cg.getPowers().m() != powers[index][1]
+				|| cg.getPowers().n() != powers[index][2]) {
+			return false;
+		}
+
+		final List<Double> cgExponents = cg.getExponents();
+		if (cgExponents.size() != exponents[index].length) {
+			return false;
+		}
+
+		for (int p = 0; p < exponents[index].length; p++) {
+			final double expected = exponents[index][p];
+			if (FastMath.abs(cgExponents.get(p) - expected) > EXPONENT_TOLERANCE * FastMath.abs(expected)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * The density matrix, in the basis function order of a basis set.
+	 *
+	 * @param basisSetLibrary the basis set
+	 * @return the density matrix
+	 * @throws IllegalStateException if the basis set does not match
+	 */
+	public Density getDensity(BasisSetLibrary basisSetLibrary) {
+		return new Density(permute(density, basisFunctionMap(basisSetLibrary)));
+	}
+
+	/**
+	 * The molecular orbitals and their energies, with the coefficients in the
+	 * basis function order of a basis set.
+	 *
+	 * @param basisSetLibrary the basis set
+	 * @return the molecular orbitals
+	 * @throws IllegalStateException if the basis set does not match
+	 */
+	public MolecularOrbitals getMolecularOrbitals(BasisSetLibrary basisSetLibrary) {
+		final int[] map = basisFunctionMap(basisSetLibrary);
+		final MolecularOrbitals molecularOrbitals = new MolecularOrbitals(mos.length, map.length);
+		final double[][] coefficients = molecularOrbitals.getDataRef();
+
+		for (int mo = 0; mo < mos.length; mo++) {
+			for (int i = 0; i < map.length; i++) {
+				coefficients[mo][i] = mos[mo][map[i]];
+			}
+		}
+		molecularOrbitals.setOrbitalEnergies(orbitalEnergies.clone());
+
+		return molecularOrbitals;
+	}
+
+	/**
+	 * Restore the DIIS subspace of the snapshot, in the basis function order of
+	 * a basis set, into an extrapolator.
+	 *
+	 * @param basisSetLibrary the basis set
+	 * @param extrapolator    the extrapolator; only a
+	 *                        {@link DIISFockExtrapolator} has a subspace to
+	 *                        restore
+	 * @return true if a subspace was restored
+	 * @throws IllegalStateException if the basis set does not match
+	 */
+	public boolean restoreHistory(BasisSetLibrary basisSetLibrary, FockExtrapolator extrapolator) {
+		if (!(extrapolator instanceof DIISFockExtrapolator diis) || fockHistory.isEmpty()) {
+			return false;
+		}
+
+		final int[] map = basisFunctionMap(basisSetLibrary);
+		final int n = map.length;
+		final List<double[][]> focks = new ArrayList<>(fockHistory.size());
+		final List<double[]> errors = new ArrayList<>(errorHistory.size());
+
+		for (double[][] fock : fockHistory) {
+			focks.add(permute(fock, map));
+		}
+		for (double[] error : errorHistory) {
+			final double[] permuted = new double[n * n];
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j < n; j++) {
+					permuted[i * n + j] = error[map[i] * n + map[j]];
+				}
+			}
+			errors.add(permuted);
+		}
+
+		diis.restoreHistory(focks, errors);
+
+		return true;
+	}
+
+	/**
+	 * Reorder the rows and columns of a square matrix.
+	 *
+	 * @param matrix the matrix
+	 * @param map    for each new index, the old index
+	 * @return the reordered matrix
+	 */
+	private static double[][] permute(double[][] matrix, int[] map) {
+		final double[][] permuted = new double[map.length][map.length];
+
+		for (int i = 0; i < map.length; i++) {
+			for (int j = 0; j < map.length; j++) {
+				permuted[i][j] = matrix[map[i]][map[j]];
+			}
+		}
+
+		return permuted;
+	}
+
+	/**
+	 * Put a matrix into a buffer, row by row.
+	 *
+	 * @param buffer the buffer
+	 * @param matrix the matrix
+	 */
+	private static void putMatrix(ByteBuffer buffer, double[][] matrix) {
+		for (double[] row : matrix) {
+			buffer.asDoubleBuffer().put(row);
+			buffer.position(buffer.position() + row.length * Double.BYTES);
+		}
+	}
+
+	/**
+	 * Get a matrix from a buffer, row by row.
+	 *
+	 * @param buffer  the buffer
+	 * @param rows    the number of rows
+	 * @param columns the number of columns
+	 * @return the matrix
+	 */
+	private static double[][] getMatrix(ByteBuffer buffer, int rows, int columns) {
+		final double[][] matrix = new double[rows][columns];
+
+		for (double[] row : matrix) {
+			buffer.asDoubleBuffer().get(row);
+			buffer.position(buffer.position() + columns * Double.BYTES);
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * The SCF iteration of the snapshot.
+	 *
+	 * @return the iteration
+	 */
+	public int getIteration() {
+		return iteration;
+	}
+
+	/**
+	 * The SCF energy of the snapshot.
+	 *
+	 * @return the energy
+	 */
+	public double getEnergy() {
+		return energy;
+	}
+
+	/**
+	 * The number of DIIS vectors in the snapshot.
+	 *
+	 * @return the size of the DIIS subspace
+	 */
+	public int getNumberOfDIISVectors() {
+		return fockHistory.size();
+	}
+}
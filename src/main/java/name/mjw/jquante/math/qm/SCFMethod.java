@@ -1,6 +1,7 @@
 package name.mjw.jquante.math.qm;
 
 import java.util.ArrayList;
+import java.util.function.Supplier;
 
 import name.mjw.jquante.common.EventListenerList;
 import name.mjw.jquante.config.impl.AtomInfo;
@@ -106,6 +107,12 @@ public abstract class SCFMethod implements OptimizerFunction {
 	 */
 	protected DensityGuesser densityGuesser;
 
+	/**
+	 * Creates the Fock extrapolator of each SCF run, one per spin for an open
+	 * shell run.
+	 */
+	protected Supplier<FockExtrapolator> fockExtrapolatorFactory;
+
 	/**
 	 * Holds value of property energy.
 	 */
@@ -160,6 +167,7 @@ public abstract class SCFMethod implements OptimizerFunction {
 		this.twoEI = twoEI;
 
 		this.guessInitialDM = false;
+		this.fockExtrapolatorFactory = DIISFockExtrapolator::new;
 		this.openShell = openShell;
 
 		if (this.openShell) {
@@ -396,6 +404,34 @@ public abstract class SCFMethod implements OptimizerFunction {
 		this.densityGuesser = densityGuesser;
 	}
 
+	/**
+	 * Getter for property fockExtrapolatorFactory.
+	 * 
+	 * @return Value of property fockExtrapolatorFactory.
+	 */
+	public Supplier<FockExtrapolator> getFockExtrapolatorFactory() {
+		return this.fockExtrapolatorFactory;
+	}
+
+	/**
+	 * Setter for property fockExtrapolatorFactory, which selects the
+	 * convergence accelerator, {@link DIISFockExtrapolator} by default. For
+	 * example, {@code setFockExtrapolatorFactory(ADIISFockExtrapolator::new)}
+	 * selects ADIIS far from convergence and DIIS near it.
+	 * 
+	 * @param fockExtrapolatorFactory
+	 *            New value of property fockExtrapolatorFactory.
+	 * @throws IllegalArgumentException
+	 *             if the factory is null
+	 */
+	public void setFockExtrapolatorFactory(Supplier<FockExtrapolator> fockExtrapolatorFactory) {
+		if (fockExtrapolatorFactory == null) {
+			throw new IllegalArgumentException("Fock extrapolator factory must not be null");
+		}
+
+		this.fockExtrapolatorFactory = fockExtrapolatorFactory;
+	}
+
 	/**
 	 * Getter for property guessInitialDM.
 	 * 
@@ -60,6 +60,10 @@ public final class SCFMethodFactory {
 			return new RestrictedHartreeFockMethod(molecule, oneEI, twoEI);
 		} else if (type.equals(SCFType.HARTREE_FOCK_DIRECT)) {
 			return new RestrictedHartreeFockMethod(molecule, oneEI, twoEI, type);
+		} else if (type.equals(SCFType.HARTREE_FOCK_DENSITY_FITTING)) {
+			return new RestrictedHartreeFockMethod(molecule, oneEI, twoEI, type);
+		} else if (type.equals(SCFType.HARTREE_FOCK_PURIFICATION)) {
+			return new PurificationHartreeFockMethod(molecule, oneEI, twoEI);
 		} else if (type.equals(SCFType.MOLLER_PLESSET)) {
 			return new RestrictedMollerPlessetSCFMethod(molecule, oneEI, twoEI);
 		} else if (type.equals(SCFType.UNRESTRICTED_HARTREE_FOCK_DIRECT)) {
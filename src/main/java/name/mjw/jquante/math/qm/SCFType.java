@@ -33,6 +33,17 @@ public class SCFType {
 	 */
 	public static final SCFType UNRESTRICTED_HARTREE_FOCK_DIRECT = new SCFType(3);
 
+	/**
+	 * The Hartree Fock method, with density fitted (RI-J/K) integrals
+	 */
+	public static final SCFType HARTREE_FOCK_DENSITY_FITTING = new SCFType(4);
+
+	/**
+	 * The Hartree Fock method, with densities by purification rather than
+	 * diagonalisation
+	 */
+	public static final SCFType HARTREE_FOCK_PURIFICATION = new SCFType(5);
+
 	/**
 	 * Creates a new instance of SCFType.
 	 *
@@ -68,6 +79,10 @@ public class SCFType {
 			description = "Moller Plesset Method (in core)";
 		} else if (this.equals(UNRESTRICTED_HARTREE_FOCK_DIRECT)) {
 			description = "Unrestricted Hartree Fock method (UHF)";
+		} else if (this.equals(HARTREE_FOCK_DENSITY_FITTING)) {
+			description = "Hartree Fock Method (density fitting)";
+		} else if (this.equals(HARTREE_FOCK_PURIFICATION)) {
+			description = "Hartree Fock Method (density purification)";
 		} else {
 			description = "No description available";
 		} // end if
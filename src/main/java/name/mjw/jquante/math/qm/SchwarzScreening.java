@@ -0,0 +1,185 @@
+package name.mjw.jquante.math.qm;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.math.qm.basis.ContractedGaussian;
+import name.mjw.jquante.math.qm.basis.Shell;
+import name.mjw.jquante.math.qm.integral.Integrals;
+
+import net.jafama.FastMath;
+
+/**
+ * Cauchy-Schwarz bounds for the two-electron integrals.
+ * <p>
+ * For every pair of basis functions Q<sub>ij</sub> = sqrt((ij|ij)) is
+ * evaluated, and |(ij|kl)| &le; Q<sub>ij</sub>Q<sub>kl</sub>. Quartets whose
+ * bound falls below {@link #getThreshold()} can be skipped by the integral and
+ * G matrix drivers. The table is built per shell pair of a
+ * {@link BasisSetLibrary}; the largest bound within a shell pair is also kept
+ * for screening whole shell quartets.
+ *
+ * @author mjw99
+ */
+public final class SchwarzScreening {
+
+	/** Logger object. */
+	private static final Logger LOG = LogManager.getLogger(SchwarzScreening.class);
+
+	/** Default screening threshold. */
+	public static final double DEFAULT_THRESHOLD = 1.0e-10;
+
+	/** The number of basis functions. */
+	private final int noOfBasisFunctions;
+
+	/** Q_ij for every basis function pair i &ge; j, packed as i(i+1)/2+j. */
+	private final double[] pairBounds;
+
+	/** The largest Q_ij within each shell pair, indexed [shellA][shellB]. */
+	private final double[][] shellPairBounds;
+
+	/** Quartets with Q_ij*Q_kl below this value are considered negligible. */
+	private double threshold;
+
+	/**
+	 * Creates the bound table with the {@link #DEFAULT_THRESHOLD}.
+	 *
+	 * @param basisSetLibrary the basis functions to be used
+	 */
+	public SchwarzScreening(BasisSetLibrary basisSetLibrary) {
+		this(basisSetLibrary, DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Creates the bound table.
+	 *
+	 * @param basisSetLibrary the basis functions to be used
+	 * @param threshold       quartets with Q_ij*Q_kl below this value are
+	 *                        considered negligible
+	 */
+	public SchwarzScreening(BasisSetLibrary basisSetLibrary, double threshold) {
+		final List<ContractedGaussian> bfs = basisSetLibrary.getBasisFunctions();
+		final List<Shell> shells = basisSetLibrary.getShells();
+		final int noOfShells = shells.size();
+
+		this.noOfBasisFunctions = bfs.size();
+		this.threshold = threshold;
+
+		// pairs not covered by a shell are never screened
+		pairBounds = new double[noOfBasisFunctions * (noOfBasisFunctions + 1) / 2];
+		Arrays.fill(pairBounds, Double.POSITIVE_INFINITY);
+
+		shellPairBounds = new double[noOfShells][noOfShells];
+
+		IntStream.range(0, noOfShells).parallel().forEach(a -> {
+			final Shell shellA = shells.get(a);
+
+			for (int b = 0; b <= a; b++) {
+				final Shell shellB = shells.get(b);
+				double shellMax = 0.0;
+
+				for (int i = shellA.getFirstBasisFunctionIndex(); i <= shellA.getLastBasisFunctionIndex(); i++) {
+					for (int j = shellB.getFirstBasisFunctionIndex(); j <= shellB.getLastBasisFunctionIndex(); j++) {
+						final int p = FastMath.max(i, j);
+						final int q = FastMath.min(i, j);
+						final double bound = FastMath
+								.sqrt(FastMath.abs(Integrals.coulomb(bfs.get(p), bfs.get(q), bfs.get(p), bfs.get(q))));
+
+						pairBounds[p * (p + 1) / 2 + q] = bound;
+						shellMax = FastMath.max(shellMax, bound);
+					}
+				}
+
+				shellPairBounds[a][b] = shellMax;
+				shellPairBounds[b][a] = shellMax;
+			}
+		});
+
+		LOG.debug("Schwarz bounds computed for {} shell pairs", noOfShells * (noOfShells + 1) / 2);
+	}
+
+	/**
+	 * The Schwarz bound Q_ij = sqrt((ij|ij)) of a basis function pair.
+	 *
+	 * @param i index of basis function i
+	 * @param j index of basis function j
+	 * @return Q_ij
+	 */
+	public double getPairBound(int i, int j) {
+		if (i < j) {
+			return pairBounds[j * (j + 1) / 2 + i];
+		}
+
+		return pairBounds[i * (i + 1) / 2 + j];
+	}
+
+	/**
+	 * The largest Schwarz bound of any basis function pair in a shell pair.
+	 *
+	 * @param shellA index of shell A in {@link BasisSetLibrary#getShells()}
+	 * @param shellB index of shell B in {@link BasisSetLibrary#getShells()}
+	 * @return max Q_ij, i in A, j in B
+	 */
+	public double getShellPairBound(int shellA, int shellB) {
+		return shellPairBounds[shellA][shellB];
+	}
+
+	/**
+	 * Whether the integral (ij|kl) is guaranteed to be below the threshold.
+	 *
+	 * @param i index of basis function i
+	 * @param j index of basis function j
+	 * @param k index of basis function k
+	 * @param l index of basis function l
+	 * @return true if Q_ij*Q_kl is below the threshold
+	 */
+	public boolean isNegligible(int i, int j, int k, int l) {
+		return getPairBound(i, j) * getPairBound(k, l) < threshold;
+	}
+
+	/**
+	 * Whether every integral of the shell quartet (AB|CD) is guaranteed to be
+	 * below the threshold.
+	 *
+	 * @param a index of shell A
+	 * @param b index of shell B
+	 * @param c index of shell C
+	 * @param d index of shell D
+	 * @return true if the shell pair bounds product is below the threshold
+	 */
+	public boolean isNegligibleShellQuartet(int a, int b, int c, int d) {
+		return shellPairBounds[a][b] * shellPairBounds[c][d] < threshold;
+	}
+
+	/**
+	 * The number of basis functions covered by this table.
+	 *
+	 * @return the number of basis functions
+	 */
+	public int getNumberOfBasisFunctions() {
+		return noOfBasisFunctions;
+	}
+
+	/**
+	 * Get the value of threshold
+	 *
+	 * @return the value of threshold
+	 */
+	public double getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Set the value of threshold. A threshold of zero disables screening.
+	 *
+	 * @param threshold new value of threshold
+	 */
+	public void setThreshold(double threshold) {
+		this.threshold = threshold;
+	}
+}
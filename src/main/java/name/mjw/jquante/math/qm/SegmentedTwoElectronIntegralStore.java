@@ -0,0 +1,141 @@
+package name.mjw.jquante.math.qm;
+
+import name.mjw.jquante.math.qm.integral.IntegralsUtil;
+
+/**
+ * An in-core {@link TwoElectronIntegralStore} backed by a list of fixed size
+ * <code>double[]</code> segments. Each segment holds 2<sup>segmentShift</sup>
+ * integrals, which keeps every individual array well below the 2<sup>31</sup>
+ * element limit of the JVM while allowing the store as a whole to be addressed
+ * with a 64-bit index.
+ *
+ * @author mjw99
+ */
+public final class SegmentedTwoElectronIntegralStore implements TwoElectronIntegralStore {
+
+	/**
+	 * Default segment size, 2<sup>27</sup> doubles (1 GiB) per segment.
+	 */
+	static final int DEFAULT_SEGMENT_SHIFT = 27;
+
+	/** The number of addressable integrals. */
+	private final long size;
+
+	/** log2 of the number of integrals per segment. */
+	private final int segmentShift;
+
+	/** Mask used to obtain the offset within a segment. */
+	private final long segmentMask;
+
+	/** The backing segments. */
+	private final double[][] segments;
+
+	/**
+	 * Creates a new, zero filled, store.
+	 *
+	 * @param size
+	 *            the number of integrals to be stored
+	 */
+	public SegmentedTwoElectronIntegralStore(long size) {
+		this(size, DEFAULT_SEGMENT_SHIFT);
+	}
+
+	/**
+	 * Creates a new, zero filled, store with a given segment size.
+	 *
+	 * @param size
+	 *            the number of integrals to be stored
+	 * @param segmentShift
+	 *            log2 of the number of integrals per segment
+	 */
+	SegmentedTwoElectronIntegralStore(long size, int segmentShift) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Negative store size: " + size);
+		}
+		if (segmentShift < 1 || segmentShift > 30) {
+			throw new IllegalArgumentException("Segment shift out of range: " + segmentShift);
+		}
+
+		this.size = size;
+		this.segmentShift = segmentShift;
+		this.segmentMask = (1L << segmentShift) - 1;
+
+		final long segmentLength = 1L << segmentShift;
+		final int noOfSegments = (int) ((size + segmentLength - 1) >>> segmentShift);
+
+		segments = new double[noOfSegments][];
+		for (int s = 0; s < noOfSegments; s++) {
+			final long remaining = size - ((long) s << segmentShift);
+			segments[s] = new double[(int) Math.min(segmentLength, remaining)];
+		}
+	}
+
+	/**
+	 * Creates a single segment store that wraps (not copies) an existing array.
+	 *
+	 * @param integrals
+	 *            the integrals, indexed by their canonical index
+	 */
+	public SegmentedTwoElectronIntegralStore(double[] integrals) {
+		this.size = integrals.length;
+		this.segmentShift = 31;
+		this.segmentMask = (1L << segmentShift) - 1;
+		this.segments = new double[][] { integrals };
+	}
+
+	/**
+	 * Creates a store large enough to hold all the unique integrals for a
+	 * given number of basis functions.
+	 *
+	 * @param noOfBasisFunctions
+	 *            the number of basis functions
+	 * @return a zero filled store
+	 */
+	public static SegmentedTwoElectronIntegralStore forBasisFunctions(int noOfBasisFunctions) {
+		return new SegmentedTwoElectronIntegralStore(
+				IntegralsUtil.numberOfUniqueIntegrals(noOfBasisFunctions));
+	}
+
+	@Override
+	public long size() {
+		return size;
+	}
+
+	@Override
+	public double get(long index) {
+		return segments[(int) (index >>> segmentShift)][(int) (index & segmentMask)];
+	}
+
+	@Override
+	public void set(long index, double value) {
+		segments[(int) (index >>> segmentShift)][(int) (index & segmentMask)] = value;
+	}
+
+	/**
+	 * The number of backing segments.
+	 *
+	 * @return the number of segments
+	 */
+	public int getNumberOfSegments() {
+		return segments.length;
+	}
+
+	/**
+	 * Return the backing array, if the whole store fits into a single segment.
+	 *
+	 * @return the backing array
+	 * @throws UnsupportedOperationException
+	 *             if the store spans more than one segment
+	 */
+	public double[] toArray() {
+		if (segments.length == 0) {
+			return new double[0];
+		}
+		if (segments.length > 1) {
+			throw new UnsupportedOperationException(
+					"Integral store of " + size + " elements does not fit in a single array");
+		}
+
+		return segments[0];
+	}
+}
@@ -0,0 +1,362 @@
+package name.mjw.jquante.math.qm;
+
+import java.util.Arrays;
+
+import name.mjw.jquante.math.qm.integral.IntegralsUtil;
+
+import net.jafama.FastMath;
+
+/**
+ * An in-core {@link TwoElectronIntegralStore} that only holds the integrals
+ * whose magnitude is at least a cutoff.
+ * <p>
+ * The integrals are grouped by their bra pair index ij = i(i+1)/2 + j. Each
+ * group holds the ket pair indices kl = k(k+1)/2 + l, in increasing order, and
+ * the matching values, so that a stored integral costs 12 bytes and a G matrix
+ * build need only visit the stored integrals. Integrals that are not stored
+ * read as zero. The store is immutable once built, see {@link Builder}.
+ *
+ * @author mjw99
+ */
+public final class SparseTwoElectronIntegralStore implements TwoElectronIntegralStore {
+
+	/** The largest number of basis functions whose pair indices fit an int. */
+	public static final int MAX_BASIS_FUNCTIONS = 0xFFFF;
+
+	/** The number of basis functions. */
+	private final int noOfBasisFunctions;
+
+	/** Integrals below this magnitude are not stored. */
+	private final double cutoff;
+
+	/** The ket pair indices of each bra pair, in increasing order. */
+	private final int[][] ketPairs;
+
+	/** The integral values of each bra pair. */
+	private final double[][] values;
+
+	/** i of each pair index. */
+	private final int[] pairFirst;
+
+	/** j of each pair index. */
+	private final int[] pairSecond;
+
+	/** The number of stored integrals. */
+	private final long noOfStoredIntegrals;
+
+	/**
+	 * Collects integrals for a {@link SparseTwoElectronIntegralStore}.
+	 * <p>
+	 * Integrals may be added from several threads at once; each bra pair group
+	 * is guarded by one of a fixed set of locks.
+	 */
+	public static final class Builder {
+
+		/** Initial capacity of a bra pair group. */
+		private static final int INITIAL_CAPACITY = 8;
+
+		/** Number of locks guarding the bra pair groups, a power of two. */
+		private static final int NUMBER_OF_LOCKS = 256;
+
+		/** The locks guarding the bra pair groups. */
+		private final Object[] locks = new Object[NUMBER_OF_LOCKS];
+
+		/** The number of basis functions. */
+		private final int noOfBasisFunctions;
+
+		/** Integrals below this magnitude are discarded. */
+		private final double cutoff;
+
+		/** The ket pair indices of each bra pair, in order of addition. */
+		private final int[][] ketPairs;
+
+		/** The integral values of each bra pair. */
+		private final double[][] values;
+
+		/** The number of integrals added to each bra pair. */
+		private final int[] counts;
+
+		/**
+		 * Creates a new, empty, builder.
+		 *
+		 * @param noOfBasisFunctions the number of basis functions
+		 * @param cutoff             integrals below this magnitude are discarded
+		 */
+		public Builder(int noOfBasisFunctions, double cutoff) {
+			if (noOfBasisFunctions < 0 || noOfBasisFunctions > MAX_BASIS_FUNCTIONS) {
+				throw new IllegalArgumentException(
+						"Number of basis functions out of range for a sparse store: " + noOfBasisFunctions);
+			}
+
+			final int noOfPairs = (int) ((long) noOfBasisFunctions * (noOfBasisFunctions + 1) / 2);
+
+			this.noOfBasisFunctions = noOfBasisFunctions;
+			this.cutoff = cutoff;
+			this.ketPairs = new int[noOfPairs][];
+			this.values = new double[noOfPairs][];
+			this.counts = new int[noOfPairs];
+
+			for (int n = 0; n < NUMBER_OF_LOCKS; n++) {
+				locks[n] = new Object();
+			}
+		}
+
+		/**
+		 * Add the integral (ij|kl), given in any of its eight index orders. Each
+		 * integral must be added at most once.
+		 *
+		 * @param i     Index of contracted Gaussian function i.
+		 * @param j     Index of contracted Gaussian function j.
+		 * @param k     Index of contracted Gaussian function k.
+		 * @param l     Index of contracted Gaussian function l.
+		 * @param value the integral (ij|kl)
+		 */
+		public void add(int i, int j, int k, int l, double value) {
+			if (value == 0.0 || FastMath.abs(value) < cutoff) {
+				return;
+			}
+
+			int ij = pairIndex(i, j);
+			int kl = pairIndex(k, l);
+
+			if (ij < kl) {
+				final int temp = ij;
+				ij = kl;
+				kl = temp;
+			}
+
+			synchronized (locks[ij & (NUMBER_OF_LOCKS - 1)]) {
+				final int count = counts[ij];
+				if (count == 0) {
+					ketPairs[ij] = new int[INITIAL_CAPACITY];
+					values[ij] = new double[INITIAL_CAPACITY];
+				} else if (count == ketPairs[ij].length) {
+					ketPairs[ij] = Arrays.copyOf(ketPairs[ij], 2 * count);
+					values[ij] = Arrays.copyOf(values[ij], 2 * count);
+				}
+
+				ketPairs[ij][count] = kl;
+				values[ij][count] = value;
+				counts[ij] = count + 1;
+			}
+		}
+
+		/**
+		 * Sort and trim the collected integrals into a store. The builder must not
+		 * be used afterwards.
+		 *
+		 * @return the store
+		 */
+		public SparseTwoElectronIntegralStore build() {
+			return new SparseTwoElectronIntegralStore(this);
+		}
+	}
+
+	/**
+	 * Creates the store from the integrals collected by a builder.
+	 *
+	 * @param builder the builder
+	 */
+	private SparseTwoElectronIntegralStore(Builder builder) {
+		this.noOfBasisFunctions = builder.noOfBasisFunctions;
+		this.cutoff = builder.cutoff;
+
+		final int noOfPairs = builder.counts.length;
+		final int[] emptyPairs = new int[0];
+		final double[] emptyValues = new double[0];
+
+		ketPairs = new int[noOfPairs][];
+		values = new double[noOfPairs][];
+
+		long stored = 0;
+		for (int ij = 0; ij < noOfPairs; ij++) {
+			final int count = builder.counts[ij];
+			stored += count;
+
+			if (count == 0) {
+				ketPairs[ij] = emptyPairs;
+				values[ij] = emptyValues;
+				continue;
+			}
+
+			// sort the group by kl, carrying the position of each value along
+			final long[] order = new long[count];
+			for (int n = 0; n < count; n++) {
+				order[n] = ((long) builder.ketPairs[ij][n] << 32) | n;
+			}
+			Arrays.sort(order);
+
+			ketPairs[ij] = new int[count];
+			values[ij] = new double[count];
+			for (int n = 0; n < count; n++) {
+				ketPairs[ij][n] = (int) (order[n] >>> 32);
+				values[ij][n] = builder.values[ij][(int) order[n]];
+			}
+
+			builder.ketPairs[ij] = null;
+			builder.values[ij] = null;
+		}
+		noOfStoredIntegrals = stored;
+
+		pairFirst = new int[noOfPairs];
+		pairSecond = new int[noOfPairs];
+		for (int i = 0, ij = 0; i < noOfBasisFunctions; i++) {
+			for (int j = 0; j <= i; j++, ij++) {
+				pairFirst[ij] = i;
+				pairSecond[ij] = j;
+			}
+		}
+	}
+
+	/**
+	 * The number of integrals addressable by a canonical index, stored or not.
+	 *
+	 * @return the number of unique integrals of the basis
+	 */
+	@Override
+	public long size() {
+		return IntegralsUtil.numberOfUniqueIntegrals(noOfBasisFunctions);
+	}
+
+	/**
+	 * Get the integral at a canonical index.
+	 *
+	 * @param index the canonical index, as returned by
+	 *              {@link IntegralsUtil#ijkl2longindex(int, int, int, int)}
+	 * @return the integral value, or zero if it is not stored
+	 */
+	@Override
+	public double get(long index) {
+		long ij = (long) ((FastMath.sqrt(8.0 * index + 1.0) - 1.0) / 2.0);
+		while (ij * (ij + 1) / 2 > index) {
+			ij--;
+		}
+		while ((ij + 1) * (ij + 2) / 2 <= index) {
+			ij++;
+		}
+
+		return get((int) ij, (int) (index - ij * (ij + 1) / 2));
+	}
+
+	/**
+	 * Get the integral (ij|kl).
+	 *
+	 * @param i Index of contracted Gaussian function i.
+	 * @param j Index of contracted Gaussian function j.
+	 * @param k Index of contracted Gaussian function k.
+	 * @param l Index of contracted Gaussian function l.
+	 * @return the integral value, or zero if it is not stored
+	 */
+	@Override
+	public double get(int i, int j, int k, int l) {
+		final int ij = pairIndex(i, j);
+		final int kl = pairIndex(k, l);
+
+		return ij >= kl ? get(ij, kl) : get(kl, ij);
+	}
+
+	/**
+	 * Get a stored integral by its pair indices.
+	 *
+	 * @param ij the bra pair index
+	 * @param kl the ket pair index, at most ij
+	 * @return the integral value, or zero if it is not stored
+	 */
+	private double get(int ij, int kl) {
+		final int n = Arrays.binarySearch(ketPairs[ij], kl);
+
+		return n >= 0 ? values[ij][n] : 0.0;
+	}
+
+	/**
+	 * Not supported, the store is immutable.
+	 *
+	 * @param index the canonical index
+	 * @param value the integral value
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void set(long index, double value) {
+		throw new UnsupportedOperationException("A sparse integral store is immutable");
+	}
+
+	/**
+	 * The ket pair indices stored for a bra pair, in increasing order. The
+	 * array is shared and must not be modified.
+	 *
+	 * @param ij the bra pair index
+	 * @return the ket pair indices kl &le; ij
+	 */
+	public int[] getKetPairs(int ij) {
+		return ketPairs[ij];
+	}
+
+	/**
+	 * The integrals stored for a bra pair, matching {@link #getKetPairs(int)}.
+	 * The array is shared and must not be modified.
+	 *
+	 * @param ij the bra pair index
+	 * @return the integral values
+	 */
+	public double[] getValues(int ij) {
+		return values[ij];
+	}
+
+	/**
+	 * The first basis function index of a pair index.
+	 *
+	 * @param ij the pair index
+	 * @return i of ij = i(i+1)/2 + j
+	 */
+	public int getPairFirst(int ij) {
+		return pairFirst[ij];
+	}
+
+	/**
+	 * The second basis function index of a pair index.
+	 *
+	 * @param ij the pair index
+	 * @return j of ij = i(i+1)/2 + j
+	 */
+	public int getPairSecond(int ij) {
+		return pairSecond[ij];
+	}
+
+	/**
+	 * The number of integrals actually held.
+	 *
+	 * @return the number of stored integrals
+	 */
+	public long getNumberOfStoredIntegrals() {
+		return noOfStoredIntegrals;
+	}
+
+	/**
+	 * The number of basis functions covered by this store.
+	 *
+	 * @return the number of basis functions
+	 */
+	public int getNumberOfBasisFunctions() {
+		return noOfBasisFunctions;
+	}
+
+	/**
+	 * Integrals below this magnitude are not stored.
+	 *
+	 * @return the cutoff
+	 */
+	public double getCutoff() {
+		return cutoff;
+	}
+
+	/**
+	 * The pair index of two basis functions.
+	 *
+	 * @param i index of basis function i
+	 * @param j index of basis function j
+	 * @return max(i,j)(max(i,j)+1)/2 + min(i,j)
+	 */
+	private static int pairIndex(int i, int j) {
+		return (int) (i >= j ? (long) i * (i + 1) / 2 + j : (long) j * (j + 1) / 2 + i);
+	}
+}
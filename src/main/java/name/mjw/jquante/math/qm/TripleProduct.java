@@ -0,0 +1,52 @@
+package name.mjw.jquante.math.qm;
+
+import org.hipparchus.linear.RealMatrix;
+
+import name.mjw.jquante.math.DenseMatrix;
+
+/**
+ * Forms products ABC of three N x N SCF matrices, such as the FPS of the DIIS
+ * error, with the {@link DenseMatrix} kernels. The work matrices are allocated
+ * on first use and reused by later products of the same size.
+ *
+ * @author mjw99
+ */
+final class TripleProduct {
+
+	/** A, copied. */
+	private DenseMatrix a;
+
+	/** B, copied. */
+	private DenseMatrix b;
+
+	/** C, copied. */
+	private DenseMatrix c;
+
+	/** AB. */
+	private DenseMatrix ab;
+
+	/** ABC. */
+	private DenseMatrix abc;
+
+	/**
+	 * Form ABC. The returned matrix is overwritten by the next product.
+	 *
+	 * @param a the first matrix
+	 * @param b the second matrix
+	 * @param c the third matrix
+	 * @return ABC
+	 */
+	DenseMatrix compute(RealMatrix a, RealMatrix b, RealMatrix c) {
+		final int n = a.getRowDimension();
+		if (this.a == null || this.a.getRowDimension() != n) {
+			this.a = new DenseMatrix(n, n);
+			this.b = new DenseMatrix(n, n);
+			this.c = new DenseMatrix(n, n);
+			this.ab = new DenseMatrix(n, n);
+			this.abc = new DenseMatrix(n, n);
+		}
+
+		DenseMatrix.multiply(this.a.copyFrom(a), this.b.copyFrom(b), ab);
+		return DenseMatrix.multiply(ab, this.c.copyFrom(c), abc);
+	}
+}
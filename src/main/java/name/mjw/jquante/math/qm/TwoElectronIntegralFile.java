@@ -0,0 +1,289 @@
+package name.mjw.jquante.math.qm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A file of two-electron integrals (ij|kl), for conventional SCF when the
+ * integrals do not fit in memory.
+ * <p>
+ * Each record is 16 bytes: the four basis function indices packed into one
+ * long, 16 bits each, followed by the integral value. Records are appended in
+ * blocks by any number of {@link Writer}s, in no particular order, and are read
+ * back sequentially through memory mapped regions of the file. The file is
+ * deleted when it is closed, or, depending upon the platform, as soon as it
+ * has been opened.
+ *
+ * @author mjw99
+ */
+public final class TwoElectronIntegralFile implements Closeable {
+
+	/** Logger object. */
+	private static final Logger LOG = LogManager.getLogger(TwoElectronIntegralFile.class);
+
+	/** Size of one record in bytes. */
+	static final int RECORD_SIZE = 2 * Long.BYTES;
+
+	/** The largest basis function index that can be packed. */
+	public static final int MAX_INDEX = 0xFFFF;
+
+	/** Default number of records buffered by a writer. */
+	private static final int DEFAULT_WRITE_BLOCK = 1 << 16;
+
+	/** Default number of records mapped at a time when reading. */
+	private static final int DEFAULT_READ_BLOCK = 1 << 20;
+
+	/** The file. */
+	private final Path path;
+
+	/** Channel used for both writing and reading. */
+	private final FileChannel channel;
+
+	/** Number of records mapped at a time when reading. */
+	private final int readBlock;
+
+	/** Number of records written so far. */
+	private long noOfIntegrals;
+
+	/**
+	 * Receives the records of the file.
+	 */
+	@FunctionalInterface
+	public interface IntegralVisitor {
+
+		/**
+		 * Visit one integral.
+		 *
+		 * @param i     Index of contracted Gaussian function i.
+		 * @param j     Index of contracted Gaussian function j.
+		 * @param k     Index of contracted Gaussian function k.
+		 * @param l     Index of contracted Gaussian function l.
+		 * @param value the integral (ij|kl)
+		 */
+		void visit(int i, int j, int k, int l, double value);
+	}
+
+	/**
+	 * Buffers records and appends them to the file a block at a time. A writer
+	 * is not thread safe, but any number of writers may append to the same file
+	 * concurrently.
+	 */
+	public final class Writer implements Closeable {
+
+		/** The pending records. */
+		private final ByteBuffer buffer;
+
+		/**
+		 * Creates a new writer.
+		 *
+		 * @param records the number of records to buffer
+		 */
+		private Writer(int records) {
+			buffer = ByteBuffer.allocateDirect(records * RECORD_SIZE).order(ByteOrder.nativeOrder());
+		}
+
+		/**
+		 * Append an integral.
+		 *
+		 * @param i     Index of contracted Gaussian function i.
+		 * @param j     Index of contracted Gaussian function j.
+		 * @param k     Index of contracted Gaussian function k.
+		 * @param l     Index of contracted Gaussian function l.
+		 * @param value the integral (ij|kl)
+		 */
+		public void write(int i, int j, int k, int l, double value) {
+			if (!buffer.hasRemaining()) {
+				flush();
+			}
+
+			buffer.putLong(pack(i, j, k, l));
+			buffer.putDouble(value);
+		}
+
+		/**
+		 * Append the buffered records to the file.
+		 */
+		public void flush() {
+			buffer.flip();
+			append(buffer);
+			buffer.clear();
+		}
+
+		/**
+		 * Flush the buffered records.
+		 */
+		@Override
+		public void close() {
+			flush();
+		}
+	}
+
+	/**
+	 * Creates a new, empty, integral file.
+	 *
+	 * @param directory the directory in which the file is created
+	 * @throws IOException if the file can not be created
+	 */
+	public TwoElectronIntegralFile(Path directory) throws IOException {
+		this(directory, DEFAULT_READ_BLOCK);
+	}
+
+	/**
+	 * Creates a new, empty, integral file with a given read block size.
+	 *
+	 * @param directory the directory in which the file is created
+	 * @param readBlock the number of records mapped at a time when reading
+	 * @throws IOException if the file can not be created
+	 */
+	TwoElectronIntegralFile(Path directory, int readBlock) throws IOException {
+		if (readBlock < 1) {
+			throw new IllegalArgumentException("Read block must hold at least one record: " + readBlock);
+		}
+
+		this.readBlock = readBlock;
+		this.path = Files.createTempFile(directory, "jquante-2e-", ".bin");
+		this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.DELETE_ON_CLOSE);
+
+		LOG.debug("Two-electron integral file {} created", path);
+	}
+
+	/**
+	 * Creates a writer that appends to this file.
+	 *
+	 * @return a new writer
+	 */
+	public Writer newWriter() {
+		return new Writer(DEFAULT_WRITE_BLOCK);
+	}
+
+	/**
+	 * Append a block of records to the end of the file.
+	 *
+	 * @param records the records, between position and limit
+	 */
+	private synchronized void append(ByteBuffer records) {
+		final int count = records.remaining() / RECORD_SIZE;
+
+		try {
+			long position = noOfIntegrals * RECORD_SIZE;
+			while (records.hasRemaining()) {
+				position += channel.write(records, position);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to write " + path, e);
+		}
+
+		noOfIntegrals += count;
+	}
+
+	/**
+	 * Visit the records first, ..., first + count - 1, mapping the file a block
+	 * at a time. Different ranges may be read concurrently.
+	 *
+	 * @param first   the first record
+	 * @param count   the number of records
+	 * @param visitor receives the records
+	 */
+	public void read(long first, long count, IntegralVisitor visitor) {
+		if (first < 0 || count < 0 || first + count > getNumberOfIntegrals()) {
+			throw new IllegalArgumentException(
+					"Records " + first + " to " + (first + count) + " are outside of " + path);
+		}
+
+		long record = first;
+		final long end = first + count;
+
+		try {
+			while (record < end) {
+				final int records = (int) Math.min(readBlock, end - record);
+				final MappedByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, record * RECORD_SIZE,
+						(long) records * RECORD_SIZE);
+				block.order(ByteOrder.nativeOrder());
+
+				for (int r = 0; r < records; r++) {
+					final long packed = block.getLong();
+					final double value = block.getDouble();
+
+					visitor.visit((int) (packed >>> 48), (int) (packed >>> 32) & MAX_INDEX,
+							(int) (packed >>> 16) & MAX_INDEX, (int) packed & MAX_INDEX, value);
+				}
+
+				record += records;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read " + path, e);
+		}
+	}
+
+	/**
+	 * Visit every record of the file.
+	 *
+	 * @param visitor receives the records
+	 */
+	public void read(IntegralVisitor visitor) {
+		read(0, getNumberOfIntegrals(), visitor);
+	}
+
+	/**
+	 * The number of integrals written to the file.
+	 *
+	 * @return the number of records
+	 */
+	public synchronized long getNumberOfIntegrals() {
+		return noOfIntegrals;
+	}
+
+	/**
+	 * The location of the file.
+	 *
+	 * @return the path of the file
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Whether the file is still open, and holds its disk space.
+	 *
+	 * @return false once the file is closed
+	 */
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	/**
+	 * Close and delete the file.
+	 *
+	 * @throws IOException if the file can not be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+		LOG.debug("Two-electron integral file {} deleted", path);
+	}
+
+	/**
+	 * Pack four basis function indices into a long.
+	 *
+	 * @param i Index of contracted Gaussian function i.
+	 * @param j Index of contracted Gaussian function j.
+	 * @param k Index of contracted Gaussian function k.
+	 * @param l Index of contracted Gaussian function l.
+	 * @return the packed indices
+	 */
+	static long pack(int i, int j, int k, int l) {
+		return ((long) i << 48) | ((long) j << 32) | ((long) k << 16) | l;
+	}
+}
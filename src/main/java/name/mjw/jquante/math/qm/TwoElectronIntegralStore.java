@@ -0,0 +1,59 @@
+package name.mjw.jquante.math.qm;
+
+import name.mjw.jquante.math.qm.integral.IntegralsUtil;
+
+/**
+ * Storage for the symmetry-unique two-electron integrals (ij|kl). Integrals
+ * are addressed by the 64-bit canonical index returned by
+ * {@link IntegralsUtil#ijkl2longindex(int, int, int, int)}, so that the
+ * number of stored integrals is not limited by the size of a Java array.
+ *
+ * @author mjw99
+ */
+public interface TwoElectronIntegralStore {
+
+	/**
+	 * The number of integrals held by this store.
+	 *
+	 * @return the number of addressable integrals
+	 */
+	public long size();
+
+	/**
+	 * Get the integral at a canonical index.
+	 *
+	 * @param index
+	 *            the canonical index, as returned by
+	 *            {@link IntegralsUtil#ijkl2longindex(int, int, int, int)}
+	 * @return the integral value
+	 */
+	public double get(long index);
+
+	/**
+	 * Set the integral at a canonical index.
+	 *
+	 * @param index
+	 *            the canonical index, as returned by
+	 *            {@link IntegralsUtil#ijkl2longindex(int, int, int, int)}
+	 * @param value
+	 *            the integral value
+	 */
+	public void set(long index, double value);
+
+	/**
+	 * Get the integral (ij|kl).
+	 *
+	 * @param i
+	 *            Index of contracted Gaussian function i.
+	 * @param j
+	 *            Index of contracted Gaussian function j.
+	 * @param k
+	 *            Index of contracted Gaussian function k.
+	 * @param l
+	 *            Index of contracted Gaussian function l.
+	 * @return the integral value
+	 */
+	public default double get(int i, int j, int k, int l) {
+		return get(IntegralsUtil.ijkl2longindex(i, j, k, l));
+	}
+}
@@ -1,7 +1,11 @@
 package name.mjw.jquante.math.qm;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
@@ -10,8 +14,11 @@ import org.apache.logging.log4j.Logger;
 
 import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
 import name.mjw.jquante.math.qm.basis.ContractedGaussian;
+import name.mjw.jquante.math.qm.basis.EvenTemperedAuxiliaryBasis;
 import name.mjw.jquante.math.qm.basis.Power;
 import name.mjw.jquante.math.qm.basis.PrimitiveGaussian;
+import name.mjw.jquante.math.qm.basis.Shell;
+import name.mjw.jquante.math.qm.basis.ShellPair;
 import name.mjw.jquante.math.qm.integral.Integrals;
 import name.mjw.jquante.math.qm.integral.IntegralsUtil;
 import name.mjw.jquante.molecule.Molecule;
@@ -20,11 +27,14 @@ import net.jafama.FastMath;
 
 /**
  * The 2E integral driver.
+ * <p>
+ * Integrals held on disk, see {@link #compute2EOnDisk()}, keep their file open
+ * until the integrals are recomputed or {@link #close()} is called.
  * 
  * @author V.Ganesh
  * @version 2.0 (Part of MeTA v2.0)
  */
-public final class TwoElectronIntegrals {
+public final class TwoElectronIntegrals implements AutoCloseable {
 	/** Logger object. */
 	private static final Logger LOG = LogManager.getLogger(TwoElectronIntegrals.class);
 
@@ -35,9 +45,10 @@ public final class TwoElectronIntegrals {
 	private Molecule molecule;
 
 	/**
-	 * Holds value of property twoEIntegrals.
+	 * Holds value of property twoEIntegrals, addressed by the 64-bit canonical
+	 * index.
 	 */
-	private double[] twoEIntegrals;
+	private TwoElectronIntegralStore twoEIntegrals;
 
 	/** The index of the atom with respect to which 2E derivatives are computed. */
 	private int atomIndex;
@@ -45,12 +56,36 @@ public final class TwoElectronIntegrals {
 	/** The SCF method instance used during derivative evaluation. */
 	protected SCFMethod scfMethod;
 
-	/** List of partial derivative arrays [dx, dy, dz] of the two-electron integrals. */
-	protected ArrayList<double[]> twoEDer;
+	/** List of partial derivative stores [dx, dy, dz] of the two-electron integrals. */
+	protected List<TwoElectronIntegralStore> twoEDer;
 
 	/** If true, integrals are computed on-the-fly rather than stored in memory. */
 	protected boolean onTheFly;
 
+	/** Quartets with a Schwarz bound below this value are not evaluated. */
+	private double schwarzThreshold = SchwarzScreening.DEFAULT_THRESHOLD;
+
+	/** Integrals smaller than this are not written to the disk and sparse stores. */
+	private double integralThreshold = SchwarzScreening.DEFAULT_THRESHOLD;
+
+	/** Schwarz bounds for the current basis, built on first use. */
+	private SchwarzScreening schwarzScreening;
+
+	/** The integrals, when they are held on disk rather than in memory. */
+	private TwoElectronIntegralFile integralFile;
+
+	/** The auxiliary basis for density fitting, or null to generate one. */
+	private BasisSetLibrary auxiliaryBasisSetLibrary;
+
+	/** The density fitted integrals, built on first use. */
+	private DensityFittedIntegrals densityFittedIntegrals;
+
+	/** The Cholesky vectors of the integrals, held in place of the integrals. */
+	private CholeskyTwoElectronIntegrals choleskyIntegrals;
+
+	/** Directory in which integral files are created. */
+	private Path integralDirectory = Path.of(System.getProperty("java.io.tmpdir"));
+
 	/**
 	 * Creates a new instance of TwoElectronIntegrals
 	 * 
@@ -78,21 +113,17 @@ public final class TwoElectronIntegrals {
 			try {
 				compute2E(); // try to do compute 2E incore
 			} catch (OutOfMemoryError e) {
-				// if no memory, resort to direct SCF
-				LOG.error("No memory for in-core integral evaluation" + ". Switching to direct integral evaluation.");
-				this.onTheFly = true;
+				// if no memory, resort to disk or direct SCF
+				fallBackFromInCore();
 			}
 		}
 	}
 
 	/**
-	 * Creates a new instance of TwoElectronIntegrals. Attempts to compute the 2E
-	 * integrals using the atom-grouped method ({@link #compute2EShellPair()})
-	 * that relies on the "basisFunctions" user-defined atom property set up by
-	 * {@link BasisSetLibrary}. If that method is unavailable (e.g. the property
-	 * is absent), it falls back to the conventional basis-function loop
-	 * ({@link #compute2E()}). On {@link OutOfMemoryError}, direct (on-the-fly)
-	 * evaluation is used instead.
+	 * Creates a new instance of TwoElectronIntegrals. The 2E integrals are
+	 * computed a shell quartet at a time by {@link #compute2E()}. On
+	 * {@link OutOfMemoryError}, they are written to disk or, failing that,
+	 * evaluated directly (on-the-fly) instead.
 	 *
 	 * @param basisSetLibrary basis functions for the molecule.
 	 * @param molecule        the molecule for which 2E integrals are evaluated.
@@ -101,30 +132,59 @@ public final class TwoElectronIntegrals {
 	 *                        {@link #compute2E(int, int, int, int)}.
 	 */
 	public TwoElectronIntegrals(BasisSetLibrary basisSetLibrary, Molecule molecule, boolean onTheFly) {
+		this(basisSetLibrary, molecule, onTheFly, SchwarzScreening.DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Creates a new instance of TwoElectronIntegrals, as
+	 * {@link #TwoElectronIntegrals(BasisSetLibrary, Molecule, boolean)}, with an
+	 * explicit Schwarz screening threshold.
+	 *
+	 * @param basisSetLibrary  basis functions for the molecule.
+	 * @param molecule         the molecule for which 2E integrals are evaluated.
+	 * @param onTheFly         if true, the 2E integrals are not pre-computed and
+	 *                         stored.
+	 * @param schwarzThreshold quartets with Q_ij*Q_kl below this value are
+	 *                         skipped; zero disables screening.
+	 */
+	public TwoElectronIntegrals(BasisSetLibrary basisSetLibrary, Molecule molecule, boolean onTheFly,
+			double schwarzThreshold) {
 		this.basisSetLibrary = basisSetLibrary;
 		this.molecule = molecule;
+		this.schwarzThreshold = schwarzThreshold;
 
 		this.onTheFly = onTheFly;
 
 		// compute the 2E integrals
 		if (!onTheFly) {
 			try {
-				// first try in - core method
-				try {
-					compute2EShellPair(); // try to use shell pair algorithm
-				} catch (IllegalStateException e) {
-					LOG.warn("Shell-pair algorithm unavailable ({}); falling back to conventional algorithm",
-							e.getMessage());
-					compute2E();
-				}
+				compute2E(); // try to do compute 2E incore
 			} catch (OutOfMemoryError e) {
-				// if no memory, resort to direct SCF
-				LOG.error("No memory for in-core integral evaluation" + ". Switching to direct integral evaluation.");
-				this.onTheFly = true;
+				// if no memory, resort to disk or direct SCF
+				fallBackFromInCore();
 			}
 		}
 	}
 
+	/**
+	 * Called when the integrals do not fit in memory. The integrals are written
+	 * to an {@link TwoElectronIntegralFile} if possible, otherwise they will be
+	 * evaluated on the fly.
+	 */
+	private void fallBackFromInCore() {
+		twoEIntegrals = null;
+		LOG.error("No memory for in-core integral evaluation. Switching to disk based integral storage.");
+
+		try {
+			compute2EOnDisk();
+		} catch (UncheckedIOException | IllegalStateException e) {
+			LOG.error("Disk based integral storage failed ({}). Switching to direct integral evaluation.",
+					e.getMessage());
+			closeIntegralFile();
+			this.onTheFly = true;
+		}
+	}
+
 	/**
 	 * Compute the 2E integrals, and store it in a single 1D array, in the form
 	 * [ijkl].
@@ -136,26 +196,27 @@ public final class TwoElectronIntegrals {
 
 		// allocate required memory
 		final int noOfBasisFunctions = bfs.size();
-		final int noOfIntegrals = noOfBasisFunctions * (noOfBasisFunctions + 1)
-				* (noOfBasisFunctions * noOfBasisFunctions + noOfBasisFunctions + 2) / 8;
+		final long noOfIntegrals = IntegralsUtil.numberOfUniqueIntegrals(noOfBasisFunctions);
 
 		LOG.debug("noOfIntegrals is {}", noOfIntegrals);
 
-		twoEIntegrals = new double[noOfIntegrals];
+		twoEIntegrals = new SegmentedTwoElectronIntegralStore(noOfIntegrals);
+
+		final SchwarzScreening screening = computeSchwarzScreening();
 
 		// we only need i <= j, k <= l, and ij >= kl
 		for (int i = 0; i < noOfBasisFunctions; i++) {
 			for (int j = 0; j < i + 1; j++) {
-				int ij = i * (i + 1) / 2 + j;
+				long ij = (long) i * (i + 1) / 2 + j;
 
 				for (int k = 0; k < noOfBasisFunctions; k++) {
 					for (int l = 0; l < (k + 1); l++) {
-						int kl = k * (k + 1) / 2 + l;
+						long kl = (long) k * (k + 1) / 2 + l;
 
-						if (ij >= kl) {
-							int ijkl = IntegralsUtil.ijkl2intindex(i, j, k, l);
+						if (ij >= kl && !screening.isNegligible(i, j, k, l)) {
+							long ijkl = IntegralsUtil.ijkl2longindex(i, j, k, l);
 							// record the 2E integrals
-							twoEIntegrals[ijkl] = Integrals.coulomb(bfs.get(i), bfs.get(j), bfs.get(k), bfs.get(l));
+							twoEIntegrals.set(ijkl, Integrals.coulomb(bfs.get(i), bfs.get(j), bfs.get(k), bfs.get(l)));
 						}
 					}
 				}
@@ -168,40 +229,402 @@ public final class TwoElectronIntegrals {
 	 * Compute the 2E integrals, and store it in a single 1D array, in the form
 	 * [ijkl].
 	 * 
-	 * This method has been modified to take advantage of multi core systems where
-	 * available.
+	 * The integrals are evaluated a shell quartet at a time via
+	 * {@link Integrals#coulomb(ShellPair, ShellPair, double[])}, so that
+	 * primitive quantities are shared between the Cartesian components of each
+	 * shell, and the primitive pair data is taken from the cache held by the
+	 * {@link BasisSetLibrary}. This method has been modified to take advantage of multi core
+	 * systems where available. Any previous on-disk integrals are released.
 	 */
 	protected void compute2E() {
 		LOG.debug("compute2E() called");
+		densityFittedIntegrals = null;
+		choleskyIntegrals = null;
+		closeIntegralFile();
 		final List<ContractedGaussian> bfs = basisSetLibrary.getBasisFunctions();
 
 		// allocate required memory
 		final int noOfBasisFunctions = bfs.size();
-		final int noOfIntegrals = noOfBasisFunctions * (noOfBasisFunctions + 1)
-				* (noOfBasisFunctions * noOfBasisFunctions + noOfBasisFunctions + 2) / 8;
+		final long noOfIntegrals = IntegralsUtil.numberOfUniqueIntegrals(noOfBasisFunctions);
 
 		LOG.debug("noOfIntegrals is {}", noOfIntegrals);
 
-		twoEIntegrals = new double[noOfIntegrals];
+		twoEIntegrals = new SegmentedTwoElectronIntegralStore(noOfIntegrals);
 
-		// we only need i <= j, k <= l, and ij >= kl
-		IntStream.range(0, noOfBasisFunctions).parallel().forEach(i -> {
-			for (int j = 0; j < i + 1; j++) {
-				int ij = i * (i + 1) / 2 + j;
-				for (int k = 0; k < noOfBasisFunctions; k++) {
-					for (int l = 0; l < k + 1; l++) {
-						int kl = k * (k + 1) / 2 + l;
+		computeShellQuartets(() -> this::storeShellQuartet);
+	}
 
-						if (ij >= kl) {
-							int ijkl = IntegralsUtil.ijkl2intindex(i, j, k, l);
-							// record the 2E integrals
-							twoEIntegrals[ijkl] = Integrals.coulomb(bfs.get(i), bfs.get(j), bfs.get(k), bfs.get(l));
+	/**
+	 * Compute the 2E integrals a shell quartet at a time, as {@link #compute2E()},
+	 * but write them to a {@link TwoElectronIntegralFile} in
+	 * {@link #getIntegralDirectory()} instead of holding them in memory.
+	 * Integrals whose magnitude is below the {@link #getIntegralThreshold()
+	 * integral threshold} are not written.
+	 * Any previous in-core or on-disk integrals are released.
+	 *
+	 * @throws UncheckedIOException  if the file can not be written
+	 * @throws IllegalStateException if there are too many basis functions to be
+	 *                               indexed by the file
+	 */
+	public void compute2EOnDisk() {
+		LOG.debug("compute2EOnDisk() called");
+		final List<ContractedGaussian> bfs = basisSetLibrary.getBasisFunctions();
+
+		if (bfs.size() > TwoElectronIntegralFile.MAX_INDEX + 1) {
+			throw new IllegalStateException(bfs.size() + " basis functions can not be indexed by an integral file");
+		}
+
+		twoEIntegrals = null;
+		densityFittedIntegrals = null;
+		choleskyIntegrals = null;
+		closeIntegralFile();
+
+		final TwoElectronIntegralFile file;
+		try {
+			file = new TwoElectronIntegralFile(integralDirectory);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to create an integral file in " + integralDirectory, e);
+		}
+
+		try {
+			computeShellQuartets(() -> {
+				final TwoElectronIntegralFile.Writer writer = file.newWriter();
+				final TwoElectronIntegralFile.IntegralVisitor screened = (i, j, k, l, value) -> {
+					if (value != 0.0 && FastMath.abs(value) >= integralThreshold) {
+						writer.write(i, j, k, l, value);
+					}
+				};
+
+				return new ShellQuartetSink() {
+					@Override
+					public void accept(Shell a, Shell b, Shell c, Shell d, double[] block) {
+						emitShellQuartet(screened, a, b, c, d, block);
+					}
+
+					@Override
+					public void close() {
+						writer.close();
+					}
+				};
+			});
+		} catch (RuntimeException e) {
+			try {
+				file.close();
+			} catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e;
+		}
+
+		integralFile = file;
+		onTheFly = false;
+
+		LOG.info("{} two-electron integrals written to {}", file.getNumberOfIntegrals(), file.getPath());
+	}
+
+	/**
+	 * Compute the 2E integrals a shell quartet at a time, as {@link #compute2E()},
+	 * but hold only those whose magnitude is at least the
+	 * {@link #getIntegralThreshold() integral threshold}, in a
+	 * {@link SparseTwoElectronIntegralStore}.
+	 */
+	public void compute2ESparse() {
+		compute2ESparse(integralThreshold);
+	}
+
+	/**
+	 * Compute the 2E integrals a shell quartet at a time, as {@link #compute2E()},
+	 * but hold only those whose magnitude is at least a cutoff, in a
+	 * {@link SparseTwoElectronIntegralStore}. Any previous in-core or on-disk
+	 * integrals are released.
+	 *
+	 * @param cutoff integrals below this magnitude are not stored
+	 */
+	public void compute2ESparse(double cutoff) {
+		LOG.debug("compute2ESparse() called");
+
+		twoEIntegrals = null;
+		densityFittedIntegrals = null;
+		choleskyIntegrals = null;
+		closeIntegralFile();
+
+		final SparseTwoElectronIntegralStore.Builder builder = new SparseTwoElectronIntegralStore.Builder(
+				basisSetLibrary.getBasisFunctions().size(), cutoff);
+
+		computeShellQuartets(() -> (a, b, c, d, block) -> emitShellQuartet(builder::add, a, b, c, d, block));
+
+		final SparseTwoElectronIntegralStore store = builder.build();
+		twoEIntegrals = store;
+		onTheFly = false;
+
+		LOG.info("{} of {} two-electron integrals stored", store.getNumberOfStoredIntegrals(), store.size());
+	}
+
+	/**
+	 * Decompose the 2E integrals into Cholesky vectors with the
+	 * {@link CholeskyTwoElectronIntegrals#DEFAULT_TOLERANCE default tolerance}.
+	 */
+	public void computeCholesky() {
+		computeCholesky(CholeskyTwoElectronIntegrals.DEFAULT_TOLERANCE);
+	}
+
+	/**
+	 * Decompose the 2E integrals into Cholesky vectors, and hold those instead
+	 * of the integrals. The diagonal and pivot columns of the decomposition are
+	 * evaluated with {@link #compute2E(int, int, int, int)}. Any previous
+	 * in-core or on-disk integrals are released.
+	 *
+	 * @param tolerance the largest allowed error of a diagonal integral (ij|ij)
+	 * @throws IllegalArgumentException if the tolerance is not positive
+	 */
+	public void computeCholesky(double tolerance) {
+		LOG.debug("computeCholesky() called");
+
+		twoEIntegrals = null;
+		closeIntegralFile();
+
+		choleskyIntegrals = new CholeskyTwoElectronIntegrals(this, tolerance);
+		onTheFly = false;
+	}
+
+	/**
+	 * Receives the integral blocks of the shell quartets evaluated by one worker
+	 * of {@link TwoElectronIntegrals#computeShellQuartets(Supplier)}.
+	 */
+	@FunctionalInterface
+	private interface ShellQuartetSink extends AutoCloseable {
+
+		/**
+		 * Receive the integrals of a shell quartet.
+		 *
+		 * @param a     shell a
+		 * @param b     shell b
+		 * @param c     shell c
+		 * @param d     shell d
+		 * @param block the integrals, as filled by
+		 *              {@link Integrals#coulomb(ShellPair, ShellPair, double[])}
+		 */
+		void accept(Shell a, Shell b, Shell c, Shell d, double[] block);
+
+		/**
+		 * Called once the worker has evaluated all of its shell quartets.
+		 */
+		@Override
+		default void close() {
+		}
+	}
+
+	/**
+	 * Evaluate every canonical, non-negligible shell quartet via
+	 * {@link Integrals#coulomb(ShellPair, ShellPair, double[])}, with the
+	 * primitive pair data taken from the cache held by the
+	 * {@link BasisSetLibrary}. Each bra shell pair, with all of its ket shell
+	 * pairs, is one task of a {@link LoadBalancedScheduler}; every worker
+	 * passes its quartets to its own sink.
+	 *
+	 * @param sinks creates the sink of each worker
+	 */
+	private void computeShellQuartets(Supplier<ShellQuartetSink> sinks) {
+		final List<Shell> shells = basisSetLibrary.getShells();
+		final int noOfShells = shells.size();
+
+		final SchwarzScreening screening = computeSchwarzScreening();
+
+		int maxShellSize = 0;
+		for (Shell shell : shells) {
+			maxShellSize = FastMath.max(maxShellSize, shell.getNumberOfBasisFunctions());
+		}
+		final int maxBlockSize = maxShellSize * maxShellSize * maxShellSize * maxShellSize;
+
+		final int[] braShellA = new int[noOfShells * (noOfShells + 1) / 2];
+		final int[] braShellB = new int[braShellA.length];
+		for (int a = 0, ab = 0; a < noOfShells; a++) {
+			for (int b = 0; b <= a; b++, ab++) {
+				braShellA[ab] = a;
+				braShellB[ab] = b;
+			}
+		}
+
+		// we only need a >= b, c >= d, and ab >= cd; shells are ordered by basis
+		// function index, so every canonical integral belongs to exactly one
+		// such shell quartet
+		final LoadBalancedScheduler scheduler = new LoadBalancedScheduler(braShellPairCosts(shells));
+		final LoadBalancedScheduler.LoadReport report = scheduler.run(() -> {
+			final double[] block = new double[maxBlockSize];
+			final ShellQuartetSink sink = sinks.get();
+
+			return new LoadBalancedScheduler.Worker() {
+				@Override
+				public void run(int ab) {
+					final int a = braShellA[ab];
+					final int b = braShellB[ab];
+					final Shell shellA = shells.get(a);
+					final Shell shellB = shells.get(b);
+					final ShellPair pairAB = basisSetLibrary.getShellPair(a, b);
+
+					for (int c = 0; c <= a; c++) {
+						final Shell shellC = shells.get(c);
+
+						for (int d = 0; d <= c; d++) {
+							final int cd = c * (c + 1) / 2 + d;
+
+							if (cd > ab || screening.isNegligibleShellQuartet(a, b, c, d)) {
+								continue;
+							}
+
+							final Shell shellD = shells.get(d);
+							Integrals.coulomb(pairAB, basisSetLibrary.getShellPair(c, d), block);
+							sink.accept(shellA, shellB, shellC, shellD, block);
 						}
 					}
 				}
-			}
+
+				@Override
+				public void close() {
+					sink.close();
+				}
+			};
 		});
 
+		LOG.debug("Shell quartet load imbalance {}", report.getTimeImbalance());
+	}
+
+	/**
+	 * Estimate the cost of each bra shell pair task of
+	 * {@link #computeShellQuartets(Supplier)}. The cost of a shell pair is taken
+	 * as the number of primitive pairs times the number of Cartesian component
+	 * pairs, and a bra shell pair task costs its own cost times the summed cost
+	 * of every ket shell pair cd &le; ab.
+	 *
+	 * @param shells the shells
+	 * @return the cost of each bra shell pair, indexed by ab = a(a+1)/2+b
+	 */
+	static double[] braShellPairCosts(List<Shell> shells) {
+		final int noOfShells = shells.size();
+		final double[] costs = new double[noOfShells * (noOfShells + 1) / 2];
+
+		double ketCost = 0.0;
+		for (int a = 0, ab = 0; a < noOfShells; a++) {
+			final Shell shellA = shells.get(a);
+			final double aCost = (double) shellA.getExponents().size() * shellA.getNumberOfBasisFunctions();
+
+			for (int b = 0; b <= a; b++, ab++) {
+				final Shell shellB = shells.get(b);
+				final double pairCost = aCost * shellB.getExponents().size() * shellB.getNumberOfBasisFunctions();
+
+				ketCost += pairCost;
+				costs[ab] = pairCost * ketCost;
+			}
+		}
+
+		return costs;
+	}
+
+	/**
+	 * Pass the integrals of a shell quartet block on, once each and in canonical
+	 * order. Within a diagonal shell pair, or a quartet whose bra and ket shell
+	 * pairs are the same, the block holds more than one permutation of an
+	 * integral; only one is passed on.
+	 *
+	 * @param visitor receives the integrals
+	 * @param a       shell a
+	 * @param b       shell b
+	 * @param c       shell c
+	 * @param d       shell d
+	 * @param block   the integrals, as filled by
+	 *                {@link Integrals#coulomb(ShellPair, ShellPair, double[])}
+	 */
+	private static void emitShellQuartet(TwoElectronIntegralFile.IntegralVisitor visitor, Shell a, Shell b, Shell c,
+			Shell d, double[] block) {
+		final boolean braDiagonal = a == b;
+		final boolean ketDiagonal = c == d;
+		final boolean pairDiagonal = a == c && b == d;
+
+		int index = 0;
+		for (ContractedGaussian ap : a.getBasisFunctions()) {
+			final int i = ap.getBasisFunctionIndex();
+			for (ContractedGaussian bq : b.getBasisFunctions()) {
+				final int j = bq.getBasisFunctionIndex();
+				final long ij = (long) i * (i + 1) / 2 + j;
+				for (ContractedGaussian cr : c.getBasisFunctions()) {
+					final int k = cr.getBasisFunctionIndex();
+					for (ContractedGaussian ds : d.getBasisFunctions()) {
+						final int l = ds.getBasisFunctionIndex();
+						final long kl = (long) k * (k + 1) / 2 + l;
+						final double value = block[index++];
+
+						if ((braDiagonal && j > i) || (ketDiagonal && l > k) || (pairDiagonal && kl > ij)) {
+							continue;
+						}
+
+						if (kl > ij) {
+							visitor.visit(k, l, i, j, value);
+						} else {
+							visitor.visit(i, j, k, l, value);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Release the integral file, if the integrals are held on disk, so that its
+	 * descriptor and disk space are freed without waiting for garbage
+	 * collection. The integrals must be recomputed before they are used again.
+	 */
+	@Override
+	public void close() {
+		closeIntegralFile();
+	}
+
+	/**
+	 * Close and delete the current integral file, if any.
+	 */
+	private void closeIntegralFile() {
+		if (integralFile == null) {
+			return;
+		}
+
+		try {
+			integralFile.close();
+		} catch (IOException e) {
+			LOG.warn("Unable to close {}: {}", integralFile.getPath(), e.getMessage());
+		}
+
+		integralFile = null;
+	}
+
+	/**
+	 * Scatter a shell quartet block into the integral store.
+	 *
+	 * @param a     shell a
+	 * @param b     shell b
+	 * @param c     shell c
+	 * @param d     shell d
+	 * @param block the integrals, as filled by
+	 *              {@link Integrals#coulomb(ShellPair, ShellPair, double[])}
+	 */
+	private void storeShellQuartet(Shell a, Shell b, Shell c, Shell d, double[] block) {
+		final List<ContractedGaussian> aFunctions = a.getBasisFunctions();
+		final List<ContractedGaussian> bFunctions = b.getBasisFunctions();
+		final List<ContractedGaussian> cFunctions = c.getBasisFunctions();
+		final List<ContractedGaussian> dFunctions = d.getBasisFunctions();
+
+		int index = 0;
+		for (ContractedGaussian ap : aFunctions) {
+			final int i = ap.getBasisFunctionIndex();
+			for (ContractedGaussian bq : bFunctions) {
+				final int j = bq.getBasisFunctionIndex();
+				for (ContractedGaussian cr : cFunctions) {
+					final int k = cr.getBasisFunctionIndex();
+					for (ContractedGaussian ds : dFunctions) {
+						twoEIntegrals.set(IntegralsUtil.ijkl2longindex(i, j, k, ds.getBasisFunctionIndex()),
+								block[index++]);
+					}
+				}
+			}
+		}
 	}
 
 	/**
@@ -361,115 +784,6 @@ public final class TwoElectronIntegrals {
 		return new Vector3D(termax + termbx, termay + termby, termaz + termbz);
 	}
 
-	/**
-	 * Returns the basis functions assigned to a given atom via the
-	 * "basisFunctions" user-defined atom property.
-	 *
-	 * @param atomIndex the atom index
-	 * @return the list of ContractedGaussians centred on that atom
-	 * @throws IllegalStateException if the property is absent or has an unexpected type
-	 */
-	@SuppressWarnings("unchecked")
-	private List<ContractedGaussian> getBasisFunctionsForAtom(int atomIndex) {
-		var prop = molecule.getAtom(atomIndex).getUserDefinedAtomProperty("basisFunctions");
-		if (prop == null) {
-			throw new IllegalStateException(
-					"Atom " + atomIndex + " has no 'basisFunctions' property; cannot use shell-pair algorithm");
-		}
-		Object value = prop.getValue();
-		if (!(value instanceof List)) {
-			throw new IllegalStateException(
-					"Atom " + atomIndex + " 'basisFunctions' property is not a List; cannot use shell-pair algorithm");
-		}
-		return (List<ContractedGaussian>) value;
-	}
-
-	/**
-	 * Compute the 2E integrals by iterating over atom-centred basis function
-	 * groups, and store the results in a single 1D array in the form [ijkl].
-	 *
-	 * <p>This method relies on the "basisFunctions" user-defined atom property
-	 * populated by {@link BasisSetLibrary}, which groups contracted Gaussians
-	 * by their centred atom. The integral symmetry i&lt;=j, k&lt;=l, ij&gt;=kl is
-	 * exploited to avoid redundant computation.
-	 */
-	protected void compute2EShellPair() {
-		List<ContractedGaussian> bfs = basisSetLibrary.getBasisFunctions();
-
-		// allocate required memory
-		final int noOfBasisFunctions = bfs.size();
-		final int noOfIntegrals = noOfBasisFunctions * (noOfBasisFunctions + 1)
-				* (noOfBasisFunctions * noOfBasisFunctions + noOfBasisFunctions + 2) / 8;
-
-		twoEIntegrals = new double[noOfIntegrals];
-
-		final int noOfAtoms = molecule.getNumberOfAtoms();
-
-		// Pre-fetch per-atom basis function lists once to avoid repeated
-		// user-defined-property lookups inside the parallel body.
-		final List<List<ContractedGaussian>> atomFunctions = new ArrayList<>(noOfAtoms);
-		for (int a = 0; a < noOfAtoms; a++) {
-			atomFunctions.add(getBasisFunctionsForAtom(a));
-		}
-
-		// Parallelise over the outermost atom index.  The ij >= kl guard ensures
-		// each canonical integral index is written by exactly one thread, so no
-		// synchronisation is needed on twoEIntegrals[].
-		IntStream.range(0, noOfAtoms).parallel().forEach(a -> {
-			final List<ContractedGaussian> aFunc = atomFunctions.get(a);
-			final int naFunc = aFunc.size();
-
-			// basis functions on a
-			for (int i = 0; i < naFunc; i++) {
-				final ContractedGaussian iaFunc = aFunc.get(i);
-				final int iBF = iaFunc.getBasisFunctionIndex();
-
-				// center b
-				for (int b = 0; b <= a; b++) {
-					final List<ContractedGaussian> bFunc = atomFunctions.get(b);
-					final int nbFunc = (b < a) ? bFunc.size() : i + 1;
-
-					// basis functions on b
-					for (int j = 0; j < nbFunc; j++) {
-						final ContractedGaussian jbFunc = bFunc.get(j);
-						final int jBF = jbFunc.getBasisFunctionIndex();
-						final int ij = iBF * (iBF + 1) / 2 + jBF;
-
-						// center c
-						for (int c = 0; c < noOfAtoms; c++) {
-							final List<ContractedGaussian> cFunc = atomFunctions.get(c);
-							final int ncFunc = cFunc.size();
-
-							// basis functions on c
-							for (int k = 0; k < ncFunc; k++) {
-								final ContractedGaussian kcFunc = cFunc.get(k);
-								final int kBF = kcFunc.getBasisFunctionIndex();
-
-								// center d
-								for (int d = 0; d <= c; d++) {
-									final List<ContractedGaussian> dFunc = atomFunctions.get(d);
-									final int ndFunc = (d < c) ? dFunc.size() : k + 1;
-
-									// basis functions on d
-									for (int l = 0; l < ndFunc; l++) {
-										final ContractedGaussian ldFunc = dFunc.get(l);
-										final int lBF = ldFunc.getBasisFunctionIndex();
-										final int kl = kBF * (kBF + 1) / 2 + lBF;
-
-										if (ij >= kl) {
-											final int twoEIndx = IntegralsUtil.ijkl2intindex(iBF, jBF, kBF, lBF);
-											twoEIntegrals[twoEIndx] = compute2E(iaFunc, jbFunc, kcFunc, ldFunc);
-										}
-									} // end for (l)
-								} // end for (d)
-							} // end for (k)
-						} // end for (c)
-					} // end for (j)
-				} // end for (b)
-			} // end for (i)
-		}); // end parallel forEach (a)
-	}
-
 	/**
 	 * 
 	 * Compute an integral centered at &lt;ij&#x7C;kl&gt;
@@ -502,12 +816,178 @@ public final class TwoElectronIntegrals {
 	}
 
 	/**
-	 * Getter for property twoEIntegrals.
+	 * Recompute the integrals for the current state of the molecule. The cached
+	 * Schwarz bounds and any Cholesky or density fitted integrals are dropped;
+	 * in direct mode they are rebuilt on next use, otherwise the integrals are
+	 * evaluated again in-core.
+	 */
+	public void recompute() {
+		schwarzScreening = null;
+		densityFittedIntegrals = null;
+		choleskyIntegrals = null;
+
+		if (!onTheFly) {
+			compute2E();
+		}
+	}
+
+	/**
+	 * (Re)build the Schwarz bounds for the current basis set geometry.
+	 *
+	 * @return the new Schwarz bounds
+	 */
+	protected SchwarzScreening computeSchwarzScreening() {
+		schwarzScreening = new SchwarzScreening(basisSetLibrary, schwarzThreshold);
+
+		return schwarzScreening;
+	}
+
+	/**
+	 * The density fitted integrals of the basis set, built on first use with
+	 * the {@link #getAuxiliaryBasisSetLibrary() auxiliary basis}, or, if none
+	 * has been set, with an {@link EvenTemperedAuxiliaryBasis} generated from
+	 * the basis set.
+	 *
+	 * @return the density fitted integrals
+	 */
+	public DensityFittedIntegrals getDensityFittedIntegrals() {
+		if (densityFittedIntegrals == null) {
+			final BasisSetLibrary auxiliary = auxiliaryBasisSetLibrary != null ? auxiliaryBasisSetLibrary
+					: EvenTemperedAuxiliaryBasis.create(basisSetLibrary);
+
+			densityFittedIntegrals = new DensityFittedIntegrals(basisSetLibrary, auxiliary);
+		}
+
+		return densityFittedIntegrals;
+	}
+
+	/**
+	 * Get the value of auxiliaryBasisSetLibrary
+	 *
+	 * @return the auxiliary basis for density fitting, or null if one is
+	 *         generated
+	 */
+	public BasisSetLibrary getAuxiliaryBasisSetLibrary() {
+		return auxiliaryBasisSetLibrary;
+	}
+
+	/**
+	 * Set the value of auxiliaryBasisSetLibrary, the auxiliary basis used for
+	 * density fitting, for instance one read with
+	 * {@link BasisSetLibrary#auxiliary(Molecule, String)}. Any density fitted
+	 * integrals are rebuilt on next use.
+	 *
+	 * @param auxiliaryBasisSetLibrary the auxiliary basis, or null to generate
+	 *                                 one
+	 */
+	public void setAuxiliaryBasisSetLibrary(BasisSetLibrary auxiliaryBasisSetLibrary) {
+		this.auxiliaryBasisSetLibrary = auxiliaryBasisSetLibrary;
+		this.densityFittedIntegrals = null;
+	}
+
+	/**
+	 * Get the basis functions associated with these 2E integrals.
+	 *
+	 * @return the basis set library
+	 */
+	public BasisSetLibrary getBasisSetLibrary() {
+		return basisSetLibrary;
+	}
+
+	/**
+	 * The Schwarz bounds of the current basis set, built on first use.
+	 *
+	 * @return the Schwarz bounds
+	 */
+	public SchwarzScreening getSchwarzScreening() {
+		if (schwarzScreening == null) {
+			computeSchwarzScreening();
+		}
+
+		return schwarzScreening;
+	}
+
+	/**
+	 * Whether the integral (ij|kl) can be skipped according to its Schwarz
+	 * bound.
+	 *
+	 * @param i Index of contracted Gaussian function i.
+	 * @param j Index of contracted Gaussian function j.
+	 * @param k Index of contracted Gaussian function k.
+	 * @param l Index of contracted Gaussian function l.
+	 * @return true if |(ij|kl)| is guaranteed to be below the threshold
+	 */
+	public boolean isNegligible(int i, int j, int k, int l) {
+		return getSchwarzScreening().isNegligible(i, j, k, l);
+	}
+
+	/**
+	 * Get the value of schwarzThreshold
 	 * 
-	 * @return Value of property twoEIntegrals.
+	 * @return the value of schwarzThreshold
+	 */
+	public double getSchwarzThreshold() {
+		return schwarzThreshold;
+	}
+
+	/**
+	 * Set the value of schwarzThreshold. This affects subsequent integral
+	 * evaluations; a threshold of zero disables screening.
+	 * 
+	 * @param schwarzThreshold new value of schwarzThreshold
+	 */
+	public void setSchwarzThreshold(double schwarzThreshold) {
+		this.schwarzThreshold = schwarzThreshold;
+
+		if (schwarzScreening != null) {
+			schwarzScreening.setThreshold(schwarzThreshold);
+		}
+	}
+
+	/**
+	 * Get the value of integralThreshold
+	 * 
+	 * @return the value of integralThreshold
+	 */
+	public double getIntegralThreshold() {
+		return integralThreshold;
+	}
+
+	/**
+	 * Set the value of integralThreshold, the magnitude below which computed
+	 * integrals are not written by {@link #compute2EOnDisk()} and
+	 * {@link #compute2ESparse()}. Unlike the Schwarz threshold, which skips
+	 * whole shell quartets by their bound, it applies to the value of each
+	 * integral. It affects subsequent integral evaluations; a threshold of zero
+	 * keeps every non-zero integral.
+	 * 
+	 * @param integralThreshold new value of integralThreshold
+	 */
+	public void setIntegralThreshold(double integralThreshold) {
+		this.integralThreshold = integralThreshold;
+	}
+
+	/**
+	 * Getter for property twoEIntegrals, as a flat array.
+	 * 
+	 * @return Value of property twoEIntegrals, or null if the integrals are
+	 *         evaluated on the fly.
+	 * @throws UnsupportedOperationException if the integrals do not fit in a
+	 *                                       single Java array; use
+	 *                                       {@link #getTwoEIntegralStore()}
+	 *                                       instead.
 	 */
 	public double[] getTwoEIntegrals() {
-		return this.twoEIntegrals;
+		if (twoEIntegrals == null) {
+			return null;
+		}
+
+		if (twoEIntegrals instanceof SegmentedTwoElectronIntegralStore segmented) {
+			return segmented.toArray();
+		}
+
+		throw new UnsupportedOperationException(
+				"Integrals held in a " + twoEIntegrals.getClass().getSimpleName() + " cannot be returned as an array");
 	}
 
 	/**
@@ -516,6 +996,26 @@ public final class TwoElectronIntegrals {
 	 * @param twoEIntegrals New value of property twoEIntegrals.
 	 */
 	public void setTwoEIntegrals(double[] twoEIntegrals) {
+		this.twoEIntegrals = (twoEIntegrals == null) ? null : new SegmentedTwoElectronIntegralStore(twoEIntegrals);
+	}
+
+	/**
+	 * Getter for property twoEIntegrals, addressed by
+	 * {@link IntegralsUtil#ijkl2longindex(int, int, int, int)}.
+	 * 
+	 * @return Value of property twoEIntegrals, or null if the integrals are
+	 *         evaluated on the fly.
+	 */
+	public TwoElectronIntegralStore getTwoEIntegralStore() {
+		return this.twoEIntegrals;
+	}
+
+	/**
+	 * Setter for property twoEIntegrals.
+	 * 
+	 * @param twoEIntegrals New value of property twoEIntegrals.
+	 */
+	public void setTwoEIntegralStore(TwoElectronIntegralStore twoEIntegrals) {
 		this.twoEIntegrals = twoEIntegrals;
 	}
 
@@ -534,9 +1034,10 @@ public final class TwoElectronIntegrals {
 
 		twoEDer = new ArrayList<>();
 
-		double[] dxTwoE = new double[twoEIntegrals.length];
-		double[] dyTwoE = new double[twoEIntegrals.length];
-		double[] dzTwoE = new double[twoEIntegrals.length];
+		final long noOfIntegrals = IntegralsUtil.numberOfUniqueIntegrals(noOfBasisFunctions);
+		final TwoElectronIntegralStore dxTwoE = new SegmentedTwoElectronIntegralStore(noOfIntegrals);
+		final TwoElectronIntegralStore dyTwoE = new SegmentedTwoElectronIntegralStore(noOfIntegrals);
+		final TwoElectronIntegralStore dzTwoE = new SegmentedTwoElectronIntegralStore(noOfIntegrals);
 
 		twoEDer.add(dxTwoE);
 		twoEDer.add(dyTwoE);
@@ -548,22 +1049,22 @@ public final class TwoElectronIntegrals {
 
 			for (int j = 0; j < i + 1; j++) {
 				ContractedGaussian bfj = bfs.get(j);
-				int ij = i * (i + 1) / 2 + j;
+				long ij = (long) i * (i + 1) / 2 + j;
 				for (int k = 0; k < noOfBasisFunctions; k++) {
 					ContractedGaussian bfk = bfs.get(k);
 					for (int l = 0; l < k + 1; l++) {
 						ContractedGaussian bfl = bfs.get(l);
-						int kl = k * (k + 1) / 2 + l;
+						long kl = (long) k * (k + 1) / 2 + l;
 
 						if (ij >= kl) {
-							int ijkl = IntegralsUtil.ijkl2intindex(i, j, k, l);
+							long ijkl = IntegralsUtil.ijkl2longindex(i, j, k, l);
 
 							// record derivative of the 2E integrals
 							Vector3D twoEDerEle = compute2EDerivativeElement(bfi, bfj, bfk, bfl);
 
-							dxTwoE[ijkl] = twoEDerEle.getX();
-							dyTwoE[ijkl] = twoEDerEle.getY();
-							dzTwoE[ijkl] = twoEDerEle.getZ();
+							dxTwoE.set(ijkl, twoEDerEle.getX());
+							dyTwoE.set(ijkl, twoEDerEle.getY());
+							dzTwoE.set(ijkl, twoEDerEle.getZ());
 						}
 					}
 				}
@@ -577,10 +1078,67 @@ public final class TwoElectronIntegrals {
 	 * @return partial derivatives of 2E integrals, computed in previous call to
 	 *         compute2EDerivatives()
 	 */
-	public ArrayList<double[]> getTwoEDer() {
+	public List<TwoElectronIntegralStore> getTwoEDer() {
 		return twoEDer;
 	}
 
+	/**
+	 * Whether the integrals are held in a {@link TwoElectronIntegralFile}.
+	 *
+	 * @return true if the integrals are streamed from disk
+	 */
+	public boolean isDiskBacked() {
+		return !onTheFly && twoEIntegrals == null && integralFile != null;
+	}
+
+	/**
+	 * Whether the integrals are held as Cholesky vectors.
+	 *
+	 * @return true if {@link #computeCholesky(double)} has replaced the
+	 *         integrals
+	 */
+	public boolean isCholeskyDecomposed() {
+		return !onTheFly && choleskyIntegrals != null;
+	}
+
+	/**
+	 * The Cholesky vectors of the integrals, see
+	 * {@link #computeCholesky(double)}.
+	 *
+	 * @return the Cholesky vectors, or null if the integrals are not decomposed
+	 */
+	public CholeskyTwoElectronIntegrals getCholeskyIntegrals() {
+		return choleskyIntegrals;
+	}
+
+	/**
+	 * The file holding the integrals, see {@link #compute2EOnDisk()}.
+	 *
+	 * @return the integral file, or null if the integrals are not on disk
+	 */
+	public TwoElectronIntegralFile getIntegralFile() {
+		return integralFile;
+	}
+
+	/**
+	 * Get the value of integralDirectory
+	 *
+	 * @return the directory in which integral files are created
+	 */
+	public Path getIntegralDirectory() {
+		return integralDirectory;
+	}
+
+	/**
+	 * Set the value of integralDirectory. This affects subsequent calls to
+	 * {@link #compute2EOnDisk()}.
+	 *
+	 * @param integralDirectory the directory in which integral files are created
+	 */
+	public void setIntegralDirectory(Path integralDirectory) {
+		this.integralDirectory = integralDirectory;
+	}
+
 	/**
 	 * Get the value of onTheFly
 	 * 
@@ -614,8 +1172,7 @@ public final class TwoElectronIntegrals {
 			for (int j = 0; j < noOfBasisFunctions; j++) {
 				for (int k = 0; k < noOfBasisFunctions; k++) {
 					for (int l = 0; l < noOfBasisFunctions; l++) {
-						int ijkl = IntegralsUtil.ijkl2intindex(i, j, k, l);
-						System.out.println(i + " " + j + " " + k + " " + l + "\t\t" + twoEIntegrals[ijkl]);
+						System.out.println(i + " " + j + " " + k + " " + l + "\t\t" + twoEIntegrals.get(i, j, k, l));
 
 					}
 
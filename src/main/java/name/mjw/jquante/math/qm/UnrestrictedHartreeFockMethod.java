@@ -5,6 +5,7 @@ import org.hipparchus.linear.RealMatrix;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import name.mjw.jquante.math.DenseMatrix;
 import name.mjw.jquante.math.optimizer.OptimizerFunction;
 import name.mjw.jquante.math.qm.event.SCFEvent;
 import name.mjw.jquante.molecule.Atom;
@@ -87,9 +88,10 @@ public class UnrestrictedHartreeFockMethod extends SCFMethod implements
 	 */
 	@Override
 	public void scf() {
-		// check first if closed shell run?
+		// the lowest multiplicity: one unpaired alpha electron if the count is odd
 		int noOfElectrons = molecule.getNumberOfElectrons();
-		int noOfOccupancies = noOfElectrons / 2;
+		int noOfAlphaOccupancies = (noOfElectrons + 1) / 2;
+		int noOfBetaOccupancies = noOfElectrons / 2;
 
 		Overlap overlap = oneEI.getOverlap();
 		LOG.debug("Initial S matrix\n {}", overlap);
@@ -105,64 +107,75 @@ public class UnrestrictedHartreeFockMethod extends SCFMethod implements
 		double eOne;
 		double eTwo;
 
-		// init memory for the matrices
-		gMatrixList.set(0, new GMatrix(hCore.getRowDimension()));  // A
-		gMatrixList.set(1, new GMatrix(hCore.getRowDimension()));  // B
-		mosList.set(0, new MolecularOrbitals(hCore.getRowDimension()));
-		mosList.set(1, new MolecularOrbitals(hCore.getRowDimension()));
-		densityList.set(0, new Density(hCore.getRowDimension()));
-		densityList.set(1, new Density(hCore.getRowDimension()));
-		fockList.set(0, new Fock(hCore.getRowDimension()));
-		fockList.set(1, new Fock(hCore.getRowDimension()));
-
-		// TODO: compute initial MOs
+		// init memory for the matrices, A then B
+		int n = hCore.getRowDimension();
+		int m = overlap.getNumberOfIndependentFunctions();
+
+		gMatrixList.clear();
+		mosList.clear();
+		densityList.clear();
+		fockList.clear();
+		for (int spin = 0; spin < 2; spin++) {
+			gMatrixList.add(new GMatrix(n));
+			mosList.add(new MolecularOrbitals(m, n));
+			densityList.add(new Density(n));
+			fockList.add(new Fock(n));
+		}
+
+		// the initial MOs of both spins are those of HCore
 		mosList.get(0).compute(hCore, overlap);
+		mosList.get(1).compute(hCore, overlap);
 		LOG.debug("Initial computed MO coefficient matrix as: \n {}", mosList.get(0));
 
-		FockExtrapolator diis = new DIISFockExtrapolator();
-
-		LOG.debug("Initial density matrix \n {}", densityList.get(0));
+		// one extrapolator per spin
+		FockExtrapolator diisA = fockExtrapolatorFactory.get();
+		FockExtrapolator diisB = fockExtrapolatorFactory.get();
 
 		// start the SCF cycle
 		for (scfIteration = 0; scfIteration < maxIteration; scfIteration++) {
 
 			LOG.debug("");
 			LOG.debug("SCF iteration: {}", scfIteration);
-            // make or guess density
-            // TODO: will have two parts Da and Db
+
+			// make or guess the spin densities, Da and Db
 			densityList.get(0).compute(this, guessInitialDM && (scfIteration == 0),
-					densityGuesser, noOfOccupancies, mosList.get(0));
+					densityGuesser, noOfAlphaOccupancies, mosList.get(0));
 			densityList.get(1).compute(this, guessInitialDM && (scfIteration == 0),
-					densityGuesser, noOfOccupancies, mosList.get(1));
+					densityGuesser, noOfBetaOccupancies, mosList.get(1));
 
 			LOG.debug("Density matrix:\n {}", densityList);
 
-            // make the G matrix
-            // TODO: G will have two parts Ga = Ja+Jb-Ka and Gb = Ja+Jb-Kb 
-			gMatrixList.get(0).compute(scfType, twoEI, densityList.get(0));
-			gMatrixList.get(1).compute(scfType, twoEI, densityList.get(1));
+			// J and K of both densities from one pass over the integrals, then
+			// Ga = Ja + Jb - Ka and Gb = Ja + Jb - Kb
+			GMatrix.compute(scfType, twoEI, gMatrixList, densityList);
 
-            // make fock matrix
-            // TODO: F will have two parts Fa = h+Ga and Fb = h+Gb
-			fockList.get(0).compute(hCore, gMatrixList.get(0));
-			fockList.get(1).compute(hCore, gMatrixList.get(1));
+			GMatrix gMatrixA = gMatrixList.get(0);
+			GMatrix gMatrixB = gMatrixList.get(1);
+			RealMatrix coulomb = gMatrixA.getCoulomb().add(gMatrixB.getCoulomb());
+			gMatrixA.setSubMatrix(coulomb.subtract(gMatrixA.getExchange()).getData(), 0, 0);
+			gMatrixB.setSubMatrix(coulomb.subtract(gMatrixB.getExchange()).getData(), 0, 0);
 
-			// apply DIIS
-			// TODO : diis needs to be rewritten to take care of Fa and Fb
-			// fock = diis.next(fock, overlap, density);
+			// make the fock matrices, Fa = h + Ga and Fb = h + Gb
+			fockList.get(0).compute(hCore, gMatrixA);
+			fockList.get(1).compute(hCore, gMatrixB);
 
-            // compute the new MOs
-            // TODO: two set of orbitals, mosA, mosB
-			mosList.get(0).compute(fockList.get(0), overlap);
-			mosList.get(1).compute(fockList.get(0), overlap);
-
-            // compute the total energy at this point
-            // TODO: eTwo (fock energy) will have two parts - this eqn needs to change
-			eOne = densityList.get(0).multiply(hCore).getTrace();
-			eTwo = densityList.get(0).multiply(fock).getTrace();
+			// compute the total energy at this point,
+			// E = tr((Da + Db)h) + (tr(Da Ga) + tr(Db Gb)) / 2
+			eOne = DenseMatrix.traceOfProduct(densityList.get(0), hCore)
+					+ DenseMatrix.traceOfProduct(densityList.get(1), hCore);
+			eTwo = 0.5 * (DenseMatrix.traceOfProduct(densityList.get(0), gMatrixA)
+					+ DenseMatrix.traceOfProduct(densityList.get(1), gMatrixB));
 
 			energy = eOne + eTwo + nuclearEnergy;
 
+			// apply DIIS, to each spin separately
+			fockList.set(0, diisA.next(fockList.get(0), overlap, densityList.get(0)));
+			fockList.set(1, diisB.next(fockList.get(1), overlap, densityList.get(1)));
+
+			// compute the new MOs of each spin
+			mosList.get(0).compute(fockList.get(0), overlap);
+			mosList.get(1).compute(fockList.get(1), overlap);
+
 			LOG.debug("Energy is : " + energy + "\tdelta_E: "
 					+ (energy - oldEnergy));
 
@@ -232,7 +245,7 @@ public class UnrestrictedHartreeFockMethod extends SCFMethod implements
 
 		// perform scf, and return energy
 		oneEI.compute1E();
-		twoEI.compute2E();
+		twoEI.recompute();
 		scf();
 		isDerivativeComputed = false;
 		return getEnergy();
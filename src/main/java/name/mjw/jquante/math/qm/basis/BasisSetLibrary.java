@@ -45,6 +45,9 @@ public final class BasisSetLibrary {
 	/** All unique shell pairs (i,j) with i &lt;= j, used for efficient integral screening. */
 	private List<List<Shell>> uniqueShellPairs;
 
+	/** Primitive pair data for every ordered shell pair, indexed by shell index. */
+	private ShellPair[][] shellPairs;
+
 
 	/**
 	 * Creates a new instance of BasisFunctions.
@@ -59,11 +62,45 @@ public final class BasisSetLibrary {
 		getBasisFunctions(molecule, basisName);
 		this.basisName = basisName;
 
-		// and initialise the shell list
+		initShells();
+	}
+
+	/**
+	 * Creates a new instance of BasisFunctions from basis functions that have
+	 * already been built, such as a generated auxiliary basis. The functions
+	 * are indexed in the order given.
+	 *
+	 * @param basisName      the name of the basis set.
+	 * @param basisFunctions the normalized basis functions, with the functions
+	 *                       of a shell next to each other.
+	 */
+	public BasisSetLibrary(String basisName, List<ContractedGaussian> basisFunctions) {
+		if (basisFunctions.isEmpty()) {
+			throw new IllegalArgumentException("A basis set needs at least one basis function");
+		}
+
+		this.basisName = basisName;
+		this.basisFunctions = new ArrayList<>(basisFunctions);
+		for (int i = 0; i < this.basisFunctions.size(); i++) {
+			this.basisFunctions.get(i).setBasisFunctionIndex(i);
+		}
+
+		initShells();
+	}
+
+	/**
+	 * Initialise the shells, shell pairs and primitive pair data of the basis
+	 * functions.
+	 */
+	private void initShells() {
+		// initialise the shell list
 		initShellList();
 
 		// Shell Pair list
 		initUniqueShellPairList();
+
+		// and the primitive data of each shell pair
+		initShellPairData();
 	}
 
 	/**
@@ -84,6 +121,30 @@ public final class BasisSetLibrary {
 		this.basisName = basisName;
 	}
 
+	/**
+	 * Returns the precomputed primitive pair data of the ordered shell pair
+	 * (A,B).
+	 *
+	 * @param a index of shell A in {@link #getShells()}
+	 * @param b index of shell B in {@link #getShells()}
+	 * @return the shell pair data
+	 */
+	public ShellPair getShellPair(int a, int b) {
+		return shellPairs[a][b];
+	}
+
+	/**
+	 * Returns the precomputed primitive pair data of the ordered shell pair
+	 * (A,B).
+	 *
+	 * @param a shell A
+	 * @param b shell B
+	 * @return the shell pair data
+	 */
+	public ShellPair getShellPair(Shell a, Shell b) {
+		return shellPairs[a.getShellIndex()][b.getShellIndex()];
+	}
+
 	/**
 	 * Getter for property basisFunctions.
 	 * 
@@ -93,6 +154,29 @@ public final class BasisSetLibrary {
 		return this.basisFunctions;
 	}
 
+	/**
+	 * The number of basis functions on each atom, in order. These are the
+	 * "basisFunctions" groups attached to the atoms, which follow one another
+	 * in the basis function list, and are the blocks of an atom blocked matrix.
+	 *
+	 * @return the size of each run of basis functions centred on the same atom
+	 */
+	public int[] getAtomBlockSizes() {
+		final List<Integer> sizes = new ArrayList<>();
+		Atom previous = null;
+
+		for (ContractedGaussian cg : basisFunctions) {
+			if (previous != null && cg.getCenteredAtom() == previous) {
+				sizes.set(sizes.size() - 1, sizes.get(sizes.size() - 1) + 1);
+			} else {
+				sizes.add(1);
+				previous = cg.getCenteredAtom();
+			}
+		}
+
+		return sizes.stream().mapToInt(Integer::intValue).toArray();
+	}
+
 	/**
 	 * Returns a set of basis function with the same centre and same contracted
 	 * exponent.
@@ -113,6 +197,21 @@ public final class BasisSetLibrary {
 		return uniqueShellPairs;
 	}
 
+	/**
+	 * Creates the library of an auxiliary basis set, such as a fitting basis
+	 * for density fitting, read from the basis library like any other basis.
+	 * Unlike the orbital basis, its basis functions are not attached to the
+	 * atoms of the molecule.
+	 *
+	 * @param molecule  the Molecule whose basis function is requested.
+	 * @param basisName the name of the auxiliary basis set.
+	 * @return the auxiliary basis set library
+	 * @throws Exception the basisName was not found.
+	 */
+	public static BasisSetLibrary auxiliary(Molecule molecule, String basisName) throws Exception {
+		return new BasisSetLibrary(basisName, createBasisFunctions(molecule, basisName, false));
+	}
+
 	/**
 	 * Getter for property basisFunctions.
 	 *
@@ -122,10 +221,26 @@ public final class BasisSetLibrary {
 	 * @throws Exception if the basis set cannot be read or an atom is not found
 	 */
 	private ArrayList<ContractedGaussian> getBasisFunctions(Molecule molecule, String basisName) throws Exception {
+		basisFunctions = createBasisFunctions(molecule, basisName, true);
+		return this.basisFunctions;
+	}
+
+	/**
+	 * Build the basis functions of a molecule from a basis set.
+	 *
+	 * @param molecule      the Molecule whose basis function is requested
+	 * @param basisName     the name of the basis set (like sto3g)
+	 * @param attachToAtoms if true, the basis functions of each atom are saved
+	 *                      as its "basisFunctions" user defined property
+	 * @return the indexed and sorted basis functions
+	 * @throws Exception if the basis set cannot be read or an atom is not found
+	 */
+	private static ArrayList<ContractedGaussian> createBasisFunctions(Molecule molecule, String basisName,
+			boolean attachToAtoms) throws Exception {
 		BasisSet basisSet = BasisSetReader.getInstance().readBasisSet(basisName);
 		Iterator<Atom> atoms = molecule.getAtoms();
 
-		basisFunctions = new ArrayList<>();
+		ArrayList<ContractedGaussian> basisFunctions = new ArrayList<>();
 
 		Atom atom;
 		AtomicBasis atomicBasis;
@@ -160,6 +275,10 @@ public final class BasisSetLibrary {
 				}
 			}
 
+			if (!attachToAtoms) {
+				continue;
+			}
+
 			// save a reference of the basis functions centered on
 			// this atom as a user defined property of the atom
 			try {
@@ -172,7 +291,7 @@ public final class BasisSetLibrary {
 
 		Collections.sort(basisFunctions);
 		basisFunctions.trimToSize();
-		return this.basisFunctions;
+		return basisFunctions;
 	}
 
 	/**
@@ -184,6 +303,7 @@ public final class BasisSetLibrary {
 		// First entry always goes in.
 		Shell shell = new Shell(basisFunctions.get(0));
 		shell.setFirstBasisFunctionIndex(0);
+		shell.addBasisFunction(basisFunctions.get(0));
 		shells.add(shell);
 
 
@@ -195,12 +315,13 @@ public final class BasisSetLibrary {
 			tmpShell.setLastBasisFunctionIndex(i);
 
 			// Increment lastBasisFunctionIndex if we have seen it before
-			if (shells.contains(tmpShell)) {
-				int index = shells.indexOf(tmpShell);
+			int index = shells.indexOf(tmpShell);
+			if (index >= 0) {
 				shells.get(index).setLastBasisFunctionIndex(i);
-			}
-
-			if (!(shells.contains(tmpShell))) {
+				shells.get(index).addBasisFunction(contractedGaussian);
+			} else {
+				tmpShell.setShellIndex(shells.size());
+				tmpShell.addBasisFunction(contractedGaussian);
 				shells.add(tmpShell);
 			}
 
@@ -265,6 +386,27 @@ public final class BasisSetLibrary {
 
 	}
 
+	/**
+	 * Build the primitive pair data for each of the unique shell pairs, in both
+	 * orders.
+	 */
+	private void initShellPairData() {
+		final int noOfShells = shells.size();
+		shellPairs = new ShellPair[noOfShells][noOfShells];
+
+		for (List<Shell> pair : uniqueShellPairs) {
+			final Shell first = pair.get(0);
+			final Shell second = pair.get(1);
+
+			shellPairs[first.getShellIndex()][second.getShellIndex()] = new ShellPair(first, second);
+			shellPairs[second.getShellIndex()][first.getShellIndex()] = new ShellPair(second, first);
+		}
+
+		for (Shell shell : shells) {
+			shell.setShellPairs(shellPairs[shell.getShellIndex()]);
+		}
+	}
+
 	/**
 	 * Prints all basis functions to standard output, showing the index, centred
 	 * atom, angular momentum powers, exponents, and contraction coefficients.
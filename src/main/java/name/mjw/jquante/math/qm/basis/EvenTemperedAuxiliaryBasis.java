@@ -0,0 +1,167 @@
+package name.mjw.jquante.math.qm.basis;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+
+import net.jafama.FastMath;
+
+/**
+ * Generates an even-tempered auxiliary basis, for density fitting, from an
+ * orbital basis.
+ * <p>
+ * The products of two orbital basis functions on the same centre, with
+ * angular momenta l<sub>a</sub> and l<sub>b</sub> and exponents
+ * &alpha;<sub>a</sub> and &alpha;<sub>b</sub>, have angular momenta up to
+ * l<sub>a</sub> + l<sub>b</sub> and exponent &alpha;<sub>a</sub> +
+ * &alpha;<sub>b</sub>. For each centre and each such angular momentum L,
+ * uncontracted functions are placed at the exponents &alpha;<sub>min</sub>
+ * &beta;<sup>k</sup>, k = 0, 1, ..., until the largest product exponent is
+ * covered. This gives a fitting basis for any orbital basis, at the cost of
+ * more functions than an optimised fitting basis, which can instead be read
+ * with {@link BasisSetLibrary#auxiliary(name.mjw.jquante.molecule.Molecule, String)}.
+ *
+ * @author mjw99
+ */
+public final class EvenTemperedAuxiliaryBasis {
+
+	/** The default ratio between consecutive exponents. */
+	public static final double DEFAULT_RATIO = 2.5;
+
+	/** The orbital symbols of the supported angular momenta. */
+	private static final String[] SYMBOLS = { "S", "P", "D", "F", "G", "H" };
+
+	/**
+	 * No instantiation possible
+	 */
+	private EvenTemperedAuxiliaryBasis() {
+	}
+
+	/**
+	 * Generate the auxiliary basis of an orbital basis, with the
+	 * {@link #DEFAULT_RATIO}.
+	 *
+	 * @param orbitalBasis the orbital basis
+	 * @return the auxiliary basis
+	 */
+	public static BasisSetLibrary create(BasisSetLibrary orbitalBasis) {
+		return create(orbitalBasis, DEFAULT_RATIO);
+	}
+
+	/**
+	 * Generate the auxiliary basis of an orbital basis.
+	 *
+	 * @param orbitalBasis the orbital basis
+	 * @param ratio        the ratio &beta; between consecutive exponents, more
+	 *                     than 1; smaller ratios give more, and more accurate,
+	 *                     fitting functions
+	 * @return the auxiliary basis
+	 */
+	public static BasisSetLibrary create(BasisSetLibrary orbitalBasis, double ratio) {
+		if (!(ratio > 1.0)) {
+			throw new IllegalArgumentException("Even-tempered ratio must be more than 1: " + ratio);
+		}
+
+		// the smallest and largest product exponent of each L, per centre
+		final Map<Vector3D, double[][]> ranges = new LinkedHashMap<>();
+		final Map<Vector3D, ContractedGaussian> representatives = new LinkedHashMap<>();
+
+		for (Shell shell : orbitalBasis.getShells()) {
+			final ContractedGaussian cg = shell.getBasisFunctions().get(0);
+			representatives.putIfAbsent(cg.getOrigin(), cg);
+			ranges.putIfAbsent(cg.getOrigin(), emptyRanges());
+		}
+
+		for (Shell a : orbitalBasis.getShells()) {
+			final ContractedGaussian cga = a.getBasisFunctions().get(0);
+			final double[][] range = ranges.get(cga.getOrigin());
+
+			for (Shell b : orbitalBasis.getShells()) {
+				final ContractedGaussian cgb = b.getBasisFunctions().get(0);
+
+				if (!cga.getOrigin().equals(cgb.getOrigin())) {
+					continue;
+				}
+
+				final int l = FastMath.min(SYMBOLS.length - 1,
+						cga.getTotalAngularMomentum() + cgb.getTotalAngularMomentum());
+				final double min = minimum(cga.getExponents()) + minimum(cgb.getExponents());
+				final double max = maximum(cga.getExponents()) + maximum(cgb.getExponents());
+
+				for (int lAux = 0; lAux <= l; lAux++) {
+					range[lAux][0] = FastMath.min(range[lAux][0], min);
+					range[lAux][1] = FastMath.max(range[lAux][1], max);
+				}
+			}
+		}
+
+		final List<ContractedGaussian> auxiliaryFunctions = new ArrayList<>();
+
+		for (Map.Entry<Vector3D, double[][]> entry : ranges.entrySet()) {
+			final ContractedGaussian representative = representatives.get(entry.getKey());
+			final double[][] range = entry.getValue();
+
+			for (int l = 0; l < SYMBOLS.length; l++) {
+				if (range[l][0] > range[l][1]) {
+					continue;
+				}
+
+				for (double exponent = range[l][0]; exponent < range[l][1] * ratio; exponent *= ratio) {
+					final Iterator<Power> powers = PowerList.getInstance().getPowerList(SYMBOLS[l]);
+
+					while (powers.hasNext()) {
+						final Power power = powers.next();
+						final ContractedGaussian cg = representative.getCenteredAtom() != null
+								? new ContractedGaussian(representative.getCenteredAtom(), power)
+								: new ContractedGaussian(representative.getOrigin(), power);
+
+						cg.addPrimitive(exponent, 1.0);
+						cg.normalize();
+						auxiliaryFunctions.add(cg);
+					}
+				}
+			}
+		}
+
+		return new BasisSetLibrary(orbitalBasis.getBasisName() + "-even-tempered-fit", auxiliaryFunctions);
+	}
+
+	/**
+	 * Exponent ranges with nothing in them.
+	 *
+	 * @return {min, max} = {+inf, -inf} for each L
+	 */
+	private static double[][] emptyRanges() {
+		final double[][] range = new double[SYMBOLS.length][];
+
+		for (int l = 0; l < SYMBOLS.length; l++) {
+			range[l] = new double[] { Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+		}
+
+		return range;
+	}
+
+	/**
+	 * The smallest of a list of exponents.
+	 *
+	 * @param exponents the exponents
+	 * @return the smallest exponent
+	 */
+	private static double minimum(List<Double> exponents) {
+		return exponents.stream().mapToDouble(Double::doubleValue).min().orElseThrow();
+	}
+
+	/**
+	 * The largest of a list of exponents.
+	 *
+	 * @param exponents the exponents
+	 * @return the largest exponent
+	 */
+	private static double maximum(List<Double> exponents) {
+		return exponents.stream().mapToDouble(Double::doubleValue).max().orElseThrow();
+	}
+}
@@ -1,5 +1,9 @@
 package name.mjw.jquante.math.qm.basis;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * A shell is a set of basis function with the same centre and same contracted
  * exponent, for example, sp shell, d shell.
@@ -25,6 +29,18 @@ public final class Shell extends ContractedGaussian {
 	/** The index of the last basis function belonging to this shell. */
 	private int lastBasisFunctionIndex;
 
+	/** The index of this shell in {@link BasisSetLibrary#getShells()}. */
+	private int shellIndex;
+
+	/** The basis functions (Cartesian components) that make up this shell. */
+	private final List<ContractedGaussian> basisFunctions = new ArrayList<>();
+
+	/**
+	 * The pair data of this shell with each shell of its
+	 * {@link BasisSetLibrary}, indexed by shell index, or null.
+	 */
+	private ShellPair[] shellPairs;
+
 	/**
 	 * Returns the index of the first basis function in this shell.
 	 *
@@ -61,6 +77,83 @@ public final class Shell extends ContractedGaussian {
 		this.lastBasisFunctionIndex = lastBasisFunctionIndex;
 	}
 
+	/**
+	 * Returns the index of this shell in {@link BasisSetLibrary#getShells()}.
+	 *
+	 * @return the shell index
+	 */
+	public int getShellIndex() {
+		return shellIndex;
+	}
+
+	/**
+	 * Sets the index of this shell in {@link BasisSetLibrary#getShells()}.
+	 *
+	 * @param shellIndex the shell index
+	 */
+	public void setShellIndex(int shellIndex) {
+		this.shellIndex = shellIndex;
+	}
+
+	/**
+	 * Adds a basis function (Cartesian component) to this shell.
+	 *
+	 * @param cg the basis function
+	 */
+	public void addBasisFunction(ContractedGaussian cg) {
+		basisFunctions.add(cg);
+	}
+
+	/**
+	 * Returns the basis functions (Cartesian components) of this shell, in
+	 * basis function index order.
+	 *
+	 * @return an unmodifiable view of the basis functions of this shell
+	 */
+	public List<ContractedGaussian> getBasisFunctions() {
+		return Collections.unmodifiableList(basisFunctions);
+	}
+
+	/**
+	 * Returns the number of basis functions (Cartesian components) in this
+	 * shell.
+	 *
+	 * @return the number of basis functions
+	 */
+	public int getNumberOfBasisFunctions() {
+		return basisFunctions.size();
+	}
+
+	/**
+	 * Returns the primitive pair data of the ordered shell pair (this,b). If
+	 * both shells belong to the same {@link BasisSetLibrary}, the pair is taken
+	 * from its cache; otherwise it is computed.
+	 *
+	 * @param b shell B
+	 * @return the shell pair data
+	 */
+	public ShellPair getShellPair(Shell b) {
+		if (shellPairs != null && b.shellIndex < shellPairs.length) {
+			final ShellPair pair = shellPairs[b.shellIndex];
+
+			if (pair != null && pair.getB() == b) {
+				return pair;
+			}
+		}
+
+		return new ShellPair(this, b);
+	}
+
+	/**
+	 * Sets the cached pair data of this shell, see {@link #getShellPair(Shell)}.
+	 *
+	 * @param shellPairs the pair data of this shell with each shell of its basis
+	 *                   set, indexed by shell index
+	 */
+	void setShellPairs(ShellPair[] shellPairs) {
+		this.shellPairs = shellPairs;
+	}
+
 	/**
 	 * Returns a string representation of this shell as a range of basis function indices.
 	 *
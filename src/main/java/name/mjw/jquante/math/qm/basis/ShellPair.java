@@ -0,0 +1,299 @@
+package name.mjw.jquante.math.qm.basis;
+
+import java.util.List;
+
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+
+import net.jafama.FastMath;
+
+/**
+ * Precomputed primitive pair data for an ordered pair of shells (A,B).
+ * <p>
+ * For every primitive pair (i,j), with i a primitive of A and j a primitive of
+ * B, the Gaussian product quantities that the integral engines need are
+ * evaluated once and stored in flat arrays indexed by
+ * {@code ij = i * getNumberOfPrimitivesB() + j} (three consecutive entries per
+ * pair for vector quantities):
+ * <ul>
+ * <li>&zeta; = &alpha;<sub>i</sub> + &beta;<sub>j</sub></li>
+ * <li>P = (&alpha;<sub>i</sub>A + &beta;<sub>j</sub>B) / &zeta;</li>
+ * <li>PA = P - A and PB = P - B</li>
+ * <li>K<sub>ab</sub> = exp(-&alpha;<sub>i</sub>&beta;<sub>j</sub>|AB|<sup>2</sup>
+ * / &zeta;)</li>
+ * <li>c<sub>i</sub>c<sub>j</sub>, the product of the contraction
+ * coefficients</li>
+ * </ul>
+ * Primitive normalisation factors depend on the Cartesian component and are
+ * therefore not included.
+ * <p>
+ * The arrays are shared, not copied, and must not be modified.
+ *
+ * @author mjw99
+ */
+public final class ShellPair {
+
+	/** Shell A. */
+	private final Shell a;
+
+	/** Shell B. */
+	private final Shell b;
+
+	/** Number of primitives in shell A. */
+	private final int noOfPrimitivesA;
+
+	/** Number of primitives in shell B. */
+	private final int noOfPrimitivesB;
+
+	/** Exponent of the A primitive of each pair. */
+	private final double[] alpha;
+
+	/** Exponent of the B primitive of each pair. */
+	private final double[] beta;
+
+	/** zeta = alpha + beta of each pair. */
+	private final double[] zeta;
+
+	/** Gaussian product centre P of each pair, x,y,z interleaved. */
+	private final double[] p;
+
+	/** P - A of each pair, x,y,z interleaved. */
+	private final double[] pa;
+
+	/** P - B of each pair, x,y,z interleaved. */
+	private final double[] pb;
+
+	/** exp(-alpha*beta*|AB|^2/zeta) of each pair. */
+	private final double[] kab;
+
+	/** Product of the contraction coefficients of each pair. */
+	private final double[] coefficient;
+
+	/** A - B, x,y,z. */
+	private final double[] ab;
+
+	/** |AB|^2. */
+	private final double abSquared;
+
+	/**
+	 * Creates the primitive pair data of the shell pair (A,B).
+	 *
+	 * @param a shell A
+	 * @param b shell B
+	 */
+	public ShellPair(Shell a, Shell b) {
+		this.a = a;
+		this.b = b;
+
+		final List<Double> aExps = a.getExponents();
+		final List<Double> bExps = b.getExponents();
+		final List<Double> aCoefs = a.getCoefficients();
+		final List<Double> bCoefs = b.getCoefficients();
+
+		final Vector3D aOrigin = a.getOrigin();
+		final Vector3D bOrigin = b.getOrigin();
+
+		final double ax = aOrigin.getX();
+		final double ay = aOrigin.getY();
+		final double az = aOrigin.getZ();
+		final double bx = bOrigin.getX();
+		final double by = bOrigin.getY();
+		final double bz = bOrigin.getZ();
+
+		noOfPrimitivesA = aExps.size();
+		noOfPrimitivesB = bExps.size();
+
+		final int n = noOfPrimitivesA * noOfPrimitivesB;
+
+		alpha = new double[n];
+		beta = new double[n];
+		zeta = new double[n];
+		p = new double[3 * n];
+		pa = new double[3 * n];
+		pb = new double[3 * n];
+		kab = new double[n];
+		coefficient = new double[n];
+
+		ab = new double[] { ax - bx, ay - by, az - bz };
+		abSquared = ab[0] * ab[0] + ab[1] * ab[1] + ab[2] * ab[2];
+
+		int ij = 0;
+		for (int i = 0; i < noOfPrimitivesA; i++) {
+			final double iAlpha = aExps.get(i);
+
+			for (int j = 0; j < noOfPrimitivesB; j++) {
+				final double jBeta = bExps.get(j);
+				final double z = iAlpha + jBeta;
+
+				alpha[ij] = iAlpha;
+				beta[ij] = jBeta;
+				zeta[ij] = z;
+
+				final double px = (iAlpha * ax + jBeta * bx) / z;
+				final double py = (iAlpha * ay + jBeta * by) / z;
+				final double pz = (iAlpha * az + jBeta * bz) / z;
+
+				p[3 * ij] = px;
+				p[3 * ij + 1] = py;
+				p[3 * ij + 2] = pz;
+
+				pa[3 * ij] = px - ax;
+				pa[3 * ij + 1] = py - ay;
+				pa[3 * ij + 2] = pz - az;
+
+				pb[3 * ij] = px - bx;
+				pb[3 * ij + 1] = py - by;
+				pb[3 * ij + 2] = pz - bz;
+
+				kab[ij] = FastMath.exp(-iAlpha * jBeta * abSquared / z);
+				coefficient[ij] = aCoefs.get(i) * bCoefs.get(j);
+
+				ij++;
+			}
+		}
+	}
+
+	/**
+	 * Returns shell A.
+	 *
+	 * @return shell A
+	 */
+	public Shell getA() {
+		return a;
+	}
+
+	/**
+	 * Returns shell B.
+	 *
+	 * @return shell B
+	 */
+	public Shell getB() {
+		return b;
+	}
+
+	/**
+	 * Returns the number of primitives in shell A.
+	 *
+	 * @return the number of primitives in shell A
+	 */
+	public int getNumberOfPrimitivesA() {
+		return noOfPrimitivesA;
+	}
+
+	/**
+	 * Returns the number of primitives in shell B.
+	 *
+	 * @return the number of primitives in shell B
+	 */
+	public int getNumberOfPrimitivesB() {
+		return noOfPrimitivesB;
+	}
+
+	/**
+	 * Returns the number of primitive pairs.
+	 *
+	 * @return the number of primitive pairs
+	 */
+	public int getNumberOfPrimitivePairs() {
+		return zeta.length;
+	}
+
+	/**
+	 * Returns the exponent of the A primitive of each pair.
+	 *
+	 * @return alpha, indexed by primitive pair
+	 */
+	public double[] getAlpha() {
+		return alpha;
+	}
+
+	/**
+	 * Returns the exponent of the B primitive of each pair.
+	 *
+	 * @return beta, indexed by primitive pair
+	 */
+	public double[] getBeta() {
+		return beta;
+	}
+
+	/**
+	 * Returns the summed exponents of each pair.
+	 *
+	 * @return zeta, indexed by primitive pair
+	 */
+	public double[] getZeta() {
+		return zeta;
+	}
+
+	/**
+	 * Returns the Gaussian product centres.
+	 *
+	 * @return P, three entries (x,y,z) per primitive pair
+	 */
+	public double[] getP() {
+		return p;
+	}
+
+	/**
+	 * Returns the offsets of the product centres from centre A.
+	 *
+	 * @return P - A, three entries (x,y,z) per primitive pair
+	 */
+	public double[] getPA() {
+		return pa;
+	}
+
+	/**
+	 * Returns the offsets of the product centres from centre B.
+	 *
+	 * @return P - B, three entries (x,y,z) per primitive pair
+	 */
+	public double[] getPB() {
+		return pb;
+	}
+
+	/**
+	 * Returns the Gaussian product prefactors.
+	 *
+	 * @return exp(-alpha*beta*|AB|^2/zeta), indexed by primitive pair
+	 */
+	public double[] getKab() {
+		return kab;
+	}
+
+	/**
+	 * Returns the products of the contraction coefficients.
+	 *
+	 * @return c_i * c_j, indexed by primitive pair
+	 */
+	public double[] getCoefficients() {
+		return coefficient;
+	}
+
+	/**
+	 * Returns the vector between the two centres.
+	 *
+	 * @return A - B, (x,y,z)
+	 */
+	public double[] getAB() {
+		return ab;
+	}
+
+	/**
+	 * Returns the squared distance between the two centres.
+	 *
+	 * @return |AB|^2
+	 */
+	public double getABSquared() {
+		return abSquared;
+	}
+
+	/**
+	 * Returns a string representation of this shell pair.
+	 *
+	 * @return a string of the form "(A,B)"
+	 */
+	@Override
+	public String toString() {
+		return "(" + a + "," + b + ")";
+	}
+}
@@ -0,0 +1,156 @@
+package name.mjw.jquante.math.qm.integral;
+
+import net.jafama.FastMath;
+
+/**
+ * Tabulated evaluation of the Boys function
+ * F<sub>m</sub>(x) = &int;<sub>0</sub><sup>1</sup> t<sup>2m</sup>
+ * exp(-xt<sup>2</sup>) dt.
+ * <p>
+ * For x below {@link #X_MAX}, F<sub>m</sub> is interpolated about the nearest
+ * point of an evenly spaced grid with a six term Taylor expansion, using
+ * dF<sub>m</sub>/dx = -F<sub>m+1</sub>, and the lower orders follow from the
+ * stable downward recursion
+ * F<sub>m</sub>(x) = (2x F<sub>m+1</sub>(x) + exp(-x)) / (2m+1). Above
+ * {@link #X_MAX}, F<sub>0</sub> is taken from its asymptotic form and the
+ * higher orders follow from upward recursion. Every order 0..m<sub>max</sub>
+ * is produced by one call, at the cost of a single exponential.
+ * <p>
+ * The grid is built once, when the class is loaded, from the convergent
+ * series F<sub>m</sub>(x) = exp(-x) &Sigma;<sub>i</sub> (2x)<sup>i</sup> /
+ * ((2m+1)(2m+3)...(2m+2i+1)).
+ *
+ * @author mjw99
+ */
+public final class BoysFunction {
+
+	/** The highest order that can be evaluated. */
+	public static final int MAX_ORDER = 32;
+
+	/** Beyond this argument the asymptotic form is used. */
+	static final double X_MAX = 50.0;
+
+	/** Grid spacing. */
+	private static final double GRID_SPACING = 0.05;
+
+	/** 1 / {@link #GRID_SPACING}. */
+	private static final double ONE_OVER_GRID_SPACING = 1.0 / GRID_SPACING;
+
+	/** Number of Taylor terms used for interpolation. */
+	private static final int TAYLOR_TERMS = 6;
+
+	/** Number of orders held per grid point. */
+	private static final int ORDERS_PER_POINT = MAX_ORDER + TAYLOR_TERMS + 1;
+
+	/** Number of grid points. */
+	private static final int GRID_POINTS = (int) FastMath.round(X_MAX / GRID_SPACING) + 1;
+
+	/** Taylor coefficients 1/k!, with the sign (-1)^k of the derivative folded in. */
+	private static final double[] TAYLOR_COEFFICIENTS = new double[TAYLOR_TERMS];
+
+	/** F_m at each grid point, indexed [point * ORDERS_PER_POINT + m]. */
+	private static final double[] GRID = new double[GRID_POINTS * ORDERS_PER_POINT];
+
+	static {
+		double factorial = 1.0;
+		for (int k = 0; k < TAYLOR_TERMS; k++) {
+			if (k > 0) {
+				factorial *= k;
+			}
+			TAYLOR_COEFFICIENTS[k] = ((k & 1) == 0 ? 1.0 : -1.0) / factorial;
+		}
+
+		for (int point = 0; point < GRID_POINTS; point++) {
+			tabulate(point * GRID_SPACING, GRID, point * ORDERS_PER_POINT);
+		}
+	}
+
+	/** Private constructor — this is a utility class and cannot be instantiated. */
+	private BoysFunction() {
+	}
+
+	/**
+	 * Evaluate F<sub>0</sub>(x) ... F<sub>mMax</sub>(x).
+	 *
+	 * @param mMax   the highest order required, at most {@link #MAX_ORDER}
+	 * @param x      the argument, x &ge; 0
+	 * @param values receives F<sub>m</sub>(x) at index m; must hold at least
+	 *               mMax+1 elements
+	 */
+	public static void evaluate(final int mMax, final double x, final double[] values) {
+		if (mMax < 0 || mMax > MAX_ORDER) {
+			throw new IllegalArgumentException("Boys function order out of range: " + mMax);
+		}
+
+		final double expMinusX = FastMath.exp(-x);
+
+		if (x >= X_MAX) {
+			// asymptotic F_0, then upward recursion, which is stable for large x
+			final double oneOver2x = 0.5 / x;
+			values[0] = 0.5 * FastMath.sqrt(FastMath.PI / x);
+			for (int m = 0; m < mMax; m++) {
+				values[m + 1] = ((2 * m + 1) * values[m] - expMinusX) * oneOver2x;
+			}
+
+			return;
+		}
+
+		// Taylor expansion of F_mMax about the nearest grid point
+		final int point = (int) (x * ONE_OVER_GRID_SPACING + 0.5);
+		final double dx = x - point * GRID_SPACING;
+		final int offset = point * ORDERS_PER_POINT + mMax;
+
+		double fm = 0.0;
+		double dxk = 1.0;
+		for (int k = 0; k < TAYLOR_TERMS; k++) {
+			fm += GRID[offset + k] * TAYLOR_COEFFICIENTS[k] * dxk;
+			dxk *= dx;
+		}
+		values[mMax] = fm;
+
+		// downward recursion
+		final double twoX = 2.0 * x;
+		for (int m = mMax - 1; m >= 0; m--) {
+			values[m] = (twoX * values[m + 1] + expMinusX) / (2 * m + 1);
+		}
+	}
+
+	/**
+	 * Evaluate a single order F<sub>m</sub>(x).
+	 *
+	 * @param m the order, at most {@link #MAX_ORDER}
+	 * @param x the argument, x &ge; 0
+	 * @return F<sub>m</sub>(x)
+	 */
+	public static double value(final int m, final double x) {
+		final double[] values = new double[m + 1];
+		evaluate(m, x, values);
+
+		return values[m];
+	}
+
+	/**
+	 * Compute every tabulated order at one grid point, from the series for the
+	 * highest order and downward recursion for the rest.
+	 *
+	 * @param x      the grid point
+	 * @param grid   receives F_0(x) ... F_(ORDERS_PER_POINT-1)(x)
+	 * @param offset index of F_0(x) in grid
+	 */
+	private static void tabulate(final double x, final double[] grid, final int offset) {
+		final int mTop = ORDERS_PER_POINT - 1;
+		final double expMinusX = FastMath.exp(-x);
+
+		double term = 1.0 / (2 * mTop + 1);
+		double sum = term;
+		for (int i = 1; term > 1.0e-17 * sum; i++) {
+			term *= 2.0 * x / (2 * mTop + 2 * i + 1);
+			sum += term;
+		}
+		grid[offset + mTop] = expMinusX * sum;
+
+		for (int m = mTop - 1; m >= 0; m--) {
+			grid[offset + m] = (2.0 * x * grid[offset + m + 1] + expMinusX) / (2 * m + 1);
+		}
+	}
+}
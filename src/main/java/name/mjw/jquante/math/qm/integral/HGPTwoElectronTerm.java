@@ -1,10 +1,13 @@
 package name.mjw.jquante.math.qm.integral;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import name.mjw.jquante.math.qm.Density;
 import name.mjw.jquante.math.qm.basis.ContractedGaussian;
 import name.mjw.jquante.math.qm.basis.Power;
+import name.mjw.jquante.math.qm.basis.Shell;
+import name.mjw.jquante.math.qm.basis.ShellPair;
 import net.jafama.FastMath;
 
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
@@ -12,13 +15,24 @@ import org.hipparchus.linear.RealMatrix;
 
 /**
  * Head-Gordon/Pople scheme of evaluating two-electron integrals.
- * 
+ *
  * The code is based upon PyQuante (<a href="http://pyquante.sf.net">
  * http://pyquante.sf.net </a>). See 'A method for two‐electron Gaussian
  * integral and integral derivative evaluation using recurrence relations'
  * <a href="http://dx.doi.org/10.1063/1.455553"> M. Head-Gordon and J. A. Pople,
  * J. Chem. Phys. <b>89</b>, 5777 (1988)</a> for more details.
- * 
+ * <p>
+ * The recurrences are table driven. For each primitive quartet the VRR fills
+ * [e0|f0]<sup>(m)</sup> bottom-up for every Cartesian e and f up to
+ * |e| = l<sub>a</sub>+l<sub>b</sub> and |f| = l<sub>c</sub>+l<sub>d</sub>; the
+ * m = 0 values are contracted, and the HRR then transfers angular momentum to
+ * b and d once per shell quartet. All working storage is thread-local and
+ * reused between calls.
+ * <p>
+ * Within the tables the Cartesian components of angular momentum L are ordered
+ * by decreasing x power, then increasing z power, and all components of L
+ * follow those of L-1.
+ *
  * @author V.Ganesh
  * @version 2.0 (Part of MeTA v2.0)
  */
@@ -31,6 +45,120 @@ public final class HGPTwoElectronTerm implements TwoElectronTerm {
 	/** Precomputed constant: sqrt(2) * PI^(5/4), used in the HGP 2E integral prefactor. */
 	private final double sqrt2PI = FastMath.sqrt(2.0) * FastMath.pow(Math.PI, 1.25);
 
+	/** Highest total angular momentum held in the Cartesian tables. */
+	private static final int MAX_L = BoysFunction.MAX_ORDER + 1;
+
+	/** x, y and z powers of each Cartesian component, indexed [e * 3 + dir]. */
+	private static final int[] CART_POWER;
+
+	/** Total angular momentum of each Cartesian component. */
+	private static final int[] CART_L;
+
+	/** The direction used to build each component from a lower one. */
+	private static final int[] CART_DIR;
+
+	/** Index of e - 1<sub>dir</sub>, or -1, indexed [e * 3 + dir]. */
+	private static final int[] CART_DOWN;
+
+	/** Index of e + 1<sub>dir</sub>, or -1, indexed [e * 3 + dir]. */
+	private static final int[] CART_UP;
+
+	static {
+		final int size = offset(MAX_L + 1);
+
+		CART_POWER = new int[3 * size];
+		CART_L = new int[size];
+		CART_DIR = new int[size];
+		CART_DOWN = new int[3 * size];
+		CART_UP = new int[3 * size];
+
+		for (int l = 0; l <= MAX_L; l++) {
+			for (int x = l; x >= 0; x--) {
+				for (int z = 0; z <= l - x; z++) {
+					final int e = index(x, l - x - z, z);
+
+					CART_POWER[3 * e] = x;
+					CART_POWER[3 * e + 1] = l - x - z;
+					CART_POWER[3 * e + 2] = z;
+					CART_L[e] = l;
+				}
+			}
+		}
+
+		for (int e = 0; e < size; e++) {
+			final int l = CART_L[e];
+			CART_DIR[e] = -1;
+
+			for (int dir = 2; dir >= 0; dir--) {
+				final int[] power = { CART_POWER[3 * e], CART_POWER[3 * e + 1], CART_POWER[3 * e + 2] };
+
+				if (power[dir] > 0) {
+					CART_DIR[e] = dir;
+					power[dir]--;
+					CART_DOWN[3 * e + dir] = index(power[0], power[1], power[2]);
+					power[dir]++;
+				} else {
+					CART_DOWN[3 * e + dir] = -1;
+				}
+
+				if (l < MAX_L) {
+					power[dir]++;
+					CART_UP[3 * e + dir] = index(power[0], power[1], power[2]);
+				} else {
+					CART_UP[3 * e + dir] = -1;
+				}
+			}
+		}
+	}
+
+	/** Thread-local working storage. */
+	private static final ThreadLocal<Workspace> WORKSPACE_THREAD = ThreadLocal.withInitial(Workspace::new);
+
+	/**
+	 * Reusable buffers for one thread. Arrays only ever grow.
+	 */
+	private static final class Workspace {
+		/** [e0|f0]^(m), indexed [(e * nF + f) * nM + m]. */
+		double[] vrr = new double[0];
+		/** Contracted [e0|f0]. */
+		double[] contracted = new double[0];
+		/** HRR ping-pong buffer. */
+		double[] hrrA = new double[0];
+		/** HRR ping-pong buffer. */
+		double[] hrrB = new double[0];
+		/** Contracted (ab|cd) in table order. */
+		double[] result = new double[0];
+		/** Boys function values. */
+		final double[] boys = new double[BoysFunction.MAX_ORDER + 1];
+		/** Bra primitive pair exponent sums. */
+		double[] braZeta = new double[0];
+		/** Bra product centres. */
+		double[] braP = new double[0];
+		/** Bra P - A. */
+		double[] braPA = new double[0];
+		/** Bra pair prefactors, including contraction and normalisation. */
+		double[] braPre = new double[0];
+		/** Ket primitive pair exponent sums. */
+		double[] ketZeta = new double[0];
+		/** Ket product centres. */
+		double[] ketQ = new double[0];
+		/** Ket Q - C. */
+		double[] ketQC = new double[0];
+		/** Ket pair prefactors, including contraction and normalisation. */
+		double[] ketPre = new double[0];
+
+		/**
+		 * Grow an array if required.
+		 *
+		 * @param array the current array
+		 * @param size  the required size
+		 * @return array, or a larger replacement
+		 */
+		static double[] ensure(double[] array, int size) {
+			return array.length >= size ? array : new double[size];
+		}
+	}
+
 	/**
 	 * 2E coulomb interactions between four contracted Gaussians using the
 	 * Head-Gordon/Pople scheme.
@@ -44,16 +172,111 @@ public final class HGPTwoElectronTerm implements TwoElectronTerm {
 	@Override
 	public final double coulomb(ContractedGaussian a, ContractedGaussian b, ContractedGaussian c,
 			ContractedGaussian d) {
-		return (a.getNormalization() * b.getNormalization() * c.getNormalization() * d.getNormalization()
-				* contractedHrr(a.getOrigin(), a.getPowers(), a.getCoefficients(), a.getExponents(), a.getPrimNorms(),
-						b.getOrigin(), b.getPowers(), b.getCoefficients(), b.getExponents(), b.getPrimNorms(),
-						c.getOrigin(), c.getPowers(), c.getCoefficients(), c.getExponents(), c.getPrimNorms(),
-						d.getOrigin(), d.getPowers(), d.getCoefficients(), d.getExponents(), d.getPrimNorms()));
+		final Workspace w = WORKSPACE_THREAD.get();
+
+		final int nBra = braPairs(w, a.getOrigin(), a.getExponents(), a.getCoefficients(), a.getPrimNorms(),
+				b.getOrigin(), b.getExponents(), b.getCoefficients(), b.getPrimNorms());
+		final int nKet = ketPairs(w, c.getOrigin(), c.getExponents(), c.getCoefficients(), c.getPrimNorms(),
+				d.getOrigin(), d.getExponents(), d.getCoefficients(), d.getPrimNorms());
+
+		return a.getNormalization() * b.getNormalization() * c.getNormalization() * d.getNormalization()
+				* component(w, a.getOrigin(), a.getPowers(), b.getOrigin(), b.getPowers(), c.getOrigin(),
+						c.getPowers(), d.getOrigin(), d.getPowers(), nBra, nKet);
+	}
+
+	/**
+	 * 2E coulomb interactions for every component of a shell quartet using the
+	 * Head-Gordon/Pople scheme, with the primitive pair data taken from the
+	 * cache of the basis set, see {@link Shell#getShellPair(Shell)}.
+	 *
+	 * @param a     shell a.
+	 * @param b     shell b.
+	 * @param c     shell c.
+	 * @param d     shell d.
+	 * @param block receives the integrals, see
+	 *              {@link TwoElectronTerm#coulomb(Shell, Shell, Shell, Shell, double[])}
+	 */
+	@Override
+	public final void coulomb(Shell a, Shell b, Shell c, Shell d, double[] block) {
+		coulomb(a.getShellPair(b), c.getShellPair(d), block);
+	}
+
+	/**
+	 * 2E coulomb interactions for every component of a shell quartet using the
+	 * Head-Gordon/Pople scheme, with the Gaussian product quantities taken from
+	 * precomputed shell pair data.
+	 * <p>
+	 * The primitive normalisation factor of a Cartesian component is the
+	 * product of an exponent dependent factor, common to the whole shell, and a
+	 * power dependent factor. The quartet is therefore contracted once with the
+	 * factors of the first component of each shell, and every component is
+	 * rescaled afterwards.
+	 *
+	 * @param ab    primitive pair data of shells a and b.
+	 * @param cd    primitive pair data of shells c and d.
+	 * @param block receives the integrals, see
+	 *              {@link TwoElectronTerm#coulomb(Shell, Shell, Shell, Shell, double[])}
+	 */
+	@Override
+	public final void coulomb(ShellPair ab, ShellPair cd, double[] block) {
+		final List<ContractedGaussian> aFunctions = ab.getA().getBasisFunctions();
+		final List<ContractedGaussian> bFunctions = ab.getB().getBasisFunctions();
+		final List<ContractedGaussian> cFunctions = cd.getA().getBasisFunctions();
+		final List<ContractedGaussian> dFunctions = cd.getB().getBasisFunctions();
+
+		final int aL = ab.getA().getTotalAngularMomentum();
+		final int bL = ab.getB().getTotalAngularMomentum();
+		final int cL = cd.getA().getTotalAngularMomentum();
+		final int dL = cd.getB().getTotalAngularMomentum();
+
+		final Workspace w = WORKSPACE_THREAD.get();
+
+		final List<Double> aNorms = aFunctions.get(0).getPrimNorms();
+		final List<Double> bNorms = bFunctions.get(0).getPrimNorms();
+		final List<Double> cNorms = cFunctions.get(0).getPrimNorms();
+		final List<Double> dNorms = dFunctions.get(0).getPrimNorms();
+
+		final int nBra = ab.getNumberOfPrimitivePairs();
+		final int nKet = cd.getNumberOfPrimitivePairs();
+
+		w.braPre = Workspace.ensure(w.braPre, nBra);
+		w.ketPre = Workspace.ensure(w.ketPre, nKet);
+
+		pairPrefactors(ab, aNorms, bNorms, w.braPre);
+		pairPrefactors(cd, cNorms, dNorms, w.ketPre);
+
+		shellQuartet(w, aL, bL, cL, dL, ab.getAB(), cd.getAB(), nBra, ab.getZeta(), ab.getP(), ab.getPA(),
+				w.braPre, nKet, cd.getZeta(), cd.getP(), cd.getPA(), w.ketPre);
+
+		final int nbCart = numberOfComponents(bL);
+		final int ncCart = numberOfComponents(cL);
+		final int ndCart = numberOfComponents(dL);
+
+		int index = 0;
+		for (ContractedGaussian ap : aFunctions) {
+			final int p = localIndex(ap.getPowers());
+			final double sp = componentScale(ap, aNorms);
+
+			for (ContractedGaussian bq : bFunctions) {
+				final int pq = (p * nbCart + localIndex(bq.getPowers())) * ncCart;
+				final double sq = sp * componentScale(bq, bNorms);
+
+				for (ContractedGaussian cr : cFunctions) {
+					final int pqr = (pq + localIndex(cr.getPowers())) * ndCart;
+					final double sr = sq * componentScale(cr, cNorms);
+
+					for (ContractedGaussian ds : dFunctions) {
+						block[index++] = sr * componentScale(ds, dNorms)
+								* w.result[pqr + localIndex(ds.getPowers())];
+					}
+				}
+			}
+		}
 	}
 
 	/**
 	 * Coulomb repulsion term between four primitive Gaussians using the
-	 * Head-Gordon/Pople VRR scheme.
+	 * Head-Gordon/Pople scheme.
 	 *
 	 * @param a      the center of primitive Gaussian a.
 	 * @param aNorm  the normalisation factor of primitive Gaussian a.
@@ -77,571 +300,696 @@ public final class HGPTwoElectronTerm implements TwoElectronTerm {
 	public final double coulombRepulsion(Vector3D a, double aNorm, Power aPower, double aAlpha, Vector3D b,
 			double bNorm, Power bPower, double bAlpha, Vector3D c, double cNorm, Power cPower, double cAlpha,
 			Vector3D d, double dNorm, Power dPower, double dAlpha) {
-		return primitiveHrr(a, aNorm, aPower, aAlpha, b, bNorm, bPower, bAlpha,
-				c, cNorm, cPower, cAlpha, d, dNorm, dPower, dAlpha);
+		final Workspace w = WORKSPACE_THREAD.get();
+
+		final int nBra = braPairs(w, a, aAlpha, aNorm, b, bAlpha, bNorm);
+		final int nKet = ketPairs(w, c, cAlpha, cNorm, d, dAlpha, dNorm);
+
+		return component(w, a, aPower, b, bPower, c, cPower, d, dPower, nBra, nKet);
 	}
 
 	/**
-	 * Primitive-level Horizontal Recurrence Relation (HRR).
+	 * VRR (Vertical Recurrence Relation) contribution
+	 *
+	 * @param a      Center of primitive Gaussian function a.
+	 * @param aNorm  Normalisation coefficients of primitive Gaussian function a.
+	 * @param aPower Angular momentum of primitive Gaussian function a.
+	 * @param aAlpha Orbital exponent of primitiveGaussian function a.
+	 *
+	 * @param b      Center of primitive Gaussian function b.
+	 * @param bNorm  Normalisation coefficients of primitive Gaussian function b.
+	 * @param bAlpha Orbital exponent of primitiveGaussian function b.
+	 *
+	 * @param c      Center of primitive Gaussian function c.
+	 * @param cNorm  Normalisation coefficients of primitive Gaussian function c.
+	 * @param cPower Angular momentum of primitive Gaussian function c.
+	 * @param cAlpha Orbital exponent of primitiveGaussian function c.
 	 *
-	 * <p>Shifts angular momentum from b onto a (and from d onto c) until
-	 * bPower = dPower = (0,0,0), at which point {@link #vrr} is called directly.
-	 * This is the single-primitive analogue of {@link #contractedHrr} and is
-	 * required whenever {@link #coulombRepulsion} is called with non-zero b or d
-	 * angular momentum (e.g. during analytic gradient evaluation).
+	 * @param d      Center of primitive Gaussian function d.
+	 * @param dNorm  Normalisation coefficients of primitive Gaussian function d.
+	 * @param dAlpha Orbital exponent of primitiveGaussian function d.
 	 *
-	 * @param a      centre of primitive Gaussian a
-	 * @param aNorm  normalisation factor of primitive Gaussian a
-	 * @param aPower angular momentum powers of primitive Gaussian a
-	 * @param aAlpha exponent of primitive Gaussian a
-	 * @param b      centre of primitive Gaussian b
-	 * @param bNorm  normalisation factor of primitive Gaussian b
-	 * @param bPower angular momentum powers of primitive Gaussian b
-	 * @param bAlpha exponent of primitive Gaussian b
-	 * @param c      centre of primitive Gaussian c
-	 * @param cNorm  normalisation factor of primitive Gaussian c
-	 * @param cPower angular momentum powers of primitive Gaussian c
-	 * @param cAlpha exponent of primitive Gaussian c
-	 * @param d      centre of primitive Gaussian d
-	 * @param dNorm  normalisation factor of primitive Gaussian d
-	 * @param dPower angular momentum powers of primitive Gaussian d
-	 * @param dAlpha exponent of primitive Gaussian d
-	 * @return the primitive two-electron Coulomb repulsion integral (ab|cd)
+	 * @param m      If equal to 0, ERI is true, else greater than 0, ERI is an
+	 *               auxiliary integral.
+	 * @return Contribution to Vertical Recurrence Relation.
 	 */
-	private double primitiveHrr(
-			Vector3D a, double aNorm, Power aPower, double aAlpha,
-			Vector3D b, double bNorm, Power bPower, double bAlpha,
-			Vector3D c, double cNorm, Power cPower, double cAlpha,
-			Vector3D d, double dNorm, Power dPower, double dAlpha) {
+	final double vrr(Vector3D a, double aNorm, Power aPower, double aAlpha, Vector3D b, double bNorm,
+			double bAlpha, Vector3D c, double cNorm, Power cPower, double cAlpha, Vector3D d, double dNorm,
+			double dAlpha, int m) {
+		final Workspace w = WORKSPACE_THREAD.get();
 
-		final int la = aPower.l(), ma = aPower.m(), na = aPower.n();
-		final int lb = bPower.l(), mb = bPower.m(), nb = bPower.n();
-		final int lc = cPower.l(), mc = cPower.m(), nc = cPower.n();
-		final int ld = dPower.l(), md = dPower.m(), nd = dPower.n();
-
-		if (lb > 0) {
-			Power newBPower = new Power(lb - 1, mb, nb);
-			return primitiveHrr(a, aNorm, new Power(la + 1, ma, na), aAlpha, b, bNorm, newBPower, bAlpha,
-					c, cNorm, cPower, cAlpha, d, dNorm, dPower, dAlpha)
-					+ (a.getX() - b.getX()) * primitiveHrr(a, aNorm, aPower, aAlpha, b, bNorm, newBPower, bAlpha,
-							c, cNorm, cPower, cAlpha, d, dNorm, dPower, dAlpha);
-		} else if (mb > 0) {
-			Power newBPower = new Power(lb, mb - 1, nb);
-			return primitiveHrr(a, aNorm, new Power(la, ma + 1, na), aAlpha, b, bNorm, newBPower, bAlpha,
-					c, cNorm, cPower, cAlpha, d, dNorm, dPower, dAlpha)
-					+ (a.getY() - b.getY()) * primitiveHrr(a, aNorm, aPower, aAlpha, b, bNorm, newBPower, bAlpha,
-							c, cNorm, cPower, cAlpha, d, dNorm, dPower, dAlpha);
-		} else if (nb > 0) {
-			Power newBPower = new Power(lb, mb, nb - 1);
-			return primitiveHrr(a, aNorm, new Power(la, ma, na + 1), aAlpha, b, bNorm, newBPower, bAlpha,
-					c, cNorm, cPower, cAlpha, d, dNorm, dPower, dAlpha)
-					+ (a.getZ() - b.getZ()) * primitiveHrr(a, aNorm, aPower, aAlpha, b, bNorm, newBPower, bAlpha,
-							c, cNorm, cPower, cAlpha, d, dNorm, dPower, dAlpha);
-		} else if (ld > 0) {
-			Power newDPower = new Power(ld - 1, md, nd);
-			return primitiveHrr(a, aNorm, aPower, aAlpha, b, bNorm, bPower, bAlpha,
-					c, cNorm, new Power(lc + 1, mc, nc), cAlpha, d, dNorm, newDPower, dAlpha)
-					+ (c.getX() - d.getX()) * primitiveHrr(a, aNorm, aPower, aAlpha, b, bNorm, bPower, bAlpha,
-							c, cNorm, cPower, cAlpha, d, dNorm, newDPower, dAlpha);
-		} else if (md > 0) {
-			Power newDPower = new Power(ld, md - 1, nd);
-			return primitiveHrr(a, aNorm, aPower, aAlpha, b, bNorm, bPower, bAlpha,
-					c, cNorm, new Power(lc, mc + 1, nc), cAlpha, d, dNorm, newDPower, dAlpha)
-					+ (c.getY() - d.getY()) * primitiveHrr(a, aNorm, aPower, aAlpha, b, bNorm, bPower, bAlpha,
-							c, cNorm, cPower, cAlpha, d, dNorm, newDPower, dAlpha);
-		} else if (nd > 0) {
-			Power newDPower = new Power(ld, md, nd - 1);
-			return primitiveHrr(a, aNorm, aPower, aAlpha, b, bNorm, bPower, bAlpha,
-					c, cNorm, new Power(lc, mc, nc + 1), cAlpha, d, dNorm, newDPower, dAlpha)
-					+ (c.getZ() - d.getZ()) * primitiveHrr(a, aNorm, aPower, aAlpha, b, bNorm, bPower, bAlpha,
-							c, cNorm, cPower, cAlpha, d, dNorm, newDPower, dAlpha);
-		}
+		braPairs(w, a, aAlpha, aNorm, b, bAlpha, bNorm);
+		ketPairs(w, c, cAlpha, cNorm, d, dAlpha, dNorm);
+
+		final int eL = aPower.getTotalAngularMomentum();
+		final int fL = cPower.getTotalAngularMomentum();
+		final int nF = offset(fL + 1);
+		final int mMax = eL + fL + m;
 
-		// Base case: bPower = dPower = (0,0,0), call vrr directly.
-		return vrr(a, aNorm, aPower, aAlpha, b, bNorm, bAlpha, c, cNorm, cPower, cAlpha, d, dNorm, dAlpha, 0);
+		w.vrr = Workspace.ensure(w.vrr, offset(eL + 1) * nF * (mMax + 1));
+
+		vrrTable(w, 0, 0, eL, fL, mMax);
+
+		return w.vrr[(index(aPower.l(), aPower.m(), aPower.n()) * nF + index(cPower.l(), cPower.m(), cPower.n()))
+				* (mMax + 1) + m];
 	}
 
 	/**
-	 * Contracted HRR (Horizontal Recurrence Relation)
-	 * 
-	 * @param a      Center of contracted Gaussian function a.
-	 * @param aPower Angular momentum of Gaussian function a.
-	 * @param aCoeff Coefficients of primitives in contracted Gaussian function a.
-	 * @param aExps  Orbital exponents of primitives in contracted Gaussian function
-	 *               a.
-	 * @param aNorms Primitive normalisation coefficients of primitives in
-	 *               contracted Gaussian function a.
-	 * 
-	 * @param b      Center of contracted Gaussian function b.
-	 * @param bPower Angular momentum of Gaussian function b.
-	 * @param bCoeff Coefficients of primitives in contracted Gaussian function b.
-	 * @param bExps  Orbital exponents of primitives in contracted Gaussian function
-	 *               b.
-	 * @param bNorms Primitive normalisation coefficients of primitives in
-	 *               contracted Gaussian function b.
-	 * @param c      Center of contracted Gaussian function c.
-	 * @param cPower Angular momentum of Gaussian function c.
-	 * @param cCoeff Coefficients of primitives in contracted Gaussian function c.
-	 * @param cExps  Orbital exponents of primitives in contracted Gaussian function
-	 *               c.
-	 * @param cNorms Primitive normalisation coefficients of primitives in
-	 *               contracted Gaussian function c.
-	 * @param d      Center of contracted Gaussian function d.
-	 * @param dPower Angular momentum of Gaussian function d.
-	 * @param dCoeff Coefficients of primitives in contracted Gaussian function d.
-	 * @param dExps  Orbital exponents of primitives in contracted Gaussian function
-	 *               d.
-	 * @param dNorms Primitive normalisation coefficients of primitives in
-	 *               contracted Gaussian function d.
-	 * 
-	 * @return Contribution to Horizontal Recurrence Relation.
+	 * Evaluate one Cartesian component of a quartet whose primitive pairs are
+	 * already held in the workspace.
+	 *
+	 * @param w      the workspace.
+	 * @param a      centre a.
+	 * @param aPower powers of a.
+	 * @param b      centre b.
+	 * @param bPower powers of b.
+	 * @param c      centre c.
+	 * @param cPower powers of c.
+	 * @param d      centre d.
+	 * @param dPower powers of d.
+	 * @param nBra   number of bra primitive pairs.
+	 * @param nKet   number of ket primitive pairs.
+	 * @return the (ab|cd) component, without contracted normalisation.
 	 */
-	protected final double contractedHrr(Vector3D a, Power aPower, ArrayList<Double> aCoeff, ArrayList<Double> aExps,
-			ArrayList<Double> aNorms, Vector3D b, Power bPower, ArrayList<Double> bCoeff, ArrayList<Double> bExps,
-			ArrayList<Double> bNorms, Vector3D c, Power cPower, ArrayList<Double> cCoeff, ArrayList<Double> cExps,
-			ArrayList<Double> cNorms, Vector3D d, Power dPower, ArrayList<Double> dCoeff, ArrayList<Double> dExps,
-			ArrayList<Double> dNorms) {
-
-		final int la = aPower.l();
-		final int ma = aPower.m();
-		final int na = aPower.n();
-
-		final int lb = bPower.l();
-		final int mb = bPower.m();
-		final int nb = bPower.n();
-
-		final int lc = cPower.l();
-		final int mc = cPower.m();
-		final int nc = cPower.n();
-
-		final int ld = dPower.l();
-		final int md = dPower.m();
-		final int nd = dPower.n();
-
-		if (lb > 0) {
-			Power newBPower = new Power(lb - 1, mb, nb);
-			return (contractedHrr(a, new Power(la + 1, ma, na), aCoeff, aExps, aNorms, b, newBPower, bCoeff, bExps,
-					bNorms, c, cPower, cCoeff, cExps, cNorms, d, dPower, dCoeff, dExps, dNorms)
-					+ (a.getX() - b.getX()) * contractedHrr(a, aPower, aCoeff, aExps, aNorms, b, newBPower, bCoeff,
-							bExps, bNorms, c, cPower, cCoeff, cExps, cNorms, d, dPower, dCoeff, dExps, dNorms));
-		} else if (mb > 0) {
-			Power newBPower = new Power(lb, mb - 1, nb);
-			return (contractedHrr(a, new Power(la, ma + 1, na), aCoeff, aExps, aNorms, b, newBPower, bCoeff, bExps,
-					bNorms, c, cPower, cCoeff, cExps, cNorms, d, dPower, dCoeff, dExps, dNorms)
-					+ (a.getY() - b.getY()) * contractedHrr(a, aPower, aCoeff, aExps, aNorms, b, newBPower, bCoeff,
-							bExps, bNorms, c, cPower, cCoeff, cExps, cNorms, d, dPower, dCoeff, dExps, dNorms));
-		} else if (nb > 0) {
-			Power newBPower = new Power(lb, mb, nb - 1);
-			return (contractedHrr(a, new Power(la, ma, na + 1), aCoeff, aExps, aNorms, b, newBPower, bCoeff, bExps,
-					bNorms, c, cPower, cCoeff, cExps, cNorms, d, dPower, dCoeff, dExps, dNorms)
-					+ (a.getZ() - b.getZ()) * contractedHrr(a, aPower, aCoeff, aExps, aNorms, b, newBPower, bCoeff,
-							bExps, bNorms, c, cPower, cCoeff, cExps, cNorms, d, dPower, dCoeff, dExps, dNorms));
-		} else if (ld > 0) {
-			Power newDPower = new Power(ld - 1, md, nd);
-			return (contractedHrr(a, aPower, aCoeff, aExps, aNorms, b, bPower, bCoeff, bExps, bNorms, c,
-					new Power(lc + 1, mc, nc), cCoeff, cExps, cNorms, d, newDPower, dCoeff, dExps, dNorms)
-					+ (c.getX() - d.getX()) * contractedHrr(a, aPower, aCoeff, aExps, aNorms, b, bPower, bCoeff, bExps,
-							bNorms, c, cPower, cCoeff, cExps, cNorms, d, newDPower, dCoeff, dExps, dNorms));
-		} else if (md > 0) {
-			Power newDPower = new Power(ld, md - 1, nd);
-			return (contractedHrr(a, aPower, aCoeff, aExps, aNorms, b, bPower, bCoeff, bExps, bNorms, c,
-					new Power(lc, mc + 1, nc), cCoeff, cExps, cNorms, d, newDPower, dCoeff, dExps, dNorms)
-					+ (c.getY() - d.getY()) * contractedHrr(a, aPower, aCoeff, aExps, aNorms, b, bPower, bCoeff, bExps,
-							bNorms, c, cPower, cCoeff, cExps, cNorms, d, newDPower, dCoeff, dExps, dNorms));
-		} else if (nd > 0) {
-			Power newDPower = new Power(ld, md, nd - 1);
-			return (contractedHrr(a, aPower, aCoeff, aExps, aNorms, b, bPower, bCoeff, bExps, bNorms, c,
-					new Power(lc, mc, nc + 1), cCoeff, cExps, cNorms, d, newDPower, dCoeff, dExps, dNorms)
-					+ (c.getZ() - d.getZ()) * contractedHrr(a, aPower, aCoeff, aExps, aNorms, b, bPower, bCoeff, bExps,
-							bNorms, c, cPower, cCoeff, cExps, cNorms, d, newDPower, dCoeff, dExps, dNorms));
-		}
+	private double component(Workspace w, Vector3D a, Power aPower, Vector3D b, Power bPower, Vector3D c,
+			Power cPower, Vector3D d, Power dPower, int nBra, int nKet) {
+		final int aL = aPower.getTotalAngularMomentum();
+		final int bL = bPower.getTotalAngularMomentum();
+		final int cL = cPower.getTotalAngularMomentum();
+		final int dL = dPower.getTotalAngularMomentum();
 
-		return contractedVrr(a, aPower, aCoeff, aExps, aNorms, b, bCoeff, bExps, bNorms, c, cPower, cCoeff, cExps,
-				cNorms, d, dCoeff, dExps, dNorms);
+		final double[] abVector = { a.getX() - b.getX(), a.getY() - b.getY(), a.getZ() - b.getZ() };
+		final double[] cdVector = { c.getX() - d.getX(), c.getY() - d.getY(), c.getZ() - d.getZ() };
+
+		shellQuartet(w, aL, bL, cL, dL, abVector, cdVector, nBra, w.braZeta, w.braP, w.braPA, w.braPre, nKet,
+				w.ketZeta, w.ketQ, w.ketQC, w.ketPre);
+
+		return w.result[((localIndex(aPower) * numberOfComponents(bL) + localIndex(bPower))
+				* numberOfComponents(cL) + localIndex(cPower)) * numberOfComponents(dL) + localIndex(dPower)];
 	}
 
 	/**
-	 * Contracted VRR (Vertical Recurrence Relation) contribution
-	 * 
-	 * @param a      Center of contracted Gaussian function a.
-	 * @param aPower Angular momentum of Gaussian function a.
-	 * @param aCoeff Coefficients of primitives in contracted Gaussian function a.
-	 * @param aExps  Orbital exponents of primitives in contracted Gaussian function
-	 *               a.
-	 * @param aNorms Primitive normalisation coefficients of primitives in
-	 *               contracted Gaussian function a.
-	 * 
-	 * @param b      Center of contracted Gaussian function b.
-	 * @param bCoeff Coefficients of primitives in contracted Gaussian function b.
-	 * @param bExps  Orbital exponents of primitives in contracted Gaussian function
-	 *               b.
-	 * @param bNorms Primitive normalisation coefficients of primitives in
-	 *               contracted Gaussian function b.
-	 * 
-	 * @param c      Center of contracted Gaussian function c.
-	 * @param cPower Angular momentum of Gaussian function c.
-	 * @param cCoeff Coefficients of primitives in contracted Gaussian function c.
-	 * @param cExps  Orbital exponents of primitives in contracted Gaussian function
-	 *               c.
-	 * @param cNorms Primitive normalisation coefficients of primitives in
-	 *               contracted Gaussian function c.
-	 * 
-	 * @param d      Center of contracted Gaussian function d.
-	 * @param dCoeff Coefficients of primitives in contracted Gaussian function d.
-	 * @param dExps  Orbital exponents of primitives in contracted Gaussian function
-	 *               d.
-	 * @param dNorms Primitive normalisation coefficients of primitives in
-	 *               contracted Gaussian function d.
-	 * 
-	 * @return Contribution to Vertical Recurrence Relation.
+	 * Contracted (ab|cd) for every Cartesian component of the given angular
+	 * momenta, written to {@link Workspace#result} as
+	 * [((p * nb + q) * nc + r) * nd + s] in table order.
+	 *
+	 * @param w        the workspace.
+	 * @param aL       angular momentum of a.
+	 * @param bL       angular momentum of b.
+	 * @param cL       angular momentum of c.
+	 * @param dL       angular momentum of d.
+	 * @param abVector A - B.
+	 * @param cdVector C - D.
+	 * @param nBra     number of bra primitive pairs.
+	 * @param zetas    bra exponent sums.
+	 * @param ps       bra product centres.
+	 * @param pas      bra P - A.
+	 * @param braPre   bra prefactors.
+	 * @param nKet     number of ket primitive pairs.
+	 * @param etas     ket exponent sums.
+	 * @param qs       ket product centres.
+	 * @param qcs      ket Q - C.
+	 * @param ketPre   ket prefactors.
 	 */
-	protected final double contractedVrr(Vector3D a, Power aPower, ArrayList<Double> aCoeff, ArrayList<Double> aExps,
-			ArrayList<Double> aNorms, Vector3D b, ArrayList<Double> bCoeff, ArrayList<Double> bExps,
-			ArrayList<Double> bNorms, Vector3D c, Power cPower, ArrayList<Double> cCoeff, ArrayList<Double> cExps,
-			ArrayList<Double> cNorms, Vector3D d, ArrayList<Double> dCoeff, ArrayList<Double> dExps,
-			ArrayList<Double> dNorms) {
-
-		double value = 0.0;
+	private static void shellQuartet(Workspace w, int aL, int bL, int cL, int dL, double[] abVector,
+			double[] cdVector, int nBra, double[] zetas, double[] ps, double[] pas, double[] braPre, int nKet,
+			double[] etas, double[] qs, double[] qcs, double[] ketPre) {
+		final int eL = aL + bL;
+		final int fL = cL + dL;
+		final int mMax = eL + fL;
+
+		if (mMax > BoysFunction.MAX_ORDER) {
+			throw new UnsupportedOperationException("Angular momentum too high for HGP: " + mMax);
+		}
 
-		double iaExp;
-		double iaCoef;
-		double iaNorm;
+		final int nE = offset(eL + 1);
+		final int nF = offset(fL + 1);
+		final int nM = mMax + 1;
+		final int eLo = offset(aL);
+		final int fLo = offset(cL);
 
-		double jbExp;
-		double jbCoef;
-		double jbNorm;
+		w.vrr = Workspace.ensure(w.vrr, nE * nF * nM);
+		w.contracted = Workspace.ensure(w.contracted, nE * nF);
 
-		double kcExp;
-		double kcCoef;
-		double kcNorm;
+		final double[] contracted = w.contracted;
+		Arrays.fill(contracted, 0, nE * nF, 0.0);
 
-		for (int i = 0; i < aExps.size(); i++) {
-			iaCoef = aCoeff.get(i);
-			iaExp = aExps.get(i);
-			iaNorm = aNorms.get(i);
+		for (int ij = 0; ij < nBra; ij++) {
+			for (int kl = 0; kl < nKet; kl++) {
+				vrrPrimitive(w, ij, kl, zetas, ps, pas, braPre, etas, qs, qcs, ketPre, eL, fL, mMax);
 
-			for (int j = 0; j < bExps.size(); j++) {
-				jbCoef = bCoeff.get(j);
-				jbExp = bExps.get(j);
-				jbNorm = bNorms.get(j);
-
-				for (int k = 0; k < cExps.size(); k++) {
-					kcCoef = cCoeff.get(k);
-					kcExp = cExps.get(k);
-					kcNorm = cNorms.get(k);
-
-					for (int l = 0; l < dExps.size(); l++) {
-						value += iaCoef * jbCoef * kcCoef * dCoeff.get(l) * vrr(a, iaNorm, aPower, iaExp, b,
-								jbNorm, jbExp, c, kcNorm, cPower, kcExp, d, dNorms.get(l), dExps.get(l), 0);
+				final double[] vrr = w.vrr;
+				for (int e = eLo; e < nE; e++) {
+					for (int f = fLo; f < nF; f++) {
+						contracted[e * nF + f] += vrr[(e * nF + f) * nM];
 					}
 				}
 			}
 		}
-		return value;
+
+		hrr(w, aL, bL, cL, dL, abVector, cdVector);
 	}
 
 	/**
-	 * VRR (Vertical Recurrence Relation) contribution
-	 * 
-	 * @param a      Center of primitive Gaussian function a.
-	 * @param aNorm  Normalisation coefficients of primitive Gaussian function a.
-	 * @param aPower Angular momentum of primitive Gaussian function a.
-	 * @param aAlpha Orbital exponent of primitiveGaussian function a.
-	 * 
-	 * @param b      Center of primitive Gaussian function b.
-	 * @param bNorm  Normalisation coefficients of primitive Gaussian function b.
-	 * @param bAlpha Orbital exponent of primitiveGaussian function b.
-	 * 
-	 * @param c      Center of primitive Gaussian function c.
-	 * @param cNorm  Normalisation coefficients of primitive Gaussian function c.
-	 * @param cPower Angular momentum of primitive Gaussian function c.
-	 * @param cAlpha Orbital exponent of primitiveGaussian function c.
-	 * 
-	 * @param d      Center of primitive Gaussian function d.
-	 * @param dNorm  Normalisation coefficients of primitive Gaussian function d.
-	 * @param dAlpha Orbital exponent of primitiveGaussian function d.
-	 * 
-	 * @param m      If equal to 0, ERI is true, else greater than 0, ERI is an
-	 *               auxiliary integral.
-	 * @return Contribution to Vertical Recurrence Relation.
+	 * Fill the VRR table of the primitive quartet (ij|kl).
+	 *
+	 * @param w      the workspace.
+	 * @param ij     bra primitive pair.
+	 * @param kl     ket primitive pair.
+	 * @param zetas  bra exponent sums.
+	 * @param ps     bra product centres.
+	 * @param pas    bra P - A.
+	 * @param braPre bra prefactors.
+	 * @param etas   ket exponent sums.
+	 * @param qs     ket product centres.
+	 * @param qcs    ket Q - C.
+	 * @param ketPre ket prefactors.
+	 * @param eL     highest bra angular momentum.
+	 * @param fL     highest ket angular momentum.
+	 * @param mMax   highest auxiliary order.
 	 */
-	final double vrr(Vector3D a, double aNorm, Power aPower, double aAlpha, Vector3D b, double bNorm,
-			double bAlpha, Vector3D c, double cNorm, Power cPower, double cAlpha, Vector3D d, double dNorm,
-			double dAlpha, int m) {
-
-		// All quantities below are constant for this primitive quartet.
-		// Precompute them once here so that vrrRecurse() never recomputes them.
-		final double zeta = aAlpha + bAlpha;
-		final double eta  = cAlpha + dAlpha;
+	private static void vrrPrimitive(Workspace w, int ij, int kl, double[] zetas, double[] ps, double[] pas,
+			double[] braPre, double[] etas, double[] qs, double[] qcs, double[] ketPre, int eL, int fL,
+			int mMax) {
+		final double zeta = zetas[ij];
+		final double eta = etas[kl];
 		final double zetaPlusEta = zeta + eta;
 
-		final double ax = a.getX(), ay = a.getY(), az = a.getZ();
-		final double cx = c.getX(), cy = c.getY(), cz = c.getZ();
-
-		final double px = (aAlpha * ax + bAlpha * b.getX()) / zeta;
-		final double py = (aAlpha * ay + bAlpha * b.getY()) / zeta;
-		final double pz = (aAlpha * az + bAlpha * b.getZ()) / zeta;
-
-		final double qx = (cAlpha * cx + dAlpha * d.getX()) / eta;
-		final double qy = (cAlpha * cy + dAlpha * d.getY()) / eta;
-		final double qz = (cAlpha * cz + dAlpha * d.getZ()) / eta;
+		final double px = ps[3 * ij];
+		final double py = ps[3 * ij + 1];
+		final double pz = ps[3 * ij + 2];
+		final double qx = qs[3 * kl];
+		final double qy = qs[3 * kl + 1];
+		final double qz = qs[3 * kl + 2];
 
 		final double wx = (zeta * px + eta * qx) / zetaPlusEta;
 		final double wy = (zeta * py + eta * qy) / zetaPlusEta;
 		final double wz = (zeta * pz + eta * qz) / zetaPlusEta;
 
-		// Geometric differences used by the VRR recurrence (ket side uses q−c and w−q;
-		// bra side uses p−a and w−p).
-		final double pax = px - ax, pay = py - ay, paz = pz - az;
-		final double wpx = wx - px, wpy = wy - py, wpz = wz - pz;
-		final double qcx = qx - cx, qcy = qy - cy, qcz = qz - cz;
-		final double wqx = wx - qx, wqy = wy - qy, wqz = wz - qz;
-
-		// Recurrence prefactors.
-		final double oneover2zeta        = 0.5 / zeta;
-		final double oneover2eta         = 0.5 / eta;
-		final double oneover2zetaPlusEta = 0.5 / zetaPlusEta;
-		final double zetaByZetaPlusEta   = zeta / zetaPlusEta;
-		final double etaByZetaPlusEta    = eta  / zetaPlusEta;
-
-		// Base-case prefactor and Boys-function argument — both constant for this quartet.
-		final double rab2 = a.distanceSq(b);
-		final double rcd2 = c.distanceSq(d);
-		final double Kab  = sqrt2PI / zeta * FastMath.exp(-aAlpha * bAlpha / zeta * rab2);
-		final double Kcd  = sqrt2PI / eta  * FastMath.exp(-cAlpha * dAlpha / eta  * rcd2);
 		final double rpq2 = (px - qx) * (px - qx) + (py - qy) * (py - qy) + (pz - qz) * (pz - qz);
-		final double T    = zeta * eta / zetaPlusEta * rpq2;
-		final double preScaled = aNorm * bNorm * cNorm * dNorm * Kab * Kcd / FastMath.sqrt(zetaPlusEta);
-
-		return vrrRecurse(
-				aPower.l(), aPower.m(), aPower.n(),
-				cPower.l(), cPower.m(), cPower.n(),
-				m,
-				pax, pay, paz, wpx, wpy, wpz,
-				qcx, qcy, qcz, wqx, wqy, wqz,
-				oneover2zeta, oneover2eta, oneover2zetaPlusEta,
-				zetaByZetaPlusEta, etaByZetaPlusEta,
-				preScaled, T);
+		final double t = zeta * eta / zetaPlusEta * rpq2;
+
+		final double[] boys = w.boys;
+		BoysFunction.evaluate(mMax, t, boys);
+
+		final double preScaled = braPre[ij] * ketPre[kl] / FastMath.sqrt(zetaPlusEta);
+		for (int m = 0; m <= mMax; m++) {
+			w.vrr[m] = preScaled * boys[m];
+		}
+
+		vrrRecurrence(w.vrr, eL, fL, mMax, pas[3 * ij], pas[3 * ij + 1], pas[3 * ij + 2], wx - px, wy - py,
+				wz - pz, qcs[3 * kl], qcs[3 * kl + 1], qcs[3 * kl + 2], wx - qx, wy - qy, wz - qz, 0.5 / zeta,
+				0.5 / eta, 0.5 / zetaPlusEta, zeta / zetaPlusEta, eta / zetaPlusEta);
 	}
 
 	/**
-	 * Recursive core of the VRR (Vertical Recurrence Relation).
+	 * Fill the VRR table of the primitive quartet (ij|kl) of pairs held in the
+	 * workspace.
 	 *
-	 * <p>All quartet-constant geometry and prefactor quantities are passed in as
-	 * plain {@code double} scalars so they are computed exactly once per primitive
-	 * quartet by {@link #vrr} and never recomputed during the recursion.
+	 * @param w    the workspace.
+	 * @param ij   bra primitive pair.
+	 * @param kl   ket primitive pair.
+	 * @param eL   highest bra angular momentum.
+	 * @param fL   highest ket angular momentum.
+	 * @param mMax highest auxiliary order.
+	 */
+	private static void vrrTable(Workspace w, int ij, int kl, int eL, int fL, int mMax) {
+		vrrPrimitive(w, ij, kl, w.braZeta, w.braP, w.braPA, w.braPre, w.ketZeta, w.ketQ, w.ketQC, w.ketPre, eL,
+				fL, mMax);
+	}
+
+	/**
+	 * Bottom-up VRR. On entry vrr[0..mMax] holds [00|00]<sup>(m)</sup>; on
+	 * exit vrr[(e * nF + f) * nM + m] holds [e0|f0]<sup>(m)</sup> for every
+	 * |e| &le; eL, |f| &le; fL and m &le; mMax - |e| - |f|.
 	 *
-	 * @param la angular momentum x of bra center a
-	 * @param ma angular momentum y of bra center a
-	 * @param na angular momentum z of bra center a
-	 * @param lc angular momentum x of ket center c
-	 * @param mc angular momentum y of ket center c
-	 * @param nc angular momentum z of ket center c
-	 * @param m  auxiliary integral order
-	 * @param pax p.x − a.x
-	 * @param pay p.y − a.y
-	 * @param paz p.z − a.z
-	 * @param wpx w.x − p.x
-	 * @param wpy w.y − p.y
-	 * @param wpz w.z − p.z
-	 * @param qcx q.x − c.x
-	 * @param qcy q.y − c.y
-	 * @param qcz q.z − c.z
-	 * @param wqx w.x − q.x
-	 * @param wqy w.y − q.y
-	 * @param wqz w.z − q.z
+	 * @param vrr                 the table.
+	 * @param eL                  highest bra angular momentum.
+	 * @param fL                  highest ket angular momentum.
+	 * @param mMax                highest auxiliary order.
+	 * @param pax                 p.x − a.x
+	 * @param pay                 p.y − a.y
+	 * @param paz                 p.z − a.z
+	 * @param wpx                 w.x − p.x
+	 * @param wpy                 w.y − p.y
+	 * @param wpz                 w.z − p.z
+	 * @param qcx                 q.x − c.x
+	 * @param qcy                 q.y − c.y
+	 * @param qcz                 q.z − c.z
+	 * @param wqx                 w.x − q.x
+	 * @param wqy                 w.y − q.y
+	 * @param wqz                 w.z − q.z
 	 * @param oneover2zeta        1 / (2 * zeta)
 	 * @param oneover2eta         1 / (2 * eta)
 	 * @param oneover2zetaPlusEta 1 / (2 * (zeta + eta))
 	 * @param zetaByZetaPlusEta   zeta / (zeta + eta)
-	 * @param etaByZetaPlusEta    eta  / (zeta + eta)
-	 * @param preScaled           aNorm * bNorm * cNorm * dNorm * Kab * Kcd / sqrt(zeta+eta)
-	 * @param T                   Boys-function argument
-	 * @return VRR integral value for the given angular momenta and order m
+	 * @param etaByZetaPlusEta    eta / (zeta + eta)
 	 */
-	private double vrrRecurse(
-			int la, int ma, int na,
-			int lc, int mc, int nc,
-			int m,
-			double pax, double pay, double paz,
-			double wpx, double wpy, double wpz,
-			double qcx, double qcy, double qcz,
-			double wqx, double wqy, double wqz,
-			double oneover2zeta,
-			double oneover2eta,
-			double oneover2zetaPlusEta,
-			double zetaByZetaPlusEta,
-			double etaByZetaPlusEta,
-			double preScaled,
-			double T) {
-		double val;
-
-		if (nc > 0) {
-			val = qcz * vrrRecurse(la, ma, na, lc, mc, nc - 1, m,
-						pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-						oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-						preScaled, T)
-				+ wqz * vrrRecurse(la, ma, na, lc, mc, nc - 1, m + 1,
-						pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-						oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-						preScaled, T);
-			if (nc > 1) {
-				val += oneover2eta * (nc - 1) * (
-						vrrRecurse(la, ma, na, lc, mc, nc - 2, m,
-								pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-								oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-								preScaled, T)
-						- zetaByZetaPlusEta * vrrRecurse(la, ma, na, lc, mc, nc - 2, m + 1,
-								pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-								oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-								preScaled, T));
-			}
-			if (na > 0) {
-				val += oneover2zetaPlusEta * na * vrrRecurse(la, ma, na - 1, lc, mc, nc - 1, m + 1,
-						pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-						oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-						preScaled, T);
+	private static void vrrRecurrence(double[] vrr, int eL, int fL, int mMax, double pax, double pay, double paz,
+			double wpx, double wpy, double wpz, double qcx, double qcy, double qcz, double wqx, double wqy,
+			double wqz, double oneover2zeta, double oneover2eta, double oneover2zetaPlusEta,
+			double zetaByZetaPlusEta, double etaByZetaPlusEta) {
+		final int nE = offset(eL + 1);
+		final int nF = offset(fL + 1);
+		final int nM = mMax + 1;
+		final int eStride = nF * nM;
+
+		final double[] pa = { pax, pay, paz };
+		final double[] wp = { wpx, wpy, wpz };
+		final double[] qc = { qcx, qcy, qcz };
+		final double[] wq = { wqx, wqy, wqz };
+
+		// [e0|00]^(m)
+		for (int e = 1; e < nE; e++) {
+			final int dir = CART_DIR[e];
+			final int e1 = CART_DOWN[3 * e + dir];
+			final int ei = CART_POWER[3 * e + dir];
+			final int mTop = mMax - CART_L[e];
+
+			final int base = e * eStride;
+			final int base1 = e1 * eStride;
+
+			for (int m = 0; m <= mTop; m++) {
+				vrr[base + m] = pa[dir] * vrr[base1 + m] + wp[dir] * vrr[base1 + m + 1];
 			}
-			return val;
-		} else if (mc > 0) {
-			val = qcy * vrrRecurse(la, ma, na, lc, mc - 1, nc, m,
-						pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-						oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-						preScaled, T)
-				+ wqy * vrrRecurse(la, ma, na, lc, mc - 1, nc, m + 1,
-						pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-						oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-						preScaled, T);
-			if (mc > 1) {
-				val += oneover2eta * (mc - 1) * (
-						vrrRecurse(la, ma, na, lc, mc - 2, nc, m,
-								pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-								oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-								preScaled, T)
-						- zetaByZetaPlusEta * vrrRecurse(la, ma, na, lc, mc - 2, nc, m + 1,
-								pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-								oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-								preScaled, T));
-			}
-			if (ma > 0) {
-				val += oneover2zetaPlusEta * ma * vrrRecurse(la, ma - 1, na, lc, mc - 1, nc, m + 1,
-						pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-						oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-						preScaled, T);
+
+			if (ei > 1) {
+				final int base2 = CART_DOWN[3 * e1 + dir] * eStride;
+				final double factor = oneover2zeta * (ei - 1);
+
+				for (int m = 0; m <= mTop; m++) {
+					vrr[base + m] += factor * (vrr[base2 + m] - etaByZetaPlusEta * vrr[base2 + m + 1]);
+				}
 			}
-			return val;
-		} else if (lc > 0) {
-			val = qcx * vrrRecurse(la, ma, na, lc - 1, mc, nc, m,
-						pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-						oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-						preScaled, T)
-				+ wqx * vrrRecurse(la, ma, na, lc - 1, mc, nc, m + 1,
-						pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-						oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-						preScaled, T);
-			if (lc > 1) {
-				val += oneover2eta * (lc - 1) * (
-						vrrRecurse(la, ma, na, lc - 2, mc, nc, m,
-								pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-								oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-								preScaled, T)
-						- zetaByZetaPlusEta * vrrRecurse(la, ma, na, lc - 2, mc, nc, m + 1,
-								pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-								oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-								preScaled, T));
+		}
+
+		// [e0|f0]^(m)
+		for (int f = 1; f < nF; f++) {
+			final int dir = CART_DIR[f];
+			final int f1 = CART_DOWN[3 * f + dir];
+			final int fi = CART_POWER[3 * f + dir];
+			final int f2 = fi > 1 ? CART_DOWN[3 * f1 + dir] : -1;
+			final double f2Factor = oneover2eta * (fi - 1);
+
+			for (int e = 0; e < nE; e++) {
+				final int mTop = mMax - CART_L[e] - CART_L[f];
+				final int base = e * eStride + f * nM;
+				final int base1 = e * eStride + f1 * nM;
+
+				for (int m = 0; m <= mTop; m++) {
+					vrr[base + m] = qc[dir] * vrr[base1 + m] + wq[dir] * vrr[base1 + m + 1];
+				}
+
+				if (f2 >= 0) {
+					final int base2 = e * eStride + f2 * nM;
+
+					for (int m = 0; m <= mTop; m++) {
+						vrr[base + m] += f2Factor * (vrr[base2 + m] - zetaByZetaPlusEta * vrr[base2 + m + 1]);
+					}
+				}
+
+				final int ei = CART_POWER[3 * e + dir];
+				if (ei > 0) {
+					final int baseE1 = CART_DOWN[3 * e + dir] * eStride + f1 * nM;
+					final double factor = oneover2zetaPlusEta * ei;
+
+					for (int m = 0; m <= mTop; m++) {
+						vrr[base + m] += factor * vrr[baseE1 + m + 1];
+					}
+				}
 			}
-			if (la > 0) {
-				val += oneover2zetaPlusEta * la * vrrRecurse(la - 1, ma, na, lc - 1, mc, nc, m + 1,
-						pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-						oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-						preScaled, T);
+		}
+	}
+
+	/**
+	 * Contracted HRR, applied once to the contracted [e0|f0] held in the
+	 * workspace; the result is written to {@link Workspace#result}.
+	 *
+	 * @param w        the workspace.
+	 * @param aL       angular momentum of a.
+	 * @param bL       angular momentum of b.
+	 * @param cL       angular momentum of c.
+	 * @param dL       angular momentum of d.
+	 * @param abVector A - B.
+	 * @param cdVector C - D.
+	 */
+	private static void hrr(Workspace w, int aL, int bL, int cL, int dL, double[] abVector, double[] cdVector) {
+		final int eL = aL + bL;
+		final int fL = cL + dL;
+		final int nE = offset(eL + 1);
+		final int nF = offset(fL + 1);
+		final int na = numberOfComponents(aL);
+		final int nb = numberOfComponents(bL);
+		final int nc = numberOfComponents(cL);
+		final int nd = numberOfComponents(dL);
+
+		final int hrrSize = FastMath.max(nE * nb * nF, na * nb * nF * nd);
+		w.hrrA = Workspace.ensure(w.hrrA, hrrSize);
+		w.hrrB = Workspace.ensure(w.hrrB, hrrSize);
+
+		// bra: (a,b| layout [(a * nbj + b) * nF + f], a a table index
+		double[] src = w.contracted;
+		for (int j = 0; j < bL; j++) {
+			final double[] dst = src == w.hrrA ? w.hrrB : w.hrrA;
+			final int nbj = numberOfComponents(j);
+			final int nbj1 = numberOfComponents(j + 1);
+			final int aEnd = offset(eL - j);
+
+			for (int bn = 0; bn < nbj1; bn++) {
+				final int bg = offset(j + 1) + bn;
+				final int dir = CART_DIR[bg];
+				final int b1 = CART_DOWN[3 * bg + dir] - offset(j);
+				final double shift = abVector[dir];
+
+				for (int a = offset(aL); a < aEnd; a++) {
+					final int to = (a * nbj1 + bn) * nF;
+					final int from = (a * nbj + b1) * nF;
+					final int fromUp = (CART_UP[3 * a + dir] * nbj + b1) * nF;
+
+					for (int f = 0; f < nF; f++) {
+						dst[to + f] = src[fromUp + f] + shift * src[from + f];
+					}
+				}
 			}
-			return val;
-		} else if (na > 0) {
-			val = paz * vrrRecurse(la, ma, na - 1, lc, mc, nc, m,
-						pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-						oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-						preScaled, T)
-				+ wpz * vrrRecurse(la, ma, na - 1, lc, mc, nc, m + 1,
-						pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-						oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-						preScaled, T);
-			if (na > 1) {
-				val += oneover2zeta * (na - 1) * (
-						vrrRecurse(la, ma, na - 2, lc, mc, nc, m,
-								pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-								oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-								preScaled, T)
-						- etaByZetaPlusEta * vrrRecurse(la, ma, na - 2, lc, mc, nc, m + 1,
-								pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-								oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-								preScaled, T));
+
+			src = dst;
+		}
+
+		// ket: |c,d) layout [(row * nF + c) * ndk + d], row = a * nb + b
+		int srcOffset = offset(aL) * nb * nF;
+		for (int k = 0; k < dL; k++) {
+			final double[] dst = src == w.hrrA ? w.hrrB : w.hrrA;
+			final int ndk = numberOfComponents(k);
+			final int ndk1 = numberOfComponents(k + 1);
+			final int cEnd = offset(fL - k);
+
+			for (int row = 0; row < na * nb; row++) {
+				for (int dn = 0; dn < ndk1; dn++) {
+					final int dg = offset(k + 1) + dn;
+					final int dir = CART_DIR[dg];
+					final int d1 = CART_DOWN[3 * dg + dir] - offset(k);
+					final double shift = cdVector[dir];
+
+					for (int c = offset(cL); c < cEnd; c++) {
+						dst[(row * nF + c) * ndk1 + dn] = src[srcOffset + (row * nF + CART_UP[3 * c + dir]) * ndk + d1]
+								+ shift * src[srcOffset + (row * nF + c) * ndk + d1];
+					}
+				}
 			}
-			return val;
-		} else if (ma > 0) {
-			val = pay * vrrRecurse(la, ma - 1, na, lc, mc, nc, m,
-						pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-						oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-						preScaled, T)
-				+ wpy * vrrRecurse(la, ma - 1, na, lc, mc, nc, m + 1,
-						pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-						oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-						preScaled, T);
-			if (ma > 1) {
-				val += oneover2zeta * (ma - 1) * (
-						vrrRecurse(la, ma - 2, na, lc, mc, nc, m,
-								pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-								oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-								preScaled, T)
-						- etaByZetaPlusEta * vrrRecurse(la, ma - 2, na, lc, mc, nc, m + 1,
-								pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-								oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-								preScaled, T));
+
+			src = dst;
+			srcOffset = 0;
+		}
+
+		final int size = na * nb * nc * nd;
+		w.result = Workspace.ensure(w.result, size);
+
+		int index = 0;
+		for (int row = 0; row < na * nb; row++) {
+			for (int r = 0; r < nc; r++) {
+				final int from = srcOffset + (row * nF + offset(cL) + r) * nd;
+
+				for (int s = 0; s < nd; s++) {
+					w.result[index++] = src[from + s];
+				}
 			}
-			return val;
-		} else if (la > 0) {
-			val = pax * vrrRecurse(la - 1, ma, na, lc, mc, nc, m,
-						pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-						oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-						preScaled, T)
-				+ wpx * vrrRecurse(la - 1, ma, na, lc, mc, nc, m + 1,
-						pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-						oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-						preScaled, T);
-			if (la > 1) {
-				val += oneover2zeta * (la - 1) * (
-						vrrRecurse(la - 2, ma, na, lc, mc, nc, m,
-								pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-								oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-								preScaled, T)
-						- etaByZetaPlusEta * vrrRecurse(la - 2, ma, na, lc, mc, nc, m + 1,
-								pax, pay, paz, wpx, wpy, wpz, qcx, qcy, qcz, wqx, wqy, wqz,
-								oneover2zeta, oneover2eta, oneover2zetaPlusEta, zetaByZetaPlusEta, etaByZetaPlusEta,
-								preScaled, T));
+		}
+	}
+
+	/**
+	 * Primitive pair data of two contracted functions, for the bra.
+	 *
+	 * @param w      the workspace.
+	 * @param a      centre a.
+	 * @param aExps  exponents of a.
+	 * @param aCoefs contraction coefficients of a.
+	 * @param aNorms primitive normalisation factors of a.
+	 * @param b      centre b.
+	 * @param bExps  exponents of b.
+	 * @param bCoefs contraction coefficients of b.
+	 * @param bNorms primitive normalisation factors of b.
+	 * @return the number of primitive pairs.
+	 */
+	private int braPairs(Workspace w, Vector3D a, List<Double> aExps, List<Double> aCoefs, List<Double> aNorms,
+			Vector3D b, List<Double> bExps, List<Double> bCoefs, List<Double> bNorms) {
+		final int n = aExps.size() * bExps.size();
+
+		w.braZeta = Workspace.ensure(w.braZeta, n);
+		w.braP = Workspace.ensure(w.braP, 3 * n);
+		w.braPA = Workspace.ensure(w.braPA, 3 * n);
+		w.braPre = Workspace.ensure(w.braPre, n);
+
+		primitivePairs(a, aExps, aCoefs, aNorms, b, bExps, bCoefs, bNorms, w.braZeta, w.braP, w.braPA, w.braPre);
+
+		return n;
+	}
+
+	/**
+	 * Primitive pair data of two primitive functions, for the bra.
+	 *
+	 * @param w      the workspace.
+	 * @param a      centre a.
+	 * @param aAlpha exponent of a.
+	 * @param aNorm  normalisation factor of a.
+	 * @param b      centre b.
+	 * @param bAlpha exponent of b.
+	 * @param bNorm  normalisation factor of b.
+	 * @return the number of primitive pairs, one.
+	 */
+	private int braPairs(Workspace w, Vector3D a, double aAlpha, double aNorm, Vector3D b, double bAlpha,
+			double bNorm) {
+		w.braZeta = Workspace.ensure(w.braZeta, 1);
+		w.braP = Workspace.ensure(w.braP, 3);
+		w.braPA = Workspace.ensure(w.braPA, 3);
+		w.braPre = Workspace.ensure(w.braPre, 1);
+
+		primitivePair(a, aAlpha, b, bAlpha, a.distanceSq(b), aNorm * bNorm, w.braZeta, w.braP, w.braPA, w.braPre, 0);
+
+		return 1;
+	}
+
+	/**
+	 * Primitive pair data of two contracted functions, for the ket.
+	 *
+	 * @param w      the workspace.
+	 * @param c      centre c.
+	 * @param cExps  exponents of c.
+	 * @param cCoefs contraction coefficients of c.
+	 * @param cNorms primitive normalisation factors of c.
+	 * @param d      centre d.
+	 * @param dExps  exponents of d.
+	 * @param dCoefs contraction coefficients of d.
+	 * @param dNorms primitive normalisation factors of d.
+	 * @return the number of primitive pairs.
+	 */
+	private int ketPairs(Workspace w, Vector3D c, List<Double> cExps, List<Double> cCoefs, List<Double> cNorms,
+			Vector3D d, List<Double> dExps, List<Double> dCoefs, List<Double> dNorms) {
+		final int n = cExps.size() * dExps.size();
+
+		w.ketZeta = Workspace.ensure(w.ketZeta, n);
+		w.ketQ = Workspace.ensure(w.ketQ, 3 * n);
+		w.ketQC = Workspace.ensure(w.ketQC, 3 * n);
+		w.ketPre = Workspace.ensure(w.ketPre, n);
+
+		primitivePairs(c, cExps, cCoefs, cNorms, d, dExps, dCoefs, dNorms, w.ketZeta, w.ketQ, w.ketQC, w.ketPre);
+
+		return n;
+	}
+
+	/**
+	 * Primitive pair data of two primitive functions, for the ket.
+	 *
+	 * @param w      the workspace.
+	 * @param c      centre c.
+	 * @param cAlpha exponent of c.
+	 * @param cNorm  normalisation factor of c.
+	 * @param d      centre d.
+	 * @param dAlpha exponent of d.
+	 * @param dNorm  normalisation factor of d.
+	 * @return the number of primitive pairs, one.
+	 */
+	private int ketPairs(Workspace w, Vector3D c, double cAlpha, double cNorm, Vector3D d, double dAlpha,
+			double dNorm) {
+		w.ketZeta = Workspace.ensure(w.ketZeta, 1);
+		w.ketQ = Workspace.ensure(w.ketQ, 3);
+		w.ketQC = Workspace.ensure(w.ketQC, 3);
+		w.ketPre = Workspace.ensure(w.ketPre, 1);
+
+		primitivePair(c, cAlpha, d, dAlpha, c.distanceSq(d), cNorm * dNorm, w.ketZeta, w.ketQ, w.ketQC, w.ketPre, 0);
+
+		return 1;
+	}
+
+	/**
+	 * Fill exponent sums, product centres, offsets and prefactors for every
+	 * primitive pair of two contracted functions.
+	 *
+	 * @param a      centre a.
+	 * @param aExps  exponents of a.
+	 * @param aCoefs contraction coefficients of a.
+	 * @param aNorms primitive normalisation factors of a.
+	 * @param b      centre b.
+	 * @param bExps  exponents of b.
+	 * @param bCoefs contraction coefficients of b.
+	 * @param bNorms primitive normalisation factors of b.
+	 * @param zetas  receives the exponent sums.
+	 * @param ps     receives the product centres.
+	 * @param pas    receives P - A.
+	 * @param pre    receives the prefactors.
+	 */
+	private void primitivePairs(Vector3D a, List<Double> aExps, List<Double> aCoefs, List<Double> aNorms,
+			Vector3D b, List<Double> bExps, List<Double> bCoefs, List<Double> bNorms, double[] zetas, double[] ps,
+			double[] pas, double[] pre) {
+		final double rab2 = a.distanceSq(b);
+
+		int ij = 0;
+		for (int i = 0; i < aExps.size(); i++) {
+			final double aAlpha = aExps.get(i);
+			final double aScale = aCoefs.get(i) * aNorms.get(i);
+
+			for (int j = 0; j < bExps.size(); j++) {
+				primitivePair(a, aAlpha, b, bExps.get(j), rab2, aScale * bCoefs.get(j) * bNorms.get(j), zetas, ps,
+						pas, pre, ij++);
 			}
-			return val;
 		}
+	}
+
+	/**
+	 * Fill the exponent sum, product centre, offset and prefactor of one
+	 * primitive pair.
+	 *
+	 * @param a      centre a.
+	 * @param aAlpha exponent of a.
+	 * @param b      centre b.
+	 * @param bAlpha exponent of b.
+	 * @param rab2   |A - B|^2.
+	 * @param scale  product of the contraction coefficients and normalisation
+	 *               factors of the primitives.
+	 * @param zetas  receives the exponent sum.
+	 * @param ps     receives the product centre.
+	 * @param pas    receives P - A.
+	 * @param pre    receives the prefactor.
+	 * @param ij     index of the pair.
+	 */
+	private void primitivePair(Vector3D a, double aAlpha, Vector3D b, double bAlpha, double rab2, double scale,
+			double[] zetas, double[] ps, double[] pas, double[] pre, int ij) {
+		final double zeta = aAlpha + bAlpha;
 
-		// Base case: all angular momenta are zero.
-		return preScaled * IntegralsUtil.computeFGamma(m, T);
+		final double px = (aAlpha * a.getX() + bAlpha * b.getX()) / zeta;
+		final double py = (aAlpha * a.getY() + bAlpha * b.getY()) / zeta;
+		final double pz = (aAlpha * a.getZ() + bAlpha * b.getZ()) / zeta;
+
+		zetas[ij] = zeta;
+		ps[3 * ij] = px;
+		ps[3 * ij + 1] = py;
+		ps[3 * ij + 2] = pz;
+		pas[3 * ij] = px - a.getX();
+		pas[3 * ij + 1] = py - a.getY();
+		pas[3 * ij + 2] = pz - a.getZ();
+		pre[ij] = sqrt2PI / zeta * FastMath.exp(-aAlpha * bAlpha / zeta * rab2) * scale;
 	}
 
 	/**
-	 * Not yet implemented. Throws {@link UnsupportedOperationException}.
+	 * Prefactors of the primitive pairs of a shell pair, using the primitive
+	 * normalisation factors of one component of each shell.
+	 *
+	 * @param ab     the shell pair.
+	 * @param aNorms primitive normalisation factors of a component of shell a.
+	 * @param bNorms primitive normalisation factors of a component of shell b.
+	 * @param pre    receives the prefactors.
+	 */
+	private void pairPrefactors(ShellPair ab, List<Double> aNorms, List<Double> bNorms, double[] pre) {
+		final int nbPrims = ab.getNumberOfPrimitivesB();
+		final double[] zetas = ab.getZeta();
+		final double[] kabs = ab.getKab();
+		final double[] coefs = ab.getCoefficients();
+
+		for (int ij = 0; ij < zetas.length; ij++) {
+			pre[ij] = sqrt2PI / zetas[ij] * kabs[ij] * coefs[ij] * aNorms.get(ij / nbPrims)
+					* bNorms.get(ij % nbPrims);
+		}
+	}
+
+	/**
+	 * The factor that converts a shell quartet contracted with the primitive
+	 * normalisation of the first component of a shell to one component.
+	 *
+	 * @param component  the component.
+	 * @param firstNorms primitive normalisation factors of the first component.
+	 * @return the contracted normalisation times the ratio of the primitive
+	 *         normalisations.
+	 */
+	private static double componentScale(ContractedGaussian component, List<Double> firstNorms) {
+		return component.getNormalization() * component.getPrimNorms().get(0) / firstNorms.get(0);
+	}
+
+	/**
+	 * The number of Cartesian components of angular momentum l.
+	 *
+	 * @param l the angular momentum.
+	 * @return (l+1)(l+2)/2
+	 */
+	private static int numberOfComponents(int l) {
+		return (l + 1) * (l + 2) / 2;
+	}
+
+	/**
+	 * The number of Cartesian components of angular momentum below l.
+	 *
+	 * @param l the angular momentum.
+	 * @return l(l+1)(l+2)/6
+	 */
+	private static int offset(int l) {
+		return l * (l + 1) * (l + 2) / 6;
+	}
+
+	/**
+	 * Table index of a Cartesian component.
+	 *
+	 * @param x the x power.
+	 * @param y the y power.
+	 * @param z the z power.
+	 * @return the index.
+	 */
+	private static int index(int x, int y, int z) {
+		final int l = x + y + z;
+
+		return offset(l) + (l - x) * (l - x + 1) / 2 + z;
+	}
+
+	/**
+	 * Index of a Cartesian component among those of the same angular momentum.
+	 *
+	 * @param power the powers.
+	 * @return the index.
+	 */
+	private static int localIndex(Power power) {
+		final int l = power.l() + power.m() + power.n();
+
+		return (l - power.l()) * (l - power.l() + 1) / 2 + power.n();
+	}
+
+	/**
+	 * 2E coulomb interactions between four contracted Gaussians, contracted
+	 * with a density matrix into Coulomb and exchange matrices.
 	 *
 	 * @param a       the first contracted Gaussian.
 	 * @param b       the second contracted Gaussian.
 	 * @param c       the third contracted Gaussian.
 	 * @param d       the fourth contracted Gaussian.
-	 * @param density the current density matrix (unused).
-	 * @param jMat    the Coulomb matrix to accumulate into (unused).
-	 * @param kMat    the exchange matrix to accumulate into (unused).
-	 * @return never returns normally.
-	 * @throws UnsupportedOperationException always.
+	 * @param density the current density matrix.
+	 * @param jMat    the Coulomb matrix to accumulate into.
+	 * @param kMat    the exchange matrix to accumulate into.
+	 * @return the two-electron integral (ab|cd).
 	 */
 	@Override
 	public final double coulomb(ContractedGaussian a, ContractedGaussian b, ContractedGaussian c, ContractedGaussian d,
 			Density density, RealMatrix jMat, RealMatrix kMat) {
-		throw new UnsupportedOperationException("Not supported yet.");
+		final double value = coulomb(a, b, c, d);
+
+		JKContraction.addIntegral(density, jMat, kMat, a.getBasisFunctionIndex(), b.getBasisFunctionIndex(),
+				c.getBasisFunctionIndex(), d.getBasisFunctionIndex(), value);
+
+		return value;
 	}
 }
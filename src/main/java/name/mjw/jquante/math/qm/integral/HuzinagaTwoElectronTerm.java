@@ -1,6 +1,7 @@
 package name.mjw.jquante.math.qm.integral;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.hipparchus.linear.RealMatrix;
@@ -9,6 +10,8 @@ import name.mjw.jquante.math.MathUtil;
 import name.mjw.jquante.math.qm.Density;
 import name.mjw.jquante.math.qm.basis.ContractedGaussian;
 import name.mjw.jquante.math.qm.basis.Power;
+import name.mjw.jquante.math.qm.basis.Shell;
+import name.mjw.jquante.math.qm.basis.ShellPair;
 import net.jafama.FastMath;
 
 /**
@@ -26,6 +29,10 @@ import net.jafama.FastMath;
  */
 public final class HuzinagaTwoElectronTerm implements TwoElectronTerm {
 
+	/** Thread-local buffer of Boys function values (avoids per-call allocation). */
+	private static final ThreadLocal<double[]> BOYS_THREAD =
+			ThreadLocal.withInitial(() -> new double[BoysFunction.MAX_ORDER + 1]);
+
 	/** Creates a new instance of HuzinagaTwoElectronTerm. */
 	public HuzinagaTwoElectronTerm() {
 	}
@@ -114,6 +121,128 @@ public final class HuzinagaTwoElectronTerm implements TwoElectronTerm {
 		return (a.getNormalization() * b.getNormalization() * c.getNormalization() * d.getNormalization() * jij);
 	}
 
+	/**
+	 * 2E coulomb interactions for every component of a shell quartet using the
+	 * Huzinaga scheme, with the Gaussian product centres, exponent sums and
+	 * prefactors taken from precomputed shell pair data.
+	 *
+	 * @param ab    primitive pair data of shells a and b.
+	 * @param cd    primitive pair data of shells c and d.
+	 * @param block receives the integrals, see
+	 *              {@link TwoElectronTerm#coulomb(Shell, Shell, Shell, Shell, double[])}
+	 */
+	@Override
+	public final void coulomb(ShellPair ab, ShellPair cd, double[] block) {
+		final List<ContractedGaussian> aFunctions = ab.getA().getBasisFunctions();
+		final List<ContractedGaussian> bFunctions = ab.getB().getBasisFunctions();
+		final List<ContractedGaussian> cFunctions = cd.getA().getBasisFunctions();
+		final List<ContractedGaussian> dFunctions = cd.getB().getBasisFunctions();
+
+		final int nbPrims = ab.getNumberOfPrimitivesB();
+		final int ndPrims = cd.getNumberOfPrimitivesB();
+
+		final double[] abCoefs = ab.getCoefficients();
+		final double[] cdCoefs = cd.getCoefficients();
+
+		int index = 0;
+		for (ContractedGaussian ap : aFunctions) {
+			final ArrayList<Double> aNorms = ap.getPrimNorms();
+
+			for (ContractedGaussian bq : bFunctions) {
+				final ArrayList<Double> bNorms = bq.getPrimNorms();
+
+				for (ContractedGaussian cr : cFunctions) {
+					final ArrayList<Double> cNorms = cr.getPrimNorms();
+
+					for (ContractedGaussian ds : dFunctions) {
+						final ArrayList<Double> dNorms = ds.getPrimNorms();
+						double jij = 0.0;
+
+						for (int ij = 0; ij < abCoefs.length; ij++) {
+							final double abScale = abCoefs[ij] * aNorms.get(ij / nbPrims)
+									* bNorms.get(ij % nbPrims);
+
+							for (int kl = 0; kl < cdCoefs.length; kl++) {
+								jij += abScale * cdCoefs[kl] * cNorms.get(kl / ndPrims) * dNorms.get(kl % ndPrims)
+										* coulombRepulsion(ab, ij, ap.getPowers(), bq.getPowers(), cd, kl,
+												cr.getPowers(), ds.getPowers());
+							}
+						}
+
+						block[index++] = ap.getNormalization() * bq.getNormalization() * cr.getNormalization()
+								* ds.getNormalization() * jij;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * The unnormalised Coulomb repulsion integral between primitive pair ij of
+	 * shell pair ab and primitive pair kl of shell pair cd.
+	 *
+	 * @param ab     primitive pair data of shells a and b.
+	 * @param ij     index of the primitive pair within ab.
+	 * @param aPower the angular momentum powers of primitive Gaussian a.
+	 * @param bPower the angular momentum powers of primitive Gaussian b.
+	 * @param cd     primitive pair data of shells c and d.
+	 * @param kl     index of the primitive pair within cd.
+	 * @param cPower the angular momentum powers of primitive Gaussian c.
+	 * @param dPower the angular momentum powers of primitive Gaussian d.
+	 * @return the two-electron Coulomb repulsion integral value.
+	 */
+	private double coulombRepulsion(final ShellPair ab, final int ij, final Power aPower, final Power bPower,
+			final ShellPair cd, final int kl, final Power cPower, final Power dPower) {
+
+		double sum = 0.0;
+
+		final Vector3D a = ab.getA().getOrigin();
+		final Vector3D b = ab.getB().getOrigin();
+		final Vector3D c = cd.getA().getOrigin();
+		final Vector3D d = cd.getB().getOrigin();
+
+		final double[] p = ab.getP();
+		final double[] q = cd.getP();
+
+		final double px = p[3 * ij];
+		final double py = p[3 * ij + 1];
+		final double pz = p[3 * ij + 2];
+		final double qx = q[3 * kl];
+		final double qy = q[3 * kl + 1];
+		final double qz = q[3 * kl + 2];
+
+		final double radiusPQSquared = (px - qx) * (px - qx) + (py - qy) * (py - qy) + (pz - qz) * (pz - qz);
+
+		final double gamma1 = ab.getZeta()[ij];
+		final double gamma2 = cd.getZeta()[kl];
+		final double delta = 0.25 * (1 / gamma1 + 1 / gamma2);
+
+		final double quartRadiusPQSquaredOverDelta = 0.25 * radiusPQSquared / delta;
+
+		final double[] bx = constructBArray(aPower.l(), bPower.l(), cPower.l(), dPower.l(), px, a.getX(), b.getX(), qx,
+				c.getX(), d.getX(), gamma1, gamma2, delta);
+
+		final double[] by = constructBArray(aPower.m(), bPower.m(), cPower.m(), dPower.m(), py, a.getY(), b.getY(), qy,
+				c.getY(), d.getY(), gamma1, gamma2, delta);
+
+		final double[] bz = constructBArray(aPower.n(), bPower.n(), cPower.n(), dPower.n(), pz, a.getZ(), b.getZ(), qz,
+				c.getZ(), d.getZ(), gamma1, gamma2, delta);
+
+		final double[] boys = BOYS_THREAD.get();
+		BoysFunction.evaluate(bx.length + by.length + bz.length - 3, quartRadiusPQSquaredOverDelta, boys);
+
+		for (int i = 0; i < bx.length; i++) {
+			for (int j = 0; j < by.length; j++) {
+				for (int k = 0; k < bz.length; k++) {
+					sum += bx[i] * by[j] * bz[k] * boys[i + j + k];
+				}
+			}
+		}
+
+		return (2 * FastMath.pow(Math.PI, 2.5) / (gamma1 * gamma2 * FastMath.sqrt(gamma1 + gamma2))
+				* ab.getKab()[ij] * cd.getKab()[kl] * sum);
+	}
+
 	/**
 	 * Computes the Coulomb repulsion integral between two pairs of primitive
 	 * Gaussians using the Huzinaga scheme.
@@ -167,11 +296,13 @@ public final class HuzinagaTwoElectronTerm implements TwoElectronTerm {
 		final double[] bz = constructBArray(aPower.n(), bPower.n(), cPower.n(), dPower.n(), p.getZ(),
 				a.getZ(), b.getZ(), q.getZ(), c.getZ(), d.getZ(), gamma1, gamma2, delta);
 
+		final double[] boys = BOYS_THREAD.get();
+		BoysFunction.evaluate(bx.length + by.length + bz.length - 3, quartRadiusPQSquaredOverDelta, boys);
+
 		for (int i = 0; i < bx.length; i++) {
 			for (int j = 0; j < by.length; j++) {
 				for (int k = 0; k < bz.length; k++) {
-					sum += bx[i] * by[j] * bz[k]
-							* IntegralsUtil.computeFGamma(i + j + k, quartRadiusPQSquaredOverDelta);
+					sum += bx[i] * by[j] * bz[k] * boys[i + j + k];
 				}
 			}
 		}
@@ -303,22 +434,26 @@ public final class HuzinagaTwoElectronTerm implements TwoElectronTerm {
 	}
 
 	/**
-	 * Not supported for the Huzinaga scheme — always throws
-	 * {@link UnsupportedOperationException}.
+	 * 2E coulomb interactions between four contracted Gaussians, contracted
+	 * with a density matrix into Coulomb and exchange matrices.
 	 *
 	 * @param a       the first contracted Gaussian.
 	 * @param b       the second contracted Gaussian.
 	 * @param c       the third contracted Gaussian.
 	 * @param d       the fourth contracted Gaussian.
-	 * @param density the current density matrix (unused).
-	 * @param jMat    the Coulomb matrix to accumulate into (unused).
-	 * @param kMat    the exchange matrix to accumulate into (unused).
-	 * @return never returns normally.
-	 * @throws UnsupportedOperationException always.
+	 * @param density the current density matrix.
+	 * @param jMat    the Coulomb matrix to accumulate into.
+	 * @param kMat    the exchange matrix to accumulate into.
+	 * @return the two-electron integral (ab|cd).
 	 */
 	@Override
 	public final double coulomb(ContractedGaussian a, ContractedGaussian b, ContractedGaussian c, ContractedGaussian d,
 			Density density, RealMatrix jMat, RealMatrix kMat) {
-		throw new UnsupportedOperationException("Not supported yet.");
+		final double value = coulomb(a, b, c, d);
+
+		JKContraction.addIntegral(density, jMat, kMat, a.getBasisFunctionIndex(), b.getBasisFunctionIndex(),
+				c.getBasisFunctionIndex(), d.getBasisFunctionIndex(), value);
+
+		return value;
 	}
 }
@@ -5,6 +5,8 @@ import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import name.mjw.jquante.math.qm.basis.ContractedGaussian;
 import name.mjw.jquante.math.qm.basis.Power;
 import name.mjw.jquante.math.qm.basis.PrimitiveGaussian;
+import name.mjw.jquante.math.qm.basis.Shell;
+import name.mjw.jquante.math.qm.basis.ShellPair;
 
 /**
  * Integral package dispatch class for MeTA Studio. <br>
@@ -138,6 +140,27 @@ public final class Integrals {
 
 	}
 
+	/**
+	 * The nuclear attraction integral of one primitive pair of a shell pair,
+	 * using the precomputed pair data.
+	 *
+	 * @param ab
+	 *            the primitive pair data.
+	 * @param ij
+	 *            index of the primitive pair within <code>ab</code>.
+	 * @param power1
+	 *            the orbital powers of the primitive from shell a.
+	 * @param power2
+	 *            the orbital powers of the primitive from shell b.
+	 * @param c
+	 *            the location of nuclear centre.
+	 * @return the nuclear attraction integral, without normalization factors.
+	 */
+	public static double nuclearAttraction(ShellPair ab, int ij, Power power1,
+			Power power2, Vector3D c) {
+		return nuclearTerm.nuclearAttraction(ab, ij, power1, power2, c);
+	}
+
 	/**
 	 * The nuclear attraction gradient term.
 	 *
@@ -164,6 +187,65 @@ public final class Integrals {
 
 	}
 
+	/**
+	 * 2E coulomb interactions for every combination of basis functions in a
+	 * shell quartet.
+	 * 
+	 * @param a
+	 *            Shell a.
+	 * @param b
+	 *            Shell b.
+	 * @param c
+	 *            Shell c.
+	 * @param d
+	 *            Shell d.
+	 * @param block
+	 *            receives the integrals, see
+	 *            {@link TwoElectronTerm#coulomb(Shell, Shell, Shell, Shell, double[])}
+	 */
+	public static void coulomb(Shell a, Shell b, Shell c, Shell d,
+			double[] block) {
+		twoElectronTerm.coulomb(a, b, c, d, block);
+	}
+
+	/**
+	 * 2E coulomb interactions for every combination of basis functions in the
+	 * shell quartet (ab|cd), using precomputed primitive pair data.
+	 * 
+	 * @param ab
+	 *            Primitive pair data of shells a and b.
+	 * @param cd
+	 *            Primitive pair data of shells c and d.
+	 * @param block
+	 *            receives the integrals, see
+	 *            {@link TwoElectronTerm#coulomb(Shell, Shell, Shell, Shell, double[])}
+	 */
+	public static void coulomb(ShellPair ab, ShellPair cd, double[] block) {
+		twoElectronTerm.coulomb(ab, cd, block);
+	}
+
+	/**
+	 * 2E coulomb interactions for every combination of basis functions in the
+	 * shell quartet (ab|cd), contracted with a density matrix into Coulomb and
+	 * exchange matrices.
+	 * 
+	 * @param ab
+	 *            Primitive pair data of shells a and b.
+	 * @param cd
+	 *            Primitive pair data of shells c and d.
+	 * @param density
+	 *            Density matrix.
+	 * @param jMat
+	 *            J matrix, accumulated in place.
+	 * @param kMat
+	 *            K matrix, accumulated in place.
+	 * @see TwoElectronTerm#coulomb(ShellPair, ShellPair, double[][], double[][], double[][])
+	 */
+	public static void coulomb(ShellPair ab, ShellPair cd, double[][] density,
+			double[][] jMat, double[][] kMat) {
+		twoElectronTerm.coulomb(ab, cd, density, jMat, kMat);
+	}
+
 	/**
 	 * 2E coulomb interactions between 4 contracted Gaussians
 	 * 
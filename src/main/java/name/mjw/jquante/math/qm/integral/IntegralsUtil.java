@@ -81,6 +81,60 @@ public final class IntegralsUtil {
 		return (ij * (ij + 1) / 2 + kl);
 	}
 
+	/**
+	 * 64-bit version of {@link #ijkl2intindex(int, int, int, int)}.
+	 *
+	 * The canonical index grows as n<sup>4</sup>/8 and overflows an
+	 * <code>int</code> at around 300 basis functions, so this variant should be
+	 * used whenever the integrals are addressed in a
+	 * {@link name.mjw.jquante.math.qm.TwoElectronIntegralStore}.
+	 *
+	 * @param i the index of Gaussian i
+	 * @param j the index of Gaussian j
+	 * @param k the index of Gaussian k
+	 * @param l the index of Gaussian l
+	 * @return the index into the integral store
+	 */
+	public static final long ijkl2longindex(int i, int j, int k, int l) {
+		int temp;
+
+		if (i < j) {
+			temp = i;
+			i = j;
+			j = temp;
+		}
+		if (k < l) {
+			temp = k;
+			k = l;
+			l = temp;
+		}
+
+		long ij = (long) i * (i + 1) / 2 + j;
+		long kl = (long) k * (k + 1) / 2 + l;
+
+		if (ij < kl) {
+			long tmp = ij;
+			ij = kl;
+			kl = tmp;
+		}
+
+		return (ij * (ij + 1) / 2 + kl);
+	}
+
+	/**
+	 * The number of symmetry-unique two-electron integrals for a given number of
+	 * basis functions, i.e. n(n+1)(n<sup>2</sup>+n+2)/8, evaluated in 64-bit
+	 * arithmetic.
+	 *
+	 * @param noOfBasisFunctions the number of basis functions
+	 * @return the number of unique (ij|kl) integrals
+	 */
+	public static final long numberOfUniqueIntegrals(int noOfBasisFunctions) {
+		final long n = noOfBasisFunctions;
+
+		return n * (n + 1) * (n * n + n + 2) / 8;
+	}
+
 	/**
 	 * Incomplete gamma function
 	 * 
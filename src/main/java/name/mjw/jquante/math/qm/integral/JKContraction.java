@@ -0,0 +1,212 @@
+package name.mjw.jquante.math.qm.integral;
+
+import org.hipparchus.linear.Array2DRowRealMatrix;
+import org.hipparchus.linear.RealMatrix;
+
+import name.mjw.jquante.math.qm.basis.ContractedGaussian;
+import name.mjw.jquante.math.qm.basis.Shell;
+import name.mjw.jquante.math.qm.basis.ShellPair;
+
+/**
+ * Contracts two-electron integrals with a density matrix into Coulomb and
+ * exchange matrices, J<sub>pq</sub> = &Sigma;<sub>rs</sub> (pq|rs)
+ * D<sub>rs</sub> and K<sub>pr</sub> = &Sigma;<sub>qs</sub> (pq|rs)
+ * D<sub>qs</sub>.
+ * <p>
+ * Each symmetry-unique integral is added once for each of its distinct index
+ * permutations, so that visiting every unique integral once builds the full
+ * matrices. For a closed shell density, G = 2J - K.
+ *
+ * @author mjw99
+ */
+public final class JKContraction {
+
+	/** Per thread buffer for the integrals of a shell quartet. */
+	private static final ThreadLocal<double[]> BLOCK = ThreadLocal.withInitial(() -> new double[0]);
+
+	/**
+	 * No instantiation possible
+	 */
+	private JKContraction() {
+	}
+
+	/**
+	 * Compute the integrals of the shell quartet (ab|cd) and contract them
+	 * straight into J and K. The quartet must be one of a set that holds each
+	 * unique integral once, such as a &ge; b, c &ge; d, ab &ge; cd with the
+	 * shells in basis function order.
+	 *
+	 * @param twoElectronTerm the integral engine
+	 * @param ab              Primitive pair data of shells a and b.
+	 * @param cd              Primitive pair data of shells c and d.
+	 * @param density         the density matrix
+	 * @param jMat            the Coulomb matrix, accumulated in place
+	 * @param kMat            the exchange matrix, accumulated in place
+	 */
+	public static void coulomb(TwoElectronTerm twoElectronTerm, ShellPair ab, ShellPair cd, double[][] density,
+			double[][] jMat, double[][] kMat) {
+		final Shell a = ab.getA();
+		final Shell b = ab.getB();
+		final Shell c = cd.getA();
+		final Shell d = cd.getB();
+		final int size = a.getNumberOfBasisFunctions() * b.getNumberOfBasisFunctions()
+				* c.getNumberOfBasisFunctions() * d.getNumberOfBasisFunctions();
+
+		double[] block = BLOCK.get();
+		if (block.length < size) {
+			block = new double[size];
+			BLOCK.set(block);
+		}
+
+		twoElectronTerm.coulomb(ab, cd, block);
+		addShellQuartet(a, b, c, d, block, density, jMat, kMat);
+	}
+
+	/**
+	 * Contract the integrals of a shell quartet block into J and K, counting
+	 * the integrals that the block holds more than once, within a diagonal
+	 * shell pair or a quartet whose bra and ket shell pairs are the same, only
+	 * once.
+	 *
+	 * @param a       shell a
+	 * @param b       shell b
+	 * @param c       shell c
+	 * @param d       shell d
+	 * @param block   the integrals, as filled by
+	 *                {@link TwoElectronTerm#coulomb(Shell, Shell, Shell, Shell, double[])}
+	 * @param density the density matrix
+	 * @param jMat    the Coulomb matrix, accumulated in place
+	 * @param kMat    the exchange matrix, accumulated in place
+	 */
+	public static void addShellQuartet(Shell a, Shell b, Shell c, Shell d, double[] block, double[][] density,
+			double[][] jMat, double[][] kMat) {
+		final boolean braDiagonal = a == b;
+		final boolean ketDiagonal = c == d;
+		final boolean pairDiagonal = a == c && b == d;
+
+		int index = 0;
+		for (ContractedGaussian ap : a.getBasisFunctions()) {
+			final int i = ap.getBasisFunctionIndex();
+			for (ContractedGaussian bq : b.getBasisFunctions()) {
+				final int j = bq.getBasisFunctionIndex();
+				final long ij = (long) i * (i + 1) / 2 + j;
+				for (ContractedGaussian cr : c.getBasisFunctions()) {
+					final int k = cr.getBasisFunctionIndex();
+					for (ContractedGaussian ds : d.getBasisFunctions()) {
+						final int l = ds.getBasisFunctionIndex();
+						final long kl = (long) k * (k + 1) / 2 + l;
+						final double value = block[index++];
+
+						if (value == 0.0 || (braDiagonal && j > i) || (ketDiagonal && l > k)
+								|| (pairDiagonal && kl > ij)) {
+							continue;
+						}
+
+						addIntegral(density, jMat, kMat, i, j, k, l, value);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Contract a unique integral (ij|kl) into J and K, once for each of its
+	 * distinct index permutations.
+	 *
+	 * @param density the density matrix
+	 * @param jMat    the Coulomb matrix, accumulated in place
+	 * @param kMat    the exchange matrix, accumulated in place
+	 * @param i       Index of contracted Gaussian function i.
+	 * @param j       Index of contracted Gaussian function j.
+	 * @param k       Index of contracted Gaussian function k.
+	 * @param l       Index of contracted Gaussian function l.
+	 * @param value   the integral (ij|kl)
+	 */
+	public static void addIntegral(double[][] density, double[][] jMat, double[][] kMat, int i, int j, int k,
+			int l, double value) {
+		final boolean braSwap = i != j;
+		final boolean ketSwap = k != l;
+		final boolean pairSwap = i != k || j != l;
+
+		addPermutation(density, jMat, kMat, i, j, k, l, value);
+		if (ketSwap) {
+			addPermutation(density, jMat, kMat, i, j, l, k, value);
+		}
+		if (braSwap) {
+			addPermutation(density, jMat, kMat, j, i, k, l, value);
+			if (ketSwap) {
+				addPermutation(density, jMat, kMat, j, i, l, k, value);
+			}
+		}
+
+		if (!pairSwap) {
+			return;
+		}
+
+		addPermutation(density, jMat, kMat, k, l, i, j, value);
+		if (braSwap) {
+			addPermutation(density, jMat, kMat, k, l, j, i, value);
+		}
+		if (ketSwap) {
+			addPermutation(density, jMat, kMat, l, k, i, j, value);
+			if (braSwap) {
+				addPermutation(density, jMat, kMat, l, k, j, i, value);
+			}
+		}
+	}
+
+	/**
+	 * Contract a unique integral (ij|kl) into J and K, once for each of its
+	 * distinct index permutations.
+	 *
+	 * @param density the density matrix
+	 * @param jMat    the Coulomb matrix, accumulated in place
+	 * @param kMat    the exchange matrix, accumulated in place
+	 * @param i       Index of contracted Gaussian function i.
+	 * @param j       Index of contracted Gaussian function j.
+	 * @param k       Index of contracted Gaussian function k.
+	 * @param l       Index of contracted Gaussian function l.
+	 * @param value   the integral (ij|kl)
+	 * @throws IllegalArgumentException if a matrix is not backed by a
+	 *                                  two-dimensional array
+	 */
+	public static void addIntegral(RealMatrix density, RealMatrix jMat, RealMatrix kMat, int i, int j, int k, int l,
+			double value) {
+		addIntegral(dataRef(density), dataRef(jMat), dataRef(kMat), i, j, k, l, value);
+	}
+
+	/**
+	 * Add one index permutation (pq|rs) of an integral to J and K.
+	 *
+	 * @param density the density matrix
+	 * @param jMat    the Coulomb matrix, accumulated in place
+	 * @param kMat    the exchange matrix, accumulated in place
+	 * @param p       the first index
+	 * @param q       the second index
+	 * @param r       the third index
+	 * @param s       the fourth index
+	 * @param value   the integral
+	 */
+	private static void addPermutation(double[][] density, double[][] jMat, double[][] kMat, int p, int q, int r,
+			int s, double value) {
+		jMat[p][q] += density[r][s] * value;
+		kMat[p][r] += density[q][s] * value;
+	}
+
+	/**
+	 * The array backing a matrix, so that it can be updated in place.
+	 *
+	 * @param matrix the matrix
+	 * @return the backing array
+	 * @throws IllegalArgumentException if the matrix is not an
+	 *                                  {@link Array2DRowRealMatrix}
+	 */
+	private static double[][] dataRef(RealMatrix matrix) {
+		if (matrix instanceof Array2DRowRealMatrix array) {
+			return array.getDataRef();
+		}
+
+		throw new IllegalArgumentException(
+				"J/K contraction needs array backed matrices, not " + matrix.getClass().getSimpleName());
+	}
+}
@@ -5,6 +5,7 @@ import org.hipparchus.util.CombinatoricsUtils;
 
 import name.mjw.jquante.math.MathUtil;
 import name.mjw.jquante.math.qm.basis.Power;
+import name.mjw.jquante.math.qm.basis.ShellPair;
 import net.jafama.FastMath;
 
 /**
@@ -16,6 +17,10 @@ import net.jafama.FastMath;
  */
 public final class NuclearTerm implements IntegralsPackage {
 
+	/** Thread-local buffer of Boys function values (avoids per-call allocation). */
+	private static final ThreadLocal<double[]> BOYS_THREAD =
+			ThreadLocal.withInitial(() -> new double[BoysFunction.MAX_ORDER + 1]);
+
 	/** Creates a new instance of NuclearTerm. */
 	public NuclearTerm() {
 	}
@@ -54,11 +59,14 @@ public final class NuclearTerm implements IntegralsPackage {
 		final double[] az = constructAArray(power1.n(), power2.n(), product.getZ() - a.getZ(),
 				product.getZ() - b.getZ(), product.getZ() - c.getZ(), gamma);
 
+		final double[] boys = BOYS_THREAD.get();
+		BoysFunction.evaluate(ax.length + ay.length + az.length - 3, rCPSquared * gamma, boys);
+
 		double sum = 0.0;
 		for (int i = 0; i < ax.length; i++) {
 			for (int j = 0; j < ay.length; j++) {
 				for (int k = 0; k < az.length; k++) {
-					sum += ax[i] * ay[j] * az[k] * IntegralsUtil.computeFGamma(i + j + k, rCPSquared * gamma);
+					sum += ax[i] * ay[j] * az[k] * boys[i + j + k];
 				}
 			}
 		}
@@ -66,6 +74,53 @@ public final class NuclearTerm implements IntegralsPackage {
 		return (-norm1 * norm2 * 2.0 * FastMath.PI / gamma * FastMath.exp(-alpha1 * alpha2 * rABSquared / gamma) * sum);
 	}
 
+	/**
+	 * The nuclear attraction term of one primitive pair of a shell pair. The
+	 * product centre, exponent sum and Gaussian product prefactor are taken from
+	 * the precomputed pair data, and the primitive normalization factors are not
+	 * applied.
+	 *
+	 * <i> Taken from http://dx.doi.org/10.1143/JPSJ.21.2313 eq. 2.15 </i>
+	 *
+	 * @param ab     the primitive pair data.
+	 * @param ij     index of the primitive pair within ab.
+	 * @param power1 the orbital powers of the primitive from shell a.
+	 * @param power2 the orbital powers of the primitive from shell b.
+	 * @param c      the location of nuclear centre.
+	 * @return the unnormalized nuclear attraction integral.
+	 */
+	public final double nuclearAttraction(final ShellPair ab, final int ij, final Power power1, final Power power2,
+			final Vector3D c) {
+		final double[] p = ab.getP();
+		final double[] pa = ab.getPA();
+		final double[] pb = ab.getPB();
+
+		final double gamma = ab.getZeta()[ij];
+
+		final double pcx = p[3 * ij] - c.getX();
+		final double pcy = p[3 * ij + 1] - c.getY();
+		final double pcz = p[3 * ij + 2] - c.getZ();
+		final double rCPSquared = pcx * pcx + pcy * pcy + pcz * pcz;
+
+		final double[] ax = constructAArray(power1.l(), power2.l(), pa[3 * ij], pb[3 * ij], pcx, gamma);
+		final double[] ay = constructAArray(power1.m(), power2.m(), pa[3 * ij + 1], pb[3 * ij + 1], pcy, gamma);
+		final double[] az = constructAArray(power1.n(), power2.n(), pa[3 * ij + 2], pb[3 * ij + 2], pcz, gamma);
+
+		final double[] boys = BOYS_THREAD.get();
+		BoysFunction.evaluate(ax.length + ay.length + az.length - 3, rCPSquared * gamma, boys);
+
+		double sum = 0.0;
+		for (int i = 0; i < ax.length; i++) {
+			for (int j = 0; j < ay.length; j++) {
+				for (int k = 0; k < az.length; k++) {
+					sum += ax[i] * ay[j] * az[k] * boys[i + j + k];
+				}
+			}
+		}
+
+		return (-2.0 * FastMath.PI / gamma * ab.getKab()[ij] * sum);
+	}
+
 	/**
 	 * <i> http://dx.doi.org/10.1143/JPSJ.21.2313 eq. 2.18 and 3.1 </i>
 	 * 
@@ -198,10 +253,13 @@ public final class NuclearTerm implements IntegralsPackage {
 		double gradY = 0.0;
 		double gradZ = 0.0;
 
+		final double[] boys = BOYS_THREAD.get();
+		BoysFunction.evaluate(dax.length + day.length + daz.length - 2, rCPSquared * gamma, boys);
+
 		for (int i = 0; i < dax.length; i++) {
 			for (int j = 0; j < day.length; j++) {
 				for (int k = 0; k < daz.length; k++) {
-					double fgamma = IntegralsUtil.computeFGamma(i + j + k + 1, rCPSquared * gamma);
+					double fgamma = boys[i + j + k + 1];
 
 					gradX += dax[i] * ay[j] * az[k] * fgamma;
 					gradY += ax[i] * day[j] * az[k] * fgamma;
@@ -2,6 +2,7 @@ package name.mjw.jquante.math.qm.integral;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.hipparchus.linear.RealMatrix;
@@ -11,6 +12,8 @@ import org.hipparchus.util.CombinatoricsUtils;
 import name.mjw.jquante.math.qm.Density;
 import name.mjw.jquante.math.qm.basis.ContractedGaussian;
 import name.mjw.jquante.math.qm.basis.Power;
+import name.mjw.jquante.math.qm.basis.Shell;
+import name.mjw.jquante.math.qm.basis.ShellPair;
 import net.jafama.FastMath;
 
 /**
@@ -43,6 +46,9 @@ public final class RysTwoElectronTerm implements TwoElectronTerm {
 	/** Precomputed constant pi/4. */
 	private static final double PI_OVER_FOUR = 7.85398163397448E-01;
 
+	/** pi^3, the product of the three 1D G[0][0] pi factors. */
+	private static final double PI_CUBED = FastMath.PI * FastMath.PI * FastMath.PI;
+
 	/** Thread-local working array G(n,m) for Rys polynomial recursion. */
 	private static final ThreadLocal<double[][]> G_THREAD = ThreadLocal
 			.withInitial(() -> new double[MAX_ROOTS][MAX_ROOTS]);
@@ -237,6 +243,267 @@ public final class RysTwoElectronTerm implements TwoElectronTerm {
 
 	}
 
+	/**
+	 * 2E coulomb interactions for every component of a shell quartet using Rys
+	 * quadrature. The primitive pair data is taken from the cache of the basis
+	 * set, see {@link Shell#getShellPair(Shell)}, and
+	 * {@link #coulomb(ShellPair, ShellPair, double[])}.
+	 *
+	 * @param a     shell a.
+	 * @param b     shell b.
+	 * @param c     shell c.
+	 * @param d     shell d.
+	 * @param block receives the integrals, see
+	 *              {@link TwoElectronTerm#coulomb(Shell, Shell, Shell, Shell, double[])}
+	 */
+	@Override
+	public final void coulomb(final Shell a, final Shell b, final Shell c, final Shell d, final double[] block) {
+		coulomb(a.getShellPair(b), c.getShellPair(d), block);
+	}
+
+	/**
+	 * 2E coulomb interactions for every component of a shell quartet using Rys
+	 * quadrature.
+	 * <p>
+	 * For each primitive quartet the Rys roots and weights are found once, and
+	 * for each root the 1D integrals I<sub>x</sub>, I<sub>y</sub> and
+	 * I<sub>z</sub> are tabulated once for all angular momenta up to the shell
+	 * maxima. Every Cartesian component of the quartet is then assembled from
+	 * these tables. The Gaussian product centres, exponents and prefactors are
+	 * taken from the precomputed shell pair data.
+	 *
+	 * @param ab    primitive pair data of shells a and b.
+	 * @param cd    primitive pair data of shells c and d.
+	 * @param block receives the integrals, see
+	 *              {@link TwoElectronTerm#coulomb(Shell, Shell, Shell, Shell, double[])}
+	 */
+	@Override
+	public final void coulomb(final ShellPair ab, final ShellPair cd, final double[] block) {
+		final Shell a = ab.getA();
+		final Shell b = ab.getB();
+		final Shell c = cd.getA();
+		final Shell d = cd.getB();
+
+		final List<ContractedGaussian> aFunctions = a.getBasisFunctions();
+		final List<ContractedGaussian> bFunctions = b.getBasisFunctions();
+		final List<ContractedGaussian> cFunctions = c.getBasisFunctions();
+		final List<ContractedGaussian> dFunctions = d.getBasisFunctions();
+
+		final int na = aFunctions.size();
+		final int nb = bFunctions.size();
+		final int nc = cFunctions.size();
+		final int nd = dFunctions.size();
+		final int blockSize = na * nb * nc * nd;
+
+		Arrays.fill(block, 0, blockSize, 0.0);
+
+		final int aL = a.getTotalAngularMomentum();
+		final int bL = b.getTotalAngularMomentum();
+		final int cL = c.getTotalAngularMomentum();
+		final int dL = d.getTotalAngularMomentum();
+
+		final int nRoots = (aL + bL + cL + dL) / 2 + 1;
+
+		// strides into the 1D integral tables, indexed [la][lb][lc][ld]
+		final int sd = 1;
+		final int sc = (dL + 1) * sd;
+		final int sb = (cL + 1) * sc;
+		final int sa = (bL + 1) * sb;
+		final int tableSize = (aL + 1) * sa;
+
+		// per-component offsets into the 1D tables and primitive normalisations
+		final int[][] aOffsets = componentOffsets(aFunctions, sa);
+		final int[][] bOffsets = componentOffsets(bFunctions, sb);
+		final int[][] cOffsets = componentOffsets(cFunctions, sc);
+		final int[][] dOffsets = componentOffsets(dFunctions, sd);
+
+		final double[][] aNorms = primitiveNorms(aFunctions);
+		final double[][] bNorms = primitiveNorms(bFunctions);
+		final double[][] cNorms = primitiveNorms(cFunctions);
+		final double[][] dNorms = primitiveNorms(dFunctions);
+
+		final double[] ix = new double[tableSize];
+		final double[] iy = new double[tableSize];
+		final double[] iz = new double[tableSize];
+
+		final double[] roots = ROOTS_THREAD.get();
+		final double[] weights = WEIGHTS_THREAD.get();
+
+		final int nbPrims = ab.getNumberOfPrimitivesB();
+		final int ndPrims = cd.getNumberOfPrimitivesB();
+
+		final double[] zetas = ab.getZeta();
+		final double[] ps = ab.getP();
+		final double[] pas = ab.getPA();
+		final double[] kabs = ab.getKab();
+		final double[] abCoefs = ab.getCoefficients();
+		final double[] abDist = ab.getAB();
+
+		final double[] etas = cd.getZeta();
+		final double[] qs = cd.getP();
+		final double[] qcs = cd.getPA();
+		final double[] kcds = cd.getKab();
+		final double[] cdCoefs = cd.getCoefficients();
+		final double[] cdDist = cd.getAB();
+
+		for (int ij = 0; ij < zetas.length; ij++) {
+			final int i = ij / nbPrims;
+			final int j = ij % nbPrims;
+			final double zeta = zetas[ij];
+
+			for (int kl = 0; kl < etas.length; kl++) {
+				final int k = kl / ndPrims;
+				final int l = kl % ndPrims;
+				final double eta = etas[kl];
+
+				final double pqx = ps[3 * ij] - qs[3 * kl];
+				final double pqy = ps[3 * ij + 1] - qs[3 * kl + 1];
+				final double pqz = ps[3 * ij + 2] - qs[3 * kl + 2];
+
+				// [ABD] eq. 4
+				final double rho = zeta * eta / (zeta + eta);
+				final double x = (pqx * pqx + pqy * pqy + pqz * pqz) * rho;
+
+				selectRoots(nRoots, x, roots, weights);
+
+				// [ABD] eq. 9, with the eq. 11 prefactors of all three directions
+				final double prefactor = 2 * FastMath.sqrt(rho / FastMath.PI) * abCoefs[ij] * cdCoefs[kl]
+						* PI_CUBED * kabs[ij] * kcds[kl] / FastMath.pow(zeta * eta, 1.5);
+
+				for (int r = 0; r < nRoots; r++) {
+					final double t = roots[r];
+
+					int1dTable(t, aL, bL, cL, dL, pas[3 * ij], qcs[3 * kl], pqx, abDist[0], cdDist[0], zeta, eta,
+							sa, sb, sc, ix);
+					int1dTable(t, aL, bL, cL, dL, pas[3 * ij + 1], qcs[3 * kl + 1], pqy, abDist[1], cdDist[1], zeta,
+							eta, sa, sb, sc, iy);
+					int1dTable(t, aL, bL, cL, dL, pas[3 * ij + 2], qcs[3 * kl + 2], pqz, abDist[2], cdDist[2], zeta,
+							eta, sa, sb, sc, iz);
+
+					final double w = prefactor * weights[r];
+
+					int index = 0;
+					for (int p = 0; p < na; p++) {
+						final int[] ap = aOffsets[p];
+						final double wp = w * aNorms[p][i];
+
+						for (int q = 0; q < nb; q++) {
+							final int[] bq = bOffsets[q];
+							final double wq = wp * bNorms[q][j];
+
+							for (int u = 0; u < nc; u++) {
+								final int[] cu = cOffsets[u];
+								final double wu = wq * cNorms[u][k];
+
+								for (int v = 0; v < nd; v++) {
+									final int[] dv = dOffsets[v];
+
+									block[index++] += wu * dNorms[v][l] * ix[ap[0] + bq[0] + cu[0] + dv[0]]
+											* iy[ap[1] + bq[1] + cu[1] + dv[1]] * iz[ap[2] + bq[2] + cu[2] + dv[2]];
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+
+		// contracted normalisation
+		int index = 0;
+		for (int p = 0; p < na; p++) {
+			final double np = aFunctions.get(p).getNormalization();
+			for (int q = 0; q < nb; q++) {
+				final double nq = np * bFunctions.get(q).getNormalization();
+				for (int u = 0; u < nc; u++) {
+					final double nu = nq * cFunctions.get(u).getNormalization();
+					for (int v = 0; v < nd; v++) {
+						block[index++] *= nu * dFunctions.get(v).getNormalization();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Offsets of the x, y and z powers of each shell component into a 1D
+	 * integral table.
+	 *
+	 * @param functions the components of a shell
+	 * @param stride    the table stride of this shell's angular momentum
+	 * @return [component][x, y, z] offsets
+	 */
+	private static int[][] componentOffsets(final List<ContractedGaussian> functions, final int stride) {
+		final int[][] offsets = new int[functions.size()][3];
+
+		for (int p = 0; p < offsets.length; p++) {
+			final Power power = functions.get(p).getPowers();
+			offsets[p][0] = power.l() * stride;
+			offsets[p][1] = power.m() * stride;
+			offsets[p][2] = power.n() * stride;
+		}
+
+		return offsets;
+	}
+
+	/**
+	 * Primitive normalisation factors of each shell component.
+	 *
+	 * @param functions the components of a shell
+	 * @return [component][primitive] normalisation factors
+	 */
+	private static double[][] primitiveNorms(final List<ContractedGaussian> functions) {
+		final double[][] norms = new double[functions.size()][];
+
+		for (int p = 0; p < norms.length; p++) {
+			final ArrayList<Double> primNorms = functions.get(p).getPrimNorms();
+			norms[p] = new double[primNorms.size()];
+			for (int i = 0; i < norms[p].length; i++) {
+				norms[p][i] = primNorms.get(i);
+			}
+		}
+
+		return norms;
+	}
+
+	/**
+	 * Tabulate the 1D integrals I(la,lb,lc,ld) for one Cartesian direction and
+	 * one Rys root, for all la &le; aL, lb &le; bL, lc &le; cL and ld &le; dL.
+	 * The Gaussian product prefactor is not included.
+	 *
+	 * @param t     the Rys root.
+	 * @param aL    maximum angular momentum of shell a.
+	 * @param bL    maximum angular momentum of shell b.
+	 * @param cL    maximum angular momentum of shell c.
+	 * @param dL    maximum angular momentum of shell d.
+	 * @param pa    the relevant Cartesian component of P - A.
+	 * @param qc    the relevant Cartesian component of Q - C.
+	 * @param pq    the relevant Cartesian component of P - Q.
+	 * @param xab   the relevant Cartesian component of A - B.
+	 * @param xcd   the relevant Cartesian component of C - D.
+	 * @param zeta  the composite exponent of the bra primitive pair.
+	 * @param eta   the composite exponent of the ket primitive pair.
+	 * @param sa    table stride of la.
+	 * @param sb    table stride of lb.
+	 * @param sc    table stride of lc.
+	 * @param table receives the 1D integrals.
+	 */
+	private static void int1dTable(final double t, final int aL, final int bL, final int cL, final int dL,
+			final double pa, final double qc, final double pq, final double xab, final double xcd, final double zeta,
+			final double eta, final int sa, final int sb, final int sc, final double[] table) {
+
+		recur(t, aL + bL, cL + dL, pa, qc, pq, zeta, eta);
+
+		for (int la = 0; la <= aL; la++) {
+			for (int lb = 0; lb <= bL; lb++) {
+				for (int lc = 0; lc <= cL; lc++) {
+					for (int ld = 0; ld <= dL; ld++) {
+						table[la * sa + lb * sb + lc * sc + ld] = shift(la, lb, lc, ld, xab, xcd);
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * Compute the squared distance |P-Q|^2 between Gaussian product centres.
 	 *
@@ -1893,6 +2160,45 @@ public final class RysTwoElectronTerm implements TwoElectronTerm {
 
 	}
 
+	/**
+	 * Form G(n,m)=I(n,0,m,0) intermediate values for a Rys polynomial from
+	 * precomputed primitive pair data. G[0][0] is set to one; the Gaussian
+	 * product prefactor is applied by the caller.
+	 *
+	 * @param t    the Rys root (quadrature abscissa)
+	 * @param n    maximum bra angular-momentum index
+	 * @param m    maximum ket angular-momentum index
+	 * @param pa   x/y/z component of P - A
+	 * @param qc   x/y/z component of Q - C
+	 * @param pq   x/y/z component of P - Q
+	 * @param zeta composite exponent of the bra pair
+	 * @param eta  composite exponent of the ket pair
+	 */
+	private static final void recur(final double t, final int n, final int m, final double pa, final double qc,
+			final double pq, final double zeta, final double eta) {
+
+		final double[][] g = G_THREAD.get();
+		g[0][0] = 1.0;
+
+		// [ABD] eqs 12-14: recurFactors (from GAMESS)
+		final double fact = t / (zeta + eta) / (1 + t);
+
+		final double B1p = 1 / (2 * eta * (1 + t)) + 0.5 * fact;
+		final double Cp = qc / (1 + t) + (eta * qc + zeta * (pq + qc)) * fact;
+		processGm(B1p, Cp, m);
+
+		final double B1 = 1 / (2 * zeta * (1 + t)) + 0.5 * fact;
+		final double C = pa / (1 + t) + (eta * (pa - pq) + zeta * pa) * fact;
+		processGn(B1, C, n);
+
+		if ((m == 0) || (n == 0)) {
+			return;
+		}
+
+		final double B0 = 0.5 * fact;
+		finaliseG(B0, B1p, Cp, n, m);
+	}
+
 	/**
 	 * Initialise G[0][0] using the Gaussian product prefactor (eq. 11 of [ABD]).
 	 *
@@ -2012,22 +2318,26 @@ public final class RysTwoElectronTerm implements TwoElectronTerm {
 	}
 
 	/**
-	 * Not supported for the Rys quadrature scheme — always throws
-	 * {@link UnsupportedOperationException}.
+	 * 2E coulomb interactions between four contracted Gaussians, contracted
+	 * with a density matrix into Coulomb and exchange matrices.
 	 *
 	 * @param a       the first contracted Gaussian.
 	 * @param b       the second contracted Gaussian.
 	 * @param c       the third contracted Gaussian.
 	 * @param d       the fourth contracted Gaussian.
-	 * @param density the current density matrix (unused).
-	 * @param jMat    the Coulomb matrix to accumulate into (unused).
-	 * @param kMat    the exchange matrix to accumulate into (unused).
-	 * @return never returns normally.
-	 * @throws UnsupportedOperationException always.
+	 * @param density the current density matrix.
+	 * @param jMat    the Coulomb matrix to accumulate into.
+	 * @param kMat    the exchange matrix to accumulate into.
+	 * @return the two-electron integral (ab|cd).
 	 */
 	@Override
 	public final double coulomb(ContractedGaussian a, ContractedGaussian b, ContractedGaussian c, ContractedGaussian d,
 			Density density, RealMatrix jMat, RealMatrix kMat) {
-		throw new UnsupportedOperationException("Not supported yet.");
+		final double value = coulomb(a, b, c, d);
+
+		JKContraction.addIntegral(density, jMat, kMat, a.getBasisFunctionIndex(), b.getBasisFunctionIndex(),
+				c.getBasisFunctionIndex(), d.getBasisFunctionIndex(), value);
+
+		return value;
 	}
 }
@@ -1,11 +1,15 @@
 package name.mjw.jquante.math.qm.integral;
 
+import java.util.List;
+
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.hipparchus.linear.RealMatrix;
 
 import name.mjw.jquante.math.qm.Density;
 import name.mjw.jquante.math.qm.basis.ContractedGaussian;
 import name.mjw.jquante.math.qm.basis.Power;
+import name.mjw.jquante.math.qm.basis.Shell;
+import name.mjw.jquante.math.qm.basis.ShellPair;
 
 /**
  * Top level interface for evaluating a 2E-integral term.
@@ -32,7 +36,95 @@ public interface TwoElectronTerm extends IntegralsPackage {
 			ContractedGaussian c, ContractedGaussian d);
 
 	/**
-	 * 2E coulomb interactions between four contracted Gaussians.
+	 * 2E coulomb interactions for every combination of basis functions in a
+	 * shell quartet.
+	 * <p>
+	 * The integral (a<sub>p</sub>b<sub>q</sub>|c<sub>r</sub>d<sub>s</sub>),
+	 * where p, q, r and s index {@link Shell#getBasisFunctions()}, is written to
+	 * <code>block[((p * nb + q) * nc + r) * nd + s]</code>. Implementations
+	 * should share primitive-pair quantities across the components of the
+	 * quartet; the default simply evaluates each component separately.
+	 *
+	 * @param a
+	 *            Shell a.
+	 * @param b
+	 *            Shell b.
+	 * @param c
+	 *            Shell c.
+	 * @param d
+	 *            Shell d.
+	 * @param block
+	 *            Caller-provided array of at least na*nb*nc*nd elements that
+	 *            receives the integrals.
+	 */
+	public default void coulomb(Shell a, Shell b, Shell c, Shell d, double[] block) {
+		final List<ContractedGaussian> aFunctions = a.getBasisFunctions();
+		final List<ContractedGaussian> bFunctions = b.getBasisFunctions();
+		final List<ContractedGaussian> cFunctions = c.getBasisFunctions();
+		final List<ContractedGaussian> dFunctions = d.getBasisFunctions();
+
+		int index = 0;
+		for (ContractedGaussian ap : aFunctions) {
+			for (ContractedGaussian bq : bFunctions) {
+				for (ContractedGaussian cr : cFunctions) {
+					for (ContractedGaussian ds : dFunctions) {
+						block[index++] = coulomb(ap, bq, cr, ds);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 2E coulomb interactions for every combination of basis functions in the
+	 * shell quartet (ab|cd), using precomputed primitive pair data.
+	 * <p>
+	 * The block layout is that of
+	 * {@link #coulomb(Shell, Shell, Shell, Shell, double[])}, with a and b the
+	 * shells of <code>ab</code>, and c and d the shells of <code>cd</code>. The
+	 * default ignores the pair data and delegates to the shell version.
+	 *
+	 * @param ab
+	 *            Primitive pair data of shells a and b.
+	 * @param cd
+	 *            Primitive pair data of shells c and d.
+	 * @param block
+	 *            Caller-provided array of at least na*nb*nc*nd elements that
+	 *            receives the integrals.
+	 */
+	public default void coulomb(ShellPair ab, ShellPair cd, double[] block) {
+		coulomb(ab.getA(), ab.getB(), cd.getA(), cd.getB(), block);
+	}
+
+	/**
+	 * 2E coulomb interactions for every combination of basis functions in the
+	 * shell quartet (ab|cd), contracted with a density matrix straight into
+	 * Coulomb and exchange matrices, see {@link JKContraction}. The quartet
+	 * must be one of a set that holds each unique integral once, such as a
+	 * &ge; b, c &ge; d, ab &ge; cd with the shells in basis function order.
+	 *
+	 * @param ab
+	 *            Primitive pair data of shells a and b.
+	 * @param cd
+	 *            Primitive pair data of shells c and d.
+	 * @param density
+	 *            Density matrix.
+	 * @param jMat
+	 *            J matrix, accumulated in place.
+	 * @param kMat
+	 *            K matrix, accumulated in place.
+	 */
+	public default void coulomb(ShellPair ab, ShellPair cd, double[][] density,
+			double[][] jMat, double[][] kMat) {
+		JKContraction.coulomb(this, ab, cd, density, jMat, kMat);
+	}
+
+	/**
+	 * 2E coulomb interactions between four contracted Gaussians, contracted
+	 * with a density matrix into Coulomb and exchange matrices. The integral
+	 * is added once for each of its distinct index permutations, see
+	 * {@link JKContraction#addIntegral(RealMatrix, RealMatrix, RealMatrix, int, int, int, int, double)},
+	 * so each unique quartet should be passed once.
 	 * 
 	 * @param a
 	 *            Contracted Gaussian function a.
@@ -45,9 +137,9 @@ public interface TwoElectronTerm extends IntegralsPackage {
 	 * @param density
 	 *            Density matrix.
 	 * @param jMat
-	 *            J matrix.
+	 *            J matrix, accumulated in place.
 	 * @param kMat
-	 *            K matrix.
+	 *            K matrix, accumulated in place.
 	 * @return Two-electron integral.
 	 */
 	public double coulomb(ContractedGaussian a, ContractedGaussian b,
@@ -0,0 +1,159 @@
+package name.mjw.jquante.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.hipparchus.linear.Array2DRowRealMatrix;
+import org.hipparchus.linear.EigenDecompositionSymmetric;
+import org.hipparchus.linear.RealMatrix;
+import org.junit.jupiter.api.Test;
+
+class BlockSparseMatrixTest {
+
+	/** Uneven blocks, as for atoms with different basis sets. */
+	private static final int[] BLOCKS = { 5, 1, 9, 2, 14, 5, 1, 9, 2, 14, 13, 6 };
+
+	private static final double DIFF = 1e-10;
+
+	private final Random random = new Random(42);
+
+	@Test
+	void multiply() {
+		RealMatrix a = bandedMatrix();
+		RealMatrix b = bandedMatrix();
+
+		BlockSparseMatrix c = blockSparse(a).multiply(blockSparse(b), 0.0);
+
+		assertMatrixEquals(a.multiply(b), c);
+	}
+
+	@Test
+	void add() {
+		RealMatrix a = bandedMatrix();
+		RealMatrix b = bandedMatrix();
+
+		BlockSparseMatrix c = blockSparse(a).add(2.0, blockSparse(b), -0.5, 0.0);
+
+		assertMatrixEquals(a.scalarMultiply(2.0).add(b.scalarMultiply(-0.5)), c);
+	}
+
+	@Test
+	void traces() {
+		RealMatrix a = bandedMatrix();
+		RealMatrix b = bandedMatrix();
+
+		assertEquals(a.getTrace(), blockSparse(a).trace(), DIFF);
+		assertEquals(a.multiply(b).getTrace(), blockSparse(a).traceOfProduct(blockSparse(b)), DIFF);
+	}
+
+	@Test
+	void negligibleBlocksAreNotStored() {
+		BlockSparseMatrix a = blockSparse(bandedMatrix());
+		int n = BLOCKS.length;
+
+		// the diagonal and the first off diagonal blocks
+		assertEquals(3 * n - 2, a.getNumberOfBlocks());
+		assertNull(a.getBlock(0, 2));
+		assertEquals(0.0, a.getEntry(0, a.getDimension() - 1), 0.0);
+
+		// the square spreads by one more block, and a large threshold drops it all
+		assertEquals(5 * n - 6, a.multiply(a, 0.0).getNumberOfBlocks());
+		assertEquals(0, a.multiply(a, 1e6).getNumberOfBlocks());
+	}
+
+	@Test
+	void identity() {
+		BlockSparseMatrix a = blockSparse(bandedMatrix());
+		BlockSparseMatrix identity = BlockSparseMatrix.identity(BLOCKS);
+
+		assertEquals(a.getDimension(), identity.trace(), 0.0);
+		assertMatrixEquals(toRealMatrix(a), a.multiply(identity, 0.0));
+	}
+
+	@Test
+	void convertsRealMatrices() {
+		RealMatrix a = bandedMatrix();
+		BlockSparseMatrix b = BlockSparseMatrix.of(a, BLOCKS, 0.0);
+
+		assertEquals(blockSparse(a).getNumberOfBlocks(), b.getNumberOfBlocks());
+		assertMatrixEquals(a, b);
+		assertEquals(0.0, a.subtract(b.copyTo(new Array2DRowRealMatrix(a.getRowDimension(),
+				a.getColumnDimension()))).getNorm1(), 0.0);
+	}
+
+	@Test
+	void gershgorinBoundsHoldTheSpectrum() {
+		RealMatrix a = bandedMatrix();
+		a = a.add(a.transpose());
+
+		double[] bounds = BlockSparseMatrix.of(a, BLOCKS, 0.0).getGershgorinBounds();
+		double[] eigenvalues = new EigenDecompositionSymmetric(a).getEigenvalues();
+
+		for (double eigenvalue : eigenvalues) {
+			assertTrue(eigenvalue >= bounds[0] && eigenvalue <= bounds[1]);
+		}
+	}
+
+	@Test
+	void mismatchedBlocksAreRejected() {
+		BlockSparseMatrix a = new BlockSparseMatrix(new int[] { 2, 3 });
+		BlockSparseMatrix b = new BlockSparseMatrix(new int[] { 3, 2 });
+
+		assertThrows(IllegalArgumentException.class, () -> a.multiply(b, 0.0));
+		assertThrows(IllegalArgumentException.class, () -> a.add(1.0, b, 1.0, 0.0));
+		assertThrows(IllegalArgumentException.class, () -> a.setBlock(0, 1, new double[5]));
+		assertThrows(IllegalArgumentException.class, () -> new BlockSparseMatrix(new int[] { 2, 0 }));
+		assertThrows(IllegalArgumentException.class, () -> BlockSparseMatrix.of(new DenseMatrix(4, 4),
+				new int[] { 2, 3 }, 0.0));
+	}
+
+	/**
+	 * A random matrix whose blocks are zero beyond the first off diagonal, as
+	 * for a chain of atoms.
+	 */
+	private RealMatrix bandedMatrix() {
+		int[] offsets = new int[BLOCKS.length + 1];
+		for (int i = 0; i < BLOCKS.length; i++) {
+			offsets[i + 1] = offsets[i] + BLOCKS[i];
+		}
+
+		int n = offsets[BLOCKS.length];
+		RealMatrix matrix = new Array2DRowRealMatrix(n, n);
+		for (int i = 0; i < BLOCKS.length; i++) {
+			for (int j = Math.max(0, i - 1); j < Math.min(BLOCKS.length, i + 2); j++) {
+				for (int r = offsets[i]; r < offsets[i + 1]; r++) {
+					for (int c = offsets[j]; c < offsets[j + 1]; c++) {
+						matrix.setEntry(r, c, random.nextDouble() - 0.5);
+					}
+				}
+			}
+		}
+
+		return matrix;
+	}
+
+	private static BlockSparseMatrix blockSparse(RealMatrix matrix) {
+		return BlockSparseMatrix.of(new DenseMatrix(matrix), BLOCKS, 0.0);
+	}
+
+	private static RealMatrix toRealMatrix(BlockSparseMatrix matrix) {
+		RealMatrix result = new Array2DRowRealMatrix(matrix.getDimension(), matrix.getDimension());
+		matrix.copyTo(new DenseMatrix(matrix.getDimension(), matrix.getDimension())).copyTo(result);
+
+		return result;
+	}
+
+	private static void assertMatrixEquals(RealMatrix expected, BlockSparseMatrix actual) {
+		assertEquals(expected.getRowDimension(), actual.getDimension());
+
+		for (int i = 0; i < actual.getDimension(); i++) {
+			for (int j = 0; j < actual.getDimension(); j++) {
+				assertEquals(expected.getEntry(i, j), actual.getEntry(i, j), DIFF);
+			}
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package name.mjw.jquante.math;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.hipparchus.linear.Array2DRowRealMatrix;
+import org.hipparchus.linear.RealMatrix;
+import org.junit.jupiter.api.Test;
+
+class DenseMatrixTest {
+
+	/** Large enough for several blocks, a ragged edge, and threads. */
+	private static final int M = 150;
+
+	private static final int N = 131;
+
+	private static final int K = 97;
+
+	private static final double DIFF = 1e-10;
+
+	private final Random random = new Random(42);
+
+	@Test
+	void multiply() {
+		RealMatrix a = randomMatrix(M, K);
+		RealMatrix b = randomMatrix(K, N);
+
+		DenseMatrix c = DenseMatrix.multiply(new DenseMatrix(a), new DenseMatrix(b), new DenseMatrix(M, N));
+
+		assertMatrixEquals(a.multiply(b), c);
+	}
+
+	@Test
+	void transposeMultiply() {
+		RealMatrix a = randomMatrix(K, M);
+		RealMatrix b = randomMatrix(K, N);
+
+		DenseMatrix c = DenseMatrix.transposeMultiply(new DenseMatrix(a), new DenseMatrix(b), new DenseMatrix(M, N));
+
+		assertMatrixEquals(a.transpose().multiply(b), c);
+	}
+
+	@Test
+	void multiplyTranspose() {
+		RealMatrix a = randomMatrix(M, K);
+		RealMatrix b = randomMatrix(N, K);
+
+		DenseMatrix c = DenseMatrix.multiplyTranspose(new DenseMatrix(a), new DenseMatrix(b), new DenseMatrix(M, N));
+
+		assertMatrixEquals(a.multiply(b.transpose()), c);
+	}
+
+	@Test
+	void symmetricRankK() {
+		RealMatrix a = randomMatrix(K, N);
+
+		DenseMatrix c = DenseMatrix.symmetricRankK(new DenseMatrix(a), new DenseMatrix(N, N));
+
+		assertMatrixEquals(a.transpose().multiply(a), c);
+	}
+
+	@Test
+	void traceOfProduct() {
+		Array2DRowRealMatrix a = randomMatrix(M, N);
+		Array2DRowRealMatrix b = randomMatrix(N, M);
+		double expected = a.multiply(b).getTrace();
+
+		assertEquals(expected, DenseMatrix.traceOfProduct(new DenseMatrix(a), new DenseMatrix(b)), DIFF);
+		assertEquals(expected, DenseMatrix.traceOfProduct(a, b), DIFF);
+	}
+
+	@Test
+	void outputBuffersAreOverwritten() {
+		RealMatrix a = randomMatrix(M, K);
+		RealMatrix b = randomMatrix(K, N);
+		DenseMatrix c = new DenseMatrix(randomMatrix(M, N));
+
+		DenseMatrix.multiply(new DenseMatrix(a), new DenseMatrix(b), c);
+
+		assertMatrixEquals(a.multiply(b), c);
+	}
+
+	@Test
+	void resultsDoNotDependOnThreads() {
+		DenseMatrix a = new DenseMatrix(randomMatrix(M, K));
+		DenseMatrix b = new DenseMatrix(randomMatrix(K, N));
+
+		double[] first = DenseMatrix.multiply(a, b, new DenseMatrix(M, N)).getDataRef();
+		double[] second = DenseMatrix.multiply(a, b, new DenseMatrix(M, N)).getDataRef();
+
+		assertArrayEquals(first, second, 0.0);
+	}
+
+	@Test
+	void copyRoundTrip() {
+		RealMatrix a = randomMatrix(3, 2);
+		RealMatrix b = new Array2DRowRealMatrix(3, 2);
+
+		new DenseMatrix(a).copyTo(b);
+
+		assertEquals(a, b);
+	}
+
+	@Test
+	void mismatchedDimensionsAreRejected() {
+		DenseMatrix a = new DenseMatrix(3, 2);
+		DenseMatrix b = new DenseMatrix(3, 2);
+		DenseMatrix square = new DenseMatrix(3, 3);
+
+		assertThrows(IllegalArgumentException.class, () -> DenseMatrix.multiply(a, b, new DenseMatrix(3, 2)));
+		assertThrows(IllegalArgumentException.class, () -> DenseMatrix.transposeMultiply(a, b, square));
+		assertThrows(IllegalArgumentException.class, () -> DenseMatrix.multiply(square, square, square));
+		assertThrows(IllegalArgumentException.class, () -> new DenseMatrix(2, 2).copyFrom(randomMatrix(3, 2)));
+	}
+
+	private Array2DRowRealMatrix randomMatrix(int rows, int columns) {
+		Array2DRowRealMatrix matrix = new Array2DRowRealMatrix(rows, columns);
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				matrix.setEntry(i, j, random.nextDouble() - 0.5);
+			}
+		}
+
+		return matrix;
+	}
+
+	private static void assertMatrixEquals(RealMatrix expected, DenseMatrix actual) {
+		assertEquals(expected.getRowDimension(), actual.getRowDimension());
+		assertEquals(expected.getColumnDimension(), actual.getColumnDimension());
+
+		for (int i = 0; i < actual.getRowDimension(); i++) {
+			for (int j = 0; j < actual.getColumnDimension(); j++) {
+				assertEquals(expected.getEntry(i, j), actual.getEntry(i, j), DIFF);
+			}
+		}
+	}
+}
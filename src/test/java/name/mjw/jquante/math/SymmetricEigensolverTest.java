@@ -0,0 +1,157 @@
+package name.mjw.jquante.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.hipparchus.linear.Array2DRowRealMatrix;
+import org.hipparchus.linear.EigenDecompositionSymmetric;
+import org.hipparchus.linear.RealMatrix;
+import org.junit.jupiter.api.Test;
+
+class SymmetricEigensolverTest {
+
+	/** Large enough for several panels, divide-and-conquer levels and threads. */
+	private static final int N = 203;
+
+	private static final double DIFF = 1e-9;
+
+	private final Random random = new Random(42);
+
+	@Test
+	void allEigenpairs() {
+		RealMatrix a = randomSymmetricMatrix(N);
+
+		assertEigenpairs(a, N);
+	}
+
+	@Test
+	void lowestEigenpairs() {
+		RealMatrix a = randomSymmetricMatrix(N);
+
+		assertEigenpairs(a, 17);
+	}
+
+	@Test
+	void smallMatrices() {
+		for (int n = 1; n < 8; n++) {
+			assertEigenpairs(randomSymmetricMatrix(n), n);
+			assertEigenpairs(randomSymmetricMatrix(n), 1);
+		}
+	}
+
+	@Test
+	void degenerateEigenvalues() {
+		// a projector, with eigenvalues of 0 and 1 only, rotated at random
+		RealMatrix q = new EigenDecompositionSymmetric(randomSymmetricMatrix(N)).getV();
+		RealMatrix diagonal = new Array2DRowRealMatrix(N, N);
+		for (int i = 0; i < N; i += 3) {
+			diagonal.setEntry(i, i, 1.0);
+		}
+		RealMatrix a = q.multiply(diagonal).multiplyTransposed(q);
+		double[] expected = new double[N];
+		for (int i = N - (N + 2) / 3; i < N; i++) {
+			expected[i] = 1.0;
+		}
+
+		assertEigenpairs(a, N, expected);
+		assertEigenpairs(a, 40, expected);
+	}
+
+	@Test
+	void diagonalMatrix() {
+		RealMatrix a = new Array2DRowRealMatrix(N, N);
+		for (int i = 0; i < N; i++) {
+			a.setEntry(i, i, N - i);
+		}
+
+		assertEigenpairs(a, N);
+	}
+
+	@Test
+	void onlyTheLowerTriangleIsRead() {
+		RealMatrix a = randomSymmetricMatrix(N);
+		DenseMatrix lower = new DenseMatrix(a);
+		for (int i = 0; i < N; i++) {
+			for (int j = i + 1; j < N; j++) {
+				lower.setEntry(i, j, 0.0);
+			}
+		}
+
+		double[] values = new double[N];
+		new SymmetricEigensolver(N).solve(lower, values, new DenseMatrix(N, N));
+
+		double[] expected = new EigenDecompositionSymmetric(a, 1e-10, false).getEigenvalues();
+		for (int i = 0; i < N; i++) {
+			assertEquals(expected[i], values[i], DIFF);
+		}
+	}
+
+	@Test
+	void mismatchedDimensionsAreRejected() {
+		SymmetricEigensolver solver = new SymmetricEigensolver(3);
+		DenseMatrix a = new DenseMatrix(3, 3);
+
+		assertThrows(IllegalArgumentException.class,
+				() -> solver.solve(new DenseMatrix(2, 2), new double[2], new DenseMatrix(2, 2)));
+		assertThrows(IllegalArgumentException.class, () -> solver.solve(a, new double[3], new DenseMatrix(2, 3)));
+		assertThrows(IllegalArgumentException.class, () -> solver.solve(a, 4, new double[4], new DenseMatrix(4, 3)));
+		assertThrows(IllegalArgumentException.class, () -> new SymmetricEigensolver(-1));
+	}
+
+	/**
+	 * Check the lowest k eigenvalues against Hipparchus, and that the
+	 * eigenvectors are orthonormal and satisfy Av = &lambda;v.
+	 */
+	private static void assertEigenpairs(RealMatrix a, int k) {
+		assertEigenpairs(a, k, new EigenDecompositionSymmetric(a, 1e-10, false).getEigenvalues());
+	}
+
+	/**
+	 * Check the lowest k eigenvalues against those expected, and that the
+	 * eigenvectors are orthonormal and satisfy Av = &lambda;v.
+	 */
+	private static void assertEigenpairs(RealMatrix a, int k, double[] expected) {
+		int n = a.getRowDimension();
+		double[] values = new double[k];
+		DenseMatrix vectors = new DenseMatrix(k, n);
+
+		new SymmetricEigensolver(n).solve(new DenseMatrix(a), k, values, vectors);
+
+		for (int i = 0; i < k; i++) {
+			assertEquals(expected[i], values[i], DIFF);
+		}
+
+		for (int i = 0; i < k; i++) {
+			for (int j = 0; j <= i; j++) {
+				double dot = 0.0;
+				for (int l = 0; l < n; l++) {
+					dot += vectors.getEntry(i, l) * vectors.getEntry(j, l);
+				}
+				assertEquals(i == j ? 1.0 : 0.0, dot, DIFF);
+			}
+
+			for (int l = 0; l < n; l++) {
+				double av = 0.0;
+				for (int m = 0; m < n; m++) {
+					av += a.getEntry(l, m) * vectors.getEntry(i, m);
+				}
+				assertEquals(values[i] * vectors.getEntry(i, l), av, DIFF);
+			}
+		}
+	}
+
+	private RealMatrix randomSymmetricMatrix(int n) {
+		RealMatrix matrix = new Array2DRowRealMatrix(n, n);
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j <= i; j++) {
+				double value = random.nextDouble() - 0.5;
+				matrix.setEntry(i, j, value);
+				matrix.setEntry(j, i, value);
+			}
+		}
+
+		return matrix;
+	}
+}
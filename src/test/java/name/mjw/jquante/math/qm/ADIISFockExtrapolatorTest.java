@@ -0,0 +1,86 @@
+package name.mjw.jquante.math.qm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.molecule.Molecule;
+import name.mjw.jquante.test.Fixtures;
+
+class ADIISFockExtrapolatorTest {
+
+	private ADIISFockExtrapolator adiis;
+
+	private Overlap identityOverlap;
+
+	@BeforeEach
+	void setUp() {
+		adiis = new ADIISFockExtrapolator();
+		identityOverlap = new Overlap(2);
+		identityOverlap.setEntry(0, 0, 1.0);
+		identityOverlap.setEntry(1, 1, 1.0);
+	}
+
+	@Test
+	void farFromConvergenceTheLevelShiftRaisesTheVirtualSpace() {
+		adiis.setLevelShift(0.5);
+
+		// the error FPS - SPF has elements of magnitude 0.3, above the ADIIS threshold
+		Density density = new Density(new double[][] { { 1.0, 0.0 }, { 0.0, 0.0 } });
+		Fock f = new Fock(new double[][] { { -1.0, 0.3 }, { 0.3, 1.0 } });
+
+		Fock result = adiis.next(f, identityOverlap, density);
+
+		assertEquals(-1.0, result.getEntry(0, 0), 1e-12);
+		assertEquals(0.3, result.getEntry(0, 1), 1e-12);
+		assertEquals(1.5, result.getEntry(1, 1), 1e-12);
+	}
+
+	@Test
+	void adiisInterpolatesBetweenFockMatrices() {
+		Density d1 = new Density(new double[][] { { 1.0, 0.0 }, { 0.0, 0.0 } });
+		Density d2 = new Density(new double[][] { { 0.0, 0.0 }, { 0.0, 1.0 } });
+		Fock f1 = new Fock(new double[][] { { 1.0, 0.5 }, { 0.5, -1.0 } });
+		Fock f2 = new Fock(new double[][] { { -1.0, 0.5 }, { 0.5, 1.0 } });
+
+		adiis.next(f1, identityOverlap, d1);
+		Fock result = adiis.next(f2, identityOverlap, d2);
+
+		// g = (D1 - D2).F2 = -2, H = (D1 - D2).(F1 - F2) = 4, so the model
+		// 2 c1 g + c1^2 H is least at c1 = 1/2, half way between the Fock matrices
+		assertEquals(0.0, result.getEntry(0, 0), 1e-10);
+		assertEquals(0.5, result.getEntry(0, 1), 1e-10);
+		assertEquals(0.0, result.getEntry(1, 1), 1e-10);
+	}
+
+	@Test
+	void settingsAreValidated() {
+		assertThrows(IllegalArgumentException.class, () -> adiis.setLevelShift(-0.1));
+		assertThrows(IllegalArgumentException.class, () -> adiis.setDIISThreshold(1.0));
+		assertThrows(IllegalArgumentException.class, () -> adiis.setADIISThreshold(1e-6));
+		assertThrows(IllegalArgumentException.class, () -> new ADIISFockExtrapolator(1));
+	}
+
+	@Test
+	void hartreeFockWaterConvergesToTheDIISEnergy() throws Exception {
+		Molecule water = Fixtures.getWater();
+		BasisSetLibrary bf = new BasisSetLibrary(water, "sto-3g");
+
+		OneElectronIntegrals e1 = new OneElectronIntegrals(bf, water);
+		TwoElectronIntegrals e2 = new TwoElectronIntegrals(bf);
+
+		SCFMethod scfm = SCFMethodFactory.getInstance().getSCFMethod(water, e1, e2, SCFType.HARTREE_FOCK);
+		scfm.setFockExtrapolatorFactory(() -> {
+			ADIISFockExtrapolator extrapolator = new ADIISFockExtrapolator();
+			extrapolator.setLevelShift(0.2);
+			return extrapolator;
+		});
+		scfm.setEnergyTolerance(1e-8);
+		scfm.scf();
+
+		assertEquals(-74.964518362274, scfm.getEnergy(), 1e-5);
+	}
+}
@@ -0,0 +1,112 @@
+package name.mjw.jquante.math.qm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.test.Fixtures;
+
+class CholeskyTwoElectronIntegralsTest {
+
+	static BasisSetLibrary bsl;
+	static TwoElectronIntegrals exact;
+	static int n;
+
+	@BeforeAll
+	static void setUp() throws Exception {
+		bsl = new BasisSetLibrary(Fixtures.getWater(), "sto-3g");
+		exact = new TwoElectronIntegrals(bsl);
+		n = bsl.getBasisFunctions().size();
+	}
+
+	@Test
+	void errorIsBoundedByTheTolerance() {
+		for (double tolerance : new double[] { 1e-3, 1e-6, 1e-10 }) {
+			final CholeskyTwoElectronIntegrals cholesky = new CholeskyTwoElectronIntegrals(exact, tolerance);
+
+			assertTrue(cholesky.getNumberOfFactors() <= n * (n + 1) / 2);
+			assertEquals(0.0, maxError(cholesky), tolerance);
+		}
+	}
+
+	@Test
+	void tighterTolerancesNeedMoreVectors() {
+		assertTrue(new CholeskyTwoElectronIntegrals(exact, 1e-2)
+				.getNumberOfFactors() < new CholeskyTwoElectronIntegrals(exact, 1e-8).getNumberOfFactors());
+	}
+
+	@Test
+	void transformMatchesTheTransformedIntegrals() {
+		final CholeskyTwoElectronIntegrals cholesky = new CholeskyTwoElectronIntegrals(exact, 1e-12);
+
+		final double[][] left = new double[2][n];
+		final double[][] right = new double[3][n];
+		for (int mu = 0; mu < n; mu++) {
+			left[0][mu] = 1.0 / (1 + mu);
+			left[1][mu] = mu % 2 == 0 ? 0.5 : -0.3;
+			right[0][mu] = 0.1 * mu;
+			right[1][mu] = 1.0;
+			right[2][mu] = mu == 3 ? 1.0 : 0.0;
+		}
+
+		final double[][][] transformed = cholesky.transform(left, right);
+
+		for (int p = 0; p < left.length; p++)
+			for (int q = 0; q < right.length; q++)
+				for (int r = 0; r < left.length; r++)
+					for (int s = 0; s < right.length; s++) {
+						double expected = 0.0;
+						for (int i = 0; i < n; i++)
+							for (int j = 0; j < n; j++)
+								for (int k = 0; k < n; k++)
+									for (int l = 0; l < n; l++)
+										expected += left[p][i] * right[q][j] * left[r][k] * right[s][l]
+												* exact.getTwoEIntegralStore().get(i, j, k, l);
+
+						double value = 0.0;
+						for (double[][] vector : transformed)
+							value += vector[p][q] * vector[r][s];
+
+						assertEquals(expected, value, 1e-9);
+					}
+	}
+
+	@Test
+	void replacesTheStoredIntegrals() throws Exception {
+		final TwoElectronIntegrals twoEI = new TwoElectronIntegrals(bsl);
+		twoEI.computeCholesky(1e-8);
+
+		assertTrue(twoEI.isCholeskyDecomposed());
+		assertFalse(twoEI.isOnTheFly());
+		assertNull(twoEI.getTwoEIntegralStore());
+		assertEquals(1e-8, twoEI.getCholeskyIntegrals().getTolerance(), 0.0);
+
+		twoEI.compute2ESparse();
+		assertFalse(twoEI.isCholeskyDecomposed());
+	}
+
+	@Test
+	void toleranceMustBePositive() {
+		assertThrows(IllegalArgumentException.class, () -> new CholeskyTwoElectronIntegrals(exact, 0.0));
+	}
+
+	private static double maxError(CholeskyTwoElectronIntegrals cholesky) {
+		double maxError = 0.0;
+
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j <= i; j++)
+				for (int k = 0; k < n; k++)
+					for (int l = 0; l <= k; l++) {
+						final double expected = exact.getTwoEIntegralStore().get(i, j, k, l);
+						maxError = Math.max(maxError, Math.abs(expected - cholesky.get(i, j, k, l)));
+					}
+
+		return maxError;
+	}
+}
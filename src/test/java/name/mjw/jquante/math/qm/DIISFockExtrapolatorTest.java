@@ -85,4 +85,66 @@ class DIISFockExtrapolatorTest {
         // Bootstrap mode never increments diisStep
         assertEquals(0, diis.diisStep);
     }
+
+    @Test
+    void subspaceSizeMustBeAtLeastTwo() {
+        assertEquals(DIISFockExtrapolator.DEFAULT_SUBSPACE_SIZE, diis.getSubspaceSize());
+        assertThrows(IllegalArgumentException.class, () -> new DIISFockExtrapolator(1));
+    }
+
+    @Test
+    void subspaceIsBounded() {
+        DIISFockExtrapolator bounded = new DIISFockExtrapolator(3);
+        Overlap overlap = new Overlap(3);
+        for (int i = 0; i < 3; i++) {
+            overlap.setEntry(i, i, 1.0);
+        }
+        Density density = new Density(new double[][]{{1.0, 0.2, 0.1}, {0.2, 0.5, 0.0}, {0.1, 0.0, 0.3}});
+
+        for (int i = 0; i < 10; i++) {
+            double a = 0.3 / (i + 1);
+            double b = 0.1 * Math.sin(i);
+            double c = 0.05 * Math.cos(2 * i);
+            Fock f = new Fock(new double[][]{{-1.0 - 0.1 * i, a, b}, {a, 0.5, c}, {b, c, 2.0}});
+            Fock result = bounded.next(f, overlap, density);
+
+            assertTrue(bounded.getNumberOfVectors() <= 3);
+            assertEquals(result.getEntry(0, 1), result.getEntry(1, 0), 1e-12);
+        }
+
+        // the antisymmetric 3x3 error vectors span three dimensions
+        assertEquals(3, bounded.getNumberOfVectors());
+        assertEquals(10, bounded.diisStep);
+    }
+
+    @Test
+    void extrapolationMinimisesTheError() {
+        Density density = new Density(new double[][]{{1.0, 0.0}, {0.0, 0.0}});
+
+        // error vectors of f1 and f2 are +e and -e, so the DIIS
+        // combination is their average, whose error vanishes
+        Fock f1 = new Fock(new double[][]{{1.0, 0.2}, {0.2, 2.0}});
+        Fock f2 = new Fock(new double[][]{{3.0, -0.2}, {-0.2, 4.0}});
+
+        diis.next(f1, identityOverlap, density);
+        Fock result = diis.next(f2, identityOverlap, density);
+
+        assertEquals(2.0, result.getEntry(0, 0), 1e-10);
+        assertEquals(0.0, result.getEntry(0, 1), 1e-10);
+        assertEquals(3.0, result.getEntry(1, 1), 1e-10);
+    }
+
+    @Test
+    void linearlyDependentErrorsAreDropped() {
+        Density density = new Density(new double[][]{{1.0, 0.0}, {0.0, 0.0}});
+        Fock f = new Fock(new double[][]{{1.0, 0.2}, {0.2, 2.0}});
+
+        diis.next(f, identityOverlap, density);
+        Fock result = diis.next(new Fock(f.getData()), identityOverlap, density);
+
+        // B is singular, so one of the two copies is dropped
+        assertEquals(1, diis.getNumberOfVectors());
+        assertEquals(1.0, result.getEntry(0, 0), 1e-10);
+        assertEquals(0.2, result.getEntry(0, 1), 1e-10);
+    }
 }
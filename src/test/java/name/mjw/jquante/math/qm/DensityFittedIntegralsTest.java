@@ -0,0 +1,68 @@
+package name.mjw.jquante.math.qm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.math.qm.basis.EvenTemperedAuxiliaryBasis;
+import name.mjw.jquante.test.Fixtures;
+
+class DensityFittedIntegralsTest {
+
+	static BasisSetLibrary bsl;
+	static TwoElectronIntegrals exact;
+	static DensityFittedIntegrals fitted;
+	static int n;
+
+	@BeforeAll
+	static void setUp() throws Exception {
+		bsl = new BasisSetLibrary(Fixtures.getWater(), "sto-3g");
+		exact = new TwoElectronIntegrals(bsl);
+		fitted = new DensityFittedIntegrals(bsl, EvenTemperedAuxiliaryBasis.create(bsl));
+		n = bsl.getBasisFunctions().size();
+	}
+
+	@Test
+	void fittedIntegralsApproximateTheExactOnes() {
+		double maxError = 0.0;
+
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j <= i; j++)
+				for (int k = 0; k < n; k++)
+					for (int l = 0; l <= k; l++) {
+						double expected = exact.getTwoEIntegralStore().get(i, j, k, l);
+						maxError = Math.max(maxError, Math.abs(expected - fitted.get(i, j, k, l)));
+					}
+
+		assertEquals(0.0, maxError, 1e-3);
+	}
+
+	@Test
+	void coulombAndExchangeMatchTheFittedIntegrals() {
+		double[][] d = new double[n][n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				d[i][j] = 0.2 / (1 + i + j) + (i == j ? 0.1 : 0.0);
+
+		double[][] j = fitted.coulomb(d);
+		double[][] k = fitted.exchange(d);
+
+		for (int p = 0; p < n; p++) {
+			double[] expectedJ = new double[n];
+			double[] expectedK = new double[n];
+
+			for (int q = 0; q < n; q++)
+				for (int r = 0; r < n; r++)
+					for (int s = 0; s < n; s++) {
+						expectedJ[q] += fitted.get(p, q, r, s) * d[r][s];
+						expectedK[q] += fitted.get(p, r, q, s) * d[r][s];
+					}
+
+			assertArrayEquals(expectedJ, j[p], 1e-10);
+			assertArrayEquals(expectedK, k[p], 1e-10);
+		}
+	}
+}
@@ -1,9 +1,16 @@
 package name.mjw.jquante.math.qm;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
 import name.mjw.jquante.molecule.Molecule;
@@ -53,4 +60,212 @@ class GMatrixTest {
 		assertArrayEquals(expected[0], actual[0], diff);
 		assertArrayEquals(expected[1], actual[1], diff);
 	}
+
+	@Test
+	void testComputeFromDiskMatchesInCore(@TempDir Path directory) throws Exception {
+		BasisSetLibrary waterBsl = new BasisSetLibrary(Fixtures.getWater(), "6-31gss");
+		int n = waterBsl.getBasisFunctions().size();
+
+		double[][] d = new double[n][n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				d[i][j] = 0.1 / (1 + Math.abs(i - j)) + (i == j ? 0.2 : 0.0);
+		Density waterDensity = new Density(d);
+
+		TwoElectronIntegrals inCore = new TwoElectronIntegrals(waterBsl);
+		GMatrix expected = new GMatrix(n);
+		expected.compute(SCFType.HARTREE_FOCK, inCore, waterDensity);
+
+		try (TwoElectronIntegrals onDisk = new TwoElectronIntegrals(waterBsl, true)) {
+			onDisk.setIntegralDirectory(directory);
+			onDisk.compute2EOnDisk();
+			assertTrue(onDisk.isDiskBacked());
+
+			GMatrix actual = new GMatrix(n);
+			actual.compute(SCFType.HARTREE_FOCK, onDisk, waterDensity);
+
+			for (int i = 0; i < n; i++) {
+				assertArrayEquals(expected.getData()[i], actual.getData()[i], 1e-8);
+			}
+		}
+	}
+
+	@Test
+	void testComputeSparseMatchesInCore() throws Exception {
+		BasisSetLibrary waterBsl = new BasisSetLibrary(Fixtures.getWater(), "6-31gss");
+		int n = waterBsl.getBasisFunctions().size();
+
+		double[][] d = new double[n][n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				d[i][j] = 0.1 / (1 + Math.abs(i - j)) + (i == j ? 0.2 : 0.0);
+		Density waterDensity = new Density(d);
+
+		TwoElectronIntegrals inCore = new TwoElectronIntegrals(waterBsl);
+		GMatrix expected = new GMatrix(n);
+		expected.compute(SCFType.HARTREE_FOCK, inCore, waterDensity);
+
+		TwoElectronIntegrals sparse = new TwoElectronIntegrals(waterBsl, true);
+		sparse.compute2ESparse();
+		assertTrue(sparse.getTwoEIntegralStore() instanceof SparseTwoElectronIntegralStore);
+
+		GMatrix actual = new GMatrix(n);
+		actual.compute(SCFType.HARTREE_FOCK, sparse, waterDensity);
+
+		for (int i = 0; i < n; i++) {
+			assertArrayEquals(expected.getData()[i], actual.getData()[i], 1e-8);
+		}
+	}
+
+	@Test
+	void testComputeIncrementalMatchesDirect() throws Exception {
+		BasisSetLibrary waterBsl = new BasisSetLibrary(Fixtures.getWater(), "sto-3g");
+		int n = waterBsl.getBasisFunctions().size();
+
+		double[][] d = new double[n][n];
+		double[][] dNext = new double[n][n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++) {
+				d[i][j] = 0.1 / (1 + Math.abs(i - j)) + (i == j ? 0.2 : 0.0);
+				dNext[i][j] = d[i][j] + (i == j ? 1e-3 * i : 1e-4);
+			}
+		Density previousDensity = new Density(d);
+		Density nextDensity = new Density(dNext);
+
+		TwoElectronIntegrals direct = new TwoElectronIntegrals(waterBsl, true);
+
+		GMatrix expected = new GMatrix(n);
+		expected.compute(SCFType.HARTREE_FOCK_DIRECT, direct, nextDensity);
+
+		GMatrix actual = new GMatrix(n);
+		actual.compute(SCFType.HARTREE_FOCK_DIRECT, direct, previousDensity);
+		actual.computeIncremental(direct, nextDensity, previousDensity);
+
+		for (int i = 0; i < n; i++) {
+			assertArrayEquals(expected.getData()[i], actual.getData()[i], 1e-8);
+		}
+
+		// an unchanged density leaves G as it is
+		actual.computeIncremental(direct, nextDensity, nextDensity);
+
+		for (int i = 0; i < n; i++) {
+			assertArrayEquals(expected.getData()[i], actual.getData()[i], 1e-8);
+		}
+	}
+
+	@Test
+	void testRepeatedComputeDirectMatchesFreshMatrix() throws Exception {
+		BasisSetLibrary waterBsl = new BasisSetLibrary(Fixtures.getWater(), "sto-3g");
+		int n = waterBsl.getBasisFunctions().size();
+		TwoElectronIntegrals direct = new TwoElectronIntegrals(waterBsl, true);
+
+		double[][] d = new double[n][n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				d[i][j] = 0.1 / (1 + Math.abs(i - j)) + (i == j ? 0.2 : 0.0);
+
+		// the partial G matrices of the first build are reused by the second
+		GMatrix reused = new GMatrix(n);
+		reused.compute(SCFType.HARTREE_FOCK_DIRECT, direct, new Density(d));
+		reused.compute(SCFType.HARTREE_FOCK_DIRECT, direct, density(n, 0.5));
+
+		GMatrix fresh = new GMatrix(n);
+		fresh.compute(SCFType.HARTREE_FOCK_DIRECT, direct, density(n, 0.5));
+
+		for (int i = 0; i < n; i++) {
+			assertArrayEquals(fresh.getData()[i], reused.getData()[i], 1e-12);
+		}
+	}
+
+	@Test
+	void testComputeInCoreMatchesDirect() throws Exception {
+		BasisSetLibrary waterBsl = new BasisSetLibrary(Fixtures.getWater(), "6-31gss");
+		int n = waterBsl.getBasisFunctions().size();
+		Density waterDensity = density(n, 0.3);
+
+		GMatrix expected = new GMatrix(n);
+		expected.compute(SCFType.HARTREE_FOCK_DIRECT, new TwoElectronIntegrals(waterBsl, true), waterDensity);
+
+		GMatrix actual = new GMatrix(n);
+		actual.compute(SCFType.HARTREE_FOCK, new TwoElectronIntegrals(waterBsl), waterDensity);
+
+		for (int i = 0; i < n; i++) {
+			assertArrayEquals(expected.getData()[i], actual.getData()[i], 1e-8);
+		}
+	}
+
+	@Test
+	void testComputeJKMatchesDirect() throws Exception {
+		BasisSetLibrary waterBsl = new BasisSetLibrary(Fixtures.getWater(), "6-31gss");
+		int n = waterBsl.getBasisFunctions().size();
+		Density waterDensity = density(n, 0.3);
+		TwoElectronIntegrals direct = new TwoElectronIntegrals(waterBsl, true);
+
+		GMatrix expected = new GMatrix(n);
+		expected.compute(SCFType.HARTREE_FOCK_DIRECT, direct, waterDensity);
+
+		GMatrix actual = new GMatrix(n);
+		actual.computeJK(direct, waterDensity);
+
+		for (int i = 0; i < n; i++) {
+			assertArrayEquals(expected.getData()[i], actual.getData()[i], 1e-8);
+		}
+
+		// without exchange, G is twice the Coulomb matrix
+		actual.setExchangeScale(0.0);
+		actual.computeJK(direct, waterDensity);
+
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				assertEquals(2.0 * actual.getCoulomb().getEntry(i, j), actual.getEntry(i, j), 1e-12);
+			}
+		}
+	}
+
+	@Test
+	void testComputeSeveralDensitiesJKMatchesSeparateBuilds() throws Exception {
+		BasisSetLibrary waterBsl = new BasisSetLibrary(Fixtures.getWater(), "6-31gss");
+		int n = waterBsl.getBasisFunctions().size();
+		List<Density> densities = List.of(density(n, 0.3), density(n, 0.1), density(n, -0.2));
+
+		for (SCFType scfType : new SCFType[] { SCFType.HARTREE_FOCK, SCFType.HARTREE_FOCK_DIRECT }) {
+			TwoElectronIntegrals ints = new TwoElectronIntegrals(waterBsl,
+					scfType == SCFType.HARTREE_FOCK_DIRECT);
+
+			List<GMatrix> actual = List.of(new GMatrix(n), new GMatrix(n), new GMatrix(n));
+			GMatrix.compute(scfType, ints, actual, densities);
+
+			for (int m = 0; m < densities.size(); m++) {
+				GMatrix expected = new GMatrix(n);
+				expected.compute(scfType, ints, densities.get(m));
+
+				GMatrix expectedJK = new GMatrix(n);
+				expectedJK.computeJK(new TwoElectronIntegrals(waterBsl, true), densities.get(m));
+
+				for (int i = 0; i < n; i++) {
+					assertArrayEquals(expected.getData()[i], actual.get(m).getData()[i], 1e-10);
+					assertArrayEquals(expectedJK.getCoulomb().getRow(i), actual.get(m).getCoulomb().getRow(i), 1e-10);
+					assertArrayEquals(expectedJK.getExchange().getRow(i), actual.get(m).getExchange().getRow(i),
+							1e-10);
+				}
+			}
+		}
+	}
+
+	@Test
+	void testComputeSeveralDensitiesNeedsOneGMatrixEach() {
+		List<GMatrix> gMatrices = List.of(new GMatrix(2));
+		List<Density> densities = List.of(density, density);
+
+		assertThrows(IllegalArgumentException.class,
+				() -> GMatrix.compute(SCFType.HARTREE_FOCK, twoEI, gMatrices, densities));
+	}
+
+	private static Density density(int n, double scale) {
+		double[][] d = new double[n][n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				d[i][j] = scale / (1 + i + j);
+		return new Density(d);
+	}
 }
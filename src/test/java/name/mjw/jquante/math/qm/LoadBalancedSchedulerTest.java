@@ -0,0 +1,173 @@
+package name.mjw.jquante.math.qm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.test.Fixtures;
+
+class LoadBalancedSchedulerTest {
+
+	private static final Logger LOG = LogManager.getLogger(LoadBalancedSchedulerTest.class);
+
+	private static final int NUMBER_OF_WORKERS = 4;
+
+	static ForkJoinPool pool;
+
+	@BeforeAll
+	static void setUp() {
+		pool = new ForkJoinPool(NUMBER_OF_WORKERS);
+	}
+
+	@AfterAll
+	static void tearDown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Costs of a triangular loop, such as the outer index of ij &ge; kl, where
+	 * task n does work proportional to n.
+	 */
+	private static double[] triangularCosts(int n) {
+		double[] costs = new double[n];
+		for (int i = 0; i < n; i++) {
+			costs[i] = i + 1;
+		}
+		return costs;
+	}
+
+	@Test
+	void everyTaskRunsOnce() {
+		double[] costs = triangularCosts(100);
+		AtomicIntegerArray runs = new AtomicIntegerArray(costs.length);
+
+		LoadBalancedScheduler.LoadReport report = new LoadBalancedScheduler(costs, pool)
+				.run(() -> runs::incrementAndGet);
+
+		int tasks = 0;
+		for (int w = 0; w < report.getNumberOfWorkers(); w++) {
+			tasks += report.getTasks(w);
+		}
+
+		assertEquals(costs.length, tasks);
+		for (int n = 0; n < costs.length; n++) {
+			assertEquals(1, runs.get(n));
+		}
+	}
+
+	@Test
+	void tasksAreDispatchedLargestFirst() {
+		double[] costs = { 3.0, 7.0, 1.0, 5.0, 2.0, 7.0 };
+		List<Integer> started = new ArrayList<>();
+
+		ForkJoinPool single = new ForkJoinPool(1);
+		try {
+			new LoadBalancedScheduler(costs, single).run(() -> started::add);
+		} finally {
+			single.shutdown();
+		}
+
+		assertEquals(costs.length, started.size());
+		for (int n = 1; n < started.size(); n++) {
+			assertTrue(costs[started.get(n - 1)] >= costs[started.get(n)], started.toString());
+		}
+	}
+
+	@Test
+	void eachWorkerTakesTasksLargestFirst() {
+		double[] costs = triangularCosts(48);
+		List<List<Double>> taken = Collections.synchronizedList(new ArrayList<>());
+
+		new LoadBalancedScheduler(costs, pool).run(() -> {
+			List<Double> workerCosts = new ArrayList<>();
+			taken.add(workerCosts);
+			return task -> workerCosts.add(costs[task]);
+		});
+
+		int tasks = 0;
+		for (List<Double> workerCosts : taken) {
+			for (int n = 1; n < workerCosts.size(); n++) {
+				assertTrue(workerCosts.get(n - 1) >= workerCosts.get(n), workerCosts.toString());
+			}
+			tasks += workerCosts.size();
+		}
+		assertEquals(costs.length, tasks);
+	}
+
+	@Test
+	void triangularLoadIsBalanced() {
+		double[] costs = triangularCosts(48);
+
+		// tasks whose run time matches their cost go, in dispatch order, to the
+		// first worker to become free
+		List<Integer> order = new ArrayList<>();
+		ForkJoinPool single = new ForkJoinPool(1);
+		try {
+			new LoadBalancedScheduler(costs, single).run(() -> order::add);
+		} finally {
+			single.shutdown();
+		}
+
+		double[] loads = new double[NUMBER_OF_WORKERS];
+		for (int task : order) {
+			int free = 0;
+			for (int w = 1; w < NUMBER_OF_WORKERS; w++) {
+				if (loads[w] < loads[free]) {
+					free = w;
+				}
+			}
+			loads[free] += costs[task];
+		}
+		double imbalance = LoadBalancedScheduler.LoadReport.imbalance(loads);
+
+		// a static split of the loop into equal, contiguous, ranges of tasks
+		double[] staticLoads = new double[NUMBER_OF_WORKERS];
+		for (int n = 0; n < costs.length; n++) {
+			staticLoads[n * NUMBER_OF_WORKERS / costs.length] += costs[n];
+		}
+		double staticImbalance = LoadBalancedScheduler.LoadReport.imbalance(staticLoads);
+
+		LOG.info("Largest first cost imbalance {}, static split {}", imbalance, staticImbalance);
+
+		assertTrue(imbalance < 1.15, Double.toString(imbalance));
+		assertTrue(imbalance < staticImbalance);
+	}
+
+	@Test
+	void shellPairCostsGrowWithTheKetRange() throws Exception {
+		BasisSetLibrary bsl = new BasisSetLibrary(Fixtures.getWater(), "6-31gss");
+		double[] costs = TwoElectronIntegrals.braShellPairCosts(bsl.getShells());
+
+		int noOfShells = bsl.getShells().size();
+		assertEquals(noOfShells * (noOfShells + 1) / 2, costs.length);
+
+		// an s-s pair later in the triangle has more ket pairs, so costs more
+		// than the same s-s pair earlier on
+		assertTrue(costs[costs.length - 1] > costs[0]);
+		for (double cost : costs) {
+			assertTrue(cost > 0.0);
+		}
+	}
+
+	@Test
+	void exceptionsAreRethrown() {
+		LoadBalancedScheduler scheduler = new LoadBalancedScheduler(triangularCosts(10), pool);
+
+		assertThrows(IllegalArgumentException.class, () -> scheduler.run(() -> task -> {
+			throw new IllegalArgumentException("task " + task);
+		}));
+	}
+}
@@ -2,12 +2,16 @@ package name.mjw.jquante.math.qm;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.hipparchus.linear.MatrixUtils;
 import org.hipparchus.linear.RealMatrix;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.math.qm.basis.ContractedGaussian;
 import name.mjw.jquante.molecule.Molecule;
 import name.mjw.jquante.test.Fixtures;
 
@@ -89,4 +93,67 @@ class OverlapTest {
             }
         }
     }
+
+    @Test
+    void orthogonalisationIsSHalfWithoutLinearDependencies() {
+        assertEquals(overlap.getRowDimension(), overlap.getNumberOfIndependentFunctions());
+        assertSame(overlap.getSHalf(), overlap.getOrthogonalisation());
+    }
+
+    @Test
+    void canonicalXDropsLinearDependencies() throws Exception {
+        Molecule water = Fixtures.getWater();
+        Overlap s = new OneElectronIntegrals(nearlyDependentBasis(water), water).getOverlap();
+
+        RealMatrix x = s.getOrthogonalisation();
+        assertEquals(8, x.getRowDimension());
+        assertEquals(7, x.getColumnDimension());
+        assertEquals(7, s.getNumberOfIndependentFunctions());
+
+        // X'SX = I in the reduced space
+        RealMatrix product = x.transpose().multiply(s).multiply(x);
+        for (int i = 0; i < 7; i++) {
+            for (int j = 0; j < 7; j++) {
+                assertEquals(i == j ? 1.0 : 0.0, product.getEntry(i, j), 1e-8);
+            }
+        }
+
+        // nothing is dropped below the threshold
+        s.setLinearDependencyThreshold(0.0);
+        assertEquals(8, s.getCanonicalX().getColumnDimension());
+        assertThrows(IllegalArgumentException.class, () -> s.setLinearDependencyThreshold(-1.0));
+    }
+
+    @Test
+    void scfConvergesInLinearlyDependentBasis() throws Exception {
+        Molecule water = Fixtures.getWater();
+        BasisSetLibrary bsl = nearlyDependentBasis(water);
+
+        RestrictedHartreeFockMethod scfm = new RestrictedHartreeFockMethod(water,
+                new OneElectronIntegrals(bsl, water), new TwoElectronIntegrals(bsl));
+        scfm.scf();
+
+        assertEquals(7, scfm.getMos().getRowDimension());
+        assertEquals(8, scfm.getMos().getColumnDimension());
+        assertEquals(7, scfm.getOrbE().length);
+        assertEquals(-74.964518362274, scfm.getEnergy(), 1e-5);
+    }
+
+    /**
+     * The sto-3g basis of a molecule, with a copy of the last function whose
+     * contraction coefficients differ by one part in a million.
+     */
+    private static BasisSetLibrary nearlyDependentBasis(Molecule molecule) throws Exception {
+        List<ContractedGaussian> bfs = new ArrayList<>(new BasisSetLibrary(molecule, "sto-3g").getBasisFunctions());
+        ContractedGaussian last = bfs.get(bfs.size() - 1);
+
+        ContractedGaussian copy = new ContractedGaussian(last.getCenteredAtom(), last.getPowers());
+        for (int i = 0; i < last.getExponents().size(); i++) {
+            copy.addPrimitive(last.getExponents().get(i), last.getCoefficients().get(i) * (1.0 + 1e-6 * i));
+        }
+        copy.normalize();
+        bfs.add(copy);
+
+        return new BasisSetLibrary("sto-3g", bfs);
+    }
 }
@@ -0,0 +1,165 @@
+package name.mjw.jquante.math.qm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.stream.IntStream;
+
+import org.hipparchus.linear.RealMatrix;
+import org.junit.jupiter.api.Test;
+
+import name.mjw.jquante.math.BlockSparseMatrix;
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.molecule.Molecule;
+import name.mjw.jquante.test.Fixtures;
+
+class PurificationHartreeFockMethodTest {
+
+	private static final double WATER_ENERGY = -74.964518362274;
+
+	@Test
+	void energyMatchesDiagonalisation() throws Exception {
+		SCFMethod scfm = tightlyConverged(
+				Fixtures.getSCFMethod(Fixtures.getWater(), "sto-3g", SCFType.HARTREE_FOCK_PURIFICATION));
+		scfm.scf();
+
+		assertInstanceOf(PurificationHartreeFockMethod.class, scfm);
+		assertEquals(WATER_ENERGY, scfm.getEnergy(), 1e-6);
+	}
+
+	@Test
+	void orbitalEnergiesMatchDiagonalisation() throws Exception {
+		SCFMethod rhf = tightlyConverged(
+				Fixtures.getSCFMethod(Fixtures.getHydrogenFluoride(), "3-21g", SCFType.HARTREE_FOCK));
+		rhf.scf();
+
+		SCFMethod purified = tightlyConverged(
+				Fixtures.getSCFMethod(Fixtures.getHydrogenFluoride(), "3-21g", SCFType.HARTREE_FOCK_PURIFICATION));
+		purified.scf();
+
+		assertEquals(rhf.getEnergy(), purified.getEnergy(), 1e-6);
+
+		double[] expected = rhf.getOrbE();
+		double[] actual = purified.getOrbE();
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], actual[i], 1e-4);
+		}
+	}
+
+	@Test
+	void purifiedDensityIsTheOccupiedProjector() throws Exception {
+		SCFMethod rhf = tightlyConverged(Fixtures.getSCFMethod(Fixtures.getWater(), "sto-3g", SCFType.HARTREE_FOCK));
+		rhf.scf();
+
+		Overlap overlap = rhf.getOneEI().getOverlap();
+		Density expected = new Density(overlap.getRowDimension());
+		expected.compute(rhf, false, null, 5, rhf.getMos());
+
+		Density density = new DensityPurifier().purify(rhf.getFock(), overlap, 5);
+
+		// DSD = D, and tr(DS) is the number of occupied orbitals
+		RealMatrix ds = density.multiply(overlap);
+		assertEquals(5.0, ds.getTrace(), 1e-8);
+		assertEquals(0.0, ds.multiply(density).subtract(density).getNorm1(), 1e-8);
+		assertEquals(0.0, expected.subtract(density).getNorm1(), 1e-6);
+	}
+
+	@Test
+	void atomBlockedDensityMatchesSingleBlock() throws Exception {
+		SCFMethod rhf = tightlyConverged(Fixtures.getSCFMethod(Fixtures.getWater(), "sto-3g", SCFType.HARTREE_FOCK));
+		rhf.scf();
+
+		Overlap overlap = rhf.getOneEI().getOverlap();
+		int[] atomBlockSizes = rhf.getTwoEI().getBasisSetLibrary().getAtomBlockSizes();
+		assertEquals(3, atomBlockSizes.length);
+		assertEquals(7, IntStream.of(atomBlockSizes).sum());
+
+		Density single = new DensityPurifier().purify(rhf.getFock(), overlap, 5);
+		Density blocked = new DensityPurifier().purify(rhf.getFock(), overlap, 5, atomBlockSizes);
+
+		assertEquals(0.0, single.subtract(blocked).getNorm1(), 1e-10);
+		assertThrows(IllegalArgumentException.class,
+				() -> new DensityPurifier().purify(rhf.getFock(), overlap, 5, new int[] { 5, 1 }));
+	}
+
+	@Test
+	void scfMatricesConvertToBlockSparse() throws Exception {
+		SCFMethod rhf = tightlyConverged(
+				Fixtures.getSCFMethod(Fixtures.getWater(), "sto-3g", SCFType.HARTREE_FOCK));
+		rhf.scf();
+
+		BasisSetLibrary bsl = rhf.getTwoEI().getBasisSetLibrary();
+		BlockSparseMatrix density = rhf.getDensity().toBlockSparse(bsl);
+
+		assertEquals(3, density.getNumberOfBlockRows());
+		assertEquals(0.0, new Density(density).subtract(rhf.getDensity()).getNorm1(), 0.0);
+		assertEquals(5.0, density.traceOfProduct(rhf.getOneEI().getOverlap().toBlockSparse(bsl)), 1e-8);
+		assertEquals(rhf.getDensity().multiply(rhf.getGMatrix()).getTrace(),
+				density.traceOfProduct(rhf.getGMatrix().toBlockSparse(bsl)), 1e-10);
+	}
+
+	@Test
+	void fourthOrderStepsAreKeptUpToTheTrs4Limit() throws Exception {
+		Molecule water = Fixtures.getWater();
+		OneElectronIntegrals e1 = new OneElectronIntegrals(new BasisSetLibrary(water, "sto-3g"), water);
+		DensityPurifier purifier = new DensityPurifier();
+
+		// xi rises above 1 here; falling back to 2X - X^2 then took 13 iterations
+		Density density = purifier.purify(e1.getHCore(), e1.getOverlap(), 5);
+
+		assertTrue(purifier.getIterations() <= 10, "took " + purifier.getIterations() + " iterations");
+		assertEquals(5.0, density.multiply(e1.getOverlap()).getTrace(), 1e-8);
+	}
+
+	@Test
+	void rectangularOrthogonalisationIsAppliedDensely() throws Exception {
+		Molecule water = Fixtures.getWater();
+		BasisSetLibrary bsl = new BasisSetLibrary(water, "6-31gss");
+		OneElectronIntegrals e1 = new OneElectronIntegrals(bsl, water);
+
+		// drop the functions of the smallest overlap eigenvalues
+		Overlap overlap = e1.getOverlap();
+		overlap.setLinearDependencyThreshold(0.05);
+		int m = overlap.getNumberOfIndependentFunctions();
+		assertTrue(m < overlap.getRowDimension());
+
+		MolecularOrbitals mos = new MolecularOrbitals(m, overlap.getRowDimension());
+		mos.compute(e1.getHCore(), overlap);
+		Density expected = new Density(overlap.getRowDimension());
+		expected.compute(null, false, null, 5, mos);
+
+		Density density = new DensityPurifier().purify(e1.getHCore(), overlap, 5, bsl.getAtomBlockSizes());
+
+		assertEquals(0.0, expected.subtract(density).getNorm1(), 1e-6);
+	}
+
+	@Test
+	void thresholdedProductsKeepTheEnergy() throws Exception {
+		PurificationHartreeFockMethod scfm = (PurificationHartreeFockMethod) tightlyConverged(
+				Fixtures.getSCFMethod(Fixtures.getWater(), "sto-3g", SCFType.HARTREE_FOCK_PURIFICATION));
+		scfm.getDensityPurifier().setThreshold(1e-8);
+		scfm.scf();
+
+		assertEquals(WATER_ENERGY, scfm.getEnergy(), 1e-6);
+	}
+
+	@Test
+	void invalidSettingsAreRejected() {
+		DensityPurifier purifier = new DensityPurifier();
+
+		assertThrows(IllegalArgumentException.class, () -> purifier.setThreshold(-1.0));
+		assertThrows(IllegalArgumentException.class, () -> purifier.setIdempotencyTolerance(0.0));
+		assertThrows(IllegalArgumentException.class, () -> purifier.setMaxIterations(-1));
+	}
+
+	/** converged tightly, so that the energy does not depend on the path */
+	private static SCFMethod tightlyConverged(SCFMethod scfm) {
+		scfm.setEnergyTolerance(1e-9);
+		scfm.setMaxIteration(100);
+
+		return scfm;
+	}
+}
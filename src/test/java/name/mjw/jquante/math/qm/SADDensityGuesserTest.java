@@ -0,0 +1,71 @@
+package name.mjw.jquante.math.qm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import name.mjw.jquante.test.Fixtures;
+
+class SADDensityGuesserTest {
+
+	private static final double WATER_ENERGY = -74.964518362274;
+
+	@Test
+	void atomicDensitiesAreCachedAndShared() {
+		List<double[][]> densities = IntStream.range(0, 8).parallel()
+				.mapToObj(i -> SADDensityGuesser.getAtomicDensity("O", "sto-3g")).collect(Collectors.toList());
+
+		for (double[][] density : densities) {
+			assertSame(densities.get(0), density);
+		}
+	}
+
+	@Test
+	void failedAtomicDensitiesAreNotCached() {
+		assertThrows(IllegalStateException.class, () -> SADDensityGuesser.getAtomicDensity("O", "no-such-basis"));
+		assertThrows(IllegalStateException.class, () -> SADDensityGuesser.getAtomicDensity("O", "no-such-basis"));
+	}
+
+	@Test
+	void guessHoldsTheElectronsOfTheMolecule() throws Exception {
+		SCFMethod scfm = Fixtures.getSCFMethod(Fixtures.getWater(), "sto-3g", SCFType.HARTREE_FOCK);
+
+		Density density = new SADDensityGuesser().guessDM(scfm);
+
+		assertEquals(10.0, 2.0 * density.multiply(scfm.getOneEI().getOverlap()).getTrace(), 1e-6);
+
+		// no density between the atoms
+		assertEquals(0.0, density.getEntry(0, 5), 0.0);
+		assertEquals(0.0, density.getEntry(5, 6), 0.0);
+	}
+
+	@Test
+	void guessConvergesInFewerIterations() throws Exception {
+		SCFMethod core = Fixtures.getSCFMethod(Fixtures.getWater(), "sto-3g", SCFType.HARTREE_FOCK);
+		core.scf();
+
+		SCFMethod sad = Fixtures.getSCFMethod(Fixtures.getWater(), "sto-3g", SCFType.HARTREE_FOCK);
+		sad.setDensityGuesser(new SADDensityGuesser());
+		sad.setGuessInitialDM(true);
+		sad.scf();
+
+		assertEquals(WATER_ENERGY, sad.getEnergy(), 1e-6);
+		assertTrue(sad.getScfIteration() < core.getScfIteration());
+	}
+
+	@Test
+	void guessHoldsTheElectronsInOtherBasisSets() throws Exception {
+		SCFMethod scfm = Fixtures.getSCFMethod(Fixtures.getHydrogenFluoride(), "3-21g", SCFType.HARTREE_FOCK);
+
+		Density density = new SADDensityGuesser().guessDM(scfm);
+
+		assertEquals(10.0, 2.0 * density.multiply(scfm.getOneEI().getOverlap()).getTrace(), 1e-6);
+	}
+}
@@ -0,0 +1,118 @@
+package name.mjw.jquante.math.qm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.molecule.Atom;
+import name.mjw.jquante.molecule.Molecule;
+import name.mjw.jquante.molecule.impl.MoleculeImpl;
+import name.mjw.jquante.test.Fixtures;
+
+class SCFCheckpointTest {
+
+	private static final double WATER_ENERGY = -74.964518362274;
+
+	@TempDir
+	static Path directory;
+
+	static Path checkpointPath;
+
+	static RestrictedHartreeFockMethod firstRun;
+
+	@BeforeAll
+	static void setUp() throws Exception {
+		checkpointPath = directory.resolve("water.chk");
+
+		firstRun = (RestrictedHartreeFockMethod) Fixtures
+				.getSCFMethod(Fixtures.getWater(), "sto-3g", SCFType.HARTREE_FOCK);
+		firstRun.setCheckpointPath(checkpointPath);
+		firstRun.scf();
+	}
+
+	@Test
+	void checkpointHoldsTheLastIteration() throws Exception {
+		SCFCheckpoint checkpoint = SCFCheckpoint.read(checkpointPath);
+		BasisSetLibrary bsl = firstRun.getTwoEI().getBasisSetLibrary();
+
+		assertEquals(firstRun.getScfIteration(), checkpoint.getIteration());
+		assertEquals(firstRun.getEnergy(), checkpoint.getEnergy(), 0.0);
+		assertTrue(checkpoint.getNumberOfDIISVectors() > 0);
+
+		MolecularOrbitals mos = checkpoint.getMolecularOrbitals(bsl);
+		for (int i = 0; i < mos.getRowDimension(); i++) {
+			assertArrayEquals(firstRun.getMos().getDataRef()[i], mos.getDataRef()[i], 0.0);
+		}
+		assertArrayEquals(firstRun.getOrbE(), mos.getOrbitalEnergies(), 0.0);
+	}
+
+	@Test
+	void restartResumesFromTheCheckpoint() throws Exception {
+		RestrictedHartreeFockMethod restart = (RestrictedHartreeFockMethod) Fixtures
+				.getSCFMethod(Fixtures.getWater(), "sto-3g", SCFType.HARTREE_FOCK);
+		restart.setDensityGuesser(new CheckpointDensityGuesser(checkpointPath));
+		restart.setGuessInitialDM(true);
+		restart.scf();
+
+		assertEquals(WATER_ENERGY, restart.getEnergy(), 1e-4);
+		assertTrue(restart.getScfIteration() < firstRun.getScfIteration());
+	}
+
+	@Test
+	void restartMapsReorderedBasisFunctions() throws Exception {
+		Molecule water = Fixtures.getWater();
+		Molecule reordered = new MoleculeImpl("water");
+		reordered.addAtom(new Atom("H", water.getAtom(2).getAtomCenter()));
+		reordered.addAtom(new Atom("O", water.getAtom(0).getAtomCenter()));
+		reordered.addAtom(new Atom("H", water.getAtom(1).getAtomCenter()));
+
+		RestrictedHartreeFockMethod restart = (RestrictedHartreeFockMethod) Fixtures
+				.getSCFMethod(reordered, "sto-3g", SCFType.HARTREE_FOCK);
+		CheckpointDensityGuesser guesser = new CheckpointDensityGuesser(checkpointPath);
+		BasisSetLibrary bsl = restart.getTwoEI().getBasisSetLibrary();
+
+		// O is now second, so its functions follow the first hydrogen's
+		int[] map = guesser.getCheckpoint().basisFunctionMap(bsl);
+		assertArrayEquals(new int[] { 6, 0, 1, 2, 3, 4, 5 }, map);
+
+		restart.setDensityGuesser(guesser);
+		restart.setGuessInitialDM(true);
+		restart.scf();
+
+		assertEquals(WATER_ENERGY, restart.getEnergy(), 1e-4);
+		assertTrue(restart.getScfIteration() < firstRun.getScfIteration());
+	}
+
+	@Test
+	void otherBasisSetsAreRejected() throws Exception {
+		Molecule water = Fixtures.getWater();
+		BasisSetLibrary other = new BasisSetLibrary(water, "3-21g");
+		SCFCheckpoint checkpoint = SCFCheckpoint.read(checkpointPath);
+
+		assertThrows(IllegalStateException.class, () -> checkpoint.basisFunctionMap(other));
+
+		Molecule moved = Fixtures.getWater();
+		moved.getAtom(0).setAtomCenter(new Vector3D(0.0, 0.0, 0.2));
+		BasisSetLibrary movedBasis = new BasisSetLibrary(moved, "sto-3g");
+
+		assertThrows(IllegalStateException.class, () -> checkpoint.getDensity(movedBasis));
+	}
+
+	@Test
+	void otherFilesAreRejected() throws Exception {
+		Path notACheckpoint = Files.write(directory.resolve("other.chk"), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+
+		assertThrows(IOException.class, () -> SCFCheckpoint.read(notACheckpoint));
+	}
+}
@@ -1,12 +1,17 @@
 package name.mjw.jquante.math.qm;
 
+import name.mjw.jquante.common.Utility;
 import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.molecule.Atom;
 import name.mjw.jquante.molecule.Molecule;
+import name.mjw.jquante.molecule.impl.MoleculeImpl;
 import name.mjw.jquante.test.Fixtures;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 import org.apache.logging.log4j.LogManager;
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.apache.logging.log4j.Logger;
 import org.junit.jupiter.api.Test;
 
@@ -109,6 +114,107 @@ class SCFMethodFactoryTest {
 
 	}
 
+	@Test
+	void SinglePointHFWaterSTO3GDirectIncrementalMatchesFullRebuild() throws Exception {
+		Molecule water = Fixtures.getWater();
+		BasisSetLibrary bf = new BasisSetLibrary(water, "sto-3g");
+
+		OneElectronIntegrals e1 = new OneElectronIntegrals(bf, water);
+		TwoElectronIntegrals e2 = new TwoElectronIntegrals(bf, water, true);
+
+		RestrictedHartreeFockMethod full = (RestrictedHartreeFockMethod) SCFMethodFactory.getInstance()
+				.getSCFMethod(water, e1, e2, SCFType.HARTREE_FOCK_DIRECT);
+		assertFalse(full.isIncrementalFockBuild());
+		full.scf();
+
+		RestrictedHartreeFockMethod incremental = (RestrictedHartreeFockMethod) SCFMethodFactory.getInstance()
+				.getSCFMethod(water, e1, e2, SCFType.HARTREE_FOCK_DIRECT);
+		incremental.setIncrementalFockBuild(true);
+		incremental.setFullRebuildInterval(3);
+		incremental.scf();
+
+		assertEquals(full.getEnergy(), incremental.getEnergy(), diff);
+		assertEquals(full.getScfIteration(), incremental.getScfIteration(), 1);
+	}
+
+	@Test
+	void SinglePointHFWaterSTO3GDensityFitting() throws Exception {
+		Molecule water = Fixtures.getWater();
+		BasisSetLibrary bf = new BasisSetLibrary(water, "sto-3g");
+
+		OneElectronIntegrals e1 = new OneElectronIntegrals(bf, water);
+		TwoElectronIntegrals e2 = new TwoElectronIntegrals(bf, water, true);
+
+		SCFMethod scfm = SCFMethodFactory.getInstance().getSCFMethod(water, e1, e2,
+				SCFType.HARTREE_FOCK_DENSITY_FITTING);
+		scfm.scf();
+
+		// the fitting error of the generated auxiliary basis is well below 1 mEh
+		assertEquals(-74.964518362274, scfm.getEnergy(), 1e-3);
+	}
+
+	@Test
+	void SinglePointHFWaterSTO3GCholesky() throws Exception {
+		Molecule water = Fixtures.getWater();
+		BasisSetLibrary bf = new BasisSetLibrary(water, "sto-3g");
+
+		OneElectronIntegrals e1 = new OneElectronIntegrals(bf, water);
+		TwoElectronIntegrals e2 = new TwoElectronIntegrals(bf);
+		e2.computeCholesky(1e-8);
+
+		SCFMethod scfm = SCFMethodFactory.getInstance().getSCFMethod(water, e1, e2, SCFType.HARTREE_FOCK);
+		scfm.scf();
+
+		assertEquals(-74.964518362274, scfm.getEnergy(), diff);
+	}
+
+	@Test
+	// Values from T. D. Crawford's programming projects #3 and #4, water at
+	// R(OH) = 1.1 Angstrom and 104 degrees
+	void SinglePointMP2WaterSTO3G() throws Exception {
+		double bohr = Utility.AU_TO_ANGSTROM_FACTOR;
+		Molecule water = new MoleculeImpl("water");
+		water.addAtom(new Atom("O", new Vector3D(0.0, -0.143225816552 * bohr, 0.0)));
+		water.addAtom(new Atom("H", new Vector3D(1.638036840407 * bohr, 1.136548822547 * bohr, 0.0)));
+		water.addAtom(new Atom("H", new Vector3D(-1.638036840407 * bohr, 1.136548822547 * bohr, 0.0)));
+
+		BasisSetLibrary bf = new BasisSetLibrary(water, "sto-3g");
+		OneElectronIntegrals e1 = new OneElectronIntegrals(bf, water);
+		TwoElectronIntegrals e2 = new TwoElectronIntegrals(bf);
+
+		SCFMethod hf = SCFMethodFactory.getInstance().getSCFMethod(water, e1, e2, SCFType.HARTREE_FOCK);
+		hf.setEnergyTolerance(1e-10);
+		hf.setMaxIteration(100);
+		hf.scf();
+
+		SCFMethod mp2 = SCFMethodFactory.getInstance().getSCFMethod(water, e1, e2, SCFType.MOLLER_PLESSET);
+		mp2.setEnergyTolerance(1e-10);
+		mp2.setMaxIteration(100);
+		mp2.scf();
+
+		assertEquals(-74.942079928192, hf.getEnergy(), 1e-6);
+		assertEquals(-0.049149636120, mp2.getEnergy() - hf.getEnergy(), 1e-7);
+	}
+
+	@Test
+	void SinglePointMP2WaterSTO3GCholeskyMatchesInCore() throws Exception {
+		Molecule water = Fixtures.getWater();
+		BasisSetLibrary bf = new BasisSetLibrary(water, "sto-3g");
+
+		OneElectronIntegrals e1 = new OneElectronIntegrals(bf, water);
+		TwoElectronIntegrals inCore = new TwoElectronIntegrals(bf);
+		TwoElectronIntegrals cholesky = new TwoElectronIntegrals(bf);
+		cholesky.computeCholesky(1e-8);
+
+		SCFMethod expected = SCFMethodFactory.getInstance().getSCFMethod(water, e1, inCore, SCFType.MOLLER_PLESSET);
+		expected.scf();
+		SCFMethod scfm = SCFMethodFactory.getInstance().getSCFMethod(water, e1, cholesky, SCFType.MOLLER_PLESSET);
+		scfm.scf();
+
+		LOG.debug("MP2 energy {}", scfm.getEnergy());
+		assertEquals(expected.getEnergy(), scfm.getEnergy(), 1e-6);
+	}
+
 	@Test
 	void SinglePointHFWaterSTO3GDirect() throws Exception {
 
@@ -21,6 +21,18 @@ class SCFTypeTest {
         assertEquals(3, SCFType.MOLLER_PLESSET.getType());
     }
 
+    @Test
+    void hartreeFockDensityFittingTypeValue() {
+        assertEquals(4, SCFType.HARTREE_FOCK_DENSITY_FITTING.getType());
+        assertEquals("Hartree Fock Method (density fitting)", SCFType.HARTREE_FOCK_DENSITY_FITTING.toString());
+    }
+
+    @Test
+    void hartreeFockPurificationTypeValue() {
+        assertEquals(5, SCFType.HARTREE_FOCK_PURIFICATION.getType());
+        assertEquals("Hartree Fock Method (density purification)", SCFType.HARTREE_FOCK_PURIFICATION.toString());
+    }
+
     @Test
     void equalsReflexive() {
         assertTrue(SCFType.HARTREE_FOCK.equals(SCFType.HARTREE_FOCK));
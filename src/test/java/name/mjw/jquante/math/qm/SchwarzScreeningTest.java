@@ -0,0 +1,105 @@
+package name.mjw.jquante.math.qm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.math.qm.basis.Shell;
+import name.mjw.jquante.molecule.Molecule;
+import name.mjw.jquante.test.Fixtures;
+
+class SchwarzScreeningTest {
+
+	static Molecule water;
+	static BasisSetLibrary bsl;
+	static TwoElectronIntegrals reference;
+
+	@BeforeAll
+	static void setUp() throws Exception {
+		water = Fixtures.getWater();
+		bsl = new BasisSetLibrary(water, "sto-3g");
+		reference = new TwoElectronIntegrals(bsl, water, false, 0.0);
+	}
+
+	@Test
+	void boundHoldsForEveryIntegral() {
+		SchwarzScreening screening = new SchwarzScreening(bsl);
+		int n = bsl.getBasisFunctions().size();
+
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				for (int k = 0; k < n; k++)
+					for (int l = 0; l < n; l++)
+						assertTrue(Math.abs(reference.compute2E(i, j, k, l)) <= screening.getPairBound(i, j)
+								* screening.getPairBound(k, l) + 1e-12);
+	}
+
+	@Test
+	void shellPairBoundIsMaximumOfPairBounds() {
+		SchwarzScreening screening = new SchwarzScreening(bsl);
+		List<Shell> shells = bsl.getShells();
+
+		for (int a = 0; a < shells.size(); a++) {
+			for (int b = 0; b < shells.size(); b++) {
+				for (int i = shells.get(a).getFirstBasisFunctionIndex(); i <= shells.get(a)
+						.getLastBasisFunctionIndex(); i++) {
+					for (int j = shells.get(b).getFirstBasisFunctionIndex(); j <= shells.get(b)
+							.getLastBasisFunctionIndex(); j++) {
+						assertTrue(screening.getPairBound(i, j) <= screening.getShellPairBound(a, b));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void zeroThresholdScreensNothing() {
+		SchwarzScreening screening = new SchwarzScreening(bsl, 0.0);
+
+		assertFalse(screening.isNegligible(0, 0, 0, 0));
+		assertFalse(screening.isNegligibleShellQuartet(0, 0, 0, 0));
+	}
+
+	@Test
+	void screenedIntegralsAreWithinThreshold() {
+		double threshold = 0.05;
+		TwoElectronIntegrals screened = new TwoElectronIntegrals(bsl, water, false, threshold);
+
+		double[] expected = reference.getTwoEIntegrals();
+		double[] actual = screened.getTwoEIntegrals();
+
+		int skipped = 0;
+		for (int m = 0; m < expected.length; m++) {
+			assertEquals(expected[m], actual[m], threshold);
+			if (actual[m] == 0.0 && expected[m] != 0.0)
+				skipped++;
+		}
+
+		assertTrue(skipped > 0);
+	}
+
+	@Test
+	void directGMatrixMatchesInCoreWithScreening() {
+		int n = bsl.getBasisFunctions().size();
+		Density density = new Density(n);
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				density.setEntry(i, j, 0.1 / (1 + Math.abs(i - j)));
+
+		TwoElectronIntegrals screened = new TwoElectronIntegrals(bsl, water, false, 1e-8);
+
+		GMatrix inCore = new GMatrix(n);
+		inCore.compute(SCFType.HARTREE_FOCK, screened, density);
+
+		GMatrix direct = new GMatrix(n);
+		direct.compute(SCFType.HARTREE_FOCK_DIRECT, screened, density);
+
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				assertEquals(inCore.getEntry(i, j), direct.getEntry(i, j), 1e-8);
+	}
+}
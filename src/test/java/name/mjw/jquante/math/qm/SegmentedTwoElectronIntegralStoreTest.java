@@ -0,0 +1,57 @@
+package name.mjw.jquante.math.qm;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import name.mjw.jquante.math.qm.integral.IntegralsUtil;
+
+class SegmentedTwoElectronIntegralStoreTest {
+
+	@Test
+	void sizeMatchesNumberOfUniqueIntegrals() {
+		SegmentedTwoElectronIntegralStore store = SegmentedTwoElectronIntegralStore.forBasisFunctions(7);
+		assertEquals(406, store.size());
+		assertEquals(1, store.getNumberOfSegments());
+	}
+
+	@Test
+	void valuesSurviveAcrossSegmentBoundaries() {
+		// 4 doubles per segment forces 102 segments for 406 integrals
+		SegmentedTwoElectronIntegralStore store = new SegmentedTwoElectronIntegralStore(406, 2);
+		assertEquals(102, store.getNumberOfSegments());
+
+		for (long i = 0; i < store.size(); i++) {
+			store.set(i, i * 0.5);
+		}
+		for (long i = 0; i < store.size(); i++) {
+			assertEquals(i * 0.5, store.get(i));
+		}
+	}
+
+	@Test
+	void getByBasisFunctionIndicesHonoursPermutationalSymmetry() {
+		SegmentedTwoElectronIntegralStore store = new SegmentedTwoElectronIntegralStore(406, 3);
+		store.set(IntegralsUtil.ijkl2longindex(5, 2, 6, 1), 42.0);
+
+		assertEquals(42.0, store.get(2, 5, 1, 6));
+		assertEquals(42.0, store.get(6, 1, 5, 2));
+		assertEquals(42.0, store.get(1, 6, 2, 5));
+	}
+
+	@Test
+	void wrappedArrayIsShared() {
+		double[] integrals = new double[] { 1.0, 2.0, 3.0 };
+		SegmentedTwoElectronIntegralStore store = new SegmentedTwoElectronIntegralStore(integrals);
+
+		store.set(1, 5.0);
+		assertEquals(5.0, integrals[1]);
+		assertSame(integrals, store.toArray());
+	}
+
+	@Test
+	void toArrayFailsForMultipleSegments() {
+		SegmentedTwoElectronIntegralStore store = new SegmentedTwoElectronIntegralStore(10, 2);
+		assertThrows(UnsupportedOperationException.class, store::toArray);
+	}
+}
@@ -0,0 +1,64 @@
+package name.mjw.jquante.math.qm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import name.mjw.jquante.math.qm.integral.IntegralsUtil;
+
+class SparseTwoElectronIntegralStoreTest {
+
+	private static SparseTwoElectronIntegralStore store() {
+		SparseTwoElectronIntegralStore.Builder builder = new SparseTwoElectronIntegralStore.Builder(3, 1e-8);
+		builder.add(2, 1, 2, 1, 0.5);
+		builder.add(0, 2, 1, 0, 0.25); // (20|10), given out of order
+		builder.add(2, 2, 0, 0, 0.75);
+		builder.add(1, 1, 0, 0, 1e-9); // below the cutoff
+		builder.add(2, 1, 0, 0, 0.0);
+
+		return builder.build();
+	}
+
+	@Test
+	void storedIntegralsAreFoundUnderEveryPermutation() {
+		SparseTwoElectronIntegralStore ints = store();
+
+		assertEquals(0.25, ints.get(2, 0, 1, 0), 0.0);
+		assertEquals(0.25, ints.get(0, 2, 0, 1), 0.0);
+		assertEquals(0.25, ints.get(1, 0, 0, 2), 0.0);
+		assertEquals(0.5, ints.get(1, 2, 2, 1), 0.0);
+		assertEquals(0.75, ints.get(0, 0, 2, 2), 0.0);
+		assertEquals(0.75, ints.get(IntegralsUtil.ijkl2longindex(0, 0, 2, 2)), 0.0);
+	}
+
+	@Test
+	void onlyIntegralsAboveTheCutoffAreStored() {
+		SparseTwoElectronIntegralStore ints = store();
+
+		assertEquals(3, ints.getNumberOfStoredIntegrals());
+		assertEquals(IntegralsUtil.numberOfUniqueIntegrals(3), ints.size());
+		assertEquals(0.0, ints.get(1, 1, 0, 0), 0.0);
+		assertEquals(0.0, ints.get(IntegralsUtil.ijkl2longindex(2, 1, 0, 0)), 0.0);
+	}
+
+	@Test
+	void ketPairsAreSortedWithinABraPair() {
+		SparseTwoElectronIntegralStore ints = store();
+
+		// ij = 5 is (22), ij = 4 is (21), ij = 3 is (20), kl = 1 is (10)
+		assertArrayEquals(new int[] { 0 }, ints.getKetPairs(5));
+		assertArrayEquals(new int[] { 4 }, ints.getKetPairs(4));
+		assertArrayEquals(new int[] { 1 }, ints.getKetPairs(3));
+		assertEquals(1, ints.getPairFirst(1));
+		assertEquals(0, ints.getPairSecond(1));
+	}
+
+	@Test
+	void storeIsImmutable() {
+		SparseTwoElectronIntegralStore ints = store();
+
+		assertThrows(UnsupportedOperationException.class, () -> ints.set(0, 1.0));
+	}
+}
@@ -0,0 +1,70 @@
+package name.mjw.jquante.math.qm;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TwoElectronIntegralFileTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void recordsAreReadBackAcrossBlocks() throws Exception {
+		try (TwoElectronIntegralFile file = new TwoElectronIntegralFile(directory, 3)) {
+			try (TwoElectronIntegralFile.Writer writer = file.newWriter()) {
+				for (int r = 0; r < 10; r++) {
+					writer.write(r, r / 2, 65535, r % 3, r + 0.5);
+				}
+			}
+
+			assertEquals(10, file.getNumberOfIntegrals());
+
+			List<double[]> records = new ArrayList<>();
+			file.read((i, j, k, l, value) -> records.add(new double[] { i, j, k, l, value }));
+
+			assertEquals(10, records.size());
+			for (int r = 0; r < 10; r++) {
+				assertArrayEquals(new double[] { r, r / 2, 65535, r % 3, r + 0.5 }, records.get(r), 0.0);
+			}
+		}
+	}
+
+	@Test
+	void rangeIsReadFromItsFirstRecord() throws Exception {
+		try (TwoElectronIntegralFile file = new TwoElectronIntegralFile(directory, 2)) {
+			try (TwoElectronIntegralFile.Writer writer = file.newWriter()) {
+				for (int r = 0; r < 7; r++) {
+					writer.write(r, 0, 0, 0, r);
+				}
+			}
+
+			double[] sum = new double[1];
+			file.read(2, 4, (i, j, k, l, value) -> sum[0] += value);
+
+			assertEquals(2 + 3 + 4 + 5, sum[0], 0.0);
+			assertThrows(IllegalArgumentException.class, () -> file.read(5, 3, (i, j, k, l, value) -> {
+			}));
+		}
+	}
+
+	@Test
+	void fileIsDeletedOnClose() throws Exception {
+		TwoElectronIntegralFile file = new TwoElectronIntegralFile(directory);
+		try (TwoElectronIntegralFile.Writer writer = file.newWriter()) {
+			writer.write(1, 0, 0, 0, 1.0);
+		}
+		file.close();
+
+		assertFalse(Files.exists(file.getPath()));
+	}
+}
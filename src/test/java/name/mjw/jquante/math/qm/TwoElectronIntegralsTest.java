@@ -2,8 +2,11 @@ package name.mjw.jquante.math.qm;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.nio.file.Path;
+
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
 import name.mjw.jquante.molecule.Molecule;
@@ -85,4 +88,124 @@ class TwoElectronIntegralsTest {
             assertTrue(Double.isFinite(v), "All stored integrals should be finite, found: " + v);
         }
     }
+
+    @Test
+    void shellQuartetIntegralsMatchPerFunctionIntegrals() throws Exception {
+        BasisSetLibrary waterBsl = new BasisSetLibrary(Fixtures.getWater(), "6-31gss");
+        TwoElectronIntegrals tei = new TwoElectronIntegrals(waterBsl);
+        tei.setSchwarzThreshold(0.0);
+        tei.compute2E();
+
+        TwoElectronIntegralStore store = tei.getTwoEIntegralStore();
+        int n = waterBsl.getBasisFunctions().size();
+        for (int i = 0; i < n; i += 3)
+            for (int j = 0; j <= i; j++)
+                for (int k = 0; k < n; k += 2)
+                    for (int l = 0; l <= k; l++)
+                        assertEquals(tei.compute2E(i, j, k, l), store.get(i, j, k, l), 1e-10);
+    }
+
+    @Test
+    void sparseStoreHoldsOnlyIntegralsAboveTheCutoff() throws Exception {
+        BasisSetLibrary waterBsl = new BasisSetLibrary(Fixtures.getWater(), "6-31gss");
+        TwoElectronIntegrals tei = new TwoElectronIntegrals(waterBsl);
+        TwoElectronIntegralStore dense = tei.getTwoEIntegralStore();
+
+        tei.compute2ESparse(1e-6);
+        SparseTwoElectronIntegralStore sparse = (SparseTwoElectronIntegralStore) tei.getTwoEIntegralStore();
+
+        long expectedCount = 0;
+        for (long index = 0; index < dense.size(); index++) {
+            double value = dense.get(index);
+            if (Math.abs(value) >= 1e-6) {
+                expectedCount++;
+                assertEquals(value, sparse.get(index), 0.0);
+            } else {
+                assertEquals(0.0, sparse.get(index), 0.0);
+            }
+        }
+        assertEquals(expectedCount, sparse.getNumberOfStoredIntegrals());
+        assertTrue(sparse.getNumberOfStoredIntegrals() < dense.size());
+    }
+
+    @Test
+    void sparseStoreCutoffIsTheIntegralThreshold() throws Exception {
+        BasisSetLibrary waterBsl = new BasisSetLibrary(Fixtures.getWater(), "sto-3g");
+        TwoElectronIntegrals tei = new TwoElectronIntegrals(waterBsl);
+        assertEquals(tei.getSchwarzThreshold(), tei.getIntegralThreshold(), 0.0);
+
+        tei.compute2ESparse(1e-4);
+        long expected = ((SparseTwoElectronIntegralStore) tei.getTwoEIntegralStore()).getNumberOfStoredIntegrals();
+
+        // a looser Schwarz threshold does not change which integrals are kept
+        tei.setSchwarzThreshold(1e-20);
+        tei.setIntegralThreshold(1e-4);
+        tei.compute2ESparse();
+
+        assertEquals(expected,
+                ((SparseTwoElectronIntegralStore) tei.getTwoEIntegralStore()).getNumberOfStoredIntegrals());
+    }
+
+    @Test
+    void closeReleasesTheIntegralFile(@TempDir Path directory) throws Exception {
+        TwoElectronIntegrals tei = new TwoElectronIntegrals(bsl, true);
+        tei.setIntegralDirectory(directory);
+        tei.compute2EOnDisk();
+
+        TwoElectronIntegralFile file = tei.getIntegralFile();
+        assertTrue(tei.isDiskBacked());
+        assertTrue(file.isOpen());
+
+        tei.close();
+
+        assertFalse(tei.isDiskBacked());
+        assertFalse(file.isOpen());
+        assertNull(tei.getIntegralFile());
+
+        // closing again does nothing
+        tei.close();
+    }
+
+    @Test
+    void inCoreRecomputeReleasesTheIntegralFile(@TempDir Path directory) throws Exception {
+        TwoElectronIntegrals tei = new TwoElectronIntegrals(bsl, true);
+        tei.setIntegralDirectory(directory);
+        tei.compute2EOnDisk();
+        TwoElectronIntegralFile file = tei.getIntegralFile();
+
+        tei.recompute();
+
+        assertFalse(tei.isDiskBacked());
+        assertFalse(file.isOpen());
+        assertNull(tei.getIntegralFile());
+        assertNotNull(tei.getTwoEIntegralStore());
+    }
+
+    @Test
+    void recomputeDropsTheDirectSchwarzBounds() {
+        TwoElectronIntegrals tei = new TwoElectronIntegrals(bsl, true);
+        SchwarzScreening screening = tei.getSchwarzScreening();
+        assertSame(screening, tei.getSchwarzScreening());
+
+        tei.recompute();
+
+        assertNotSame(screening, tei.getSchwarzScreening());
+        assertTrue(tei.isOnTheFly());
+        assertNull(tei.getTwoEIntegralStore());
+    }
+
+    @Test
+    void recomputeDropsTheFactorisedIntegrals() {
+        TwoElectronIntegrals tei = new TwoElectronIntegrals(bsl);
+        DensityFittedIntegrals densityFitted = tei.getDensityFittedIntegrals();
+        tei.computeCholesky();
+        assertTrue(tei.isCholeskyDecomposed());
+
+        tei.recompute();
+
+        assertFalse(tei.isCholeskyDecomposed());
+        assertNull(tei.getCholeskyIntegrals());
+        assertNotNull(tei.getTwoEIntegralStore());
+        assertNotSame(densityFitted, tei.getDensityFittedIntegrals());
+    }
 }
@@ -0,0 +1,55 @@
+package name.mjw.jquante.math.qm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.junit.jupiter.api.Test;
+
+import name.mjw.jquante.molecule.Atom;
+import name.mjw.jquante.molecule.Molecule;
+import name.mjw.jquante.molecule.impl.MoleculeImpl;
+import name.mjw.jquante.test.Fixtures;
+
+class UnrestrictedHartreeFockMethodTest {
+
+	@Test
+	void hydrogenAtom() throws Exception {
+		// the single electron sees no two-electron energy, as Ja = Ka
+		assertEquals(-0.466581850, scf(atom("H"), SCFType.HARTREE_FOCK).getEnergy(), 1e-8);
+	}
+
+	@Test
+	void lithiumAtom() throws Exception {
+		// PyQuante2, UHF/STO-3G
+		assertEquals(-7.315525981081, scf(atom("Li"), SCFType.HARTREE_FOCK).getEnergy(), 1e-8);
+		assertEquals(-7.315525981081, scf(atom("Li"), SCFType.HARTREE_FOCK_DIRECT).getEnergy(), 1e-8);
+	}
+
+	@Test
+	void closedShellMatchesRestricted() throws Exception {
+		SCFMethod uhf = scf(Fixtures.getWater(), SCFType.HARTREE_FOCK);
+		SCFMethod rhf = converged(Fixtures.getSCFMethod(Fixtures.getWater(), "sto-3g", SCFType.HARTREE_FOCK));
+
+		assertEquals(rhf.getEnergy(), uhf.getEnergy(), 1e-8);
+	}
+
+	private static Molecule atom(String symbol) {
+		Molecule molecule = new MoleculeImpl(symbol);
+		molecule.addAtom(new Atom(symbol, Vector3D.ZERO));
+
+		return molecule;
+	}
+
+	/** UHF/STO-3G, which the SCFMethodFactory can not make */
+	private static SCFMethod scf(Molecule molecule, SCFType type) throws Exception {
+		return converged(Fixtures.getSCFMethod(molecule, "sto-3g", type, UnrestrictedHartreeFockMethod::new));
+	}
+
+	private static SCFMethod converged(SCFMethod scfm) {
+		scfm.setEnergyTolerance(1e-10);
+		scfm.setMaxIteration(100);
+		scfm.scf();
+
+		return scfm;
+	}
+}
@@ -0,0 +1,51 @@
+package name.mjw.jquante.math.qm.basis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import name.mjw.jquante.test.Fixtures;
+
+class EvenTemperedAuxiliaryBasisTest {
+
+	@Test
+	void coversTheOrbitalProductsOfEachAtom() throws Exception {
+		BasisSetLibrary orbital = new BasisSetLibrary(Fixtures.getWater(), "sto-3g");
+		BasisSetLibrary auxiliary = EvenTemperedAuxiliaryBasis.create(orbital);
+
+		int maxOxygenL = 0;
+		int maxHydrogenL = 0;
+		double maxHydrogenExponent = 0.0;
+		for (int i = 0; i < auxiliary.getBasisFunctions().size(); i++) {
+			ContractedGaussian cg = auxiliary.getBasisFunctions().get(i);
+
+			assertEquals(i, cg.getBasisFunctionIndex());
+			assertEquals(1, cg.getExponents().size());
+
+			if ("O".equals(cg.getCenteredAtom().getSymbol())) {
+				maxOxygenL = Math.max(maxOxygenL, cg.getTotalAngularMomentum());
+			} else {
+				maxHydrogenL = Math.max(maxHydrogenL, cg.getTotalAngularMomentum());
+				maxHydrogenExponent = Math.max(maxHydrogenExponent, cg.getExponents().get(0));
+			}
+		}
+
+		// s and p on oxygen give products up to d, s on hydrogen only s
+		assertEquals(2, maxOxygenL);
+		assertEquals(0, maxHydrogenL);
+
+		// the tightest hydrogen product is 2 * 3.42525091
+		assertTrue(maxHydrogenExponent >= 2 * 3.42525091);
+	}
+
+	@Test
+	void smallerRatiosGiveMoreFunctions() throws Exception {
+		BasisSetLibrary orbital = new BasisSetLibrary(Fixtures.getWater(), "sto-3g");
+
+		assertTrue(EvenTemperedAuxiliaryBasis.create(orbital, 2.0).getBasisFunctions()
+				.size() > EvenTemperedAuxiliaryBasis.create(orbital, 3.0).getBasisFunctions().size());
+		assertThrows(IllegalArgumentException.class, () -> EvenTemperedAuxiliaryBasis.create(orbital, 1.0));
+	}
+}
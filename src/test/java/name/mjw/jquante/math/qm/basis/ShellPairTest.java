@@ -0,0 +1,97 @@
+package name.mjw.jquante.math.qm.basis;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.hipparchus.geometry.euclidean.threed.Vector3D;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import name.mjw.jquante.molecule.Molecule;
+import name.mjw.jquante.test.Fixtures;
+
+import net.jafama.FastMath;
+
+class ShellPairTest {
+
+	private final double delta = 1e-12;
+
+	static Shell shellA;
+	static Shell shellB;
+	static ShellPair pair;
+
+	@BeforeAll
+	static void setUp() {
+		ContractedGaussian a = new ContractedGaussian(new Vector3D(0, 0, 0), new Power(0, 0, 0));
+		a.addPrimitive(1.0, 0.5);
+		a.addPrimitive(3.0, 0.25);
+		a.normalize();
+
+		ContractedGaussian b = new ContractedGaussian(new Vector3D(0, 0, 2), new Power(0, 0, 1));
+		b.addPrimitive(1.0, 1.0);
+		b.normalize();
+
+		shellA = new Shell(a);
+		shellB = new Shell(b);
+		pair = new ShellPair(shellA, shellB);
+	}
+
+	@Test
+	void numberOfPrimitivePairs() {
+		assertEquals(2, pair.getNumberOfPrimitivesA());
+		assertEquals(1, pair.getNumberOfPrimitivesB());
+		assertEquals(2, pair.getNumberOfPrimitivePairs());
+	}
+
+	@Test
+	void productCentres() {
+		// primitives are held in order of decreasing exponent
+		assertArrayEquals(new double[] { 3.0, 1.0 }, pair.getAlpha(), delta);
+		assertArrayEquals(new double[] { 4.0, 2.0 }, pair.getZeta(), delta);
+		assertArrayEquals(new double[] { 0, 0, 0.5, 0, 0, 1.0 }, pair.getP(), delta);
+		assertArrayEquals(new double[] { 0, 0, 0.5, 0, 0, 1.0 }, pair.getPA(), delta);
+		assertArrayEquals(new double[] { 0, 0, -1.5, 0, 0, -1.0 }, pair.getPB(), delta);
+	}
+
+	@Test
+	void prefactors() {
+		assertEquals(4.0, pair.getABSquared(), delta);
+		assertArrayEquals(new double[] { FastMath.exp(-3.0), FastMath.exp(-2.0) }, pair.getKab(), delta);
+		assertArrayEquals(new double[] { 0.25, 0.5 }, pair.getCoefficients(), delta);
+	}
+
+	@Test
+	void basisSetLibraryCachesBothOrientations() throws Exception {
+		Molecule water = Fixtures.getWater();
+		BasisSetLibrary bsl = new BasisSetLibrary(water, "sto-3g");
+		List<Shell> shells = bsl.getShells();
+
+		for (int a = 0; a < shells.size(); a++) {
+			assertEquals(a, shells.get(a).getShellIndex());
+
+			for (int b = 0; b < shells.size(); b++) {
+				ShellPair ab = bsl.getShellPair(a, b);
+
+				assertNotNull(ab);
+				assertSame(shells.get(a), ab.getA());
+				assertSame(shells.get(b), ab.getB());
+				assertSame(ab, bsl.getShellPair(shells.get(a), shells.get(b)));
+				assertSame(ab, shells.get(a).getShellPair(shells.get(b)));
+			}
+		}
+	}
+
+	@Test
+	void shellsOutsideOfALibraryComputeTheirPair() {
+		ShellPair computed = shellA.getShellPair(shellB);
+
+		assertSame(shellA, computed.getA());
+		assertSame(shellB, computed.getB());
+		assertArrayEquals(pair.getZeta(), computed.getZeta(), delta);
+	}
+
+}
@@ -0,0 +1,80 @@
+package name.mjw.jquante.math.qm.integral;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.hipparchus.special.Erf;
+import org.junit.jupiter.api.Test;
+
+import net.jafama.FastMath;
+
+class BoysFunctionTest {
+
+	@Test
+	void zeroArgument() {
+		double[] values = new double[BoysFunction.MAX_ORDER + 1];
+		BoysFunction.evaluate(BoysFunction.MAX_ORDER, 0.0, values);
+
+		for (int m = 0; m <= BoysFunction.MAX_ORDER; m++) {
+			assertEquals(1.0 / (2 * m + 1), values[m], 1e-14);
+		}
+	}
+
+	@Test
+	void zerothOrderMatchesErf() {
+		double[] values = new double[1];
+
+		for (double x = 1e-3; x < 120.0; x *= 1.17) {
+			BoysFunction.evaluate(0, x, values);
+			double expected = 0.5 * FastMath.sqrt(Math.PI / x) * Erf.erf(FastMath.sqrt(x));
+
+			assertEquals(expected, values[0], 1e-13 * expected, "x = " + x);
+		}
+	}
+
+	@Test
+	void matchesIncompleteGamma() {
+		double[] values = new double[17];
+
+		for (double x = 0.0; x < 80.0; x += 0.173) {
+			BoysFunction.evaluate(16, x, values);
+
+			for (int m = 0; m <= 16; m++) {
+				double expected = IntegralsUtil.computeFGamma(m, x);
+
+				// the reference routine is itself only converged to ~3e-7
+				assertEquals(expected, values[m], 1e-6 * expected, "m = " + m + ", x = " + x);
+			}
+		}
+	}
+
+	@Test
+	void singleOrderMatchesAllOrders() {
+		double[] values = new double[9];
+		BoysFunction.evaluate(8, 7.3, values);
+
+		assertEquals(values[5], BoysFunction.value(5, 7.3), 0.0);
+	}
+
+	@Test
+	void continuousAtAsymptoticCrossover() {
+		double[] below = new double[BoysFunction.MAX_ORDER + 1];
+		double[] above = new double[BoysFunction.MAX_ORDER + 1];
+
+		BoysFunction.evaluate(BoysFunction.MAX_ORDER, Math.nextDown(BoysFunction.X_MAX), below);
+		BoysFunction.evaluate(BoysFunction.MAX_ORDER, BoysFunction.X_MAX, above);
+
+		for (int m = 0; m <= BoysFunction.MAX_ORDER; m++) {
+			assertEquals(below[m], above[m], 1e-12 * below[m], "m = " + m);
+		}
+	}
+
+	@Test
+	void orderOutOfRange() {
+		double[] values = new double[BoysFunction.MAX_ORDER + 2];
+
+		assertThrows(IllegalArgumentException.class,
+				() -> BoysFunction.evaluate(BoysFunction.MAX_ORDER + 1, 1.0, values));
+	}
+
+}
@@ -2,11 +2,19 @@ package name.mjw.jquante.math.qm.integral;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.junit.jupiter.api.Test;
 
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
 import name.mjw.jquante.math.qm.basis.ContractedGaussian;
 import name.mjw.jquante.math.qm.basis.Power;
+import name.mjw.jquante.math.qm.basis.Shell;
+import name.mjw.jquante.molecule.Molecule;
 import name.mjw.jquante.test.Fixtures;
 
 class HGPTwoElectronTermTest {
@@ -102,8 +110,8 @@ class HGPTwoElectronTermTest {
 
 	// --- coulombRepulsion with non-zero bPower / dPower ---
 	//
-	// coulomb(ContractedGaussian) always passes through contractedHrr, which
-	// reduces b and d to s-type before calling vrr — so it was never broken.
+	// coulomb(ContractedGaussian) always applies the contracted HRR, which
+	// reduces b and d to s-type before the VRR — so it was never broken.
 	// coulombRepulsion(primitive params) is called directly during analytic
 	// gradient evaluation.
 
@@ -169,4 +177,60 @@ class HGPTwoElectronTermTest {
 		assertEquals(lhs, rhs, delta);
 	}
 
+	@Test
+	void shellQuartetMatchesComponents() throws Exception {
+		Molecule water = Fixtures.getWater();
+		BasisSetLibrary bsl = new BasisSetLibrary(water, "6-31gss");
+
+		// one shell for each distinct centre and angular momentum
+		List<Shell> shells = new ArrayList<>();
+		Set<String> seen = new HashSet<>();
+		for (Shell shell : bsl.getShells()) {
+			if (seen.add(shell.getOrigin() + ":" + shell.getTotalAngularMomentum())) {
+				shells.add(shell);
+			}
+		}
+
+		double[] block = new double[6 * 6 * 6 * 6];
+		for (Shell a : shells) {
+			for (Shell b : shells) {
+				for (Shell c : shells) {
+					for (Shell d : shells) {
+						e2.coulomb(a, b, c, d, block);
+
+						int index = 0;
+						for (ContractedGaussian ap : a.getBasisFunctions())
+							for (ContractedGaussian bq : b.getBasisFunctions())
+								for (ContractedGaussian cr : c.getBasisFunctions())
+									for (ContractedGaussian ds : d.getBasisFunctions())
+										assertEquals(e2.coulomb(ap, bq, cr, ds), block[index++], 1e-10);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void offCentreHighAngularMomentumMatchesRys() {
+		ContractedGaussian f = new ContractedGaussian(new Vector3D(0.1, -0.4, 0.7), new Power(1, 2, 0));
+		f.addPrimitive(1.3, 0.6);
+		f.addPrimitive(0.4, 0.5);
+		f.normalize();
+
+		ContractedGaussian d = new ContractedGaussian(new Vector3D(-0.8, 0.3, 0.2), new Power(0, 1, 1));
+		d.addPrimitive(0.9, 1.0);
+		d.normalize();
+
+		ContractedGaussian p = new ContractedGaussian(new Vector3D(0.5, 0.5, -0.6), new Power(0, 0, 1));
+		p.addPrimitive(2.1, 0.3);
+		p.addPrimitive(0.7, 0.8);
+		p.normalize();
+
+		RysTwoElectronTerm rys = new RysTwoElectronTerm();
+
+		assertEquals(rys.coulomb(f, d, p, f), e2.coulomb(f, d, p, f), 1e-10);
+		assertEquals(rys.coulomb(d, f, f, p), e2.coulomb(d, f, f, p), 1e-10);
+		assertEquals(rys.coulomb(f, f, d, d), e2.coulomb(f, f, d, d), 1e-10);
+	}
+
 }
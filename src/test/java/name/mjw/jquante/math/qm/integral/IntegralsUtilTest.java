@@ -2,6 +2,7 @@ package name.mjw.jquante.math.qm.integral;
 
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.junit.jupiter.api.Test;
@@ -73,6 +74,31 @@ class IntegralsUtilTest {
 		assertEquals(3, IntegralsUtil.ijkl2intindex(0, 0, 1, 1));
 	}
 
+	@Test
+	void ijkl2longindexMatchesIntIndex() {
+
+		for (int i = 0; i < 6; i++)
+			for (int j = 0; j < 6; j++)
+				for (int k = 0; k < 6; k++)
+					for (int l = 0; l < 6; l++)
+						assertEquals(IntegralsUtil.ijkl2intindex(i, j, k, l), IntegralsUtil.ijkl2longindex(i, j, k, l));
+	}
+
+	@Test
+	void ijkl2longindexDoesNotOverflow() {
+		// the last canonical index for 400 basis functions is beyond Integer.MAX_VALUE
+		assertEquals(IntegralsUtil.numberOfUniqueIntegrals(400) - 1,
+				IntegralsUtil.ijkl2longindex(399, 399, 399, 399));
+		assertTrue(IntegralsUtil.ijkl2longindex(399, 399, 399, 399) > Integer.MAX_VALUE);
+	}
+
+	@Test
+	void numberOfUniqueIntegrals() {
+		assertEquals(1, IntegralsUtil.numberOfUniqueIntegrals(1));
+		assertEquals(6, IntegralsUtil.numberOfUniqueIntegrals(2));
+		assertEquals(406, IntegralsUtil.numberOfUniqueIntegrals(7));
+	}
+
 	@Test
 	void computeFGamma() {
 		assertEquals(1.0, IntegralsUtil.computeFGamma(0, 0), delta);
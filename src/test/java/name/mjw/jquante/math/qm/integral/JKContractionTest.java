@@ -0,0 +1,131 @@
+package name.mjw.jquante.math.qm.integral;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.hipparchus.linear.Array2DRowRealMatrix;
+import org.hipparchus.linear.DiagonalMatrix;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import name.mjw.jquante.math.qm.Density;
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
+import name.mjw.jquante.math.qm.basis.ContractedGaussian;
+import name.mjw.jquante.math.qm.basis.Shell;
+import name.mjw.jquante.test.Fixtures;
+
+class JKContractionTest {
+
+	private static final double DELTA = 1e-10;
+
+	static BasisSetLibrary bsl;
+	static List<ContractedGaussian> bfs;
+	static int n;
+	static double[][] density;
+	static double[][] expectedJ;
+	static double[][] expectedK;
+
+	@BeforeAll
+	static void setUp() throws Exception {
+		bsl = new BasisSetLibrary(Fixtures.getWater(), "3-21g");
+		bfs = bsl.getBasisFunctions();
+		n = bfs.size();
+
+		density = new double[n][n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				density[i][j] = 0.2 / (1 + i + j) + (i == j ? 0.1 : 0.0);
+
+		// J_ij = sum_kl (ij|kl) D_kl, K_ij = sum_kl (ik|jl) D_kl over every index
+		final RysTwoElectronTerm rys = new RysTwoElectronTerm();
+		final double[][][][] eri = new double[n][n][n][n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j <= i; j++)
+				for (int k = 0; k < n; k++)
+					for (int l = 0; l <= k; l++) {
+						final double value = rys.coulomb(bfs.get(i), bfs.get(j), bfs.get(k), bfs.get(l));
+						eri[i][j][k][l] = value;
+						eri[j][i][k][l] = value;
+						eri[i][j][l][k] = value;
+						eri[j][i][l][k] = value;
+					}
+
+		expectedJ = new double[n][n];
+		expectedK = new double[n][n];
+		for (int i = 0; i < n; i++)
+			for (int j = 0; j < n; j++)
+				for (int k = 0; k < n; k++)
+					for (int l = 0; l < n; l++) {
+						expectedJ[i][j] += eri[i][j][k][l] * density[k][l];
+						expectedK[i][j] += eri[i][k][j][l] * density[k][l];
+					}
+	}
+
+	@Test
+	void rysUniqueQuartetsBuildJK() {
+		assertUniqueQuartetsBuildJK(new RysTwoElectronTerm());
+	}
+
+	@Test
+	void hgpUniqueQuartetsBuildJK() {
+		assertUniqueQuartetsBuildJK(new HGPTwoElectronTerm());
+	}
+
+	@Test
+	void huzinagaUniqueQuartetsBuildJK() {
+		assertUniqueQuartetsBuildJK(new HuzinagaTwoElectronTerm());
+	}
+
+	@Test
+	void shellQuartetsBuildJK() {
+		final HGPTwoElectronTerm hgp = new HGPTwoElectronTerm();
+		final List<Shell> shells = bsl.getShells();
+		final double[][] j = new double[n][n];
+		final double[][] k = new double[n][n];
+
+		for (int a = 0; a < shells.size(); a++)
+			for (int b = 0; b <= a; b++)
+				for (int c = 0; c <= a; c++)
+					for (int d = 0; d <= c; d++)
+						if (c * (c + 1) / 2 + d <= a * (a + 1) / 2 + b)
+							hgp.coulomb(bsl.getShellPair(a, b), bsl.getShellPair(c, d), density, j, k);
+
+		for (int i = 0; i < n; i++) {
+			assertArrayEquals(expectedJ[i], j[i], DELTA);
+			assertArrayEquals(expectedK[i], k[i], DELTA);
+		}
+	}
+
+	@Test
+	void matricesMustBeArrayBacked() {
+		final Density d = new Density(density);
+		final Array2DRowRealMatrix k = new Array2DRowRealMatrix(n, n);
+		final DiagonalMatrix j = new DiagonalMatrix(n);
+
+		assertThrows(IllegalArgumentException.class, () -> JKContraction.addIntegral(d, j, k, 0, 0, 0, 0, 1.0));
+	}
+
+	private static void assertUniqueQuartetsBuildJK(TwoElectronTerm term) {
+		final Density d = new Density(density);
+		final Array2DRowRealMatrix j = new Array2DRowRealMatrix(n, n);
+		final Array2DRowRealMatrix k = new Array2DRowRealMatrix(n, n);
+
+		for (int p = 0; p < n; p++)
+			for (int q = 0; q <= p; q++)
+				for (int r = 0; r < n; r++)
+					for (int s = 0; s <= r; s++)
+						if (r * (r + 1) / 2 + s <= p * (p + 1) / 2 + q) {
+							final double value = term.coulomb(bfs.get(p), bfs.get(q), bfs.get(r), bfs.get(s), d, j,
+									k);
+							assertEquals(term.coulomb(bfs.get(p), bfs.get(q), bfs.get(r), bfs.get(s)), value, 0.0);
+						}
+
+		for (int i = 0; i < n; i++) {
+			assertArrayEquals(expectedJ[i], j.getDataRef()[i], 1e-6);
+			assertArrayEquals(expectedK[i], k.getDataRef()[i], 1e-6);
+		}
+	}
+}
@@ -7,7 +7,10 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 import org.junit.jupiter.api.Test;
 
+import name.mjw.jquante.math.qm.basis.ContractedGaussian;
 import name.mjw.jquante.math.qm.basis.Power;
+import name.mjw.jquante.math.qm.basis.Shell;
+import name.mjw.jquante.math.qm.basis.ShellPair;
 
 class NuclearTermTest {
 
@@ -105,4 +108,25 @@ class NuclearTermTest {
 
 	}
 
+	@Test
+	void shellPairNuclearAttractionMatchesPrimitive() {
+		Shell a = new Shell(cgto(new Vector3D(0.1, -0.2, 0.3), new Power(1, 0, 0), 1.3));
+		Shell b = new Shell(cgto(new Vector3D(-0.4, 0.5, 0.0), new Power(0, 1, 1), 0.7));
+		ShellPair ab = new ShellPair(a, b);
+		Vector3D c = new Vector3D(0.2, 0.2, -0.6);
+
+		assertEquals(
+				nuclearTerm.nuclearAttraction(a.getOrigin(), 1.0, a.getPowers(), 1.3, b.getOrigin(), 1.0,
+						b.getPowers(), 0.7, c),
+				nuclearTerm.nuclearAttraction(ab, 0, a.getPowers(), b.getPowers(), c), 1e-12);
+	}
+
+	private static ContractedGaussian cgto(Vector3D origin, Power power, double exponent) {
+		ContractedGaussian cg = new ContractedGaussian(origin, power);
+		cg.addPrimitive(exponent, 1.0);
+		cg.normalize();
+
+		return cg;
+	}
+
 }
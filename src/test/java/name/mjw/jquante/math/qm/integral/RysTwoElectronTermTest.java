@@ -1,8 +1,18 @@
 package name.mjw.jquante.math.qm.integral;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.junit.jupiter.api.Test;
+
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
 import name.mjw.jquante.math.qm.basis.ContractedGaussian;
+import name.mjw.jquante.math.qm.basis.Shell;
+import name.mjw.jquante.molecule.Molecule;
 import name.mjw.jquante.test.Fixtures;
 
 class RysTwoElectronTermTest {
@@ -57,4 +67,37 @@ class RysTwoElectronTermTest {
 		assertEquals(0.8186960564969021, e2.coulomb(cgtoF0, cgtoF0, cgtoF0, cgtoF0), delta);
 	}
 
+	@Test
+	void shellQuartetMatchesComponents() throws Exception {
+		Molecule water = Fixtures.getWater();
+		BasisSetLibrary bsl = new BasisSetLibrary(water, "6-31gss");
+
+		// one shell for each distinct centre and angular momentum
+		List<Shell> shells = new ArrayList<>();
+		Set<String> seen = new HashSet<>();
+		for (Shell shell : bsl.getShells()) {
+			if (seen.add(shell.getOrigin() + ":" + shell.getTotalAngularMomentum())) {
+				shells.add(shell);
+			}
+		}
+
+		double[] block = new double[6 * 6 * 6 * 6];
+		for (Shell a : shells) {
+			for (Shell b : shells) {
+				for (Shell c : shells) {
+					for (Shell d : shells) {
+						e2.coulomb(a, b, c, d, block);
+
+						int index = 0;
+						for (ContractedGaussian ap : a.getBasisFunctions())
+							for (ContractedGaussian bq : b.getBasisFunctions())
+								for (ContractedGaussian cr : c.getBasisFunctions())
+									for (ContractedGaussian ds : d.getBasisFunctions())
+										assertEquals(e2.coulomb(ap, bq, cr, ds), block[index++], 1e-10);
+					}
+				}
+			}
+		}
+	}
+
 }
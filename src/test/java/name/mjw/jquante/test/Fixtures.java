@@ -2,6 +2,12 @@ package name.mjw.jquante.test;
 
 import org.hipparchus.geometry.euclidean.threed.Vector3D;
 
+import name.mjw.jquante.math.qm.OneElectronIntegrals;
+import name.mjw.jquante.math.qm.SCFMethod;
+import name.mjw.jquante.math.qm.SCFMethodFactory;
+import name.mjw.jquante.math.qm.SCFType;
+import name.mjw.jquante.math.qm.TwoElectronIntegrals;
+import name.mjw.jquante.math.qm.basis.BasisSetLibrary;
 import name.mjw.jquante.math.qm.basis.ContractedGaussian;
 import name.mjw.jquante.math.qm.basis.Power;
 import name.mjw.jquante.molecule.Atom;
@@ -82,6 +88,24 @@ public class Fixtures {
 		return benzene;
 	}
 
+	@FunctionalInterface
+	public interface SCFMethodConstructor {
+		SCFMethod create(Molecule molecule, OneElectronIntegrals oneEI, TwoElectronIntegrals twoEI, SCFType type);
+	}
+
+	public static SCFMethod getSCFMethod(Molecule molecule, String basisName, SCFType type) throws Exception {
+		return getSCFMethod(molecule, basisName, type, SCFMethodFactory.getInstance()::getSCFMethod);
+	}
+
+	public static SCFMethod getSCFMethod(Molecule molecule, String basisName, SCFType type,
+			SCFMethodConstructor method) throws Exception {
+		BasisSetLibrary bsl = new BasisSetLibrary(molecule, basisName);
+
+		OneElectronIntegrals e1 = new OneElectronIntegrals(bsl, molecule);
+		TwoElectronIntegrals e2 = new TwoElectronIntegrals(bsl, type.equals(SCFType.HARTREE_FOCK_DIRECT));
+
+		return method.create(molecule, e1, e2, type);
+	}
 
 	public static ContractedGaussian getCgtoS0() {
 		ContractedGaussian cgtoS0 = new ContractedGaussian(new Vector3D(0, 0, 0), new Power(0, 0, 0));